@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.Date;
+
+/**
+ * An unfinished global transaction, its row is written together with the events and deleted by SagaEndedEvent, so the
+ * table is as small as the number of in-flight global transactions. It's read-only for JPA.
+ *
+ * @since 2019/10/18
+ */
+@Entity
+@Table(name = "ActiveGlobalTx")
+public class ActiveGlobalTx {
+    @Id
+    private String globalTxId;
+    // RUNNING, PAUSED or ABORTED
+    private String status;
+    // the earliest expiry time of the global transaction and its sub-transactions
+    private Date expiryTime;
+    // the first event id of the global transaction
+    private long minEventId;
+    private int startedCount;
+    private int endedCount;
+    private int abortedCount;
+    private int compensatedCount;
+    private Date creationTime;
+    private Date updateTime;
+
+    ActiveGlobalTx() {
+    }
+
+    public String globalTxId() {
+        return globalTxId;
+    }
+
+    public String status() {
+        return status;
+    }
+
+    public Date expiryTime() {
+        return expiryTime;
+    }
+
+    public long minEventId() {
+        return minEventId;
+    }
+
+    public int startedCount() {
+        return startedCount;
+    }
+
+    public int endedCount() {
+        return endedCount;
+    }
+
+    public int abortedCount() {
+        return abortedCount;
+    }
+
+    public int compensatedCount() {
+        return compensatedCount;
+    }
+
+    public Date creationTime() {
+        return creationTime;
+    }
+
+    public Date updateTime() {
+        return updateTime;
+    }
+
+    @Override
+    public String toString() {
+        return "ActiveGlobalTx{globalTxId='" + globalTxId + "', status='" + status + "', expiryTime=" + expiryTime + ", minEventId=" + minEventId
+                + ", startedCount=" + startedCount + ", endedCount=" + endedCount + ", abortedCount=" + abortedCount + ", compensatedCount=" + compensatedCount + '}';
+    }
+}
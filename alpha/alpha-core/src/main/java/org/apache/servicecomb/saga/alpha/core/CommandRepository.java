@@ -33,7 +33,24 @@ public interface CommandRepository {
 
   void markCommandAsDone(String globalTxId, String localTxId);
 
+  // gives the PENDING command back to the scanner, e.g. it was failed to send.
+  void markCommandAsNew(String globalTxId, String localTxId);
+
+  // extends the lease of the claimed command to the deadline of its result after sending it, it's claimed again if it's not done by then.
+  void markCommandAsSent(String globalTxId, String localTxId);
+
+  // keeps the command of a failed compensation PENDING, it's sent again after a backoff, returns false once the attempts are exhausted.
+  boolean markCommandAsFailed(String globalTxId, String localTxId);
+
   List<Command> findUncompletedCommands(String globalTxId);
 
-  List<Command> findFirstCommandToCompensate();
+  /**
+   * Claims up to <code>limit</code> commands for the worker atomically, they are the NEW ones and the PENDING ones whose
+   * lease expired, i.e. claimed by a worker which crashed before sending them.
+   *
+   * @param workerId identify of the worker
+   * @param limit max number of commands
+   * @return the claimed commands, one per sub-transaction
+   */
+  List<Command> claimCommandsToCompensate(String workerId, int limit);
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sends compensation commands to omega as soon as they are created, instead of waiting for the next scan.
+ *
+ * Every service has its own queue and at most 'windowPerService' commands of a service are being sent at the same time,
+ * so a slow or unreachable service only holds its own window of worker threads, the commands of other services are not
+ * delayed by it. The commands are claimed, i.e. PENDING, before dispatching, the ones which have been sent are handed to
+ * 'onSent', and the ones which could not be sent are handed to 'onFailure', so that they can be given back to the scanner.
+ *
+ * @since 2019/10/18
+ */
+public class CompensationDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final OmegaCallback omegaCallback;
+    private final int windowPerService;
+    private final ExecutorService executor;
+    private final Map<String, ServiceLane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * @param omegaCallback it should throw exception if failed to send, rather than swallowing it.
+     */
+    public CompensationDispatcher(OmegaCallback omegaCallback, int threads, int windowPerService) {
+        this.omegaCallback = omegaCallback;
+        this.windowPerService = Math.max(1, windowPerService);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "txle-compensation-dispatcher-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void dispatch(Command command, Consumer<Command> onFailure) {
+        dispatch(command, sentCommand -> {
+        }, onFailure);
+    }
+
+    public void dispatch(Command command, Consumer<Command> onSent, Consumer<Command> onFailure) {
+        ServiceLane lane = lanes.computeIfAbsent(command.serviceName(), ServiceLane::new);
+        lane.pendingCommands.offer(new PendingCommand(command, onSent, onFailure));
+        lane.drain();
+    }
+
+    int inFlight(String serviceName) {
+        ServiceLane lane = lanes.get(serviceName);
+        return lane == null ? 0 : lane.inFlight.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private final class ServiceLane {
+        private final String serviceName;
+        private final Queue<PendingCommand> pendingCommands = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private ServiceLane(String serviceName) {
+            this.serviceName = serviceName;
+        }
+
+        private void drain() {
+            while (!pendingCommands.isEmpty()) {
+                int current = inFlight.get();
+                if (current >= windowPerService) {
+                    // the one which is in flight drains again after finishing.
+                    return;
+                }
+                if (!inFlight.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+                PendingCommand pendingCommand = pendingCommands.poll();
+                if (pendingCommand == null) {
+                    inFlight.decrementAndGet();
+                    continue;
+                }
+                try {
+                    executor.execute(() -> send(pendingCommand));
+                } catch (RuntimeException e) {
+                    inFlight.decrementAndGet();
+                    fail(pendingCommand, e);
+                    return;
+                }
+            }
+        }
+
+        private void send(PendingCommand pendingCommand) {
+            Command command = pendingCommand.command;
+            try {
+                LOG.info("Compensating transaction with globalTxId {} and localTxId {}", command.globalTxId(), command.localTxId());
+                // call the client method 'org.apache.servicecomb.saga.omega.transaction.CompensationMessageHandler.onReceive()' to execute compensation.
+                omegaCallback.compensate(EventScanner.txStartedEventOf(command));
+                sent(pendingCommand);
+            } catch (Exception e) {
+                fail(pendingCommand, e);
+            } finally {
+                inFlight.decrementAndGet();
+                drain();
+            }
+        }
+
+        private void sent(PendingCommand pendingCommand) {
+            try {
+                pendingCommand.onSent.accept(pendingCommand.command);
+            } catch (Exception e) {
+                LOG.error("Failed to handle the sent compensation {}.", pendingCommand.command, e);
+            }
+        }
+
+        private void fail(PendingCommand pendingCommand, Exception e) {
+            Command command = pendingCommand.command;
+            LOG.error("Failed to send compensation of service [{}], globalTxId [{}], localTxId [{}].", serviceName, command.globalTxId(), command.localTxId(), e);
+            try {
+                pendingCommand.onFailure.accept(command);
+            } catch (Exception ex) {
+                LOG.error("Failed to handle the failed compensation {}.", command, ex);
+            }
+        }
+    }
+
+    private static final class PendingCommand {
+        private final Command command;
+        private final Consumer<Command> onSent;
+        private final Consumer<Command> onFailure;
+
+        private PendingCommand(Command command, Consumer<Command> onSent, Consumer<Command> onFailure) {
+            this.command = command;
+            this.onSent = onSent;
+            this.onFailure = onFailure;
+        }
+    }
+}
@@ -25,9 +25,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.apache.servicecomb.saga.alpha.core.TaskStatus.NEW;
@@ -53,8 +57,20 @@ public class EventScanner implements Runnable {
 
   public static final String SCANNER_SQL = " /**scanner_sql**/";
 
+  private static final int COMMAND_CLAIM_LIMIT = 200;
+  // identify of the worker which claims commands, it's unique in the cluster.
+  private final String workerId = ManagementFactory.getRuntimeMXBean().getName() + "-scanner";
+
   private ITxleCache txleCache;
   private TxleConsulClient txleConsulClient;
+  // null means detecting timeout by polling the TxEvent table.
+  private final TxTimeoutDetector timeoutDetector;
+  // the shards whose timeouts have been rebuilt into the timeout detector since current alpha owned them.
+  private Set<Integer> timeoutDetectorRebuiltShards = new HashSet<>();
+  // null means sending compensations one by one in the scanner thread.
+  private final CompensationDispatcher compensationDispatcher;
+  // the background work is done only for the shards of global transactions which current alpha owns.
+  private final EventScannerShards shards;
 
   public EventScanner(ScheduledExecutorService scheduler,
                       TxEventRepository eventRepository,
@@ -64,6 +80,46 @@ public class EventScanner implements Runnable {
                       int eventPollingInterval,
                       ITxleCache txleCache,
                       TxleConsulClient txleConsulClient) {
+    this(scheduler, eventRepository, commandRepository, timeoutRepository, omegaCallback, eventPollingInterval, txleCache, txleConsulClient, null);
+  }
+
+  public EventScanner(ScheduledExecutorService scheduler,
+                      TxEventRepository eventRepository,
+                      CommandRepository commandRepository,
+                      TxTimeoutRepository timeoutRepository,
+                      OmegaCallback omegaCallback,
+                      int eventPollingInterval,
+                      ITxleCache txleCache,
+                      TxleConsulClient txleConsulClient,
+                      TxTimeoutDetector timeoutDetector) {
+    this(scheduler, eventRepository, commandRepository, timeoutRepository, omegaCallback, eventPollingInterval, txleCache, txleConsulClient, timeoutDetector, null);
+  }
+
+  public EventScanner(ScheduledExecutorService scheduler,
+                      TxEventRepository eventRepository,
+                      CommandRepository commandRepository,
+                      TxTimeoutRepository timeoutRepository,
+                      OmegaCallback omegaCallback,
+                      int eventPollingInterval,
+                      ITxleCache txleCache,
+                      TxleConsulClient txleConsulClient,
+                      TxTimeoutDetector timeoutDetector,
+                      CompensationDispatcher compensationDispatcher) {
+    this(scheduler, eventRepository, commandRepository, timeoutRepository, omegaCallback, eventPollingInterval, txleCache, txleConsulClient, timeoutDetector,
+        compensationDispatcher, new EventScannerShards(txleConsulClient, 1, eventPollingInterval));
+  }
+
+  public EventScanner(ScheduledExecutorService scheduler,
+                      TxEventRepository eventRepository,
+                      CommandRepository commandRepository,
+                      TxTimeoutRepository timeoutRepository,
+                      OmegaCallback omegaCallback,
+                      int eventPollingInterval,
+                      ITxleCache txleCache,
+                      TxleConsulClient txleConsulClient,
+                      TxTimeoutDetector timeoutDetector,
+                      CompensationDispatcher compensationDispatcher,
+                      EventScannerShards shards) {
     this.scheduler = scheduler;
     this.eventRepository = eventRepository;
     this.commandRepository = commandRepository;
@@ -72,6 +128,9 @@ public class EventScanner implements Runnable {
     this.eventPollingInterval = eventPollingInterval;
     this.txleCache = txleCache;
     this.txleConsulClient = txleConsulClient;
+    this.timeoutDetector = timeoutDetector;
+    this.compensationDispatcher = compensationDispatcher;
+    this.shards = shards;
   }
 
   @Override
@@ -90,11 +149,20 @@ public class EventScanner implements Runnable {
     scheduler.scheduleWithFixedDelay(
             () -> {
               try {
-                if (txleConsulClient.isMaster()) {
-                  // Use a new scheduler for lessening the latency of checking timeout.
-                  updateTimeoutStatus();
-                  findTimeoutEvents();
-                  abortTimeoutEvents();
+                Set<Integer> ownedShards = shards.ownedShards();
+                if (!ownedShards.isEmpty()) {
+                  // It's a global update without globalTxId, so only the owner of the first shard does it.
+                  if (ownedShards.contains(0)) {
+                    updateTimeoutStatus();
+                  }
+                  if (timeoutDetector == null) {
+                    findTimeoutEvents(ownedShards);
+                  } else {
+                    rebuildTimeoutDetector(ownedShards);
+                  }
+                  abortTimeoutEvents(ownedShards);
+                } else {
+                  timeoutDetectorRebuiltShards = new HashSet<>();
                 }
               } catch (Exception e) {
                 // to avoid stopping this scheduler in case of exception By Gannalyo
@@ -108,9 +176,9 @@ public class EventScanner implements Runnable {
     scheduler.scheduleWithFixedDelay(
             () -> {
               try {
-                if (txleConsulClient.isMaster()) {
+                // The commands are claimed atomically, so every owner of shards sweeps them, the claims partition them already.
+                if (!shards.ownedShards().isEmpty()) {
                   compensate();
-                  updateCompensatedCommands();
                   getMinUnendedEventId();
                 }
               } catch (Exception e) {
@@ -130,31 +198,45 @@ public class EventScanner implements Runnable {
     }
   }
 
-  private void findTimeoutEvents() {
+  private void findTimeoutEvents(Set<Integer> ownedShards) {
     // check and record timeout
     // SELECT t.surrogateId FROM TxTimeout t, TxEvent t1 WHERE t1.globalTxId = t.globalTxId AND t1.localTxId = t.localTxId AND t1.type != t.type
-    eventRepository.findTimeoutEvents(unendedMinEventId)
+    eventRepository.findTimeoutEvents(unendedMinEventId).stream()
+            .filter(event -> shards.isOwned(ownedShards, event.globalTxId()))
             .forEach(event -> {
+              if (!shards.isOwned(event.globalTxId())) {
+                return;
+              }
               CurrentThreadContext.put(event.globalTxId(), event);
               log.info("Found timeout event {}", event);
               try {
-                if (timeoutRepository.findTxTimeoutByEventId(event.id()) < 1) {
-                  timeoutRepository.save(txTimeoutOf(event));
-                }
+                timeoutRepository.saveIfAbsent(txTimeoutOf(event));
               } catch (Exception e) {
                 log.error("Failed to save timeout {} in method 'EventScanner.findTimeoutEvents()'.", event, e);
               }
             });
   }
 
-  private void abortTimeoutEvents() {
+  // The timeouts of the events which were saved by other alpha nodes are unknown to the timeout detector of current alpha, so rebuild it after owning new shards.
+  private void rebuildTimeoutDetector(Set<Integer> ownedShards) {
+    Set<Integer> newlyOwnedShards = new HashSet<>(ownedShards);
+    newlyOwnedShards.removeAll(timeoutDetectorRebuiltShards);
+    if (!newlyOwnedShards.isEmpty()) {
+      timeoutDetector.rebuild(eventRepository.selectUnendedTxEvents(unendedMinEventId).stream()
+          .filter(event -> shards.isOwned(newlyOwnedShards, event.globalTxId())).collect(Collectors.toList()));
+    }
+    timeoutDetectorRebuiltShards = new HashSet<>(ownedShards);
+  }
+
+  private void abortTimeoutEvents(Set<Integer> ownedShards) {
     // select timeout records which have a 'NEW' status.
-    List<TxTimeout> txTimeoutList = timeoutRepository.findFirstTimeout();
+    // the timeouts are marked as PENDING only if their shards are still owned at that moment.
+    List<TxTimeout> txTimeoutList = timeoutRepository.findFirstTimeout(globalTxId -> shards.isOwned(ownedShards, globalTxId) && shards.isOwned(globalTxId));
     if (txTimeoutList != null && !txTimeoutList.isEmpty()) {
       txTimeoutList.forEach(timeout -> {
         log.info("Found timeout event {} to abort", timeout);
         // set cache for aborted tx as soon as possible so that next sub-transaction can get the aborted status when it verifies the aborted status.
-        txleCache.putDistributedTxAbortStatusCache(timeout.globalTxId(), true, 2);
+        txleCache.putDistributedTxAbortStatusCache(timeout.globalTxId(), true, 30);
       });
 
       txTimeoutList.forEach(timeout -> {
@@ -170,37 +252,26 @@ public class EventScanner implements Runnable {
     }
   }
 
+  // The commands are dispatched once they are created if the dispatcher exists, so it's just a sweep for the ones which were failed to send or created by other ways.
   private void compensate() {
-    List<Command> commandList = commandRepository.findFirstCommandToCompensate();
+    List<Command> commandList = commandRepository.claimCommandsToCompensate(workerId, COMMAND_CLAIM_LIMIT);
     if (commandList == null || commandList.isEmpty()) {
       return;
     }
+    if (compensationDispatcher != null) {
+      commandList.forEach(command -> compensationDispatcher.dispatch(command,
+          sentCommand -> commandRepository.markCommandAsSent(sentCommand.globalTxId(), sentCommand.localTxId()),
+          failedCommand -> commandRepository.markCommandAsNew(failedCommand.globalTxId(), failedCommand.localTxId())));
+      return;
+    }
     commandList.forEach(command -> {
       log.error("Compensating transaction with globalTxId {} and localTxId {}", command.globalTxId(), command.localTxId());
       // call the client method 'org.apache.servicecomb.saga.omega.transaction.CompensationMessageHandler.onReceive()' to execute compensation.
       omegaCallback.compensate(txStartedEventOf(command));
+      commandRepository.markCommandAsSent(command.globalTxId(), command.localTxId());
     });
   }
 
-  private void updateCompensatedCommands() {
-    // The 'findFirstCompensatedEventByIdGreaterThan' interface did not think about the 'SagaEndedEvent' type so that would do too many thing those were wasted.
-    List<TxEvent> compensatedUnendEventList = eventRepository.findSequentialCompensableEventOfUnended(unendedMinEventId);
-    if (compensatedUnendEventList == null || compensatedUnendEventList.isEmpty()) {
-      return;
-    }
-    compensatedUnendEventList.forEach(event -> {
-      CurrentThreadContext.put(event.globalTxId(), event);
-      log.info("Found compensated event {}", event);
-      updateCompensationStatus(event);
-    });
-  }
-
-  private void updateCompensationStatus(TxEvent event) {
-    commandRepository.markCommandAsDone(event.globalTxId(), event.localTxId());
-    log.info("Transaction with globalTxId {} and localTxId {} was compensated", event.globalTxId(), event.localTxId());
-    CurrentThreadContext.put(event.globalTxId(), event);
-  }
-
   private TxEvent toTxAbortedEvent(TxTimeout timeout) {
     return new TxEvent(
             timeout.serviceName(),
@@ -214,7 +285,7 @@ public class EventScanner implements Runnable {
             "Transaction timeout".getBytes());
   }
 
-  private TxEvent txStartedEventOf(Command command) {
+  static TxEvent txStartedEventOf(Command command) {
     return new TxEvent(
             command.serviceName(),
             command.instanceId(),
@@ -228,7 +299,7 @@ public class EventScanner implements Runnable {
     );
   }
 
-  private TxTimeout txTimeoutOf(TxEvent event) {
+  static TxTimeout txTimeoutOf(TxEvent event) {
     return new TxTimeout(
             event.id(),
             event.serviceName(),
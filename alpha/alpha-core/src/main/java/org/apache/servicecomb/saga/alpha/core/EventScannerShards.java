@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import com.ecwid.consul.v1.ConsulClient;
+import com.ecwid.consul.v1.QueryParams;
+import com.ecwid.consul.v1.kv.model.GetValue;
+import com.ecwid.consul.v1.kv.model.PutParams;
+import com.ecwid.consul.v1.session.model.NewSession;
+import com.ecwid.consul.v1.session.model.Session;
+import org.apache.servicecomb.saga.common.TxleConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Partitions the background work of EventScanner by the hash of globalTxId into a fixed number of shards, and leases the
+ * shards across the live alpha nodes, so that adding alpha nodes increases the capacity of detecting timeout too.
+ *
+ * Every alpha holds a Consul session with TTL, a shard is owned by the session which acquired its key. The live nodes
+ * are the sessions of the shards, every node owns at most 'ceil(shards / nodes)' shards, it releases the redundant ones
+ * and acquires the free ones at each round, so the shards are rebalanced in a few rounds after the membership changed.
+ * The shards of a node which died are released by Consul once its session expired. The ownership is regarded as lost
+ * if the session could not be renewed in half of TTL, before Consul releases the shards for other nodes.
+ *
+ * Without Consul, the leader owns all shards, it's the same as before.
+ *
+ * @since 2019/10/18
+ */
+public class EventScannerShards {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String SHARD_KEY_PREFIX = TxleConstants.APP_NAME + "/service/scanner-shards/";
+    private static final String SESSION_NAME_PREFIX = "scanner-shards-";
+    private static final long MIN_SESSION_TTL_MILLIS = 10000;
+
+    private final TxleConsulClient txleConsulClient;
+    private final int shardCount;
+    private final long rebalanceMillis;
+    private final long sessionTtlMillis;
+    private final Set<Integer> allShards;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "txle-scanner-shards");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // null means the shards are not leased by Consul.
+    private volatile String sessionId;
+    private volatile Set<Integer> leasedShards = Collections.emptySet();
+    private volatile long leaseValidUntil;
+
+    public EventScannerShards(TxleConsulClient txleConsulClient, int shardCount, long rebalanceMillis) {
+        this.txleConsulClient = txleConsulClient;
+        this.shardCount = Math.max(1, shardCount);
+        this.rebalanceMillis = rebalanceMillis;
+        this.sessionTtlMillis = Math.max(MIN_SESSION_TTL_MILLIS, rebalanceMillis * 3);
+        Set<Integer> shards = new TreeSet<>();
+        for (int shard = 0; shard < this.shardCount; shard++) {
+            shards.add(shard);
+        }
+        this.allShards = Collections.unmodifiableSet(shards);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                rebalance();
+            } catch (Exception e) {
+                LOG.error(TxleConstants.LOG_ERROR_PREFIX + "Failed to rebalance the shards of event scanner.", e);
+            }
+        }, 0, rebalanceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public int shardOf(String globalTxId) {
+        return Math.floorMod(globalTxId.hashCode(), shardCount);
+    }
+
+    /**
+     * @return the shards which current alpha owns at this moment, they may change at any round of rebalancing.
+     */
+    public Set<Integer> ownedShards() {
+        if (sessionId == null) {
+            return txleConsulClient != null && txleConsulClient.isMaster() ? allShards : Collections.emptySet();
+        }
+        return System.currentTimeMillis() < leaseValidUntil ? leasedShards : Collections.emptySet();
+    }
+
+    public boolean isOwned(Set<Integer> ownedShards, String globalTxId) {
+        return ownedShards.contains(shardOf(globalTxId));
+    }
+
+    /**
+     * Whether current alpha owns the global transaction at this moment, it's checked right before writing for it, because
+     * the shards which were owned at the beginning of a round may have been released meanwhile.
+     */
+    public boolean isOwned(String globalTxId) {
+        return isOwned(ownedShards(), globalTxId);
+    }
+
+    void rebalance() {
+        ConsulClient consulClient = txleConsulClient == null ? null : txleConsulClient.getConsulClient();
+        if (consulClient == null) {
+            return;
+        }
+        Set<Integer> previousShards = leasedShards;
+        String currentSessionId = renewOrCreateSession(consulClient);
+        long renewedAt = System.currentTimeMillis();
+
+        Map<Integer, String> holders = new HashMap<>();
+        List<GetValue> values = consulClient.getKVValues(SHARD_KEY_PREFIX).getValue();
+        if (values != null) {
+            values.forEach(value -> {
+                Integer shard = parseShard(value.getKey());
+                if (shard != null && value.getSession() != null) {
+                    holders.put(shard, value.getSession());
+                }
+            });
+        }
+        Set<String> liveSessions = new TreeSet<>(holders.values());
+        liveSessions.add(currentSessionId);
+        List<Session> sessions = consulClient.getSessionList(QueryParams.DEFAULT).getValue();
+        if (sessions != null) {
+            sessions.stream().filter(session -> session.getName() != null && session.getName().startsWith(SESSION_NAME_PREFIX))
+                    .forEach(session -> liveSessions.add(session.getId()));
+        }
+
+        Set<Integer> targetShards = targetShards(holders, currentSessionId, liveSessions.size(), shardCount);
+        Set<Integer> ownedShards = new TreeSet<>();
+        for (Map.Entry<Integer, String> holder : holders.entrySet()) {
+            if (currentSessionId.equals(holder.getValue())) {
+                ownedShards.add(holder.getKey());
+            }
+        }
+        for (Integer shard : new TreeSet<>(ownedShards)) {
+            if (!targetShards.contains(shard)) {
+                // Stop working on it before releasing. The scanner checks the ownership of a global transaction again right
+                // before writing for it, so only the write which passed the check may overlap with the next owner, and
+                // the writes of the scanner check the existing records first.
+                ownedShards.remove(shard);
+                leasedShards = Collections.unmodifiableSet(new TreeSet<>(ownedShards));
+                PutParams putParams = new PutParams();
+                putParams.setReleaseSession(currentSessionId);
+                consulClient.setKVValue(SHARD_KEY_PREFIX + shard, currentSessionId, putParams);
+            }
+        }
+        for (Integer shard : targetShards) {
+            if (!ownedShards.contains(shard)) {
+                PutParams putParams = new PutParams();
+                putParams.setAcquireSession(currentSessionId);
+                if (Boolean.TRUE.equals(consulClient.setKVValue(SHARD_KEY_PREFIX + shard, currentSessionId, putParams).getValue())) {
+                    ownedShards.add(shard);
+                }
+            }
+        }
+
+        if (!ownedShards.equals(previousShards)) {
+            LOG.info("Event scanner owns shards {} of {} with {} live alpha nodes.", ownedShards, shardCount, liveSessions.size());
+        }
+        leasedShards = Collections.unmodifiableSet(ownedShards);
+        leaseValidUntil = renewedAt + sessionTtlMillis / 2;
+    }
+
+    /**
+     * Keeps the owned shards up to the fair share and acquires the free ones for the rest of it, the shards with lower
+     * numbers are preferred, so that the nodes converge to the same assignment.
+     */
+    static Set<Integer> targetShards(Map<Integer, String> holders, String sessionId, int liveNodes, int shardCount) {
+        int fairShare = (shardCount + Math.max(1, liveNodes) - 1) / Math.max(1, liveNodes);
+        Set<Integer> targetShards = new TreeSet<>();
+        for (int shard = 0; shard < shardCount && targetShards.size() < fairShare; shard++) {
+            if (sessionId.equals(holders.get(shard))) {
+                targetShards.add(shard);
+            }
+        }
+        for (int shard = 0; shard < shardCount && targetShards.size() < fairShare; shard++) {
+            if (holders.get(shard) == null) {
+                targetShards.add(shard);
+            }
+        }
+        return targetShards;
+    }
+
+    private String renewOrCreateSession(ConsulClient consulClient) {
+        String currentSessionId = sessionId;
+        if (currentSessionId != null) {
+            try {
+                if (consulClient.renewSession(currentSessionId, QueryParams.DEFAULT).getValue() != null) {
+                    return currentSessionId;
+                }
+            } catch (Exception e) {
+                LOG.warn("Failed to renew the session of event scanner shards, creating a new one.", e);
+            }
+            // the shards of an invalid session have been released by Consul.
+            leasedShards = Collections.emptySet();
+        }
+        NewSession session = new NewSession();
+        session.setName(SESSION_NAME_PREFIX + ManagementFactory.getRuntimeMXBean().getName());
+        session.setTtl(TimeUnit.MILLISECONDS.toSeconds(sessionTtlMillis) + "s");
+        session.setBehavior(Session.Behavior.RELEASE);
+        // no health check of Consul agent's node, some alpha nodes may share an agent.
+        session.setChecks(Collections.emptyList());
+        currentSessionId = consulClient.sessionCreate(session, QueryParams.DEFAULT).getValue();
+        sessionId = currentSessionId;
+        return currentSessionId;
+    }
+
+    private Integer parseShard(String key) {
+        if (key == null || !key.startsWith(SHARD_KEY_PREFIX)) {
+            return null;
+        }
+        try {
+            int shard = Integer.parseInt(key.substring(SHARD_KEY_PREFIX.length()));
+            return shard < shardCount ? shard : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        String currentSessionId = sessionId;
+        ConsulClient consulClient = txleConsulClient == null ? null : txleConsulClient.getConsulClient();
+        if (currentSessionId != null && consulClient != null) {
+            try {
+                // releases all of the shards at once, so the other nodes take them over in next round.
+                consulClient.sessionDestroy(currentSessionId, QueryParams.DEFAULT);
+            } catch (Exception e) {
+                LOG.warn("Failed to destroy the session of event scanner shards.", e);
+            }
+        }
+        sessionId = null;
+        leasedShards = Collections.emptySet();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Selects the running global transactions of a bulk operation, either by their identifications or by the service and
+ * the time range of their 'SagaStartedEvent'. At most 'limit' global transactions are selected per page.
+ *
+ * @since 2019/10/18
+ */
+public class GlobalTxFilter {
+    private final List<String> globalTxIds;
+    private final String serviceName;
+    private final Date startTime;
+    private final Date endTime;
+    private final int limit;
+
+    private GlobalTxFilter(List<String> globalTxIds, String serviceName, Date startTime, Date endTime, int limit) {
+        this.globalTxIds = globalTxIds;
+        this.serviceName = serviceName == null || serviceName.trim().isEmpty() ? null : serviceName.trim();
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.limit = limit;
+    }
+
+    public static GlobalTxFilter ofGlobalTxIds(List<String> globalTxIds, int limit) {
+        if (globalTxIds == null || globalTxIds.isEmpty()) {
+            throw new IllegalArgumentException("The identifications of Global Transactions are empty.");
+        }
+        return new GlobalTxFilter(globalTxIds, null, null, null, limit);
+    }
+
+    public static GlobalTxFilter ofService(String serviceName, Date startTime, Date endTime, int limit) {
+        GlobalTxFilter filter = new GlobalTxFilter(Collections.emptyList(), serviceName, startTime, endTime, limit);
+        if (filter.serviceName == null && startTime == null && endTime == null) {
+            throw new IllegalArgumentException("Neither the identifications nor the service or time range of Global Transactions are given.");
+        }
+        return filter;
+    }
+
+    /**
+     * @return empty if the global transactions are selected by service and time range.
+     */
+    public List<String> globalTxIds() {
+        return globalTxIds;
+    }
+
+    public String serviceName() {
+        return serviceName;
+    }
+
+    public Date startTime() {
+        return startTime;
+    }
+
+    public Date endTime() {
+        return endTime;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return globalTxIds.isEmpty()
+                ? "GlobalTxFilter{serviceName='" + serviceName + "', startTime=" + startTime + ", endTime=" + endTime + ", limit=" + limit + "}"
+                : "GlobalTxFilter{globalTxIds=" + globalTxIds.size() + ", limit=" + limit + "}";
+    }
+}
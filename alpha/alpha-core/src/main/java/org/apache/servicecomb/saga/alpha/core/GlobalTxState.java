@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.servicecomb.saga.common.EventType.*;
+
+/**
+ * The state of one global transaction which is folded from its events, it answers the checks of TxConsistentService
+ * without querying the TxEvent table. Every answer keeps the same meaning as the SQL it replaces.
+ *
+ * The events saved by other alpha nodes are not applied, so a state is incomplete once it gets an event of a
+ * sub-transaction whose 'TxStartedEvent' it has never got, then the callers should rebuild it from the TxEvent table.
+ *
+ * @since 2019/10/18
+ */
+public class GlobalTxState {
+    private final String globalTxId;
+    // localTxId -> types of its events
+    private final Map<String, Set<String>> typesOfSubTx = new HashMap<>();
+    // sub-transactions which have started their last attempt, i.e. TxStartedEvent with 'retries = 0'.
+    private final Set<String> lastAttemptSubTx = new HashSet<>();
+    // SagaStartedEvent and TxStartedEvent without payloads, they are the candidates of timeout.
+    private final List<TxEvent> startedEvents = new ArrayList<>();
+    private TxEvent latestPauseEvent;
+    private boolean containsPauseEvent;
+    private boolean aborted;
+    private boolean ended;
+    private boolean complete = true;
+    private volatile long lastAccessTime = System.currentTimeMillis();
+
+    GlobalTxState(String globalTxId) {
+        this.globalTxId = globalTxId;
+    }
+
+    public String globalTxId() {
+        return globalTxId;
+    }
+
+    synchronized void apply(TxEvent event) {
+        lastAccessTime = System.currentTimeMillis();
+        String type = event.type();
+        Set<String> types = typesOfSubTx.computeIfAbsent(event.localTxId(), localTxId -> new HashSet<>());
+        if (isSubTxResult(event) && !types.contains(TxStartedEvent.name())) {
+            complete = false;
+        }
+        types.add(type);
+
+        if (TxStartedEvent.name().equals(type) || SagaStartedEvent.name().equals(type)) {
+            if (!containsEvent(startedEvents, event)) {
+                startedEvents.add(withoutPayloads(event));
+            }
+            if (TxStartedEvent.name().equals(type) && event.retries() == 0) {
+                lastAttemptSubTx.add(event.localTxId());
+            }
+        } else if (TxAbortedEvent.name().equals(type)) {
+            aborted = true;
+        } else if (SagaEndedEvent.name().equals(type)) {
+            ended = true;
+        } else if (AdditionalEventType.SagaPausedEvent.name().equals(type) || AdditionalEventType.SagaContinuedEvent.name().equals(type)
+                || AdditionalEventType.SagaAutoContinuedEvent.name().equals(type)) {
+            if (!AdditionalEventType.SagaContinuedEvent.name().equals(type)) {
+                containsPauseEvent = true;
+            }
+            if (latestPauseEvent == null || isLater(event, latestPauseEvent)) {
+                latestPauseEvent = event;
+            }
+        }
+    }
+
+    // the same as 'TxEventRepository.checkIsExistsEventType'
+    public synchronized boolean containsEventType(String localTxId, String type) {
+        lastAccessTime = System.currentTimeMillis();
+        Set<String> types = typesOfSubTx.get(localTxId);
+        return types != null && types.contains(type);
+    }
+
+    // the same as 'TxEventRepository.checkTxIsAborted'
+    public synchronized boolean isLastAttemptStarted(String localTxId) {
+        lastAccessTime = System.currentTimeMillis();
+        return lastAttemptSubTx.contains(localTxId);
+    }
+
+    // the same as 'TxEventRepository.findTimeoutEventsBeforeEnding'
+    public synchronized TxEvent findTimeoutEventBeforeEnding(Date currentDateTime) {
+        lastAccessTime = System.currentTimeMillis();
+        if (aborted || ended) {
+            return null;
+        }
+        TxEvent timeoutEvent = null;
+        for (TxEvent event : startedEvents) {
+            if (event.expiryTime().before(currentDateTime) && (timeoutEvent == null || isLater(event, timeoutEvent))) {
+                timeoutEvent = event;
+            }
+        }
+        return timeoutEvent;
+    }
+
+    // whether 'SagaPausedEvent' or 'SagaAutoContinuedEvent' has ever happened.
+    public synchronized boolean containsPauseEvent() {
+        lastAccessTime = System.currentTimeMillis();
+        return containsPauseEvent;
+    }
+
+    // the same as the first one of 'TxEventRepository.selectPausedAndContinueEvent'
+    public synchronized TxEvent latestPauseEvent() {
+        lastAccessTime = System.currentTimeMillis();
+        return latestPauseEvent;
+    }
+
+    // false if some events of the global transaction were saved by the other alpha nodes.
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    boolean isEnded() {
+        return ended;
+    }
+
+    long lastAccessTime() {
+        return lastAccessTime;
+    }
+
+    private boolean isSubTxResult(TxEvent event) {
+        String type = event.type();
+        return !globalTxId.equals(event.localTxId())
+                && (TxEndedEvent.name().equals(type) || TxAbortedEvent.name().equals(type) || TxCompensatedEvent.name().equals(type));
+    }
+
+    // The events which are loaded from db have ids, but the event which is just being saved may have not, then the later one wins.
+    private boolean isLater(TxEvent event, TxEvent current) {
+        return event.id() <= 0 || current.id() <= 0 || event.id() >= current.id();
+    }
+
+    private boolean containsEvent(List<TxEvent> events, TxEvent event) {
+        if (event.id() <= 0) {
+            return false;
+        }
+        for (TxEvent e : events) {
+            if (e.id() == event.id()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TxEvent withoutPayloads(TxEvent event) {
+        return new TxEvent(event.id(), event.serviceName(), event.instanceId(), event.creationTime(), event.globalTxId(), event.localTxId(),
+                event.parentTxId(), event.type(), event.compensationMethod(), event.expiryTime(), event.retryMethod(), event.retries(),
+                event.category(), null);
+    }
+}
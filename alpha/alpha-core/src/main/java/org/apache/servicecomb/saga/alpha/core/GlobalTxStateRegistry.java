@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.apache.servicecomb.saga.common.EventType.SagaEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.SagaStartedEvent;
+
+/**
+ * States of the running global transactions in current alpha.
+ *
+ * A state is created by SagaStartedEvent, or rebuilt from the TxEvent table at the first time it is asked for (e.g. after
+ * restarting), and then kept up to date by every event saved by current alpha. It is removed when the global transaction
+ * ends, or has not been touched for 'idleExpireMillis'.
+ *
+ * @since 2019/10/18
+ */
+public class GlobalTxStateRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final Map<String, GlobalTxState> states = new ConcurrentHashMap<>();
+    private final long idleExpireMillis;
+
+    public GlobalTxStateRegistry(long idleExpireMillis) {
+        this.idleExpireMillis = idleExpireMillis;
+    }
+
+    /**
+     * It should be invoked after the event was persisted.
+     */
+    public void onEventSaved(TxEvent event) {
+        String globalTxId = event.globalTxId();
+        if (globalTxId == null) {
+            return;
+        }
+        if (SagaEndedEvent.name().equals(event.type())) {
+            states.remove(globalTxId);
+            return;
+        }
+
+        GlobalTxState state;
+        if (SagaStartedEvent.name().equals(event.type())) {
+            // nothing happened before SagaStartedEvent, so it's a complete state without loading anything.
+            state = states.computeIfAbsent(globalTxId, GlobalTxState::new);
+        } else {
+            // Do not rebuild here, it will be rebuilt with this event by 'getOrLoad' if somebody asks for it.
+            state = states.get(globalTxId);
+        }
+        if (state != null) {
+            state.apply(event);
+        }
+    }
+
+    public GlobalTxState getOrLoad(String globalTxId, Function<String, List<TxEvent>> loader) {
+        GlobalTxState state = states.get(globalTxId);
+        if (state == null) {
+            state = load(globalTxId, loader, false);
+        }
+        return state;
+    }
+
+    /**
+     * Rebuilds the state from the durable events, for the cases which current alpha could not observe, such as the
+     * events saved by other alpha nodes.
+     */
+    public GlobalTxState reload(String globalTxId, Function<String, List<TxEvent>> loader) {
+        return load(globalTxId, loader, true);
+    }
+
+    @Scheduled(fixedDelayString = "${alpha.tx-state.sweep-interval:60000}")
+    public void removeIdleStates() {
+        long expireTime = System.currentTimeMillis() - idleExpireMillis;
+        int sizeBefore = states.size();
+        states.values().removeIf(state -> state.lastAccessTime() < expireTime);
+        if (sizeBefore > states.size()) {
+            LOG.debug("Removed {} idle global transaction states.", sizeBefore - states.size());
+        }
+    }
+
+    int size() {
+        return states.size();
+    }
+
+    private GlobalTxState load(String globalTxId, Function<String, List<TxEvent>> loader, boolean replace) {
+        GlobalTxState state = new GlobalTxState(globalTxId);
+        // Register it before loading, so that the events saved meanwhile are not missed, and hold its lock, so that nobody reads it half loaded.
+        synchronized (state) {
+            if (replace) {
+                states.put(globalTxId, state);
+            } else {
+                GlobalTxState existingState = states.putIfAbsent(globalTxId, state);
+                if (existingState != null) {
+                    return existingState;
+                }
+            }
+            try {
+                List<TxEvent> events = loader.apply(globalTxId);
+                if (events != null) {
+                    events.forEach(state::apply);
+                }
+            } catch (RuntimeException e) {
+                states.remove(globalTxId, state);
+                throw e;
+            }
+            if (state.isEnded()) {
+                states.remove(globalTxId, state);
+            }
+        }
+        return state;
+    }
+}
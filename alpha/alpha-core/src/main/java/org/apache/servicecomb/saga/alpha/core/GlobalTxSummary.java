@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One row per global transaction for the transaction list of UI, it's maintained by the events incrementally, so the list
+ * doesn't read the events or compute the status of every global transaction. It's read-only for JPA.
+ *
+ * @since 2019/10/18
+ */
+@Entity
+@Table(name = "GlobalTxSummary")
+public class GlobalTxSummary {
+    // the values of the data dictionary 'global-tx-status'
+    public static final int RUNNING = 0;
+    public static final int ABORTED = 1;
+    public static final int PAUSED = 2;
+    public static final int ENDED = 3;
+    public static final int TERMINATED = 4;
+
+    @Id
+    private String globalTxId;
+    // the id of SagaStartedEvent
+    private long startEventId;
+    private String serviceName;
+    private String instanceId;
+    private String category;
+    private int status;
+    private Date startTime;
+    private Date endTime;
+    private Date expiryTime;
+    private int subTxCount;
+    private int subTxEndedCount;
+    private int subTxAbortedCount;
+    private int subTxCompensatedCount;
+    private Date updateTime;
+
+    GlobalTxSummary() {
+    }
+
+    public String globalTxId() {
+        return globalTxId;
+    }
+
+    public long startEventId() {
+        return startEventId;
+    }
+
+    public String serviceName() {
+        return serviceName;
+    }
+
+    public String instanceId() {
+        return instanceId;
+    }
+
+    public String category() {
+        return category;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    public Date startTime() {
+        return startTime;
+    }
+
+    public Date endTime() {
+        return endTime;
+    }
+
+    public Date expiryTime() {
+        return expiryTime;
+    }
+
+    public int subTxCount() {
+        return subTxCount;
+    }
+
+    public int subTxEndedCount() {
+        return subTxEndedCount;
+    }
+
+    public int subTxAbortedCount() {
+        return subTxAbortedCount;
+    }
+
+    public int subTxCompensatedCount() {
+        return subTxCompensatedCount;
+    }
+
+    /**
+     * The same keys as the list of global transactions which was computed by the events, plus the counts of sub-transactions.
+     */
+    public Map<String, Object> toMap(String statusName) {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        Map<String, Object> map = new HashMap<>();
+        map.put("surrogateId", startEventId);
+        map.put("globalTxId", globalTxId);
+        map.put("serviceName", serviceName);
+        map.put("instanceId", instanceId);
+        map.put("category", category);
+        map.put("creationTime", startTime == null ? null : sdf.format(startTime));
+        map.put("expiryTime", expiryTime == null ? null : sdf.format(expiryTime));
+        if (endTime != null) {
+            map.put("endTime", sdf.format(endTime));
+        }
+        map.put("status_db", status);
+        map.put("status", statusName);
+        map.put("subTxCount", subTxCount);
+        map.put("subTxEndedCount", subTxEndedCount);
+        map.put("subTxAbortedCount", subTxAbortedCount);
+        map.put("subTxCompensatedCount", subTxCompensatedCount);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "GlobalTxSummary{globalTxId='" + globalTxId + "', serviceName='" + serviceName + "', status=" + status + ", startTime=" + startTime
+                + ", endTime=" + endTime + ", subTxCount=" + subTxCount + '}';
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel which expires tasks at their wall-clock expiration.
+ *
+ * The first level has 'wheelSize' buckets of 'tickMillis', and every upper level has the same number of buckets, each
+ * of which covers a whole round of the level below it. A task is put into the lowest level which covers its expiration,
+ * and moves down one level each time its bucket expires, until it expires in the first level. Only the buckets which
+ * have tasks are in the delay queue, so the worker thread sleeps until the next bucket expires rather than ticking, and
+ * scheduling or cancelling a task costs O(1) however many tasks are waiting.
+ *
+ * The expired tasks are handed to 'expiryHandler' by the worker thread one by one.
+ *
+ * @since 2019/10/18
+ */
+public class HierarchicalTimingWheel<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final DelayQueue<Bucket<T>> delayQueue = new DelayQueue<>();
+    private final Queue<Timeout<T>> expiredTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Level<T> wheel;
+    private final Consumer<T> expiryHandler;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public HierarchicalTimingWheel(String name, long tickMillis, int wheelSize, Consumer<T> expiryHandler) {
+        this.wheel = new Level<>(Math.max(1, tickMillis), Math.max(2, wheelSize), System.currentTimeMillis(), delayQueue);
+        this.expiryHandler = expiryHandler;
+        this.worker = new Thread(this::work, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * @param expirationMillis wall-clock time, the task expires immediately if it has passed.
+     */
+    public Timeout<T> schedule(T task, long expirationMillis) {
+        Timeout<T> timeout = new Timeout<>(this, task, expirationMillis);
+        size.incrementAndGet();
+        lock.readLock().lock();
+        try {
+            add(timeout);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!expiredTimeouts.isEmpty()) {
+            // wake the worker up to handle it at once.
+            delayQueue.offer(new Bucket<>(0));
+        }
+        return timeout;
+    }
+
+    /**
+     * @return number of the tasks which are waiting for expiring.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void add(Timeout<T> timeout) {
+        if (!wheel.add(timeout) && !timeout.isCancelled()) {
+            expiredTimeouts.add(timeout);
+        }
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                Bucket<T> bucket = delayQueue.poll(1, TimeUnit.SECONDS);
+                if (bucket != null) {
+                    lock.writeLock().lock();
+                    try {
+                        while (bucket != null) {
+                            wheel.advanceClock(bucket.expiration());
+                            bucket.flush(this::add);
+                            bucket = delayQueue.poll();
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+                handleExpiredTimeouts();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOG.error("Failed to advance the timing wheel.", e);
+            }
+        }
+    }
+
+    private void handleExpiredTimeouts() {
+        Timeout<T> timeout;
+        while ((timeout = expiredTimeouts.poll()) != null) {
+            if (timeout.expire()) {
+                try {
+                    expiryHandler.accept(timeout.task());
+                } catch (Exception e) {
+                    LOG.error("Failed to handle the expired task {}.", timeout.task(), e);
+                }
+            }
+        }
+    }
+
+    public static final class Timeout<T> {
+        private final HierarchicalTimingWheel<T> timingWheel;
+        private final T task;
+        private final long expirationMillis;
+        // 0: waiting, 1: cancelled, 2: expired
+        private final AtomicInteger state = new AtomicInteger();
+        private volatile Bucket<T> bucket;
+
+        private Timeout(HierarchicalTimingWheel<T> timingWheel, T task, long expirationMillis) {
+            this.timingWheel = timingWheel;
+            this.task = task;
+            this.expirationMillis = expirationMillis;
+        }
+
+        public T task() {
+            return task;
+        }
+
+        public long expirationMillis() {
+            return expirationMillis;
+        }
+
+        /**
+         * @return false if it has expired or been cancelled.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(0, 1)) {
+                return false;
+            }
+            timingWheel.size.decrementAndGet();
+            Bucket<T> currentBucket = bucket;
+            if (currentBucket != null) {
+                currentBucket.remove(this);
+            }
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == 1;
+        }
+
+        private boolean expire() {
+            if (state.compareAndSet(0, 2)) {
+                timingWheel.size.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Level<T> {
+        private final long tickMillis;
+        private final int wheelSize;
+        private final long interval;
+        private final List<Bucket<T>> buckets;
+        private final DelayQueue<Bucket<T>> delayQueue;
+        // a multiple of 'tickMillis'
+        private volatile long currentTime;
+        private volatile Level<T> overflowLevel;
+
+        private Level(long tickMillis, int wheelSize, long startMillis, DelayQueue<Bucket<T>> delayQueue) {
+            this.tickMillis = tickMillis;
+            this.wheelSize = wheelSize;
+            this.interval = tickMillis * wheelSize;
+            this.delayQueue = delayQueue;
+            this.currentTime = startMillis - (startMillis % tickMillis);
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new Bucket<>(-1));
+            }
+        }
+
+        /**
+         * @return false if the timeout has expired or been cancelled.
+         */
+        private boolean add(Timeout<T> timeout) {
+            long expiration = timeout.expirationMillis;
+            if (timeout.isCancelled()) {
+                return false;
+            } else if (expiration < currentTime + tickMillis) {
+                return false;
+            } else if (expiration < currentTime + interval) {
+                long virtualId = expiration / tickMillis;
+                Bucket<T> bucket = buckets.get((int) (virtualId % wheelSize));
+                bucket.add(timeout);
+                // a bucket is reused by the following rounds, queue it again when it's for a new round.
+                if (bucket.setExpiration(virtualId * tickMillis)) {
+                    delayQueue.offer(bucket);
+                }
+                return true;
+            } else {
+                return overflowLevel().add(timeout);
+            }
+        }
+
+        private void advanceClock(long timeMillis) {
+            if (timeMillis >= currentTime + tickMillis) {
+                currentTime = timeMillis - (timeMillis % tickMillis);
+                Level<T> overflow = overflowLevel;
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+
+        private Level<T> overflowLevel() {
+            if (overflowLevel == null) {
+                synchronized (this) {
+                    if (overflowLevel == null) {
+                        overflowLevel = new Level<>(interval, wheelSize, currentTime, delayQueue);
+                    }
+                }
+            }
+            return overflowLevel;
+        }
+    }
+
+    private static final class Bucket<T> implements Delayed {
+        private final AtomicLong expiration;
+        private final Set<Timeout<T>> timeouts = new LinkedHashSet<>();
+
+        private Bucket(long expiration) {
+            this.expiration = new AtomicLong(expiration);
+        }
+
+        private long expiration() {
+            return expiration.get();
+        }
+
+        private boolean setExpiration(long expirationMillis) {
+            return expiration.getAndSet(expirationMillis) != expirationMillis;
+        }
+
+        private synchronized void add(Timeout<T> timeout) {
+            Bucket<T> previousBucket = timeout.bucket;
+            if (previousBucket != null && previousBucket != this) {
+                previousBucket.remove(timeout);
+            }
+            timeout.bucket = this;
+            timeouts.add(timeout);
+        }
+
+        private synchronized void remove(Timeout<T> timeout) {
+            if (timeouts.remove(timeout) && timeout.bucket == this) {
+                timeout.bucket = null;
+            }
+        }
+
+        private void flush(Consumer<Timeout<T>> consumer) {
+            List<Timeout<T>> flushed;
+            synchronized (this) {
+                flushed = new ArrayList<>(timeouts);
+                timeouts.clear();
+                flushed.forEach(timeout -> timeout.bucket = null);
+                expiration.set(-1);
+            }
+            // outside of the lock, they are put into other buckets.
+            flushed.forEach(consumer);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(expiration.get() - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiration.get(), ((Bucket<?>) other).expiration.get());
+        }
+    }
+}
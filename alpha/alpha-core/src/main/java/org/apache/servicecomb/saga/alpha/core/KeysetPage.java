@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A page of {@link KeysetQuery}, the cursor is null if it's the last page.
+ *
+ * @since 2019/10/18
+ */
+public class KeysetPage {
+    private final List<Map<String, Object>> list;
+    private final String cursor;
+
+    public KeysetPage(List<Map<String, Object>> list, String cursor) {
+        this.list = list;
+        this.cursor = cursor;
+    }
+
+    /**
+     * @param rows at most pageSize + 1 rows, the redundant one only means that there is a next page
+     * @param cursorOf the cursor after a row
+     */
+    public static <T> KeysetPage of(List<T> rows, int pageSize, Function<T, Map<String, Object>> toMap, Function<T, String> cursorOf) {
+        List<Map<String, Object>> list = new LinkedList<>();
+        T last = null;
+        for (int i = 0; i < rows.size() && i < pageSize; i++) {
+            last = rows.get(i);
+            list.add(toMap.apply(last));
+        }
+        return new KeysetPage(list, rows.size() > pageSize ? cursorOf.apply(last) : null);
+    }
+
+    public List<Map<String, Object>> list() {
+        return list;
+    }
+
+    public String cursor() {
+        return cursor;
+    }
+}
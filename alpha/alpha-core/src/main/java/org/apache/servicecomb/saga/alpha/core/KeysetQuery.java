@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * The params of a page which is read by keyset rather than offset, the newest rows come first.
+ *
+ * The cursor is an opaque token of the last row of the previous page, the next page starts after it, so a deep page
+ * costs the same as the first one and the rows which are inserted meanwhile are neither skipped nor repeated.
+ * The filters are matched exactly except the prefix of globalTxId, so they are able to use the indexes.
+ *
+ * @since 2019/10/18
+ */
+public class KeysetQuery {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final String CURSOR_VERSION = "1";
+
+    private final int pageSize;
+    private final Long afterSortValue;
+    private final String afterKey;
+    private final String globalTxIdPrefix;
+    private final String serviceName;
+    private final String instanceId;
+    private final String category;
+    private final Date startTime;
+    private final Date endTime;
+
+    public KeysetQuery(int pageSize, String cursor, String globalTxIdPrefix, String serviceName, String instanceId, String category, Date startTime, Date endTime) {
+        this.pageSize = pageSize < 1 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+        this.globalTxIdPrefix = emptyToNull(globalTxIdPrefix);
+        this.serviceName = emptyToNull(serviceName);
+        this.instanceId = emptyToNull(instanceId);
+        this.category = emptyToNull(category);
+        this.startTime = startTime;
+        this.endTime = endTime;
+
+        if (cursor == null || cursor.isEmpty()) {
+            this.afterSortValue = null;
+            this.afterKey = null;
+        } else {
+            String[] values = decode(cursor);
+            this.afterSortValue = Long.parseLong(values[1]);
+            this.afterKey = values.length > 2 ? values[2] : null;
+        }
+    }
+
+    /**
+     * @param sortValue the value of the sort column of the last row, e.g. id or time in milliseconds
+     * @param key the unique key of the last row in case of the same sort value, null if the sort column is unique
+     */
+    public static String cursorOf(long sortValue, String key) {
+        String value = CURSOR_VERSION + ":" + sortValue + (key == null ? "" : ":" + key);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor) {
+        try {
+            String[] values = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+            if (values.length > 1 && CURSOR_VERSION.equals(values[0])) {
+                Long.parseLong(values[1]);
+                return values;
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is also an IllegalArgumentException.
+            throw new IllegalArgumentException("Invalid cursor [" + cursor + "].", e);
+        }
+        throw new IllegalArgumentException("Invalid cursor [" + cursor + "].");
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public Long afterSortValue() {
+        return afterSortValue;
+    }
+
+    public String afterKey() {
+        return afterKey;
+    }
+
+    public String globalTxIdPrefix() {
+        return globalTxIdPrefix;
+    }
+
+    public String serviceName() {
+        return serviceName;
+    }
+
+    public String instanceId() {
+        return instanceId;
+    }
+
+    public String category() {
+        return category;
+    }
+
+    public Date startTime() {
+        return startTime;
+    }
+
+    public Date endTime() {
+        return endTime;
+    }
+}
@@ -30,10 +30,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.servicecomb.saga.alpha.core.TaskStatus.NEW;
 import static org.apache.servicecomb.saga.common.EventType.*;
@@ -54,6 +54,12 @@ public class TxConsistentService {
 	@Autowired
 	private ITxleCache txleCache;
 
+	@Autowired(required = false)
+	private GlobalTxStateRegistry globalTxStateRegistry;
+
+	@Autowired(required = false)
+	private TxPauseRegistry txPauseRegistry;
+
   private final List<String> types = Arrays.asList(TxEndedEvent.name(), TxAbortedEvent.name());
 
   public TxConsistentService(TxEventRepository eventRepository, CommandRepository commandRepository, TxTimeoutRepository timeoutRepository) {
@@ -128,7 +134,7 @@ public class TxConsistentService {
 					} else {
 						// 由于定时扫描器中检测超时会存在一定误差，如定时器中任务需3s完成，但某事务超时设置的是2秒，此时还未等对该事物进行检测，该事务就已经结束了，所以此处在正常结束前需检测是否超时
 						// 如果有值，说明在EventScanner中已检测到并处理了
-						TxEvent unhandleTimeoutEvent = eventRepository.findTimeoutEventsBeforeEnding(globalTxId);
+						TxEvent unhandleTimeoutEvent = findTimeoutEventBeforeEnding(globalTxId);
 						if (unhandleTimeoutEvent != null) {
 							// ps: 在未保存event前，将其转换成timeout，timeout中将无法获取到event的id值(默认为-1)，故上一行代码查询已保存的超时事件记录
 							TxTimeout txTimeout = txTimeoutOf(unhandleTimeoutEvent);
@@ -137,10 +143,10 @@ public class TxConsistentService {
 								// 结束全局事务前，检测到超时，保存超时记录
 								timeoutRepository.save(txTimeout);
 								TxEvent abortedEvent = toTxAbortedEvent(txTimeout);
-								if (!eventRepository.checkIsExistsEventType(globalTxId, localTxId, abortedEvent.type())) {
+								if (!checkIsExistsEventType(globalTxId, localTxId, abortedEvent.type())) {
 									// 依据超时记录生成异常事件
 									eventRepository.save(abortedEvent);
-									txleCache.putDistributedTxAbortStatusCache(globalTxId, true, 2);
+									txleCache.putDistributedTxAbortStatusCache(globalTxId, true, 30);
 								}
 							} catch (Exception e) {
 								LOG.error("Failed to save timeout {} in method 'TxConsistentService.handleSupportTxPause()'.", txTimeout, e);
@@ -154,8 +160,8 @@ public class TxConsistentService {
 
 				if (TxAbortedEvent.name().equals(type)) {
 					// 验证是否最终异常，即排除非最后一次重试时的异常。如果全局事务标识等于子事务标识情况的异常，说明是全局事务异常。否则说明子事务异常，则需验证是否是子事务的最终异常。
-					if (globalTxId.equals(localTxId) || eventRepository.checkTxIsAborted(globalTxId, localTxId)) {
-						txleCache.putDistributedTxAbortStatusCache(globalTxId, true, 2);
+					if (globalTxId.equals(localTxId) || checkTxIsAborted(globalTxId, localTxId)) {
+						txleCache.putDistributedTxAbortStatusCache(globalTxId, true, 30);
 						if (!globalTxId.equals(localTxId)) {
 							// 当出现非超时的异常情况时记录待补偿命令，超时异常由定时器负责
 							// 带有超时的子事务执行失败时，本地事务回滚，记录异常事件【后】，被检测为超时，则该失败的子事务又被回滚一次
@@ -213,6 +219,10 @@ public class TxConsistentService {
 		if (SagaEndedEvent.name().equals(type)) {
 			return false;
 		}
+		if (txPauseRegistry != null) {
+			// the deadlines of auto-continue are applied by the registry, so nothing is read or written here.
+			return txPauseRegistry.isPaused(globalTxId);
+		}
 		boolean isPaused = false;
 		try {
             final String pauseAllGlobalTxKey = TxleConstants.constructConfigCacheKey(null, null, ConfigCenterType.PauseGlobalTx.toInteger());
@@ -226,38 +236,24 @@ public class TxConsistentService {
                 return false;
             } else {
                 // 由于暂停事务可能性极小且selectPausedAndContinueEvent查询较慢，故先快速查询是否有暂停或暂停自动恢复的事件
-                List<String> typeList = eventRepository.selectAllTypeByGlobalTxId(globalTxId);
-                if (typeList == null || typeList.isEmpty()) {
-                    return false;
-                }
-
-                AtomicBoolean isContainPauseEvent = new AtomicBoolean(false);
-                typeList.forEach(t -> {
-                    if (AdditionalEventType.SagaPausedEvent.name().equals(t) || AdditionalEventType.SagaAutoContinuedEvent.name().equals(t)) {
-                        isContainPauseEvent.set(true);
-                    }
-                });
-                if (!isContainPauseEvent.get()) {
+                if (!containsPauseEvent(globalTxId)) {
                     return false;
                 }
             }
 
             // If paused, continue to verify the expire for auto-recovery
-            List<TxEvent> pauseContinueEventList = eventRepository.selectPausedAndContinueEvent(globalTxId);
-            if (pauseContinueEventList != null && !pauseContinueEventList.isEmpty()) {
-                TxEvent event = pauseContinueEventList.get(0);
-                if (event != null && AdditionalEventType.SagaAutoContinuedEvent.name().equals(event.type())) {
-                    isPaused = true;
-                    if (event.expiryTime().compareTo(new Date()) < 1) {
-                        try {
-                            // was due, create the event 'SagaAutoContinueEvent' to make event to continue running.
-                            eventRepository.save(new TxEvent(event.serviceName(), event.instanceId(), event.globalTxId(), event.localTxId(), event.parentTxId(),
-                                    AdditionalEventType.SagaAutoContinuedEvent.name(), "", 0, "", 0, event.category(), event.payloads()));
-                            isPaused = false;
-                        } catch (Exception e) {
-                            isPaused = true;
-                            LOG.error("Fail to save the event 'SagaAutoContinuedEvent'.", e);
-                        }
+            TxEvent event = findLatestPauseEvent(globalTxId);
+            if (event != null && AdditionalEventType.SagaAutoContinuedEvent.name().equals(event.type())) {
+                isPaused = true;
+                if (event.expiryTime().compareTo(new Date()) < 1) {
+                    try {
+                        // was due, create the event 'SagaAutoContinueEvent' to make event to continue running.
+                        eventRepository.save(new TxEvent(event.serviceName(), event.instanceId(), event.globalTxId(), event.localTxId(), event.parentTxId(),
+                                AdditionalEventType.SagaAutoContinuedEvent.name(), "", 0, "", 0, event.category(), event.payloads()));
+                        isPaused = false;
+                    } catch (Exception e) {
+                        isPaused = true;
+                        LOG.error("Fail to save the event 'SagaAutoContinuedEvent'.", e);
                     }
                 }
             }
@@ -267,6 +263,56 @@ public class TxConsistentService {
 		return isPaused;
 	}
 
+	// The following checks are answered by the in-memory state of the global transaction, which could miss the events saved by
+	// other alpha nodes. So only the answers which the missing events could not change are taken, the TxEvent table is read
+	// for the others: the found timeout, the absent event types, and any answer of an incomplete state.
+	private TxEvent findTimeoutEventBeforeEnding(String globalTxId) {
+		if (globalTxStateRegistry == null) {
+			return eventRepository.findTimeoutEventsBeforeEnding(globalTxId);
+		}
+		GlobalTxState state = globalTxStateRegistry.getOrLoad(globalTxId, this::loadEvents);
+		if (!state.isComplete()) {
+			state = globalTxStateRegistry.reload(globalTxId, this::loadEvents);
+		}
+		// it's rare, and the transaction could have been aborted or ended by the others.
+		return state.findTimeoutEventBeforeEnding(new Date()) == null ? null : eventRepository.findTimeoutEventsBeforeEnding(globalTxId);
+	}
+
+	private boolean checkIsExistsEventType(String globalTxId, String localTxId, String type) {
+		if (globalTxStateRegistry != null && globalTxStateRegistry.getOrLoad(globalTxId, this::loadEvents).containsEventType(localTxId, type)) {
+			return true;
+		}
+		return eventRepository.checkIsExistsEventType(globalTxId, localTxId, type);
+	}
+
+	private boolean checkTxIsAborted(String globalTxId, String localTxId) {
+		if (globalTxStateRegistry != null && globalTxStateRegistry.getOrLoad(globalTxId, this::loadEvents).isLastAttemptStarted(localTxId)) {
+			return true;
+		}
+		return eventRepository.checkTxIsAborted(globalTxId, localTxId);
+	}
+
+	private boolean containsPauseEvent(String globalTxId) {
+		if (globalTxStateRegistry == null) {
+			List<String> typeList = eventRepository.selectAllTypeByGlobalTxId(globalTxId);
+			return typeList != null && (typeList.contains(AdditionalEventType.SagaPausedEvent.name()) || typeList.contains(AdditionalEventType.SagaAutoContinuedEvent.name()));
+		}
+		// The suspended status is rare, and the pause/continue events could be saved by other alpha nodes, so rebuild the state here.
+		return globalTxStateRegistry.reload(globalTxId, this::loadEvents).containsPauseEvent();
+	}
+
+	private TxEvent findLatestPauseEvent(String globalTxId) {
+		if (globalTxStateRegistry == null) {
+			List<TxEvent> pauseContinueEventList = eventRepository.selectPausedAndContinueEvent(globalTxId);
+			return pauseContinueEventList == null || pauseContinueEventList.isEmpty() ? null : pauseContinueEventList.get(0);
+		}
+		return globalTxStateRegistry.getOrLoad(globalTxId, this::loadEvents).latestPauseEvent();
+	}
+
+	private List<TxEvent> loadEvents(String globalTxId) {
+		return eventRepository.selectTxEventByGlobalTxIds(Collections.singletonList(globalTxId));
+	}
+
 	public Set<String> fetchLocalTxIdOfEndedGlobalTx(Set<String> localTxIdSet) {
 		return eventRepository.selectEndedGlobalTx(localTxIdSet);
 	}
@@ -275,6 +321,22 @@ public class TxConsistentService {
 		return kafkaMessageRepository.save(message);
 	}
 
+	/**
+	 * Omega reports the result after executing a compensation, so the command is done at once instead of being found by scanning events.
+	 * A failed compensation is sent again after a backoff, it's done only once its attempts are exhausted, then it is handed to the accident platform.
+	 *
+	 * @return true if the command is done, false if it will be sent again.
+	 */
+	public boolean handleCompensationResult(String globalTxId, String localTxId, boolean succeeded, long durationMillis) {
+		txleMetrics.markCompensationDuration(succeeded, durationMillis);
+		LOG.info("Transaction with globalTxId {} and localTxId {} was compensated, succeeded {}, duration {}ms.", globalTxId, localTxId, succeeded, durationMillis);
+		if (!succeeded && commandRepository.markCommandAsFailed(globalTxId, localTxId)) {
+			return false;
+		}
+		commandRepository.markCommandAsDone(globalTxId, localTxId);
+		return true;
+	}
+
 	private TxTimeout txTimeoutOf(TxEvent event) {
 		return new TxTimeout(
 				event.id(),
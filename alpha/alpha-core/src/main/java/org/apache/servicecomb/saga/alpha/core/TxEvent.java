@@ -145,7 +145,7 @@ public class TxEvent/* extends TxEventExtension*/ {
         payloads);
   }
 
-  TxEvent(Long surrogateId,
+  public TxEvent(Long surrogateId,
       String serviceName,
       String instanceId,
       Date creationTime,
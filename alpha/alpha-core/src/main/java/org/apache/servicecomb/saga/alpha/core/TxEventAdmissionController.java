@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenter;
+import org.apache.servicecomb.saga.common.ConfigCenterType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Admission control of the TxEvents from omega, with one token bucket per service and category, so that a service which
+ * floods alpha, e.g. a misbehaving batch job, is slowed down by itself rather than saturating the database pool for all.
+ *
+ * The limits are the normal configs of type 'TxEventAdmission', whose value is the permits per second, optionally followed
+ * by the burst, e.g. "200" or "200,400". The config of a service and a category covers the config of the service, i.e. the
+ * category is null, which covers the global config, i.e. the service is null. There is no limit without any config or if
+ * the permits are not positive.
+ *
+ * An event without a token is rejected at once and omega sends it again after the returned delay, it never waits on the
+ * shared threads of gRPC, so a throttled service does not hold the threads of the others.
+ *
+ * @since 2019/10/18
+ */
+public class TxEventAdmissionController {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final long ADMITTED = 0;
+
+    private static final String ANY = "";
+    private static final TokenBucket UNLIMITED = new TokenBucket(0, 0, 0);
+
+    private final Supplier<List<ConfigCenter>> configLoader;
+    private final TxleMetrics txleMetrics;
+    private final LongSupplier ticker;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "txle-admission-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // service:category -> limit, for the existing configs only.
+    private volatile Map<String, Limit> limits = Collections.emptyMap();
+    // service:category -> bucket, they are dropped once the limits are changed.
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public TxEventAdmissionController(Supplier<List<ConfigCenter>> configLoader, TxleMetrics txleMetrics) {
+        this(configLoader, txleMetrics, System::nanoTime);
+    }
+
+    TxEventAdmissionController(Supplier<List<ConfigCenter>> configLoader, TxleMetrics txleMetrics, LongSupplier ticker) {
+        this.configLoader = configLoader;
+        this.txleMetrics = txleMetrics;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Loads the limits now, and again at every interval, so that the changes of configs by any alpha node take effect.
+     */
+    public void start(long refreshIntervalMillis) {
+        refresh();
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Takes a token for an event of the given service and category, the current thread never waits for it.
+     *
+     * @return {@link #ADMITTED}, otherwise the milliseconds after which the rejected event could be sent again.
+     */
+    public long admit(String serviceName, String category) {
+        String service = normalize(serviceName);
+        String cat = normalize(category);
+        TokenBucket bucket = buckets.computeIfAbsent(keyOf(service, cat), key -> newBucket(service, cat));
+        if (bucket == UNLIMITED) {
+            txleMetrics.markTxEventAdmission(service, cat, "admitted");
+            return ADMITTED;
+        }
+
+        long waitNanos = bucket.take(ticker.getAsLong());
+        if (waitNanos > 0) {
+            txleMetrics.markTxEventAdmission(service, cat, "rejected");
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        }
+        txleMetrics.markTxEventAdmission(service, cat, "admitted");
+        return ADMITTED;
+    }
+
+    public void refresh() {
+        try {
+            Map<String, Limit> latestLimits = new HashMap<>();
+            List<ConfigCenter> configs = configLoader.get();
+            if (configs != null) {
+                for (ConfigCenter config : configs) {
+                    if (config.getType() == ConfigCenterType.TxEventAdmission.toInteger()) {
+                        Limit limit = Limit.parse(config.getValue());
+                        if (limit != null) {
+                            latestLimits.put(keyOf(normalize(config.getServicename()), normalize(config.getCategory())), limit);
+                        } else {
+                            LOG.warn("Ignored the admission config [{}] with invalid value [{}].", config.getId(), config.getValue());
+                        }
+                    }
+                }
+            }
+            if (!latestLimits.equals(limits)) {
+                limits = latestLimits;
+                buckets.clear();
+                LOG.info("Loaded the admission limits of TxEvents {}.", latestLimits);
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to load the admission limits of TxEvents, the previous ones are kept.", e);
+        }
+    }
+
+    private TokenBucket newBucket(String service, String category) {
+        Map<String, Limit> currentLimits = limits;
+        Limit limit = currentLimits.get(keyOf(service, category));
+        if (limit == null) {
+            limit = currentLimits.get(keyOf(service, ANY));
+        }
+        if (limit == null) {
+            limit = currentLimits.get(keyOf(ANY, ANY));
+        }
+        if (limit == null || limit.permitsPerSecond <= 0) {
+            return UNLIMITED;
+        }
+        return new TokenBucket(limit.permitsPerSecond, limit.burst, ticker.getAsLong());
+    }
+
+    private static String normalize(String value) {
+        return value == null ? ANY : value.trim();
+    }
+
+    private static String keyOf(String service, String category) {
+        return service + ":" + category;
+    }
+
+    static final class Limit {
+        private final double permitsPerSecond;
+        private final double burst;
+
+        private Limit(double permitsPerSecond, double burst) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+
+        // "permits" or "permits,burst", the burst is one second of permits by default.
+        static Limit parse(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return null;
+            }
+            try {
+                String[] values = value.split(",");
+                double permitsPerSecond = Double.parseDouble(values[0].trim());
+                double burst = values.length > 1 ? Double.parseDouble(values[1].trim()) : permitsPerSecond;
+                return new Limit(permitsPerSecond, Math.max(1, burst));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Limit)) {
+                return false;
+            }
+            Limit limit = (Limit) o;
+            return permitsPerSecond == limit.permitsPerSecond && burst == limit.burst;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Double.hashCode(permitsPerSecond) + Double.hashCode(burst);
+        }
+
+        @Override
+        public String toString() {
+            return permitsPerSecond + "/s, burst " + burst;
+        }
+    }
+
+    static final class TokenBucket {
+        private final double permitsPerNano;
+        private final double burst;
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(double permitsPerSecond, double burst, long now) {
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.burst = burst;
+            this.tokens = burst;
+            this.refilledAt = now;
+        }
+
+        /**
+         * @return 0 if a token is taken, otherwise the nanoseconds before the next token.
+         */
+        synchronized long take(long now) {
+            if (now > refilledAt) {
+                tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerNano);
+                refilledAt = now;
+            }
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / permitsPerNano);
+        }
+    }
+}
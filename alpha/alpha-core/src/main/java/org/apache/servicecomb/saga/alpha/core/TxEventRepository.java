@@ -31,6 +31,11 @@ public interface TxEventRepository {
    */
   void save(TxEvent event);
 
+  /**
+   * Saves the events by one batch in one transaction, e.g. the marker events of a bulk operation.
+   */
+  void saveAll(List<TxEvent> events);
+
   /**
    * Find timeout {@link TxEvent}s. A timeout TxEvent satisfies below requirements:
    *
@@ -61,12 +66,21 @@ public interface TxEventRepository {
    */
   Optional<TxEvent> findTxStartedEvent(String globalTxId, String localTxId);
 
-  List<TxEvent> findSequentialCompensableEventOfUnended(long unendedMinEventId);
-
   List<String> selectAllTypeByGlobalTxId(String globalTxId);
 
   List<TxEvent> selectPausedAndContinueEvent(String globalTxId);
 
+  /**
+   * Selects the pause/continue events of the running global transactions, in ascending order of id.
+   */
+  List<TxEvent> selectPauseEventsOfUnendedTx();
+
+  /**
+   * Selects the 'SagaStartedEvent' of every running global transaction which matches the filter, one per global transaction,
+   * at most 'limit' of them whose id is greater than the given one, in the order of id.
+   */
+  List<TxEvent> selectSagaStartedEventsOfUnendedTx(GlobalTxFilter filter, long afterSurrogateId);
+
   Set<String> selectEndedGlobalTx(Set<String> localTxIdSet);
 
   boolean checkIsExistsEventType(String globalTxId, String localTxId, String type);
@@ -75,6 +89,8 @@ public interface TxEventRepository {
 
   List<Map<String, Object>> findTxList(int pageIndex, int pageSize, String orderName, String direction, String searchText);
 
+  KeysetPage findTxList(KeysetQuery query);
+
   List<TxEvent> selectTxEventByGlobalTxIds(List<String> globalTxIdList);
 
   long findTxCount(String searchText);
@@ -87,7 +103,10 @@ public interface TxEventRepository {
 
   Date selectMinDateInTxEvent();
 
-  List<Long> selectEndedEventIdsWithinSomePeriod(int pageIndex, int pageSize, Date startTime, Date endTime);
+  /**
+   * Selects the ids of events which are after the given id, in ascending order, so the caller pages by the last id rather than an offset.
+   */
+  List<Long> selectEndedEventIdsWithinSomePeriod(long afterEventId, int limit, Date startTime, Date endTime);
 
   TxEvent selectEventByGlobalTxIdType(String globalTxId, String type);
 
@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The paused global transactions of current alpha, so checking the paused status never touches the TxEvent table.
+ *
+ * Every paused global transaction is held with the deadline of its auto-continue, and the deadline is applied by a
+ * scheduler rather than by the next event of that transaction. The pause/continue events are persisted asynchronously
+ * by one writer thread, so they are written in the order of the operations. A failed write is retried with a backoff
+ * which doubles per attempt, and it's given up after the max attempts, so the later events are not held by it for long.
+ * The flag of pausing all global transactions
+ * lives here as well.
+ *
+ * The pauses made by other alpha nodes are applied by {@link #pauseLocally(String, int)}, only the node which paused a
+ * global transaction writes its 'SagaAutoContinuedEvent', the others just forget the pause at the deadline. The node is
+ * the instance id of the 'SagaPausedEvent', so a restarted node still owns its pauses. A node which joins the cluster
+ * takes the pauses of a peer by {@link #pausePeriods()}.
+ *
+ * Every resumption is told to the {@link TxResumeListener}, so the events held while pausing could go on at once.
+ *
+ * The bulk operations {@link #pauseAll(List, String, int)} and {@link #resumeAll(List, String)} persist the events of
+ * all of their global transactions by one batch.
+ *
+ * @since 2019/10/18
+ */
+public class TxPauseRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+    private static final int MAX_SAVE_ATTEMPTS = 5;
+    private static final long FIRST_RETRY_INTERVAL_MILLIS = 500;
+
+    private final TxEventRepository eventRepository;
+    // the host and port of current alpha.
+    private final String instanceId;
+    // globalTxId -> the deadline of auto-continue
+    private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+    // globalTxId -> 'SagaPausedEvent' written by current alpha, for writing the 'SagaAutoContinuedEvent' at the deadline.
+    private final Map<String, TxEvent> ownedPauses = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService writer;
+    private final int maxSaveAttempts;
+    private final long firstRetryIntervalMillis;
+    private volatile boolean allPaused;
+    private volatile TxResumeListener resumeListener;
+
+    public TxPauseRegistry(TxEventRepository eventRepository, String instanceId) {
+        this(eventRepository, instanceId, MAX_SAVE_ATTEMPTS, FIRST_RETRY_INTERVAL_MILLIS);
+    }
+
+    TxPauseRegistry(TxEventRepository eventRepository, String instanceId, int maxSaveAttempts, long firstRetryIntervalMillis) {
+        this.eventRepository = eventRepository;
+        this.instanceId = instanceId;
+        this.maxSaveAttempts = Math.max(1, maxSaveAttempts);
+        this.firstRetryIntervalMillis = firstRetryIntervalMillis;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "txle-pause-registry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        // the deadlines are loaded again after restarting.
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler = executor;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "txle-pause-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Rebuilds the pauses from the latest pause/continue events of the running global transactions, e.g. after restarting.
+     *
+     * @param allPausedLoader whether all global transactions were paused, e.g. by the config center.
+     */
+    public void load(Supplier<Boolean> allPausedLoader) {
+        try {
+            allPaused = allPausedLoader.get();
+            Map<String, TxEvent> latestEvents = new HashMap<>();
+            List<TxEvent> events = eventRepository.selectPauseEventsOfUnendedTx();
+            if (events != null) {
+                // in ascending order of id, so the later one wins.
+                events.forEach(event -> latestEvents.put(event.globalTxId(), event));
+            }
+            long now = System.currentTimeMillis();
+            latestEvents.values().forEach(event -> {
+                if (AdditionalEventType.SagaPausedEvent.name().equals(event.type())) {
+                    long deadline = deadlineOf(event);
+                    if (instanceId.equals(event.instanceId())) {
+                        ownedPauses.put(event.globalTxId(), event);
+                    }
+                    deadlines.put(event.globalTxId(), deadline);
+                    scheduleAutoContinue(event.globalTxId(), deadline, now);
+                }
+            });
+            LOG.info("Loaded {} paused global transactions, all paused [{}].", deadlines.size(), allPaused);
+        } catch (Exception e) {
+            LOG.error("Failed to load the paused global transactions.", e);
+        }
+    }
+
+    /**
+     * @return true if all global transactions are paused, or the given one is paused and its deadline has not come.
+     */
+    public boolean isPaused(String globalTxId) {
+        if (allPaused) {
+            return true;
+        }
+        Long deadline = deadlines.get(globalTxId);
+        return deadline != null && (deadline == NO_DEADLINE || deadline > System.currentTimeMillis());
+    }
+
+    /**
+     * Whether the given global transaction is paused by itself, no matter whether all of them are paused.
+     */
+    public boolean contains(String globalTxId) {
+        return deadlines.containsKey(globalTxId);
+    }
+
+    public boolean isAllPaused() {
+        return allPaused;
+    }
+
+    public void setAllPaused(boolean allPaused) {
+        boolean wasAllPaused = this.allPaused;
+        this.allPaused = allPaused;
+        if (wasAllPaused && !allPaused) {
+            notifyResumed(null);
+        }
+    }
+
+    public void setResumeListener(TxResumeListener resumeListener) {
+        this.resumeListener = resumeListener;
+    }
+
+    /**
+     * Pauses a global transaction and persists 'SagaPausedEvent' asynchronously.
+     *
+     * @param event        any event of the global transaction, the pause event takes its identifies and category.
+     * @param operator     who paused it, e.g. the ip and port of the client.
+     * @param pausePeriod  seconds before it continues automatically, it never continues automatically if it's not positive.
+     * @return false if it has been paused.
+     */
+    public boolean pause(TxEvent event, String operator, int pausePeriod) {
+        TxEvent pausedEvent = pauseInMemory(event, operator, pausePeriod);
+        if (pausedEvent == null) {
+            return false;
+        }
+        persist(pausedEvent);
+        scheduleAutoContinue(pausedEvent);
+        return true;
+    }
+
+    /**
+     * Pauses the global transactions and persists their 'SagaPausedEvent's by one batch asynchronously.
+     *
+     * @return the given events whose global transactions were not paused before.
+     */
+    public List<TxEvent> pauseAll(List<TxEvent> events, String operator, int pausePeriod) {
+        List<TxEvent> paused = new ArrayList<>();
+        List<TxEvent> pausedEvents = new ArrayList<>();
+        events.forEach(event -> {
+            TxEvent pausedEvent = pauseInMemory(event, operator, pausePeriod);
+            if (pausedEvent != null) {
+                paused.add(event);
+                pausedEvents.add(pausedEvent);
+            }
+        });
+        persistAll(pausedEvents);
+        pausedEvents.forEach(this::scheduleAutoContinue);
+        return paused;
+    }
+
+    /**
+     * Continues a global transaction and persists 'SagaContinuedEvent' asynchronously.
+     *
+     * @return false if it's not paused.
+     */
+    public boolean resume(TxEvent event, String operator) {
+        if (deadlines.remove(event.globalTxId()) == null) {
+            return false;
+        }
+        ownedPauses.remove(event.globalTxId());
+        persist(continuedEvent(event, operator));
+        notifyResumed(event.globalTxId());
+        return true;
+    }
+
+    /**
+     * Continues the global transactions and persists their 'SagaContinuedEvent's by one batch asynchronously.
+     *
+     * @return the given events whose global transactions were paused.
+     */
+    public List<TxEvent> resumeAll(List<TxEvent> events, String operator) {
+        List<TxEvent> resumed = new ArrayList<>();
+        List<TxEvent> continuedEvents = new ArrayList<>();
+        events.forEach(event -> {
+            if (deadlines.remove(event.globalTxId()) != null) {
+                ownedPauses.remove(event.globalTxId());
+                resumed.add(event);
+                continuedEvents.add(continuedEvent(event, operator));
+            }
+        });
+        persistAll(continuedEvents);
+        resumed.forEach(event -> notifyResumed(event.globalTxId()));
+        return resumed;
+    }
+
+    /**
+     * Applies the pause which was made by other alpha node, nothing is persisted.
+     *
+     * @param pausePeriod seconds before it continues automatically, it never continues automatically if it's not positive.
+     */
+    public void pauseLocally(String globalTxId, int pausePeriod) {
+        long now = System.currentTimeMillis();
+        long deadline = pausePeriod > 0 ? now + TimeUnit.SECONDS.toMillis(pausePeriod) : NO_DEADLINE;
+        if (deadlines.putIfAbsent(globalTxId, deadline) == null) {
+            scheduleAutoContinue(globalTxId, deadline, now);
+        }
+    }
+
+    /**
+     * Forgets the pause without persisting anything, e.g. it was continued by other alpha node, or it has ended.
+     */
+    public void resumeLocally(String globalTxId) {
+        ownedPauses.remove(globalTxId);
+        if (deadlines.remove(globalTxId) != null) {
+            notifyResumed(globalTxId);
+        }
+    }
+
+    public void resumeAllLocally(Set<String> globalTxIds) {
+        globalTxIds.forEach(this::resumeLocally);
+    }
+
+    /**
+     * @return globalTxId -> the seconds before it continues automatically, or 0 if never, for {@link #pauseLocally(String, int)} of the other nodes.
+     */
+    public Map<String, Integer> pausePeriods() {
+        long now = System.currentTimeMillis();
+        Map<String, Integer> pausePeriods = new HashMap<>();
+        deadlines.forEach((globalTxId, deadline) -> {
+            if (deadline == NO_DEADLINE) {
+                pausePeriods.put(globalTxId, 0);
+            } else if (deadline > now) {
+                pausePeriods.put(globalTxId, (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(deadline - now + 999)));
+            }
+        });
+        return pausePeriods;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        writer.shutdown();
+        try {
+            // let the pending events be persisted.
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // null if it has been paused. The auto-continue is scheduled after persisting, so its event is written after the pause.
+    private TxEvent pauseInMemory(TxEvent event, String operator, int pausePeriod) {
+        TxEvent pausedEvent = new TxEvent(operator, instanceId, event.globalTxId(), event.localTxId(), event.parentTxId(),
+                AdditionalEventType.SagaPausedEvent.name(), "", pausePeriod, "", 0, event.category(), null);
+        if (deadlines.putIfAbsent(event.globalTxId(), deadlineOf(pausedEvent)) != null) {
+            return null;
+        }
+        ownedPauses.put(event.globalTxId(), pausedEvent);
+        return pausedEvent;
+    }
+
+    private void scheduleAutoContinue(TxEvent pausedEvent) {
+        scheduleAutoContinue(pausedEvent.globalTxId(), deadlineOf(pausedEvent), System.currentTimeMillis());
+    }
+
+    private static TxEvent continuedEvent(TxEvent event, String operator) {
+        return new TxEvent(operator, operator, event.globalTxId(), event.localTxId(), event.parentTxId(),
+                AdditionalEventType.SagaContinuedEvent.name(), "", 0, "", 0, event.category(), null);
+    }
+
+    private void scheduleAutoContinue(String globalTxId, long deadline, long now) {
+        if (deadline == NO_DEADLINE) {
+            return;
+        }
+        try {
+            scheduler.schedule(() -> autoContinue(globalTxId, deadline), Math.max(0, deadline - now), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("The pause registry has been shut down, global transaction [{}] won't continue automatically here.", globalTxId);
+        }
+    }
+
+    private void autoContinue(String globalTxId, long deadline) {
+        // it could have been continued, or paused again with another deadline.
+        if (!deadlines.remove(globalTxId, deadline)) {
+            return;
+        }
+        TxEvent pausedEvent = ownedPauses.remove(globalTxId);
+        if (pausedEvent != null) {
+            persist(new TxEvent(pausedEvent.serviceName(), pausedEvent.instanceId(), globalTxId, pausedEvent.localTxId(), pausedEvent.parentTxId(),
+                    AdditionalEventType.SagaAutoContinuedEvent.name(), "", 0, "", 0, pausedEvent.category(), null));
+        }
+        notifyResumed(globalTxId);
+    }
+
+    // null means all global transactions.
+    private void notifyResumed(String globalTxId) {
+        TxResumeListener listener = resumeListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            if (globalTxId == null) {
+                listener.onAllResumed();
+            } else {
+                listener.onResumed(globalTxId);
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to notify the resumption of global transaction [{}].", globalTxId == null ? "all" : globalTxId, e);
+        }
+    }
+
+    private void persist(TxEvent event) {
+        submit(() -> eventRepository.save(event), "the event [" + event.type() + "] of global transaction [" + event.globalTxId() + "]");
+    }
+
+    private void persistAll(List<TxEvent> events) {
+        if (!events.isEmpty()) {
+            submit(() -> eventRepository.saveAll(events), events.size() + " events [" + events.get(0).type() + "]");
+        }
+    }
+
+    private void submit(Runnable save, String description) {
+        try {
+            writer.execute(() -> save(save, description));
+        } catch (RejectedExecutionException e) {
+            LOG.error("The pause registry has been shut down, failed to persist {}.", description);
+        }
+    }
+
+    // runs on the writer thread, a failed save is retried before the later ones, so they are still written in order.
+    private void save(Runnable save, String description) {
+        long retryIntervalMillis = firstRetryIntervalMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                save.run();
+                return;
+            } catch (Exception e) {
+                if (writer.isShutdown()) {
+                    LOG.error("Gave up persisting {} on shutdown.", description, e);
+                    return;
+                }
+                if (attempt >= maxSaveAttempts) {
+                    // the pause in memory is still applied, only its event is missing in the TxEvent table.
+                    LOG.error("Gave up persisting {} after {} attempts.", description, attempt, e);
+                    return;
+                }
+                LOG.error("Failed to persist {}, will retry in {} ms.", description, retryIntervalMillis, e);
+            }
+            try {
+                Thread.sleep(retryIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            retryIntervalMillis *= 2;
+        }
+    }
+
+    private static long deadlineOf(TxEvent pausedEvent) {
+        // the expiry time is the max timestamp if the pause period is not positive.
+        return pausedEvent.expiryTime().getTime() >= TxEvent.MAX_TIMESTAMP ? NO_DEADLINE : pausedEvent.expiryTime().getTime();
+    }
+}
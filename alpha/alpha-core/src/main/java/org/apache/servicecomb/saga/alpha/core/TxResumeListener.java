@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+/**
+ * Notified by {@link TxPauseRegistry} once paused global transactions could go on, whether they were resumed manually,
+ * by other alpha node, or automatically at the deadline. It's called on the thread which resumed them, so it should
+ * return quickly.
+ *
+ * @since 2019/10/18
+ */
+public interface TxResumeListener {
+    void onResumed(String globalTxId);
+
+    /**
+     * The flag of pausing all global transactions was turned off.
+     */
+    void onAllResumed();
+}
@@ -62,6 +62,10 @@ public class TxTimeout {
     this.category = category;
   }
 
+  public long eventId() {
+    return eventId;
+  }
+
   public String serviceName() {
     return serviceName;
   }
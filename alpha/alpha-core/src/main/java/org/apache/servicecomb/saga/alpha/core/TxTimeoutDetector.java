@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.apache.servicecomb.saga.common.EventType.SagaEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.SagaStartedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxAbortedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxStartedEvent;
+
+/**
+ * Detects timeout of global/sub transactions by a timing wheel instead of polling the TxEvent table.
+ *
+ * A TxStartedEvent or SagaStartedEvent with timeout is scheduled at its expiry time, any other type of event of the same
+ * sub-transaction cancels it, and TxAbortedEvent or SagaEndedEvent cancels all of its global transaction. So a timeout
+ * expires only in the cases which 'TxEventRepository.findTimeoutEvents' finds, and then it is recorded as a TxTimeout at
+ * once. Because the events of a global transaction may be saved by other alpha nodes, the events are verified again
+ * before recording, it's rare so that it costs nothing in common.
+ *
+ * @since 2019/10/18
+ */
+public class TxTimeoutDetector {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final TxTimeoutRepository timeoutRepository;
+    private final Function<String, List<TxEvent>> eventsLoader;
+    private final HierarchicalTimingWheel<TxEvent> timingWheel;
+    // globalTxId -> localTxId -> timeout of the started event
+    private final Map<String, Map<String, HierarchicalTimingWheel.Timeout<TxEvent>>> timeouts = new ConcurrentHashMap<>();
+
+    /**
+     * @param eventsLoader loads all of events of a global transaction by globalTxId
+     */
+    public TxTimeoutDetector(TxTimeoutRepository timeoutRepository, Function<String, List<TxEvent>> eventsLoader, long tickMillis, int wheelSize) {
+        this.timeoutRepository = timeoutRepository;
+        this.eventsLoader = eventsLoader;
+        this.timingWheel = new HierarchicalTimingWheel<>("txle-timeout-detector", tickMillis, wheelSize, this::onTimeout);
+    }
+
+    /**
+     * It should be invoked after the event was persisted, the id of event is necessary for TxTimeout.
+     */
+    public void onEventSaved(TxEvent event) {
+        String globalTxId = event.globalTxId();
+        if (globalTxId == null || event.localTxId() == null) {
+            return;
+        }
+        String type = event.type();
+        if (TxStartedEvent.name().equals(type) || SagaStartedEvent.name().equals(type)) {
+            if (event.expiryTime() != null && event.expiryTime().getTime() < TxEvent.MAX_TIMESTAMP) {
+                schedule(event);
+            }
+        } else if (TxAbortedEvent.name().equals(type) || SagaEndedEvent.name().equals(type)) {
+            Map<String, HierarchicalTimingWheel.Timeout<TxEvent>> timeoutsOfGlobalTx = timeouts.remove(globalTxId);
+            if (timeoutsOfGlobalTx != null) {
+                timeoutsOfGlobalTx.values().forEach(HierarchicalTimingWheel.Timeout::cancel);
+            }
+        } else {
+            Map<String, HierarchicalTimingWheel.Timeout<TxEvent>> timeoutsOfGlobalTx = timeouts.get(globalTxId);
+            if (timeoutsOfGlobalTx != null) {
+                timeoutsOfGlobalTx.computeIfPresent(event.localTxId(), (localTxId, timeout) -> {
+                    if (timeout.task().type().equals(type)) {
+                        return timeout;
+                    }
+                    timeout.cancel();
+                    return null;
+                });
+                removeIfEmpty(globalTxId, timeoutsOfGlobalTx);
+            }
+        }
+    }
+
+    /**
+     * Loads the timeouts of unended global transactions at startup, so the sub-transactions which started before a restart
+     * still time out without waiting for the scanner to own their shards. The ones which expired during the restart are
+     * recorded at once. A failure is just logged, the scanner rebuilds them once it owns the shards anyway.
+     */
+    public void start(Supplier<List<TxEvent>> unendedEventsLoader) {
+        try {
+            rebuild(unendedEventsLoader.get());
+        } catch (Exception e) {
+            LOG.error("Failed to load the timeouts of unended global transactions at startup.", e);
+        }
+    }
+
+    /**
+     * Rebuilds the timeouts from the events of unended global transactions, e.g. at startup or taking over the leader.
+     */
+    public void rebuild(List<TxEvent> unendedEvents) {
+        if (unendedEvents == null || unendedEvents.isEmpty()) {
+            return;
+        }
+        Set<String> abortedGlobalTxIds = new HashSet<>();
+        // globalTxId + localTxId -> types
+        Map<String, Set<String>> typesOfSubTx = new HashMap<>();
+        for (TxEvent event : unendedEvents) {
+            if (TxAbortedEvent.name().equals(event.type())) {
+                abortedGlobalTxIds.add(event.globalTxId());
+            }
+            typesOfSubTx.computeIfAbsent(event.globalTxId() + "_" + event.localTxId(), key -> new HashSet<>()).add(event.type());
+        }
+        int scheduled = 0;
+        for (TxEvent event : unendedEvents) {
+            if ((TxStartedEvent.name().equals(event.type()) || SagaStartedEvent.name().equals(event.type()))
+                    && event.expiryTime() != null && event.expiryTime().getTime() < TxEvent.MAX_TIMESTAMP
+                    && !abortedGlobalTxIds.contains(event.globalTxId())
+                    && typesOfSubTx.get(event.globalTxId() + "_" + event.localTxId()).size() == 1) {
+                schedule(event);
+                scheduled++;
+            }
+        }
+        LOG.info("Rebuilt {} timeouts of unended global transactions.", scheduled);
+    }
+
+    public int size() {
+        return timingWheel.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timingWheel.shutdown();
+    }
+
+    private void schedule(TxEvent event) {
+        TxEvent startedEvent = withoutPayloads(event);
+        Map<String, HierarchicalTimingWheel.Timeout<TxEvent>> timeoutsOfGlobalTx = timeouts.computeIfAbsent(event.globalTxId(), globalTxId -> new ConcurrentHashMap<>());
+        timeoutsOfGlobalTx.compute(event.localTxId(), (localTxId, existingTimeout) -> {
+            // A retry starts the same sub-transaction again, the earliest timeout aborts the global transaction anyway.
+            if (existingTimeout != null && !existingTimeout.isCancelled() && existingTimeout.expirationMillis() <= startedEvent.expiryTime().getTime()) {
+                return existingTimeout;
+            }
+            if (existingTimeout != null) {
+                existingTimeout.cancel();
+            }
+            return timingWheel.schedule(startedEvent, startedEvent.expiryTime().getTime());
+        });
+    }
+
+    private void onTimeout(TxEvent event) {
+        Map<String, HierarchicalTimingWheel.Timeout<TxEvent>> timeoutsOfGlobalTx = timeouts.get(event.globalTxId());
+        if (timeoutsOfGlobalTx != null) {
+            timeoutsOfGlobalTx.computeIfPresent(event.localTxId(), (localTxId, timeout) -> timeout.task() == event ? null : timeout);
+            removeIfEmpty(event.globalTxId(), timeoutsOfGlobalTx);
+        }
+        if (!isTimeoutInDurableEvents(event)) {
+            return;
+        }
+        CurrentThreadContext.put(event.globalTxId(), event);
+        LOG.info("Found timeout event {}", event);
+        timeoutRepository.saveIfAbsent(EventScanner.txTimeoutOf(event));
+    }
+
+    // the same conditions as 'TxEventRepository.findTimeoutEvents'
+    private boolean isTimeoutInDurableEvents(TxEvent startedEvent) {
+        List<TxEvent> events = eventsLoader.apply(startedEvent.globalTxId());
+        if (events == null) {
+            return false;
+        }
+        for (TxEvent event : events) {
+            if (TxAbortedEvent.name().equals(event.type())
+                    || (startedEvent.localTxId().equals(event.localTxId()) && !startedEvent.type().equals(event.type()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A timeout which is scheduled into a removed map concurrently is still verified by durable events before recording.
+    private void removeIfEmpty(String globalTxId, Map<String, HierarchicalTimingWheel.Timeout<TxEvent>> timeoutsOfGlobalTx) {
+        if (timeoutsOfGlobalTx.isEmpty()) {
+            timeouts.remove(globalTxId, timeoutsOfGlobalTx);
+        }
+    }
+
+    private TxEvent withoutPayloads(TxEvent event) {
+        return new TxEvent(event.id(), event.serviceName(), event.instanceId(), event.creationTime(), event.globalTxId(), event.localTxId(),
+                event.parentTxId(), event.type(), event.compensationMethod(), event.expiryTime(), event.retryMethod(), event.retries(),
+                event.category(), null);
+    }
+}
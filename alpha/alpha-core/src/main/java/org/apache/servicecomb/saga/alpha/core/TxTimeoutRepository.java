@@ -16,15 +16,27 @@
 package org.apache.servicecomb.saga.alpha.core;
 
 import java.util.List;
+import java.util.function.Predicate;
 
 public interface TxTimeoutRepository {
   void save(TxTimeout timeout);
 
+  /**
+   * Saves the timeout unless the one of the same event exists. It relies on the unique key of eventId rather than querying
+   * before inserting, so the timeout is recorded once even if the alpha nodes detect it concurrently.
+   */
+  void saveIfAbsent(TxTimeout timeout);
+
   long findTxTimeoutByEventId(long eventId);
 
   void markTimeoutAsDone(List<Long> surrogateIdList);
 
   List<Long> selectTimeoutIdList();
 
-  List<TxTimeout> findFirstTimeout();
+  /**
+   * Finds the NEW timeouts which are expired and marks them as PENDING, only the ones of accepted global transactions.
+   *
+   * @param isAcceptedGlobalTx e.g. whether the global transaction belongs to the shards of current alpha
+   */
+  List<TxTimeout> findFirstTimeout(Predicate<String> isAcceptedGlobalTx);
 }
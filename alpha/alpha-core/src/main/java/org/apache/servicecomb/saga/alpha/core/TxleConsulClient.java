@@ -28,6 +28,9 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.servicecomb.saga.common.TxleConstants.CONSUL_LEADER_KEY;
 import static org.apache.servicecomb.saga.common.TxleConstants.CONSUL_LEADER_KEY_VALUE;
@@ -68,6 +71,8 @@ public class TxleConsulClient implements ApplicationRunner {
 
     private final Map<String, ConsulClient> consulClientMap = new HashMap<>(3);
 
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
     public ConsulClient getConsulClient() {
         return consulClient;
     }
@@ -191,15 +196,20 @@ public class TxleConsulClient implements ApplicationRunner {
             // To execute refresh method after starting server rather than after initializing.
             txleCache.refreshServiceListCache(true);
             txleCache.synchronizeCacheFromLeader(this.consulInstanceId);
-//        scheduler.scheduleWithFixedDelay(() -> {
-//            removeExpiredCache(txSuspendStatusCache);
-//            removeExpiredCache(txAbortStatusCache);
-//        }, 1, 1, TimeUnit.MINUTES);
         }
+        // The status caches expire by a timing wheel of one second per tick, so it's cheap to sweep every second.
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                txleCache.removeExpiredCache();
+            } catch (Exception e) {
+                log.error("Failed to remove expired cache.", e);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
     }
 
     @PreDestroy
     void shutdown() {
+        scheduler.shutdownNow();
         if (enabled) {
             this.destroyConsulCriticalServices();
         }
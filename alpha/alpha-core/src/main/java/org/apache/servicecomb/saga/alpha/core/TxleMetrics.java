@@ -8,6 +8,7 @@ package org.apache.servicecomb.saga.alpha.core;
 import io.prometheus.client.Collector;
 import io.prometheus.client.Counter;
 import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
 import io.prometheus.client.exporter.HTTPServer;
 import io.prometheus.client.hotspot.DefaultExports;
 import org.apache.servicecomb.saga.common.ConfigCenterType;
@@ -71,6 +72,44 @@ public class TxleMetrics extends Collector {
     private final Gauge txleReportAccidentSuccessfulTotal = buildGauge("txle_report_accident_successful_total", "Successful total number for reporting accident.");
     private final Gauge txleReportAccidentFailedTotal = buildGauge("txle_report_accident_failed_total", "Failed total number for reporting accident.");
 
+    // for the group-commit queue of events, they are not labelled by business, because one batch contains events of many businesses.
+    private final Gauge txleEventPersistQueueDepth = Gauge.build("txle_event_persist_queue_depth", "Number of events waiting to be persisted.").register();
+    private final Histogram txleEventPersistFlushSeconds = Histogram.build("txle_event_persist_flush_seconds", "Seconds spent persisting one batch of events.").register();
+    private final Histogram txleEventPersistBatchSize = Histogram.build("txle_event_persist_batch_size", "Number of events persisted in one batch.")
+            .buckets(1, 2, 4, 8, 16, 32, 64, 128, 256, 512).register();
+    private final Histogram txleCompensationSeconds = Histogram.build("txle_compensation_seconds", "Seconds spent executing one compensation, reported by omega.")
+            .labelNames("result").register();
+
+    // for the events which are not published to the subscribers of the event bus, because it's full.
+    private final Counter txleEventBusDroppedTotal = Counter.build("txle_event_bus_dropped_total", "Total number of events dropped by the full event bus.").register();
+
+    // for archiving the finished events to the history tables.
+    private final Counter txleArchiveRowsTotal = Counter.build("txle_archive_rows_total", "Total number of events moved to the history tables.")
+            .labelNames("table").register();
+    private final Histogram txleArchiveChunkSeconds = Histogram.build("txle_archive_chunk_seconds", "Seconds spent moving one chunk of events to the history table.")
+            .labelNames("table").register();
+    private final Gauge txleArchiveChunkSize = Gauge.build("txle_archive_chunk_size", "Current number of events moved by one chunk, it shrinks if the database slows down.")
+            .labelNames("table").register();
+    private final Gauge txleArchiveCheckpoint = Gauge.build("txle_archive_checkpoint", "Last event id moved to the history table of the period.")
+            .labelNames("table", "period").register();
+
+    // for delivering the accidents to the accident platform.
+    private final Gauge txleAccidentQueueDepth = Gauge.build("txle_accident_queue_depth", "Number of accidents waiting to be delivered to the accident platform.").register();
+    private final Histogram txleAccidentDeliveryLagSeconds = Histogram.build("txle_accident_delivery_lag_seconds", "Seconds from saving an accident to delivering it.")
+            .buckets(0.1, 0.5, 1, 5, 15, 60, 300, 1800, 3600).register();
+    private final Gauge txleAccidentCircuitOpen = Gauge.build("txle_accident_circuit_open", "1 if the circuit breaker of the accident platform is open, otherwise 0.")
+            .labelNames("platform").register();
+
+    // for the outbound HTTP calls, e.g. to other alpha nodes and to the accident platform.
+    private final Histogram txleOutboundRequestSeconds = Histogram.build("txle_outbound_request_seconds", "Seconds spent on one outbound HTTP call.")
+            .labelNames("destination").register();
+    private final Counter txleOutboundRequestErrorsTotal = Counter.build("txle_outbound_request_errors_total",
+            "Total number of outbound HTTP calls which failed or got a non-2xx status.").labelNames("destination").register();
+
+    // for the admission control of TxEvents, result: admitted or rejected.
+    private final Counter txleTxEventAdmissionTotal = Counter.build("txle_tx_event_admission_total", "Total number of TxEvents by the result of admission control.")
+            .labelNames("business", "category", "result").register();
+
     // if the property 'txle.prometheus.metrics.port' has a valid value, then it is true. true: enable monitor, false: disable monitor
     private boolean isEnableMonitorServer = false;
 
@@ -290,12 +329,59 @@ public class TxleMetrics extends Collector {
         return dbDegradationConfigService.isEnabledConfig(event.instanceId(), event.category(), ConfigCenterType.TxMonitor);
     }
 
-    public void countSuccessfulNumber() {
-        txleReportAccidentSuccessfulTotal.inc();
+    public void countSuccessfulNumber(String serviceName) {
+        txleReportAccidentSuccessfulTotal.labels(String.valueOf(serviceName), "").inc();
+    }
+
+    public void countFailedNumber(String serviceName) {
+        txleReportAccidentFailedTotal.labels(String.valueOf(serviceName), "").inc();
+    }
+
+    public void markAccidentQueueDepth(int depth) {
+        txleAccidentQueueDepth.set(depth);
+    }
+
+    public void markAccidentDelivered(long lagMillis) {
+        txleAccidentDeliveryLagSeconds.observe(Math.max(lagMillis, 0) / 1e3);
+    }
+
+    public void markAccidentCircuit(String platform, boolean open) {
+        txleAccidentCircuitOpen.labels(platform).set(open ? 1 : 0);
+    }
+
+    public void markOutboundRequest(String destination, long durationNanos, boolean failed) {
+        txleOutboundRequestSeconds.labels(destination).observe(durationNanos / 1e9);
+        if (failed) {
+            txleOutboundRequestErrorsTotal.labels(destination).inc();
+        }
+    }
+
+    public void markTxEventAdmission(String serviceName, String category, String result) {
+        txleTxEventAdmissionTotal.labels(serviceName, category, result).inc();
+    }
+
+    public void markEventPersistQueueDepth(int depth) {
+        txleEventPersistQueueDepth.set(depth);
+    }
+
+    public void markEventPersistFlush(int batchSize, long durationNanos) {
+        txleEventPersistBatchSize.observe(batchSize);
+        txleEventPersistFlushSeconds.observe(durationNanos / 1e9);
+    }
+
+    public void markEventBusDropped() {
+        txleEventBusDroppedTotal.inc();
+    }
+
+    public void markCompensationDuration(boolean succeeded, long durationMillis) {
+        txleCompensationSeconds.labels(succeeded ? "succeeded" : "failed").observe(Math.max(durationMillis, 0) / 1e3);
     }
 
-    public synchronized void countFailedNumber() {
-        txleReportAccidentFailedTotal.inc();
+    public void markArchiveChunk(String srcTable, String period, int rows, long durationNanos, long lastEventId, int nextChunkSize) {
+        txleArchiveRowsTotal.labels(srcTable).inc(rows);
+        txleArchiveChunkSeconds.labels(srcTable).observe(durationNanos / 1e9);
+        txleArchiveChunkSize.labels(srcTable).set(nextChunkSize);
+        txleArchiveCheckpoint.labels(srcTable, period).set(lastEventId);
     }
 
 }
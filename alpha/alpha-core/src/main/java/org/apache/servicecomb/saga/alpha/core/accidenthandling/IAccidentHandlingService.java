@@ -5,6 +5,9 @@
 
 package org.apache.servicecomb.saga.alpha.core.accidenthandling;
 
+import org.apache.servicecomb.saga.alpha.core.KeysetPage;
+import org.apache.servicecomb.saga.alpha.core.KeysetQuery;
+
 import java.util.List;
 import java.util.Map;
 
@@ -28,5 +31,7 @@ public interface IAccidentHandlingService {
 
     List<Map<String, Object>> findAccidentList(int pageIndex, int pageSize, String orderName, String direction, String searchText);
 
+    KeysetPage findAccidentList(KeysetQuery query);
+
     long findAccidentCount(String searchText);
 }
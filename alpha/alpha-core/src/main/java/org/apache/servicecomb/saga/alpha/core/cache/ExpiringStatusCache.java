@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Status cache of global transactions, such as aborted and suspended.
+ *
+ * Lookups are O(1) by the hash index of globalTxId. Expiry is done by a hashed timing wheel: every key is put into the
+ * bucket of its expire tick, so one sweep only visits the buckets of the ticks which have passed since the last sweep,
+ * rather than the whole cache. A key with a longer expire than one round of the wheel just stays in its bucket until
+ * the round it really expires in.
+ *
+ * @since 2019/10/18
+ */
+public class ExpiringStatusCache {
+    private final ConcurrentHashMap<String, CacheEntity> entries = new ConcurrentHashMap<>();
+    private final List<Set<String>> wheel;
+    private final long tickMillis;
+    private long lastSweptTick;
+
+    public ExpiringStatusCache() {
+        // one second per tick and 4096 ticks per round, which covers the default expire of 30 minutes in one round.
+        this(1000, 4096);
+    }
+
+    public ExpiringStatusCache(long tickMillis, int wheelSize) {
+        this.tickMillis = tickMillis;
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            this.wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        this.lastSweptTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    /**
+     * @param expire minutes, 30 minutes if it's not positive.
+     */
+    public void put(String key, Object value, int expire) {
+        if (key != null) {
+            put(new CacheEntity(key, value, expire));
+        }
+    }
+
+    public void put(CacheEntity cacheEntity) {
+        entries.put(cacheEntity.getKey(), cacheEntity);
+        bucketOf(cacheEntity).add(cacheEntity.getKey());
+    }
+
+    // Return true even though expired until it is swept, the expire is used for clearing cache mainly.
+    public boolean contains(String key) {
+        return key != null && entries.containsKey(key);
+    }
+
+    public void remove(String key) {
+        if (key != null) {
+            // the key in its bucket will be dropped by sweeping.
+            entries.remove(key);
+        }
+    }
+
+    public void removeAll(Collection<String> keys) {
+        keys.forEach(this::remove);
+    }
+
+    public void clear() {
+        entries.clear();
+        wheel.forEach(Set::clear);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public List<CacheEntity> snapshot() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Removes the entries which expired before 'currentTimeMillis'.
+     *
+     * @return number of removed entries
+     */
+    public synchronized int removeExpired(long currentTimeMillis) {
+        long currentTick = currentTimeMillis / tickMillis;
+        // all of buckets would be visited once at most, even if the last sweep was a long time ago.
+        long fromTick = Math.max(lastSweptTick + 1, currentTick - wheel.size() + 1);
+        int removed = 0;
+        for (long tick = fromTick; tick <= currentTick; tick++) {
+            int index = indexOf(tick);
+            Set<String> bucket = wheel.get(index);
+            for (String key : bucket) {
+                CacheEntity cacheEntity = entries.get(key);
+                if (cacheEntity == null) {
+                    bucket.remove(key);
+                } else if (cacheEntity.getExpire() <= currentTimeMillis) {
+                    if (entries.remove(key, cacheEntity)) {
+                        removed++;
+                    }
+                    bucket.remove(key);
+                    keepIfPutAgain(key, index);
+                } else if (indexOf(cacheEntity.getExpire() / tickMillis) != index) {
+                    // it was put again with another expire, so it is in another bucket as well.
+                    bucket.remove(key);
+                    keepIfPutAgain(key, index);
+                }
+            }
+        }
+        lastSweptTick = Math.max(lastSweptTick, currentTick);
+        return removed;
+    }
+
+    // The key may be put again into the same bucket concurrently, do not lose it.
+    private void keepIfPutAgain(String key, int index) {
+        CacheEntity cacheEntity = entries.get(key);
+        if (cacheEntity != null && indexOf(cacheEntity.getExpire() / tickMillis) == index) {
+            wheel.get(index).add(key);
+        }
+    }
+
+    private Set<String> bucketOf(CacheEntity cacheEntity) {
+        return wheel.get(indexOf(cacheEntity.getExpire() / tickMillis));
+    }
+
+    private int indexOf(long tick) {
+        return (int) (tick % wheel.size());
+    }
+}
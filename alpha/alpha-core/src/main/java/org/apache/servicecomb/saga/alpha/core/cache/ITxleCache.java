@@ -8,7 +8,6 @@ package org.apache.servicecomb.saga.alpha.core.cache;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * @author Gannalyo
@@ -17,9 +16,12 @@ import java.util.concurrent.ConcurrentSkipListSet;
 public interface ITxleCache {
     ConcurrentHashMap<String, Boolean> getConfigCache();
 
-    ConcurrentSkipListSet<CacheEntity> getTxSuspendStatusCache();
+    /**
+     * It increases whenever the config cache is changed, no matter by current alpha or by other alpha nodes.
+     */
+    long getConfigVersion();
 
-    ConcurrentSkipListSet<CacheEntity> getTxAbortStatusCache();
+    ExpiringStatusCache getTxAbortStatusCache();
 
     boolean getTxSuspendStatus(String globalTxId);
 
@@ -27,8 +29,18 @@ public interface ITxleCache {
 
     void putDistributedConfigCache(String key, Boolean value);
 
+    /**
+     * @param expire the pause period in seconds, the pause never expires if it's not positive.
+     */
     void putDistributedTxSuspendStatusCache(String key, Boolean value, int expire);
 
+    /**
+     * Replicates the suspended status of many global transactions by a few cache changes rather than one per global transaction.
+     *
+     * @param expire the pause period in seconds, the pause never expires if it's not positive.
+     */
+    void putDistributedTxSuspendStatusCache(Set<String> globalTxIds, int expire);
+
     void putDistributedTxAbortStatusCache(String key, Boolean value, int expire);
 
     void removeDistributedConfigCache(String key);
@@ -37,8 +49,15 @@ public interface ITxleCache {
 
     void removeDistributedTxSuspendStatusCache(String key);
 
+    void removeDistributedTxSuspendStatusCache(Set<String> globalTxIds);
+
     void removeDistributedTxAbortStatusCache(String key);
 
+    /**
+     * Applies the cache changes which were replicated by other alpha node.
+     */
+    void applyReplicatedCache(String remoteHost, byte[] frame);
+
     void putLocalConfigCache(String key, Boolean value);
 
     void putLocalTxSuspendStatusCache(String key, Boolean value, int expire);
@@ -53,6 +72,8 @@ public interface ITxleCache {
 
     void removeLocalTxAbortStatusCache(String key);
 
+    void removeExpiredCache();
+
     void refreshServiceListCache(boolean refreshRemoteServiceList);
 
     void synchronizeCacheFromLeader(String consulSessionId);
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core.configcenter;
+
+import org.apache.servicecomb.saga.common.ConfigCenterType;
+import org.apache.servicecomb.saga.common.TxleConstants;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable snapshot of the normal configs, in which the results of all (instanceId, category, type) are resolved in
+ * advance, so that checking a config is a hash probe without touching the database.
+ *
+ * The overriding rules are the same as before:
+ * 1.A config takes effect only if there is a global config of its type, i.e. instanceId is null, and it is disabled if the ability of the global config is NO.
+ * 2.The config of instanceId and category covers the global value, unless its ability is NO.
+ * 3.Otherwise the default config of instanceId, i.e. category is null, covers the global value, unless its ability is NO.
+ * 4.All of types except pause and fault-tolerant are enabled if there is no global config.
+ *
+ * A table is never changed after building, a new one with a greater version is built and swapped in when configs are changed.
+ *
+ * @since 2019/10/18
+ */
+public final class ConfigResolutionTable {
+    private final long version;
+    // config cache key -> result, for the keys of existing configs.
+    private final Map<String, Boolean> resolvedConfigs;
+    // The results of the other keys are derived from 'resolvedConfigs' at the first time, they will not change in this table.
+    private final Map<String, Boolean> derivedConfigs = new ConcurrentHashMap<>();
+
+    private ConfigResolutionTable(long version, Map<String, Boolean> resolvedConfigs) {
+        this.version = version;
+        this.resolvedConfigs = resolvedConfigs;
+    }
+
+    /**
+     * @param configs configs in the Normal status
+     */
+    public static ConfigResolutionTable build(long version, List<ConfigCenter> configs) {
+        if (configs == null || configs.isEmpty()) {
+            return new ConfigResolutionTable(version, Collections.emptyMap());
+        }
+
+        Map<Integer, ConfigCenter> globalConfigs = new HashMap<>();
+        for (ConfigCenter config : configs) {
+            if (isBlank(config.getInstanceid())) {
+                globalConfigs.putIfAbsent(config.getType(), config);
+            }
+        }
+
+        Map<String, Boolean> resolvedConfigs = new HashMap<>();
+        globalConfigs.forEach((type, config) -> resolvedConfigs.put(TxleConstants.constructConfigCacheKey(null, null, type),
+                config.getAbility() != TxleConstants.NO && TxleConstants.ENABLED.equals(config.getValue())));
+        for (ConfigCenter config : configs) {
+            ConfigCenter globalConfig = globalConfigs.get(config.getType());
+            if (globalConfig == null || isBlank(config.getInstanceid())) {
+                continue;
+            }
+            String category = isBlank(config.getCategory()) ? null : config.getCategory();
+            String configKey = TxleConstants.constructConfigCacheKey(config.getInstanceid(), category, config.getType());
+            if (!resolvedConfigs.containsKey(configKey)) {
+                boolean result = false;
+                if (globalConfig.getAbility() != TxleConstants.NO) {
+                    // do not cover the value of global config if it's unable.
+                    String value = config.getAbility() == TxleConstants.NO ? globalConfig.getValue() : config.getValue();
+                    result = TxleConstants.ENABLED.equals(value);
+                }
+                resolvedConfigs.put(configKey, result);
+            }
+        }
+        return new ConfigResolutionTable(version, resolvedConfigs);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public boolean isEnabledConfig(String instanceId, String category, ConfigCenterType type) {
+        String configKey = TxleConstants.constructConfigCacheKey(instanceId, category, type.toInteger());
+        Boolean result = resolvedConfigs.get(configKey);
+        if (result == null) {
+            result = derivedConfigs.computeIfAbsent(configKey, key -> resolve(instanceId, category, type));
+        }
+        return result;
+    }
+
+    private boolean resolve(String instanceId, String category, ConfigCenterType type) {
+        Boolean result = null;
+        if (!isBlank(instanceId)) {
+            if (!isBlank(category)) {
+                result = resolvedConfigs.get(TxleConstants.constructConfigCacheKey(instanceId, category, type.toInteger()));
+            }
+            if (result == null) {
+                result = resolvedConfigs.get(TxleConstants.constructConfigCacheKey(instanceId, null, type.toInteger()));
+            }
+        }
+        if (result == null) {
+            result = resolvedConfigs.get(TxleConstants.constructConfigCacheKey(null, null, type.toInteger()));
+        }
+        if (result == null) {
+            // All of configs except fault-tolerant are enabled by default.
+            return !(ConfigCenterType.PauseGlobalTx.equals(type) || ConfigCenterType.GlobalTxFaultTolerant.equals(type)
+                    || ConfigCenterType.CompensationFaultTolerant.equals(type) || ConfigCenterType.AutoCompensationFaultTolerant.equals(type));
+        }
+        return result;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().length() == 0;
+    }
+}
@@ -5,6 +5,8 @@
 
 package org.apache.servicecomb.saga.alpha.core.configcenter;
 
+import org.apache.servicecomb.saga.alpha.core.KeysetPage;
+import org.apache.servicecomb.saga.alpha.core.KeysetQuery;
 import org.apache.servicecomb.saga.common.ConfigCenterType;
 
 import java.util.List;
@@ -33,6 +35,8 @@ public interface IConfigCenterService {
 
     List<Map<String, Object>> findConfigList(int pageIndex, int pageSize, String orderName, String direction, String searchText);
 
+    KeysetPage findConfigList(KeysetQuery query);
+
     long findConfigCount(String searchText);
 
     ConfigCenter findOne(long id);
@@ -5,6 +5,15 @@
 
 package org.apache.servicecomb.saga.alpha.core.datatransfer;
 
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+
+import java.util.List;
+
 public interface IDataTransferService {
     void dataTransfer(String srcTable);
+
+    /**
+     * Reads the events of a global transaction back from the archive, in the order of their ids.
+     */
+    List<TxEvent> selectArchivedEvents(String srcTable, String globalTxId);
 }
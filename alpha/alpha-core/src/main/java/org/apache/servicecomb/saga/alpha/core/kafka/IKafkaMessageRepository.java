@@ -13,6 +13,8 @@ public interface IKafkaMessageRepository {
 
     List<KafkaMessage> findMessageListByGlobalTxId(String globalTxId, int status);
 
+    List<KafkaMessage> findMessageListByIdList(List<Long> idList);
+
     boolean updateMessageStatusByIdList(List<Long> idList, KafkaMessageStatus messageStatus);
 
     boolean updateMessageStatusByIdListAndStatus(List<Long> idList, KafkaMessageStatus messageStatus, KafkaMessageStatus originalStatus);
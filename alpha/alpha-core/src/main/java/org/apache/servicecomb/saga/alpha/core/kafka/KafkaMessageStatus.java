@@ -15,7 +15,9 @@ public enum KafkaMessageStatus {
     INIT,
     SENDING,
     SUCCESSFUL,
-    FAILED;
+    FAILED,
+    // the BizInfoToKafka config was disabled when its global transaction ended, so it's never sent.
+    DISABLED;
 
     public int toInteger() {
         switch (this) {
@@ -27,6 +29,8 @@ public enum KafkaMessageStatus {
                 return 2;
             case FAILED:
                 return 3;
+            case DISABLED:
+                return 4;
             default:
                 return 0;
         }
@@ -42,6 +46,8 @@ public enum KafkaMessageStatus {
                 return SUCCESSFUL;
             case 3:
                 return FAILED;
+            case 4:
+                return DISABLED;
             default:
                 return INIT;
         }
@@ -18,18 +18,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.lang.invoke.MethodHandles;
 import java.util.HashSet;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.List;
 import java.util.Set;
 
 import static org.apache.servicecomb.saga.common.EventType.SagaStartedEvent;
 import static org.apache.servicecomb.saga.common.EventType.TxStartedEvent;
 
 /**
+ * Subscribes the persisted events of {@link TxEventBus}, it's called by the thread of its subscription only, so the Kafka
+ * producer, the cache and the data dictionary never block the saving of events.
+ *
  * @author Gannalyo
  * @since 2019-08-30
  */
-public class TxEventAfterPersistingListener implements Observer {
+public class TxEventAfterPersistingListener implements TxEventSubscriber {
     private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
     @Autowired
@@ -46,49 +48,45 @@ public class TxEventAfterPersistingListener implements Observer {
     private final Set<String> globalTxIdSet = new HashSet<>();
 
     @Override
-    public void update(Observable arg0, Object arg1) {
-        if (arg0 != null) {
-            // TODO move metrics here
-            TxEvent event = ((GlobalTxListener) arg0).getEvent();
-            if (event != null) {
-                log.info("The listener [{}] observes the new event [" + event.toString() + "].", this.getClass());
-                String type = event.type();
-                if (SagaStartedEvent.name().equals(type)) {
-                    // increase 1 for the minimum identify of undone event when some global transaction starts.
-                    EventScanner.UNENDED_MIN_EVENT_ID_SELECT_COUNT.incrementAndGet();
-                    this.putServerNameIdCategory(event);
-                } else if (TxStartedEvent.name().equals(type)) {
-                    this.putServerNameIdCategory(event);
-                } else if (EventType.SagaEndedEvent.name().equals(event.type())) {
-                    globalTxIdSet.add(event.globalTxId());
-                    kafkaMessageProducer.send(event);
-
-                    // 1M = 1024 * 1024 = 1048576, 1048576 / 36 = 29172
-                    if (globalTxIdSet.size() > 20000) {
-                        removeDistributedTxStatusCache(globalTxIdSet);
-                    }
-                }
+    public void onEvents(List<TxEvent> events) {
+        for (TxEvent event : events) {
+            try {
+                onEvent(event);
+            } catch (Exception e) {
+                log.error("The listener [{}] failed to handle the event [{}].", this.getClass(), event, e);
             }
         }
     }
 
-    private void removeDistributedTxStatusCache(Set<String> globalTxIdSet) {
-        new Thread(() -> {
-            txleCache.removeDistributedTxStatusCache(globalTxIdSet);
-            globalTxIdSet.clear();
-        }).start();
+    private void onEvent(TxEvent event) {
+        // TODO move metrics here
+        log.debug("The listener [{}] observes the new event [{}].", this.getClass(), event);
+        String type = event.type();
+        if (SagaStartedEvent.name().equals(type)) {
+            // increase 1 for the minimum identify of undone event when some global transaction starts.
+            EventScanner.UNENDED_MIN_EVENT_ID_SELECT_COUNT.incrementAndGet();
+            this.putServerNameIdCategory(event);
+        } else if (TxStartedEvent.name().equals(type)) {
+            this.putServerNameIdCategory(event);
+        } else if (EventType.SagaEndedEvent.name().equals(event.type())) {
+            globalTxIdSet.add(event.globalTxId());
+            kafkaMessageProducer.send(event);
+
+            // 1M = 1024 * 1024 = 1048576, 1048576 / 36 = 29172
+            if (globalTxIdSet.size() > 20000) {
+                txleCache.removeDistributedTxStatusCache(globalTxIdSet);
+                globalTxIdSet.clear();
+            }
+        }
     }
 
     private void putServerNameIdCategory(TxEvent event) {
         final String globalTxServer = "global-tx-server-info";
         final String serverNameInstanceCategory = event.serviceName() + "__" + event.instanceId() + "__" + event.category();
-        boolean result = serverNameIdCategory.add(serverNameInstanceCategory);
-        if (result) {
-            new Thread(() -> {
-                int showOrder = dataDictionaryService.selectMaxShowOrder(globalTxServer);
-                final DataDictionaryItem ddItem = new DataDictionaryItem(globalTxServer, event.serviceName(), event.instanceId(), event.category(), showOrder + 1, 1, "");
-                dataDictionaryService.createDataDictionary(ddItem);
-            }).start();
+        if (serverNameIdCategory.add(serverNameInstanceCategory)) {
+            int showOrder = dataDictionaryService.selectMaxShowOrder(globalTxServer);
+            final DataDictionaryItem ddItem = new DataDictionaryItem(globalTxServer, event.serviceName(), event.instanceId(), event.category(), showOrder + 1, 1, "");
+            dataDictionaryService.createDataDictionary(ddItem);
         }
     }
 
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core.listener;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes every persisted event to the subscribers, without a lock on the path of saving events.
+ *
+ * The events are put in a ring buffer, a publisher claims a sequence by CAS, writes the slot and marks it as published.
+ * Every subscriber is called by its own thread with the published events in order, and tracks its own sequence, so a
+ * slow subscriber only delays itself. An idle subscriber parks until a publisher signals it. A slot is reused once all
+ * subscribers passed it. If the ring is full, the event is dropped and counted rather than blocking the thread which
+ * saved it, so the subscribers must not be the only record of anything, the events are in the database already.
+ *
+ * @since 2019/10/18
+ */
+public class TxEventBus {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final int capacity;
+    private final int mask;
+    private final TxEvent[] events;
+    // the sequence of the event in every slot, a slot is readable once it has the expected sequence.
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final TxleMetrics txleMetrics;
+    private volatile boolean running = true;
+
+    public TxEventBus(int capacity, TxleMetrics txleMetrics) {
+        this.txleMetrics = txleMetrics;
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.events = new TxEvent[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Subscribes the events which are published from now on.
+     *
+     * @param maxBatchSize the maximum count of events per call of the subscriber
+     */
+    public void subscribe(String name, int maxBatchSize, TxEventSubscriber subscriber) {
+        Subscription subscription = new Subscription(name, Math.max(1, maxBatchSize), subscriber, claimed.get());
+        subscriptions.add(subscription);
+        subscription.thread.start();
+    }
+
+    /**
+     * @return false if the event is dropped, because the ring is full or the bus was shut down.
+     */
+    public boolean publish(TxEvent event) {
+        long sequence;
+        while (true) {
+            long current = claimed.get();
+            sequence = current + 1;
+            if (!running || sequence - capacity > minSubscribedSequence(current)) {
+                drop(event);
+                return false;
+            }
+            if (claimed.compareAndSet(current, sequence)) {
+                break;
+            }
+        }
+        int index = (int) sequence & mask;
+        events[index] = event;
+        published.set(index, sequence);
+        for (Subscription subscription : subscriptions) {
+            if (subscription.parked) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+        return true;
+    }
+
+    public void shutdown() {
+        running = false;
+        subscriptions.forEach(subscription -> subscription.thread.interrupt());
+    }
+
+    private void drop(TxEvent event) {
+        txleMetrics.markEventBusDropped();
+        // one warning per thousand, a slow subscriber drops events in bursts.
+        if (droppedEvents.getAndIncrement() % 1000 == 0) {
+            LOG.warn("The event bus is {}, the event [{}] is not published to the subscribers, {} dropped in total.",
+                    running ? "full" : "shut down", event, droppedEvents.get());
+        }
+    }
+
+    private long minSubscribedSequence(long defaultSequence) {
+        long min = defaultSequence;
+        for (Subscription subscription : subscriptions) {
+            min = Math.min(min, subscription.sequence.get());
+        }
+        return min;
+    }
+
+    private final class Subscription implements Runnable {
+        private final String name;
+        private final int maxBatchSize;
+        private final TxEventSubscriber subscriber;
+        // the last sequence which was handled by the subscriber.
+        private final AtomicLong sequence;
+        private final Thread thread;
+        // set before the last check of the next slot, so that a publisher which published it meanwhile unparks the thread.
+        private volatile boolean parked;
+
+        private Subscription(String name, int maxBatchSize, TxEventSubscriber subscriber, long sequence) {
+            this.name = name;
+            this.maxBatchSize = maxBatchSize;
+            this.subscriber = subscriber;
+            this.sequence = new AtomicLong(sequence);
+            this.thread = new Thread(this, "txle-event-bus-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<TxEvent> batch = new ArrayList<>(maxBatchSize);
+            long next = sequence.get() + 1;
+            while (running && !Thread.currentThread().isInterrupted()) {
+                while (batch.size() < maxBatchSize && published.get((int) next & mask) == next) {
+                    batch.add(events[(int) next & mask]);
+                    next++;
+                }
+                if (batch.isEmpty()) {
+                    parked = true;
+                    if (published.get((int) next & mask) != next) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                    continue;
+                }
+                try {
+                    subscriber.onEvents(batch);
+                } catch (Exception e) {
+                    LOG.error("The subscriber [{}] failed to handle {} events.", name, batch.size(), e);
+                }
+                batch.clear();
+                sequence.set(next - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core.listener;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+
+import java.util.List;
+
+/**
+ * A subscriber of {@link TxEventBus}.
+ *
+ * @since 2019/10/18
+ */
+public interface TxEventSubscriber {
+
+    /**
+     * Called by the thread of the subscriber only, with the events of all types in the order of publishing. The list is
+     * reused after returning.
+     */
+    void onEvents(List<TxEvent> events);
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class CompensationDispatcherTest {
+  private static final String SLOW_SERVICE = "slowService";
+  private static final String FAST_SERVICE = "fastService";
+  private static final String BROKEN_SERVICE = "brokenService";
+
+  private final CountDownLatch slowServiceLatch = new CountDownLatch(1);
+  private final AtomicInteger maxInFlightOfSlowService = new AtomicInteger();
+  private final List<String> compensatedLocalTxIds = new CopyOnWriteArrayList<>();
+  private final List<String> failedLocalTxIds = new CopyOnWriteArrayList<>();
+
+  private CompensationDispatcher dispatcher;
+
+  private final OmegaCallback omegaCallback = event -> {
+    if (BROKEN_SERVICE.equals(event.serviceName())) {
+      throw new AlphaException("No such omega callback found for service " + event.serviceName());
+    }
+    if (SLOW_SERVICE.equals(event.serviceName())) {
+      maxInFlightOfSlowService.accumulateAndGet(dispatcher.inFlight(SLOW_SERVICE), Math::max);
+      try {
+        slowServiceLatch.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    compensatedLocalTxIds.add(event.localTxId());
+  };
+
+  @After
+  public void tearDown() {
+    slowServiceLatch.countDown();
+    dispatcher.shutdown();
+  }
+
+  @Test
+  public void slowServiceDoesNotBlockOtherServices() {
+    dispatcher = new CompensationDispatcher(omegaCallback, 4, 2);
+    for (int i = 0; i < 5; i++) {
+      dispatcher.dispatch(command(SLOW_SERVICE, "slow-" + i), command -> failedLocalTxIds.add(command.localTxId()));
+    }
+    dispatcher.dispatch(command(FAST_SERVICE, "fast"), command -> failedLocalTxIds.add(command.localTxId()));
+
+    await().atMost(1000, MILLISECONDS).until(() -> compensatedLocalTxIds.contains("fast"));
+    assertThat(dispatcher.inFlight(SLOW_SERVICE), is(2));
+
+    slowServiceLatch.countDown();
+    await().atMost(1000, MILLISECONDS).until(() -> compensatedLocalTxIds.size() == 6 && dispatcher.inFlight(SLOW_SERVICE) == 0);
+    assertThat(maxInFlightOfSlowService.get(), is(2));
+    assertThat(failedLocalTxIds.isEmpty(), is(true));
+  }
+
+  @Test
+  public void handsFailedCommandsBack() {
+    dispatcher = new CompensationDispatcher(omegaCallback, 2, 1);
+    dispatcher.dispatch(command(BROKEN_SERVICE, "broken"), command -> failedLocalTxIds.add(command.localTxId()));
+    dispatcher.dispatch(command(FAST_SERVICE, "fast"), command -> failedLocalTxIds.add(command.localTxId()));
+
+    await().atMost(1000, MILLISECONDS).until(() -> failedLocalTxIds.size() == 1 && compensatedLocalTxIds.size() == 1);
+    assertThat(failedLocalTxIds, contains("broken"));
+    assertThat(compensatedLocalTxIds, contains("fast"));
+  }
+
+  private Command command(String serviceName, String localTxId) {
+    return new Command(1L, serviceName, uniquify("instanceId"), uniquify("globalTxId"), localTxId, null, "compensate", "", new byte[0]);
+  }
+}
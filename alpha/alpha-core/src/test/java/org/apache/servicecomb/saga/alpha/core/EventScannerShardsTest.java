@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class EventScannerShardsTest {
+  private static final int SHARD_COUNT = 8;
+
+  @Test
+  public void firstNodeAcquiresAllShards() {
+    assertThat(EventScannerShards.targetShards(new HashMap<>(), "node-1", 1, SHARD_COUNT).size(), is(SHARD_COUNT));
+  }
+
+  @Test
+  public void releasesRedundantShardsWhenNodeJoined() {
+    Map<Integer, String> holders = new HashMap<>();
+    for (int shard = 0; shard < SHARD_COUNT; shard++) {
+      holders.put(shard, "node-1");
+    }
+
+    assertThat(EventScannerShards.targetShards(holders, "node-1", 2, SHARD_COUNT), contains(0, 1, 2, 3));
+    // the new node waits until the shards are released.
+    assertThat(EventScannerShards.targetShards(holders, "node-2", 2, SHARD_COUNT).isEmpty(), is(true));
+
+    for (int shard = 4; shard < SHARD_COUNT; shard++) {
+      holders.remove(shard);
+    }
+    assertThat(EventScannerShards.targetShards(holders, "node-2", 2, SHARD_COUNT), contains(4, 5, 6, 7));
+  }
+
+  @Test
+  public void takesOverShardsOfDeadNode() {
+    Map<Integer, String> holders = new HashMap<>();
+    for (int shard = 0; shard < SHARD_COUNT; shard++) {
+      holders.put(shard, shard % 3 == 0 ? "node-1" : shard % 3 == 1 ? "node-2" : "node-3");
+    }
+    // node-3 died, Consul released its shards 2 and 5.
+    holders.remove(2);
+    holders.remove(5);
+
+    Set<Integer> shardsOfNode1 = EventScannerShards.targetShards(holders, "node-1", 2, SHARD_COUNT);
+    assertThat(shardsOfNode1, contains(0, 2, 3, 6));
+    shardsOfNode1.forEach(shard -> holders.put(shard, "node-1"));
+
+    Set<Integer> shardsOfNode2 = EventScannerShards.targetShards(holders, "node-2", 2, SHARD_COUNT);
+    assertThat(shardsOfNode2, contains(1, 4, 5, 7));
+
+    Set<Integer> allShards = new HashSet<>(shardsOfNode1);
+    allShards.addAll(shardsOfNode2);
+    assertThat(allShards.size(), is(SHARD_COUNT));
+  }
+
+  @Test
+  public void ownsNothingWithoutConsulAndLeader() {
+    EventScannerShards shards = new EventScannerShards(null, SHARD_COUNT, 1000);
+
+    assertThat(shards.ownedShards().isEmpty(), is(true));
+    assertThat(shards.isOwned("globalTxId"), is(false));
+    assertThat(shards.shardOf("globalTxId"), is(Math.floorMod("globalTxId".hashCode(), SHARD_COUNT)));
+  }
+
+  @Test
+  public void checksOwnershipAtTheMomentOfWriting() {
+    TxleConsulClient txleConsulClient = mock(TxleConsulClient.class);
+    when(txleConsulClient.isMaster()).thenReturn(true);
+    EventScannerShards shards = new EventScannerShards(txleConsulClient, SHARD_COUNT, 1000);
+    Set<Integer> ownedAtBeginning = shards.ownedShards();
+
+    // the leadership is lost in the middle of a round.
+    when(txleConsulClient.isMaster()).thenReturn(false);
+
+    assertThat(shards.isOwned(ownedAtBeginning, "globalTxId"), is(true));
+    assertThat(shards.isOwned("globalTxId"), is(false));
+  }
+}
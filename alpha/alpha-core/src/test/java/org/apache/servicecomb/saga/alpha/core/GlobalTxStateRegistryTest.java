@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static org.apache.servicecomb.saga.common.EventType.SagaEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.SagaStartedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxAbortedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxStartedEvent;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class GlobalTxStateRegistryTest {
+  private final GlobalTxStateRegistry registry = new GlobalTxStateRegistry(60000);
+  private final AtomicInteger loadTimes = new AtomicInteger();
+
+  private final String globalTxId = uniquify("globalTxId");
+  private final String localTxId = uniquify("localTxId");
+
+  @Test
+  public void answersChecksFromSavedEventsWithoutLoading() {
+    registry.onEventSaved(event(1L, globalTxId, SagaStartedEvent.name(), 0, 0));
+    registry.onEventSaved(event(2L, localTxId, TxStartedEvent.name(), 0, 0));
+
+    GlobalTxState state = registry.getOrLoad(globalTxId, id -> {
+      loadTimes.incrementAndGet();
+      return null;
+    });
+
+    assertThat(loadTimes.get(), is(0));
+    assertThat(state.containsEventType(localTxId, TxStartedEvent.name()), is(true));
+    assertThat(state.containsEventType(localTxId, TxEndedEvent.name()), is(false));
+    assertThat(state.isLastAttemptStarted(localTxId), is(true));
+  }
+
+  @Test
+  public void findsLatestExpiredStartedEventUntilAborted() {
+    registry.onEventSaved(event(1L, globalTxId, SagaStartedEvent.name(), 0, 1));
+    registry.onEventSaved(event(2L, localTxId, TxStartedEvent.name(), 0, 1));
+    GlobalTxState state = registry.getOrLoad(globalTxId, id -> null);
+
+    assertThat(state.findTimeoutEventBeforeEnding(new Date()), is(nullValue()));
+    assertThat(state.findTimeoutEventBeforeEnding(new Date(System.currentTimeMillis() + 5000)).id(), is(2L));
+
+    registry.onEventSaved(event(3L, localTxId, TxAbortedEvent.name(), 0, 0));
+    assertThat(state.findTimeoutEventBeforeEnding(new Date(System.currentTimeMillis() + 5000)), is(nullValue()));
+  }
+
+  @Test
+  public void rebuildsUnknownStateFromDurableEvents() {
+    GlobalTxState state = registry.getOrLoad(globalTxId, id -> {
+      loadTimes.incrementAndGet();
+      return Arrays.asList(
+          event(1L, globalTxId, SagaStartedEvent.name(), 0, 0),
+          event(2L, localTxId, TxStartedEvent.name(), 2, 0),
+          event(3L, globalTxId, AdditionalEventType.SagaPausedEvent.name(), 0, 0));
+    });
+    registry.getOrLoad(globalTxId, id -> {
+      loadTimes.incrementAndGet();
+      return null;
+    });
+
+    assertThat(loadTimes.get(), is(1));
+    assertThat(state.isLastAttemptStarted(localTxId), is(false));
+    assertThat(state.containsPauseEvent(), is(true));
+    assertThat(state.latestPauseEvent().id(), is(3L));
+  }
+
+  @Test
+  public void isIncompleteOnceSubTxStartedByOtherNodesEndsHere() {
+    String startedElsewhere = uniquify("localTxId");
+    registry.onEventSaved(event(1L, globalTxId, SagaStartedEvent.name(), 0, 0));
+    registry.onEventSaved(event(2L, localTxId, TxStartedEvent.name(), 0, 0));
+    registry.onEventSaved(event(3L, localTxId, TxEndedEvent.name(), 0, 0));
+    registry.onEventSaved(event(4L, globalTxId, TxAbortedEvent.name(), 0, 0));
+    assertThat(registry.getOrLoad(globalTxId, id -> null).isComplete(), is(true));
+
+    registry.onEventSaved(event(6L, startedElsewhere, TxEndedEvent.name(), 0, 0));
+    assertThat(registry.getOrLoad(globalTxId, id -> null).isComplete(), is(false));
+
+    GlobalTxState state = registry.reload(globalTxId, id -> Arrays.asList(
+        event(1L, globalTxId, SagaStartedEvent.name(), 0, 0),
+        event(5L, startedElsewhere, TxStartedEvent.name(), 0, 0),
+        event(6L, startedElsewhere, TxEndedEvent.name(), 0, 0)));
+    assertThat(state.isComplete(), is(true));
+    assertThat(state.containsEventType(startedElsewhere, TxStartedEvent.name()), is(true));
+  }
+
+  @Test
+  public void removesStateWhenGlobalTxEnded() {
+    registry.onEventSaved(event(1L, globalTxId, SagaStartedEvent.name(), 0, 0));
+    assertThat(registry.size(), is(1));
+
+    registry.onEventSaved(event(2L, globalTxId, SagaEndedEvent.name(), 0, 0));
+    assertThat(registry.size(), is(0));
+  }
+
+  @Test
+  public void removesIdleStates() {
+    GlobalTxStateRegistry registry = new GlobalTxStateRegistry(-1);
+    registry.onEventSaved(event(1L, globalTxId, SagaStartedEvent.name(), 0, 0));
+
+    registry.removeIdleStates();
+
+    assertThat(registry.size(), is(0));
+  }
+
+  private TxEvent event(long id, String localTxId, String type, int retries, int timeout) {
+    return new TxEvent(id, "serviceName", "instanceId", new Date(), globalTxId, localTxId,
+        globalTxId.equals(localTxId) ? null : globalTxId, type, "", timeout, "", retries, "", new byte[0]);
+  }
+}
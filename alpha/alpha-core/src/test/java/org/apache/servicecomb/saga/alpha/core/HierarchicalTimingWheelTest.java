@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class HierarchicalTimingWheelTest {
+  private final List<String> expiredTasks = new CopyOnWriteArrayList<>();
+  // 8 buckets of 10ms, so the tasks beyond 80ms go to upper levels.
+  private final HierarchicalTimingWheel<String> timingWheel = new HierarchicalTimingWheel<>("test-timing-wheel", 10, 8, expiredTasks::add);
+
+  @After
+  public void tearDown() {
+    timingWheel.shutdown();
+  }
+
+  @Test
+  public void expiresTasksInOrderAcrossLevels() {
+    long now = System.currentTimeMillis();
+    timingWheel.schedule("third", now + 700);
+    timingWheel.schedule("first", now + 30);
+    timingWheel.schedule("second", now + 200);
+
+    await().atMost(2000, MILLISECONDS).until(() -> expiredTasks.size() == 3);
+
+    assertThat(expiredTasks, contains("first", "second", "third"));
+    assertThat(timingWheel.size(), is(0));
+  }
+
+  @Test
+  public void expiresPassedTasksAtOnce() {
+    timingWheel.schedule("passed", System.currentTimeMillis() - 1000);
+
+    await().atMost(200, MILLISECONDS).until(() -> expiredTasks.contains("passed"));
+  }
+
+  @Test
+  public void neverExpiresCancelledTasks() throws Exception {
+    long now = System.currentTimeMillis();
+    HierarchicalTimingWheel.Timeout<String> cancelled = timingWheel.schedule("cancelled", now + 50);
+    timingWheel.schedule("kept", now + 150);
+
+    assertThat(cancelled.cancel(), is(true));
+    assertThat(timingWheel.size(), is(1));
+
+    await().atMost(1000, MILLISECONDS).until(() -> expiredTasks.contains("kept"));
+    assertThat(expiredTasks, contains("kept"));
+    assertThat(cancelled.cancel(), is(false));
+  }
+}
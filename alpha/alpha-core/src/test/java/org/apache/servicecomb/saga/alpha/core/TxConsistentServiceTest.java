@@ -37,6 +37,11 @@ public class TxConsistentServiceTest {
       events.add(event);
     }
 
+    @Override
+    public void saveAll(List<TxEvent> events) {
+      events.forEach(this::save);
+    }
+
     @Override
     public List<TxEvent> findTimeoutEvents(long unendedMinEventId) {
       return emptyList();
@@ -54,11 +59,6 @@ public class TxConsistentServiceTest {
           .findFirst();
     }
 
-    @Override
-    public List<TxEvent> findSequentialCompensableEventOfUnended(long unendedMinEventId) {
-      return null;
-    }
-
     @Override
     public List<String> selectAllTypeByGlobalTxId(String globalTxId) {
       return null;
@@ -69,6 +69,16 @@ public class TxConsistentServiceTest {
 		return null;
 	}
 
+    @Override
+    public List<TxEvent> selectPauseEventsOfUnendedTx() {
+      return null;
+    }
+
+    @Override
+    public List<TxEvent> selectSagaStartedEventsOfUnendedTx(GlobalTxFilter filter, long afterSurrogateId) {
+      return null;
+    }
+
     @Override
     public Set<String> selectEndedGlobalTx(Set<String> localTxIdSet) {
       return null;
@@ -89,6 +99,11 @@ public class TxConsistentServiceTest {
       return null;
     }
 
+    @Override
+    public KeysetPage findTxList(KeysetQuery query) {
+      return null;
+    }
+
     @Override
     public List<TxEvent> selectTxEventByGlobalTxIds(List<String> globalTxIdList) {
       return null;
@@ -120,7 +135,7 @@ public class TxConsistentServiceTest {
     }
 
     @Override
-    public List<Long> selectEndedEventIdsWithinSomePeriod(int pageIndex, int pageSize, Date startTime, Date endTime) {
+    public List<Long> selectEndedEventIdsWithinSomePeriod(long afterEventId, int limit, Date startTime, Date endTime) {
       return null;
     }
 
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import static org.apache.servicecomb.saga.alpha.core.TxEventAdmissionController.ADMITTED;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenter;
+import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenterStatus;
+import org.apache.servicecomb.saga.common.ConfigCenterType;
+import org.apache.servicecomb.saga.common.TxleConstants;
+import org.junit.After;
+import org.junit.Test;
+
+public class TxEventAdmissionControllerTest {
+  private final List<ConfigCenter> configs = new CopyOnWriteArrayList<>();
+  private final TxleMetrics txleMetrics = mock(TxleMetrics.class);
+  private final AtomicLong now = new AtomicLong();
+  private TxEventAdmissionController controller = new TxEventAdmissionController(() -> configs, txleMetrics, now::get);
+
+  @After
+  public void tearDown() {
+    controller.shutdown();
+  }
+
+  @Test
+  public void rejectsEventsBeyondBurstUntilTokensAreRefilled() {
+    configs.add(config("batch", null, "1,2"));
+    controller.refresh();
+
+    assertThat(controller.admit("batch", "c1"), is(ADMITTED));
+    assertThat(controller.admit("batch", "c1"), is(ADMITTED));
+    assertThat(controller.admit("batch", "c1"), is(1000L));
+    // the other services are not limited.
+    assertThat(controller.admit("web", "c1"), is(ADMITTED));
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    assertThat(controller.admit("batch", "c1"), is(500L));
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    assertThat(controller.admit("batch", "c1"), is(ADMITTED));
+
+    verify(txleMetrics, times(3)).markTxEventAdmission("batch", "c1", "admitted");
+    verify(txleMetrics, times(2)).markTxEventAdmission("batch", "c1", "rejected");
+  }
+
+  @Test
+  public void configOfCategoryCoversConfigOfServiceWhichCoversGlobalConfig() {
+    configs.add(config(null, null, "1"));
+    configs.add(config("batch", null, "2"));
+    configs.add(config("batch", "c1", "0"));
+    controller.refresh();
+
+    assertThat(admittedTimes("web", "c1", 5), is(1));
+    assertThat(admittedTimes("batch", "c2", 5), is(2));
+    assertThat(admittedTimes("batch", "c1", 5), is(5));
+
+    // the buckets are rebuilt with the new limits.
+    configs.clear();
+    configs.add(config("batch", null, "3"));
+    controller.refresh();
+    assertThat(admittedTimes("web", "c1", 5), is(5));
+    assertThat(admittedTimes("batch", "c2", 5), is(3));
+  }
+
+  @Test
+  public void rejectsAtOnceRatherThanWaitingForNextToken() {
+    configs.add(config("batch", null, "100,1"));
+    controller.refresh();
+
+    assertThat(controller.admit("batch", "c1"), is(ADMITTED));
+    // the next token comes in 10ms, the event is not held by the thread.
+    assertThat(controller.admit("batch", "c1"), is(10L));
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(4));
+    assertThat(controller.admit("batch", "c1"), is(6L));
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(6));
+    assertThat(controller.admit("batch", "c1"), is(ADMITTED));
+    verify(txleMetrics, times(2)).markTxEventAdmission("batch", "c1", "rejected");
+  }
+
+  private int admittedTimes(String serviceName, String category, int times) {
+    int admitted = 0;
+    for (int i = 0; i < times; i++) {
+      if (controller.admit(serviceName, category) == ADMITTED) {
+        admitted++;
+      }
+    }
+    return admitted;
+  }
+
+  private ConfigCenter config(String serviceName, String category, String value) {
+    return new ConfigCenter(serviceName, null, category, ConfigCenterStatus.Normal, TxleConstants.YES, ConfigCenterType.TxEventAdmission, value, "");
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.servicecomb.saga.common.EventType.SagaStartedEvent;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TxPauseRegistryTest {
+  private final TxEventRepository eventRepository = mock(TxEventRepository.class);
+  private final List<TxEvent> savedEvents = new CopyOnWriteArrayList<>();
+  private final List<List<TxEvent>> savedBatches = new CopyOnWriteArrayList<>();
+  private final TxPauseRegistry registry = new TxPauseRegistry(eventRepository, "alpha:8090");
+
+  private final String globalTxId = uniquify("globalTxId");
+
+  @Before
+  public void setUp() {
+    doAnswer(invocation -> savedEvents.add(invocation.getArgument(0))).when(eventRepository).save(any(TxEvent.class));
+    doAnswer(invocation -> savedBatches.add(invocation.getArgument(0))).when(eventRepository).saveAll(anyListOf(TxEvent.class));
+  }
+
+  @After
+  public void tearDown() {
+    registry.shutdown();
+  }
+
+  @Test
+  public void pausesAndResumesInMemoryAndPersistsEventsInOrder() {
+    TxEvent event = event(globalTxId, SagaStartedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP));
+
+    assertThat(registry.pause(event, "127.0.0.1:1", 0), is(true));
+    assertThat(registry.pause(event, "127.0.0.1:1", 0), is(false));
+    assertThat(registry.isPaused(globalTxId), is(true));
+    assertThat(registry.isPaused(uniquify("globalTxId")), is(false));
+
+    assertThat(registry.resume(event, "127.0.0.1:1"), is(true));
+    assertThat(registry.resume(event, "127.0.0.1:1"), is(false));
+    assertThat(registry.isPaused(globalTxId), is(false));
+
+    await().atMost(5, SECONDS).until(() -> savedEvents.size() == 2);
+    assertThat(savedEvents.get(0).type(), is(AdditionalEventType.SagaPausedEvent.name()));
+    assertThat(savedEvents.get(1).type(), is(AdditionalEventType.SagaContinuedEvent.name()));
+  }
+
+  @Test
+  public void continuesAutomaticallyAtDeadlineOnlyOnNodeWhichPaused() {
+    String pausedByOthers = uniquify("globalTxId");
+    registry.pause(event(globalTxId, SagaStartedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP)), "127.0.0.1:1", 1);
+    registry.pauseLocally(pausedByOthers, 1);
+    assertThat(registry.isPaused(globalTxId), is(true));
+    assertThat(registry.isPaused(pausedByOthers), is(true));
+
+    await().atMost(5, SECONDS).until(() -> !registry.contains(globalTxId) && !registry.contains(pausedByOthers));
+    await().atMost(5, SECONDS).until(() -> savedEvents.size() == 2);
+    assertThat(savedEvents.get(1).type(), is(AdditionalEventType.SagaAutoContinuedEvent.name()));
+    assertThat(savedEvents.get(1).globalTxId(), is(globalTxId));
+  }
+
+  @Test
+  public void pausesAndResumesInBulkByOneBatchEach() {
+    String anotherGlobalTxId = uniquify("globalTxId");
+    String pausedBefore = uniquify("globalTxId");
+    registry.pauseLocally(pausedBefore, 0);
+    List<TxEvent> events = Arrays.asList(
+        event(globalTxId, SagaStartedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP)),
+        event(anotherGlobalTxId, SagaStartedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP)),
+        event(pausedBefore, SagaStartedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP)));
+
+    assertThat(registry.pauseAll(events, "127.0.0.1:1", 0).size(), is(2));
+    assertThat(registry.isPaused(globalTxId) && registry.isPaused(anotherGlobalTxId), is(true));
+
+    registry.resumeLocally(anotherGlobalTxId);
+    assertThat(registry.resumeAll(events, "127.0.0.1:1").size(), is(2));
+    assertThat(registry.contains(globalTxId) || registry.contains(pausedBefore), is(false));
+
+    await().atMost(5, SECONDS).until(() -> savedBatches.size() == 2);
+    assertThat(savedBatches.get(0).size(), is(2));
+    assertThat(savedBatches.get(0).get(1).type(), is(AdditionalEventType.SagaPausedEvent.name()));
+    assertThat(savedBatches.get(1).size(), is(2));
+    assertThat(savedBatches.get(1).get(0).globalTxId(), is(globalTxId));
+    assertThat(savedBatches.get(1).get(1).type(), is(AdditionalEventType.SagaContinuedEvent.name()));
+    assertThat(savedEvents.isEmpty(), is(true));
+  }
+
+  @Test
+  public void notifiesEveryResumption() {
+    List<String> resumed = new CopyOnWriteArrayList<>();
+    registry.setResumeListener(new TxResumeListener() {
+      @Override
+      public void onResumed(String globalTxId) {
+        resumed.add(globalTxId);
+      }
+
+      @Override
+      public void onAllResumed() {
+        resumed.add("all");
+      }
+    });
+    String resumedByOthers = uniquify("globalTxId");
+    String autoContinued = uniquify("globalTxId");
+    TxEvent event = event(globalTxId, SagaStartedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP));
+
+    registry.pause(event, "127.0.0.1:1", 0);
+    registry.resume(event, "127.0.0.1:1");
+    registry.pauseLocally(resumedByOthers, 0);
+    registry.resumeLocally(resumedByOthers);
+    registry.resumeLocally(resumedByOthers);
+    registry.pauseLocally(autoContinued, 1);
+    registry.setAllPaused(true);
+    registry.setAllPaused(false);
+
+    await().atMost(5, SECONDS).until(() -> resumed.size() == 4);
+    assertThat(resumed, is(Arrays.asList(globalTxId, resumedByOthers, "all", autoContinued)));
+  }
+
+  @Test
+  public void loadsLatestPauseOfEveryRunningGlobalTx() {
+    String continuedGlobalTxId = uniquify("globalTxId");
+    when(eventRepository.selectPauseEventsOfUnendedTx()).thenReturn(Arrays.asList(
+        event(globalTxId, AdditionalEventType.SagaPausedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP)),
+        event(continuedGlobalTxId, AdditionalEventType.SagaPausedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP)),
+        event(continuedGlobalTxId, AdditionalEventType.SagaContinuedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP))));
+
+    registry.load(() -> false);
+
+    assertThat(registry.isPaused(globalTxId), is(true));
+    assertThat(registry.isPaused(continuedGlobalTxId), is(false));
+
+    registry.setAllPaused(true);
+    assertThat(registry.isPaused(continuedGlobalTxId), is(true));
+  }
+
+  @Test
+  public void continuesAutomaticallyOnlyLoadedPausesOfCurrentNode() {
+    String pausedByOthers = uniquify("globalTxId");
+    Date deadline = new Date(System.currentTimeMillis() + 1000);
+    when(eventRepository.selectPauseEventsOfUnendedTx()).thenReturn(Arrays.asList(
+        event(globalTxId, "alpha:8090", AdditionalEventType.SagaPausedEvent.name(), deadline),
+        event(pausedByOthers, "another:8090", AdditionalEventType.SagaPausedEvent.name(), deadline)));
+
+    registry.load(() -> false);
+    assertThat(registry.isPaused(globalTxId) && registry.isPaused(pausedByOthers), is(true));
+
+    await().atMost(5, SECONDS).until(() -> !registry.contains(globalTxId) && !registry.contains(pausedByOthers));
+    await().atMost(5, SECONDS).until(() -> savedEvents.size() == 1);
+    assertThat(savedEvents.get(0).type(), is(AdditionalEventType.SagaAutoContinuedEvent.name()));
+    assertThat(savedEvents.get(0).globalTxId(), is(globalTxId));
+  }
+
+  @Test
+  public void providesRemainingPausePeriodsForOtherNodes() {
+    String pausedForever = uniquify("globalTxId");
+    registry.pause(event(globalTxId, SagaStartedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP)), "127.0.0.1:1", 60);
+    registry.pauseLocally(pausedForever, 0);
+
+    Map<String, Integer> pausePeriods = registry.pausePeriods();
+    assertThat(pausePeriods.size(), is(2));
+    assertThat(pausePeriods.get(globalTxId), is(60));
+    assertThat(pausePeriods.get(pausedForever), is(0));
+
+    await().atMost(5, SECONDS).until(() -> savedEvents.size() == 1);
+    assertThat(savedEvents.get(0).instanceId(), is("alpha:8090"));
+  }
+
+  @Test
+  public void givesUpFailedEventAfterMaxAttemptsAndPersistsLaterOnes() {
+    TxPauseRegistry failingRegistry = new TxPauseRegistry(eventRepository, "alpha:8090", 3, 10);
+    AtomicInteger attempts = new AtomicInteger();
+    String failingGlobalTxId = uniquify("globalTxId");
+    doAnswer(invocation -> {
+      TxEvent event = invocation.getArgument(0);
+      if (event.globalTxId().equals(failingGlobalTxId)) {
+        attempts.incrementAndGet();
+        throw new IllegalStateException("database is down");
+      }
+      return savedEvents.add(event);
+    }).when(eventRepository).save(any(TxEvent.class));
+
+    try {
+      failingRegistry.pause(event(failingGlobalTxId, SagaStartedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP)), "127.0.0.1:1", 0);
+      failingRegistry.pause(event(globalTxId, SagaStartedEvent.name(), new Date(TxEvent.MAX_TIMESTAMP)), "127.0.0.1:1", 0);
+
+      await().atMost(5, SECONDS).until(() -> savedEvents.size() == 1);
+      assertThat(attempts.get(), is(3));
+      assertThat(savedEvents.get(0).globalTxId(), is(globalTxId));
+      assertThat(failingRegistry.isPaused(failingGlobalTxId), is(true));
+    } finally {
+      failingRegistry.shutdown();
+    }
+  }
+
+  private TxEvent event(String globalTxId, String type, Date expiryTime) {
+    return event(globalTxId, "instance", type, expiryTime);
+  }
+
+  private TxEvent event(String globalTxId, String instanceId, String type, Date expiryTime) {
+    return new TxEvent(-1L, "service", instanceId, new Date(), globalTxId, globalTxId, null, type, "", expiryTime, "", 0, "", null);
+  }
+}
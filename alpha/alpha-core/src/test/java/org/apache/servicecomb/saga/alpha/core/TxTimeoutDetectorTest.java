@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.servicecomb.saga.common.EventType.SagaStartedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxAbortedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxStartedEvent;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TxTimeoutDetectorTest {
+  private final List<TxEvent> events = new CopyOnWriteArrayList<>();
+  private final List<TxTimeout> timeouts = new CopyOnWriteArrayList<>();
+  private final TxTimeoutRepository timeoutRepository = new TxTimeoutRepository() {
+    @Override
+    public void save(TxTimeout timeout) {
+      timeouts.add(timeout);
+    }
+
+    @Override
+    public void saveIfAbsent(TxTimeout timeout) {
+      if (findTxTimeoutByEventId(timeout.eventId()) < 1) {
+        save(timeout);
+      }
+    }
+
+    @Override
+    public long findTxTimeoutByEventId(long eventId) {
+      return timeouts.stream().filter(timeout -> timeout.eventId() == eventId).count();
+    }
+
+    @Override
+    public void markTimeoutAsDone(List<Long> surrogateIdList) {
+    }
+
+    @Override
+    public List<Long> selectTimeoutIdList() {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public List<TxTimeout> findFirstTimeout(Predicate<String> isAcceptedGlobalTx) {
+      return new ArrayList<>();
+    }
+  };
+
+  private final TxTimeoutDetector detector = new TxTimeoutDetector(timeoutRepository,
+      globalTxId -> events.stream().filter(event -> globalTxId.equals(event.globalTxId())).collect(Collectors.toList()), 10, 8);
+
+  private final String globalTxId = uniquify("globalTxId");
+  private final String localTxId = uniquify("localTxId");
+
+  @After
+  public void tearDown() {
+    detector.shutdown();
+  }
+
+  @Test
+  public void recordsTimeoutOfUnendedSubTransaction() {
+    save(event(1L, globalTxId, SagaStartedEvent.name(), 0));
+    save(event(2L, localTxId, TxStartedEvent.name(), 100));
+
+    await().atMost(1000, MILLISECONDS).until(() -> timeouts.size() == 1);
+    assertThat(timeouts.get(0).eventId(), is(2L));
+    assertThat(detector.size(), is(0));
+  }
+
+  @Test
+  public void cancelsTimeoutWhenSubTransactionEnded() throws Exception {
+    save(event(1L, localTxId, TxStartedEvent.name(), 100));
+    save(event(2L, localTxId, TxEndedEvent.name(), 0));
+
+    assertThat(detector.size(), is(0));
+    Thread.sleep(300);
+    assertThat(timeouts.isEmpty(), is(true));
+  }
+
+  @Test
+  public void cancelsAllTimeoutsWhenGlobalTransactionAborted() {
+    save(event(1L, globalTxId, SagaStartedEvent.name(), 100));
+    save(event(2L, localTxId, TxStartedEvent.name(), 100));
+    save(event(3L, localTxId + "-other", TxAbortedEvent.name(), 0));
+
+    assertThat(detector.size(), is(0));
+  }
+
+  @Test
+  public void rebuildsTimeoutsFromUnendedEvents() {
+    String endedLocalTxId = uniquify("localTxId");
+    events.addAll(Arrays.asList(
+        event(1L, globalTxId, SagaStartedEvent.name(), 0),
+        event(2L, localTxId, TxStartedEvent.name(), 100),
+        event(3L, endedLocalTxId, TxStartedEvent.name(), 100),
+        event(4L, endedLocalTxId, TxEndedEvent.name(), 0)));
+
+    detector.rebuild(events);
+
+    assertThat(detector.size(), is(1));
+    await().atMost(1000, MILLISECONDS).until(() -> timeouts.size() == 1);
+    assertThat(timeouts.get(0).eventId(), is(2L));
+  }
+
+  @Test
+  public void loadsTimeoutsOfUnendedEventsAtStartup() {
+    String expiredLocalTxId = uniquify("localTxId");
+    events.addAll(Arrays.asList(
+        event(1L, globalTxId, SagaStartedEvent.name(), 0),
+        event(2L, localTxId, TxStartedEvent.name(), 500),
+        event(3L, expiredLocalTxId, TxStartedEvent.name(), -100)));
+
+    detector.start(() -> events);
+
+    // the one which expired during the restart is recorded at once.
+    await().atMost(300, MILLISECONDS).until(() -> !timeouts.isEmpty());
+    assertThat(timeouts.get(0).eventId(), is(3L));
+    await().atMost(1000, MILLISECONDS).until(() -> timeouts.size() == 2);
+    assertThat(timeouts.get(1).eventId(), is(2L));
+  }
+
+  @Test
+  public void startsEvenIfUnendedEventsFailedToLoad() {
+    detector.start(() -> {
+      throw new IllegalStateException("oops");
+    });
+
+    save(event(1L, localTxId, TxStartedEvent.name(), 100));
+    await().atMost(1000, MILLISECONDS).until(() -> timeouts.size() == 1);
+  }
+
+  private void save(TxEvent event) {
+    events.add(event);
+    detector.onEventSaved(event);
+  }
+
+  private TxEvent event(long id, String localTxId, String type, int timeoutMillis) {
+    Date creationTime = new Date();
+    Date expiryTime = new Date(timeoutMillis != 0 ? creationTime.getTime() + timeoutMillis : TxEvent.MAX_TIMESTAMP);
+    return new TxEvent(id, "serviceName", "instanceId", creationTime, globalTxId, localTxId,
+        globalTxId.equals(localTxId) ? null : globalTxId, type, "", expiryTime, "", 0, "", new byte[0]);
+  }
+}
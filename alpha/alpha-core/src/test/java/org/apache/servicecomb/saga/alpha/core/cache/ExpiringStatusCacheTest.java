@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ExpiringStatusCacheTest {
+  private final ExpiringStatusCache cache = new ExpiringStatusCache(1000, 8);
+
+  @Test
+  public void containsKeyUntilItIsRemoved() {
+    cache.put("g1", true, 1);
+    cache.put("g2", true, 1);
+    cache.put("g3", true, 1);
+
+    assertThat(cache.contains("g1"), is(true));
+
+    cache.removeAll(Arrays.asList("g1", "g2"));
+
+    assertThat(cache.contains("g1"), is(false));
+    assertThat(cache.contains("g2"), is(false));
+    assertThat(cache.contains("g3"), is(true));
+  }
+
+  @Test
+  public void removesExpiredEntriesOnly() {
+    long now = System.currentTimeMillis();
+    cache.put(entity("expired", now + 2000));
+    cache.put(entity("alive", now + 5000));
+
+    assertThat(cache.removeExpired(now + 3000), is(1));
+
+    assertThat(cache.contains("expired"), is(false));
+    assertThat(cache.contains("alive"), is(true));
+  }
+
+  @Test
+  public void keepsEntriesOfLaterRoundsInTheSameBucket() {
+    long now = System.currentTimeMillis();
+    // 8 ticks per round, so both of them are in the same bucket.
+    cache.put(entity("thisRound", now + 2000));
+    cache.put(entity("nextRound", now + 2000 + 8000));
+
+    assertThat(cache.removeExpired(now + 3000), is(1));
+    assertThat(cache.contains("nextRound"), is(true));
+
+    assertThat(cache.removeExpired(now + 11000), is(1));
+    assertThat(cache.contains("nextRound"), is(false));
+  }
+
+  @Test
+  public void honorsTheLatestExpireOfTheSameKey() {
+    long now = System.currentTimeMillis();
+    cache.put(entity("g1", now + 2000));
+    cache.put(entity("g1", now + 6000));
+
+    assertThat(cache.removeExpired(now + 3000), is(0));
+    assertThat(cache.contains("g1"), is(true));
+
+    assertThat(cache.removeExpired(now + 7000), is(1));
+    assertThat(cache.contains("g1"), is(false));
+  }
+
+  private CacheEntity entity(String key, long expire) {
+    CacheEntity cacheEntity = new CacheEntity(key, true);
+    cacheEntity.setExpire(expire);
+    return cacheEntity;
+  }
+}
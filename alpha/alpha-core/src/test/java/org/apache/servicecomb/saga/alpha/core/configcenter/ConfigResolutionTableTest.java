@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core.configcenter;
+
+import static org.apache.servicecomb.saga.common.ConfigCenterType.Compensation;
+import static org.apache.servicecomb.saga.common.ConfigCenterType.GlobalTx;
+import static org.apache.servicecomb.saga.common.ConfigCenterType.GlobalTxFaultTolerant;
+import static org.apache.servicecomb.saga.common.TxleConstants.DISABLED;
+import static org.apache.servicecomb.saga.common.TxleConstants.ENABLED;
+import static org.apache.servicecomb.saga.common.TxleConstants.NO;
+import static org.apache.servicecomb.saga.common.TxleConstants.YES;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.servicecomb.saga.common.ConfigCenterType;
+import org.junit.Test;
+
+public class ConfigResolutionTableTest {
+
+  @Test
+  public void usesDefaultsWithoutGlobalConfig() {
+    ConfigResolutionTable table = ConfigResolutionTable.build(1, Collections.singletonList(config("instance", "category", YES, GlobalTx, DISABLED)));
+
+    assertThat(table.version(), is(1L));
+    assertThat(table.isEnabledConfig("instance", "category", GlobalTx), is(true));
+    assertThat(table.isEnabledConfig("instance", "category", GlobalTxFaultTolerant), is(false));
+  }
+
+  @Test
+  public void disablesAllIfGlobalConfigIsUnable() {
+    ConfigResolutionTable table = ConfigResolutionTable.build(1, Arrays.asList(
+        config(null, null, NO, GlobalTx, ENABLED),
+        config("instance", "category", YES, GlobalTx, ENABLED)));
+
+    assertThat(table.isEnabledConfig(null, null, GlobalTx), is(false));
+    assertThat(table.isEnabledConfig("instance", "category", GlobalTx), is(false));
+  }
+
+  @Test
+  public void specificConfigCoversInstanceDefaultAndGlobalConfig() {
+    ConfigResolutionTable table = ConfigResolutionTable.build(1, Arrays.asList(
+        config(null, null, YES, Compensation, ENABLED),
+        config("instance", null, YES, Compensation, DISABLED),
+        config("instance", "category", YES, Compensation, ENABLED),
+        config("instance", "unable", NO, Compensation, DISABLED)));
+
+    assertThat(table.isEnabledConfig("instance", "category", Compensation), is(true));
+    assertThat(table.isEnabledConfig("instance", "other", Compensation), is(false));
+    assertThat(table.isEnabledConfig("instance", null, Compensation), is(false));
+    // an unable config keeps the global value rather than the default of its instance.
+    assertThat(table.isEnabledConfig("instance", "unable", Compensation), is(true));
+    assertThat(table.isEnabledConfig("other", "category", Compensation), is(true));
+  }
+
+  private ConfigCenter config(String instanceId, String category, int ability, ConfigCenterType type, String value) {
+    return new ConfigCenter(null, instanceId, category, ConfigCenterStatus.Normal, ability, type, value, null);
+  }
+}
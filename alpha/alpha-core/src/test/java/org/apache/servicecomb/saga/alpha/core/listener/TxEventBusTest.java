@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.core.listener;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.servicecomb.saga.common.EventType.TxStartedEvent;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
+import org.junit.After;
+import org.junit.Test;
+
+public class TxEventBusTest {
+  // a small ring, so the publishers wrap it many times.
+  private final TxleMetrics txleMetrics = mock(TxleMetrics.class);
+  private final TxEventBus txEventBus = new TxEventBus(8, txleMetrics);
+
+  @After
+  public void tearDown() {
+    txEventBus.shutdown();
+  }
+
+  @Test
+  public void deliversEveryEventToEverySubscriberInOrderOfEachPublisher() throws InterruptedException {
+    List<TxEvent> fastEvents = new CopyOnWriteArrayList<>();
+    List<TxEvent> slowEvents = new CopyOnWriteArrayList<>();
+    txEventBus.subscribe("fast", 4, fastEvents::addAll);
+    txEventBus.subscribe("slow", 1, events -> {
+      sleep();
+      slowEvents.addAll(events);
+    });
+
+    int publishers = 3;
+    int eventsPerPublisher = 50;
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < publishers; i++) {
+      String globalTxId = "globalTx-" + i;
+      Thread thread = new Thread(() -> {
+        for (int j = 0; j < eventsPerPublisher; j++) {
+          // the full ring drops the event, publishing it again until it's taken.
+          while (!txEventBus.publish(event(globalTxId, String.valueOf(j)))) {
+            Thread.yield();
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    await().atMost(10, SECONDS).until(() -> slowEvents.size() == publishers * eventsPerPublisher);
+    assertThat(fastEvents.size(), is(publishers * eventsPerPublisher));
+    assertInOrderOfPublisher(fastEvents, publishers);
+    assertInOrderOfPublisher(slowEvents, publishers);
+  }
+
+  @Test
+  public void dropsEventsOnFullRingWithoutBlockingPublisher() {
+    CountDownLatch blocked = new CountDownLatch(1);
+    List<TxEvent> events = new CopyOnWriteArrayList<>();
+    txEventBus.subscribe("blocked", 1, batch -> {
+      try {
+        blocked.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      events.addAll(batch);
+    });
+
+    int published = 0;
+    for (int i = 0; i < 20; i++) {
+      if (txEventBus.publish(event("globalTx", String.valueOf(i)))) {
+        published++;
+      }
+    }
+    assertThat(published, is(8));
+    verify(txleMetrics, times(12)).markEventBusDropped();
+
+    blocked.countDown();
+    await().atMost(5, SECONDS).until(() -> events.size() == 8);
+    assertThat(events.get(7).localTxId(), is("7"));
+    assertThat(txEventBus.publish(event("globalTx", "20")), is(true));
+    await().atMost(5, SECONDS).until(() -> events.size() == 9);
+  }
+
+  @Test
+  public void idleSubscriberIsSignalledByPublisher() {
+    List<TxEvent> events = new CopyOnWriteArrayList<>();
+    txEventBus.subscribe("idle", 4, events::addAll);
+    for (int i = 0; i < 3; i++) {
+      // let the subscriber park before every event.
+      sleep();
+      txEventBus.publish(event("globalTx", String.valueOf(i)));
+      int expected = i + 1;
+      await().atMost(5, SECONDS).until(() -> events.size() == expected);
+    }
+  }
+
+  private void assertInOrderOfPublisher(List<TxEvent> events, int publishers) {
+    int[] nextLocalTxIds = new int[publishers];
+    for (TxEvent event : events) {
+      int publisher = Integer.parseInt(event.globalTxId().substring("globalTx-".length()));
+      assertThat(event.localTxId(), is(String.valueOf(nextLocalTxIds[publisher]++)));
+    }
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static TxEvent event(String globalTxId, String localTxId) {
+    return new TxEvent(uniquify("serviceName"), "instance", globalTxId, localTxId, null, TxStartedEvent.name(), "compensate", "", new byte[0]);
+  }
+}
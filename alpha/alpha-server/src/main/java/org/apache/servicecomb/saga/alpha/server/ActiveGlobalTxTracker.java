@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import org.apache.servicecomb.saga.alpha.core.AdditionalEventType;
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.servicecomb.saga.common.EventType.SagaEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.SagaStartedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxAbortedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxCompensatedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxStartedEvent;
+
+/**
+ * Maintains the ActiveGlobalTx table, one row per unfinished global transaction, in the same transaction as the events.
+ *
+ * The row is created by the first event of a global transaction and deleted by its SagaEndedEvent, so the hot queries of
+ * the scanner drive from this small table instead of excluding the finished global transactions from the whole history
+ * of TxEvent. The events of a batch are merged per global transaction, so a batch costs one statement per global
+ * transaction in common, the row is inserted only if the update found nothing. If another node inserted the row meanwhile,
+ * the insert fails on the primary key, it's rolled back to a savepoint and the row is updated instead.
+ *
+ * @since 2019/10/18
+ */
+class ActiveGlobalTxTracker {
+    static final String RUNNING = "RUNNING";
+    static final String PAUSED = "PAUSED";
+    static final String ABORTED = "ABORTED";
+
+    // an aborted global transaction is never running again, even if it's continued.
+    private static final String UPDATE_SQL = "UPDATE ActiveGlobalTx SET status = CASE WHEN status = 'ABORTED' THEN status ELSE COALESCE(?, status) END, "
+            + "expiryTime = CASE WHEN ? < expiryTime THEN ? ELSE expiryTime END, startedCount = startedCount + ?, endedCount = endedCount + ?, "
+            + "abortedCount = abortedCount + ?, compensatedCount = compensatedCount + ?, updateTime = ? WHERE globalTxId = ?";
+    // The events were inserted by current transaction already, so the first event id of the global transaction is known.
+    // It's never inserted again after the global transaction ended, e.g. an event which arrives after SagaEndedEvent.
+    private static final String INSERT_SQL = "INSERT INTO ActiveGlobalTx (globalTxId, status, expiryTime, minEventId, startedCount, endedCount, abortedCount, "
+            + "compensatedCount, creationTime, updateTime) SELECT ?, ?, ?, MIN(t.surrogateId), ?, ?, ?, ?, ?, ? FROM TxEvent t WHERE t.globalTxId = ? "
+            + "AND NOT EXISTS (SELECT 1 FROM TxEvent t1 WHERE t1.globalTxId = ? AND t1.type = 'SagaEndedEvent') HAVING MIN(t.surrogateId) IS NOT NULL";
+    private static final String DELETE_SQL = "DELETE FROM ActiveGlobalTx WHERE globalTxId = ?";
+
+    /**
+     * Applies the events, which have been inserted by the connection, to the ActiveGlobalTx table before committing.
+     */
+    void apply(Connection connection, List<TxEvent> events) throws SQLException {
+        Map<String, Delta> deltas = new LinkedHashMap<>();
+        for (TxEvent event : events) {
+            deltas.computeIfAbsent(event.globalTxId(), Delta::new).add(event);
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (Delta delta : deltas.values()) {
+            if (delta.ended) {
+                delete(connection, delta.globalTxId);
+            } else if (update(connection, delta, now) == 0) {
+                insertOrUpdate(connection, delta, now);
+            }
+        }
+    }
+
+    private void insertOrUpdate(Connection connection, Delta delta, Timestamp now) throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            insert(connection, delta, now);
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            if (!SqlErrors.isDuplicateKey(e)) {
+                throw e;
+            }
+            // the insert failed once the concurrent one was committed, so the row is there, and PostgreSQL needs the savepoint to go on.
+            connection.rollback(savepoint);
+            update(connection, delta, now);
+        }
+    }
+
+    private int update(Connection connection, Delta delta, Timestamp now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+            if (delta.status == null) {
+                statement.setNull(1, Types.VARCHAR);
+            } else {
+                statement.setString(1, delta.status);
+            }
+            Timestamp expiryTime = new Timestamp(delta.expiryTime);
+            statement.setTimestamp(2, expiryTime);
+            statement.setTimestamp(3, expiryTime);
+            statement.setInt(4, delta.startedCount);
+            statement.setInt(5, delta.endedCount);
+            statement.setInt(6, delta.abortedCount);
+            statement.setInt(7, delta.compensatedCount);
+            statement.setTimestamp(8, now);
+            statement.setString(9, delta.globalTxId);
+            return statement.executeUpdate();
+        }
+    }
+
+    private void insert(Connection connection, Delta delta, Timestamp now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            statement.setString(1, delta.globalTxId);
+            statement.setString(2, delta.status == null ? RUNNING : delta.status);
+            statement.setTimestamp(3, new Timestamp(delta.expiryTime));
+            statement.setInt(4, delta.startedCount);
+            statement.setInt(5, delta.endedCount);
+            statement.setInt(6, delta.abortedCount);
+            statement.setInt(7, delta.compensatedCount);
+            statement.setTimestamp(8, now);
+            statement.setTimestamp(9, now);
+            statement.setString(10, delta.globalTxId);
+            statement.setString(11, delta.globalTxId);
+            statement.executeUpdate();
+        }
+    }
+
+    private void delete(Connection connection, String globalTxId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
+            statement.setString(1, globalTxId);
+            statement.executeUpdate();
+        }
+    }
+
+    // The changes of a global transaction by the events of a batch.
+    private static final class Delta {
+        private final String globalTxId;
+        // null means no change.
+        private String status;
+        private long expiryTime = TxEvent.MAX_TIMESTAMP;
+        private int startedCount;
+        private int endedCount;
+        private int abortedCount;
+        private int compensatedCount;
+        private boolean ended;
+
+        private Delta(String globalTxId) {
+            this.globalTxId = globalTxId;
+        }
+
+        private void add(TxEvent event) {
+            String type = event.type();
+            if (SagaStartedEvent.name().equals(type) || TxStartedEvent.name().equals(type)) {
+                if (TxStartedEvent.name().equals(type)) {
+                    startedCount++;
+                }
+                if (event.expiryTime() != null) {
+                    expiryTime = Math.min(expiryTime, event.expiryTime().getTime());
+                }
+            } else if (TxEndedEvent.name().equals(type)) {
+                endedCount++;
+            } else if (TxAbortedEvent.name().equals(type)) {
+                abortedCount++;
+                status = ABORTED;
+            } else if (TxCompensatedEvent.name().equals(type)) {
+                compensatedCount++;
+            } else if (AdditionalEventType.SagaPausedEvent.name().equals(type)) {
+                setStatus(PAUSED);
+            } else if (AdditionalEventType.SagaContinuedEvent.name().equals(type) || AdditionalEventType.SagaAutoContinuedEvent.name().equals(type)) {
+                setStatus(RUNNING);
+            } else if (SagaEndedEvent.name().equals(type)) {
+                ended = true;
+            }
+        }
+
+        private void setStatus(String status) {
+            if (!ABORTED.equals(this.status)) {
+                this.status = status;
+            }
+        }
+    }
+}
@@ -19,12 +19,14 @@ import brave.Tracing;
 import org.apache.servicecomb.saga.alpha.core.*;
 import org.apache.servicecomb.saga.alpha.core.accidenthandling.IAccidentHandlingService;
 import org.apache.servicecomb.saga.alpha.core.cache.ITxleCache;
+import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenterStatus;
 import org.apache.servicecomb.saga.alpha.core.configcenter.DegradationConfigAspect;
 import org.apache.servicecomb.saga.alpha.core.configcenter.IConfigCenterService;
 import org.apache.servicecomb.saga.alpha.core.datadictionary.IDataDictionaryService;
 import org.apache.servicecomb.saga.alpha.core.datatransfer.IDataTransferService;
-import org.apache.servicecomb.saga.alpha.core.listener.GlobalTxListener;
+import org.apache.servicecomb.saga.alpha.core.listener.TxEventBus;
 import org.apache.servicecomb.saga.alpha.core.listener.TxEventAfterPersistingListener;
+import org.apache.servicecomb.saga.alpha.server.accidenthandling.AccidentDeliveryEngine;
 import org.apache.servicecomb.saga.alpha.server.accidenthandling.AccidentHandlingEntityRepository;
 import org.apache.servicecomb.saga.alpha.server.accidenthandling.AccidentHandlingService;
 import org.apache.servicecomb.saga.alpha.server.cache.TxleCache;
@@ -32,24 +34,31 @@ import org.apache.servicecomb.saga.alpha.server.configcenter.ConfigCenterEntityR
 import org.apache.servicecomb.saga.alpha.server.configcenter.DBDegradationConfigService;
 import org.apache.servicecomb.saga.alpha.server.datadictionary.DataDictionaryEntityRepository;
 import org.apache.servicecomb.saga.alpha.server.datadictionary.DataDictionaryService;
+import org.apache.servicecomb.saga.alpha.server.datatransfer.ArchiveBackend;
 import org.apache.servicecomb.saga.alpha.server.datatransfer.DataTransferRepository;
 import org.apache.servicecomb.saga.alpha.server.datatransfer.DataTransferService;
+import org.apache.servicecomb.saga.alpha.server.datatransfer.HistoryTableArchiveBackend;
+import org.apache.servicecomb.saga.alpha.server.datatransfer.SegmentFileArchiveBackend;
+import org.apache.servicecomb.saga.alpha.server.http.OutboundHttpClient;
 import org.apache.servicecomb.saga.alpha.server.kafka.KafkaProducerConfig;
 import org.apache.servicecomb.saga.alpha.server.tracing.TracingConfiguration;
 import org.apache.servicecomb.saga.common.CommonConfig;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.apache.servicecomb.saga.common.ConfigCenterType;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
-import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.Map;
 import java.util.concurrent.*;
 
@@ -60,10 +69,14 @@ import java.util.concurrent.*;
 class AlphaConfig {
   private final BlockingQueue<Runnable> pendingCompensations = new LinkedBlockingQueue<>();
   private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+  private ExecutorService streamEventExecutor;
 
   @Value("${alpha.compensation.retry.delay:3000}")
   private int delay;
 
+  @Value("${server.port:8090}")
+  private int serverPort;
+
   @Value("${txle.prometheus.metrics.port:-1}")
   private String promMetricsPort;
 
@@ -73,21 +86,144 @@ class AlphaConfig {
   @Value("${txle.accident.platform.retry.retries:3}")
   private int retries;
 
+  // the first backoff in seconds, it's doubled per retry.
   @Value("${txle.accident.platform.retry.interval:1}")
   private int interval;
 
+  @Value("${txle.accident.platform.retry.max-backoff-ms:300000}")
+  private long accidentMaxBackoffMillis;
+
+  @Value("${txle.accident.platform.delivery.batch-size:100}")
+  private int accidentBatchSize;
+
+  @Value("${txle.accident.platform.delivery.capacity:100000}")
+  private int accidentCapacity;
+
+  @Value("${txle.accident.platform.delivery.lease-ms:60000}")
+  private long accidentLeaseMillis;
+
+  @Value("${txle.accident.platform.delivery.poll-ms:1000}")
+  private long accidentPollMillis;
+
+  @Value("${txle.accident.platform.circuit.failure-threshold:5}")
+  private int accidentCircuitFailureThreshold;
+
+  @Value("${txle.accident.platform.circuit.open-ms:30000}")
+  private long accidentCircuitOpenMillis;
+
+  // the shared pool of outbound HTTP connections, for the calls to other alpha nodes and to the accident platform.
+  @Value("${alpha.http.max-idle-connections:20}")
+  private int httpMaxIdleConnections;
+
+  @Value("${alpha.http.keep-alive-ms:300000}")
+  private long httpKeepAliveMillis;
+
+  // max-requests bounds the asynchronous calls only, max-requests-per-host bounds the blocking calls of a destination too.
+  @Value("${alpha.http.max-requests:256}")
+  private int httpMaxRequests;
+
+  @Value("${alpha.http.max-requests-per-host:32}")
+  private int httpMaxRequestsPerHost;
+
+  @Value("${alpha.http.connect-timeout-ms:3000}")
+  private long httpConnectTimeoutMillis;
+
+  @Value("${alpha.http.read-timeout-ms:5000}")
+  private long httpReadTimeoutMillis;
+
   @Value("${alpha.event.pollingInterval:500}")
   private int eventPollingInterval;
 
-  @Bean
-  public RestTemplate restTemplate(@Qualifier("simpleClientHttpRequestFactory") ClientHttpRequestFactory clientHttpRequestFactory) {
-    return new RestTemplate(clientHttpRequestFactory);
+  @Value("${alpha.tx-state.idle-expire:1800000}")
+  private long txStateIdleExpireMillis;
+
+  @Value("${alpha.event.group-commit.batch-size:128}")
+  private int groupCommitBatchSize;
+
+  @Value("${alpha.event.group-commit.linger-ms:2}")
+  private int groupCommitLingerMillis;
+
+  @Value("${alpha.event.group-commit.capacity:4096}")
+  private int groupCommitCapacity;
+
+  @Value("${alpha.timeout.wheel.tick-ms:10}")
+  private long timeoutWheelTickMillis;
+
+  @Value("${alpha.timeout.wheel.size:512}")
+  private int timeoutWheelSize;
+
+  @Value("${alpha.compensation.threads:16}")
+  private int compensationThreads;
+
+  @Value("${alpha.compensation.window:8}")
+  private int compensationWindow;
+
+  @Value("${alpha.compensation.lease-ms:60000}")
+  private long compensationLeaseMillis;
+
+  // a sent command whose compensation is not done in time is sent again.
+  @Value("${alpha.compensation.result-timeout-ms:300000}")
+  private long compensationResultTimeoutMillis;
+
+  // a failed compensation is sent again after a backoff which doubles per attempt, it's reported as an accident once the attempts are exhausted.
+  @Value("${alpha.compensation.max-attempts:3}")
+  private int compensationMaxAttempts;
+
+  @Value("${alpha.compensation.retry-backoff-ms:10000}")
+  private long compensationRetryBackoffMillis;
+
+  @Value("${alpha.scanner.shards:16}")
+  private int scannerShards;
+
+  @Value("${alpha.scanner.rebalance-ms:5000}")
+  private long scannerRebalanceMillis;
+
+  @Value("${alpha.event-bus.capacity:65536}")
+  private int eventBusCapacity;
+
+  @Value("${alpha.event-bus.batch-size:256}")
+  private int eventBusBatchSize;
+
+  @Value("${alpha.export.chunk-size:1000}")
+  private int exportChunkSize;
+
+  @Value("${alpha.archive.workers:2}")
+  private int archiveWorkers;
+
+  @Value("${alpha.archive.rows-per-second:5000}")
+  private int archiveRowsPerSecond;
+
+  @Value("${alpha.archive.chunk-budget-ms:500}")
+  private long archiveChunkBudgetMillis;
+
+  @Value("${alpha.archive.min-chunk-size:100}")
+  private int archiveMinChunkSize;
+
+  @Value("${alpha.archive.max-chunk-size:1000}")
+  private int archiveMaxChunkSize;
+
+  // table: history tables in the database, segment: compressed segment files in the local directory
+  @Value("${alpha.archive.backend:table}")
+  private String archiveBackend;
+
+  @Value("${alpha.archive.segment-dir:./archive}")
+  private String archiveSegmentDirectory;
+
+  @Value("${alpha.archive.segment-max-bytes:268435456}")
+  private long archiveSegmentMaxBytes;
+
+  @Value("${alpha.admission.refresh-ms:10000}")
+  private long admissionRefreshMillis;
+
+  @Bean(destroyMethod = "shutdown")
+  public OutboundHttpClient outboundHttpClient(TxleMetrics txleMetrics) {
+    return new OutboundHttpClient(txleMetrics, httpMaxIdleConnections, httpKeepAliveMillis, httpMaxRequests, httpMaxRequestsPerHost,
+        httpConnectTimeoutMillis, httpReadTimeoutMillis);
   }
 
   @Bean
-  public ClientHttpRequestFactory simpleClientHttpRequestFactory() {
-    // setReadTimeout(5000); setConnectTimeout(15000);
-    return new SimpleClientHttpRequestFactory();
+  public RestTemplate restTemplate(OutboundHttpClient outboundHttpClient) {
+    return new RestTemplate(outboundHttpClient.requestFactory());
   }
 
   @Bean
@@ -101,13 +237,72 @@ class AlphaConfig {
   }
 
   @Bean
-  TxEventRepository springTxEventRepository(TxEventEnvelopeRepository eventRepo) {
-    return new SpringTxEventRepository(eventRepo);
+  GlobalTxStateRegistry globalTxStateRegistry() {
+    return new GlobalTxStateRegistry(txStateIdleExpireMillis);
+  }
+
+  @Bean
+  TxTimeoutDetector txTimeoutDetector(TxTimeoutRepository timeoutRepository, TxEventEnvelopeRepository eventRepo) {
+    TxTimeoutDetector txTimeoutDetector = new TxTimeoutDetector(timeoutRepository, eventRepo::findByGlobalTxId, timeoutWheelTickMillis, timeoutWheelSize);
+    txTimeoutDetector.start(() -> eventRepo.selectUnendedTxEvents(0L));
+    return txTimeoutDetector;
+  }
+
+  @Bean
+  EventScannerShards eventScannerShards(TxleConsulClient txleConsulClient) {
+    return new EventScannerShards(txleConsulClient, scannerShards, scannerRebalanceMillis);
   }
 
   @Bean
-  CommandRepository springCommandRepository(TxEventEnvelopeRepository eventRepo, CommandEntityRepository commandRepository) {
-    return new SpringCommandRepository(eventRepo, commandRepository);
+  CompensationDispatcher compensationDispatcher(Map<String, Map<String, OmegaCallback>> callbacks) {
+    // without PushBackOmegaCallback, the failed commands are given back to the scanner.
+    return new CompensationDispatcher(new CompositeOmegaCallback(callbacks), compensationThreads, compensationWindow);
+  }
+
+  @Bean
+  TxEventWriter txEventWriter(DataSource dataSource) {
+    return new TxEventWriter(dataSource, new ActiveGlobalTxTracker(), new GlobalTxSummaryUpdater());
+  }
+
+  // neither the committer nor its flush thread is created if group commit is disabled, the events are written one by one.
+  @Bean
+  @ConditionalOnProperty(value = "alpha.event.group-commit.enabled", havingValue = "true", matchIfMissing = true)
+  TxEventGroupCommitter txEventGroupCommitter(TxEventWriter txEventWriter, TxleMetrics txleMetrics) {
+    return new TxEventGroupCommitter(txEventWriter, txleMetrics, groupCommitBatchSize, groupCommitLingerMillis, groupCommitCapacity);
+  }
+
+  @Bean
+  TxEventRepository springTxEventRepository(TxEventEnvelopeRepository eventRepo, TxEventWriter txEventWriter,
+      ObjectProvider<TxEventGroupCommitter> txEventGroupCommitter) {
+    return new SpringTxEventRepository(eventRepo, txEventWriter, txEventGroupCommitter.getIfAvailable());
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  TxPauseRegistry txPauseRegistry(TxEventRepository springTxEventRepository, IConfigCenterService dbDegradationConfigService) throws UnknownHostException {
+    // the same host and port as the peers know current alpha by.
+    TxPauseRegistry txPauseRegistry = new TxPauseRegistry(springTxEventRepository, InetAddress.getLocalHost().getHostName() + ":" + serverPort);
+    txPauseRegistry.load(() -> !dbDegradationConfigService.selectConfigCenterByType(null, null, ConfigCenterStatus.Normal.toInteger(),
+        ConfigCenterType.PauseGlobalTx.toInteger()).isEmpty());
+    return txPauseRegistry;
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  TxEventAdmissionController txEventAdmissionController(IConfigCenterService dbDegradationConfigService, TxleMetrics txleMetrics) {
+    TxEventAdmissionController txEventAdmissionController = new TxEventAdmissionController(dbDegradationConfigService::selectConfigCenterList,
+        txleMetrics);
+    txEventAdmissionController.start(admissionRefreshMillis);
+    return txEventAdmissionController;
+  }
+
+  @Bean
+  CommandClaimer commandClaimer(DataSource dataSource) {
+    return new CommandClaimer(dataSource, compensationLeaseMillis, compensationResultTimeoutMillis, compensationMaxAttempts, compensationRetryBackoffMillis);
+  }
+
+  @Bean
+  CommandRepository springCommandRepository(TxEventEnvelopeRepository eventRepo, CommandEntityRepository commandRepository, CommandClaimer commandClaimer,
+      CompensationDispatcher compensationDispatcher) {
+    return new SpringCommandRepository(eventRepo, commandRepository, commandClaimer, compensationDispatcher);
   }
 
   @Bean
@@ -141,8 +336,17 @@ class AlphaConfig {
   }
 
   @Bean
-  IAccidentHandlingService accidentHandlingRepository(AccidentHandlingEntityRepository accidentHandlingEntityRepository, RestTemplate restTemplate) {
-    return new AccidentHandlingService(accidentHandlingEntityRepository, accidentPlatformAddress, retries, interval, restTemplate);
+  AccidentDeliveryEngine accidentDeliveryEngine(DataSource dataSource, AccidentHandlingEntityRepository accidentHandlingEntityRepository,
+      RestTemplate restTemplate, TxleMetrics txleMetrics) {
+    return new AccidentDeliveryEngine(dataSource, accidentHandlingEntityRepository, restTemplate, accidentPlatformAddress, txleMetrics, retries,
+        TimeUnit.SECONDS.toMillis(interval), accidentMaxBackoffMillis, accidentBatchSize, accidentCapacity, accidentCircuitFailureThreshold,
+        accidentCircuitOpenMillis, accidentLeaseMillis, accidentPollMillis);
+  }
+
+  @Bean
+  IAccidentHandlingService accidentHandlingRepository(AccidentHandlingEntityRepository accidentHandlingEntityRepository,
+      AccidentDeliveryEngine accidentDeliveryEngine) {
+    return new AccidentHandlingService(accidentHandlingEntityRepository, accidentDeliveryEngine);
   }
 
   @Bean
@@ -151,22 +355,37 @@ class AlphaConfig {
   }
 
   @Bean
-  IDataTransferService dataTransferService(DataTransferRepository dataTransferRepository, TxEventRepository txEventRepository) {
-    return new DataTransferService(dataTransferRepository, txEventRepository);
+  ArchiveBackend archiveBackend(DataTransferRepository dataTransferRepository) {
+    if ("segment".equalsIgnoreCase(archiveBackend)) {
+      return new SegmentFileArchiveBackend(dataTransferRepository, archiveSegmentDirectory, archiveSegmentMaxBytes);
+    }
+    return new HistoryTableArchiveBackend(dataTransferRepository);
   }
 
   @Bean
-  GlobalTxListener globalTxListener() {
-    return new GlobalTxListener();
+  IDataTransferService dataTransferService(DataTransferRepository dataTransferRepository, TxEventRepository txEventRepository,
+      ArchiveBackend archiveBackend, TxleMetrics txleMetrics) {
+    return new DataTransferService(dataTransferRepository, txEventRepository, archiveBackend, txleMetrics, archiveWorkers, archiveRowsPerSecond,
+        archiveChunkBudgetMillis, archiveMinChunkSize, archiveMaxChunkSize);
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  TxEventBus txEventBus(TxleMetrics txleMetrics) {
+    return new TxEventBus(eventBusCapacity, txleMetrics);
   }
 
   @Bean
-  TxEventAfterPersistingListener txEventAfterPersistingListener(GlobalTxListener globalTxListener) {
+  TxEventAfterPersistingListener txEventAfterPersistingListener(TxEventBus txEventBus) {
     TxEventAfterPersistingListener txEventAfterPersistingListener = new TxEventAfterPersistingListener();
-    globalTxListener.addObserver(txEventAfterPersistingListener);
+    txEventBus.subscribe("after-persisting", eventBusBatchSize, txEventAfterPersistingListener);
     return txEventAfterPersistingListener;
   }
 
+  @Bean
+  NdjsonExporter ndjsonExporter(DataSource dataSource) {
+    return new NdjsonExporter(dataSource, exportChunkSize);
+  }
+
   @Bean
   TxConsistentService txConsistentService(
           GrpcServerConfig serverConfig,
@@ -180,22 +399,32 @@ class AlphaConfig {
           Tracing tracing,
           IAccidentHandlingService accidentHandlingService,
           ITxleCache txleCache,
-          TxleConsulClient txleConsulClient) {
+          TxleConsulClient txleConsulClient,
+          TxTimeoutDetector txTimeoutDetector,
+          CompensationDispatcher compensationDispatcher,
+          EventScannerShards eventScannerShards,
+          TxPauseRegistry txPauseRegistry,
+          TxEventAdmissionController txEventAdmissionController) {
 
-    new EventScanner(scheduler, eventRepository, commandRepository, timeoutRepository, omegaCallback, eventPollingInterval, txleCache, txleConsulClient).run();
+    new EventScanner(scheduler, eventRepository, commandRepository, timeoutRepository, omegaCallback, eventPollingInterval, txleCache, txleConsulClient, txTimeoutDetector,
+        compensationDispatcher, eventScannerShards).run();
 
     TxConsistentService consistentService = new TxConsistentService(eventRepository, commandRepository, timeoutRepository);
 
-    ServerStartable starTable = buildGrpc(serverConfig, consistentService, omegaCallbacks, dbDegradationConfigService, tracing, accidentHandlingService);
+    ServerStartable starTable = buildGrpc(serverConfig, consistentService, omegaCallbacks, dbDegradationConfigService, tracing, accidentHandlingService, txPauseRegistry,
+        txEventAdmissionController);
     new Thread(starTable::start).start();
 
     return consistentService;
   }
 
   private ServerStartable buildGrpc(GrpcServerConfig serverConfig, TxConsistentService txConsistentService,
-                                    Map<String, Map<String, OmegaCallback>> omegaCallbacks, IConfigCenterService dbDegradationConfigService, Tracing tracing, IAccidentHandlingService accidentHandlingService) {
+                                    Map<String, Map<String, OmegaCallback>> omegaCallbacks, IConfigCenterService dbDegradationConfigService, Tracing tracing, IAccidentHandlingService accidentHandlingService,
+                                    TxPauseRegistry txPauseRegistry, TxEventAdmissionController txEventAdmissionController) {
+    streamEventExecutor = Executors.newFixedThreadPool(serverConfig.getStreamThreads());
     return new GrpcStartable(serverConfig, tracing,
-            new GrpcTxEventEndpointImpl(txConsistentService, omegaCallbacks, dbDegradationConfigService, accidentHandlingService));
+            new GrpcTxEventEndpointImpl(txConsistentService, omegaCallbacks, dbDegradationConfigService, accidentHandlingService, streamEventExecutor, txPauseRegistry,
+                txEventAdmissionController));
   }
 
   @Bean
@@ -221,6 +450,9 @@ class AlphaConfig {
   @PreDestroy
   void shutdown() {
     scheduler.shutdownNow();
+    if (streamEventExecutor != null) {
+      streamEventExecutor.shutdown();
+    }
   }
 
 }
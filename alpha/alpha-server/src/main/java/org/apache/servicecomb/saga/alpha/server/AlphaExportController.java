@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.sql.SQLException;
+import java.util.Date;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * The bulk exports as NDJSON, they are streamed to the response as they are read, so they are not limited by memory like
+ * '/events' and the lists of UI. A failure after the first chunk aborts the response, the client sees a truncated body.
+ *
+ * @since 2019/10/18
+ */
+@Controller
+@RequestMapping("/export")
+class AlphaExportController {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final String NDJSON = "application/x-ndjson;charset=UTF-8";
+  private static final String DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+  private final NdjsonExporter exporter;
+
+  AlphaExportController(NdjsonExporter exporter) {
+    this.exporter = exporter;
+  }
+
+  @GetMapping("/globalTransactions")
+  void globalTransactions(
+      @RequestParam(required = false) @DateTimeFormat(pattern = DATE_PATTERN) Date startTime,
+      @RequestParam(required = false) @DateTimeFormat(pattern = DATE_PATTERN) Date endTime,
+      @RequestParam(required = false) String serviceName, @RequestParam(required = false) Integer status,
+      HttpServletResponse response) throws IOException {
+    stream(response, "global transactions", out -> exporter.exportGlobalTransactions(startTime, endTime, serviceName, status, out));
+  }
+
+  @GetMapping("/subTransactions")
+  void subTransactions(
+      @RequestParam(required = false) @DateTimeFormat(pattern = DATE_PATTERN) Date startTime,
+      @RequestParam(required = false) @DateTimeFormat(pattern = DATE_PATTERN) Date endTime,
+      @RequestParam(required = false) String serviceName, @RequestParam(required = false) Integer status,
+      HttpServletResponse response) throws IOException {
+    stream(response, "sub-transactions", out -> exporter.exportSubTransactions(startTime, endTime, serviceName, status, out));
+  }
+
+  @GetMapping("/accidents")
+  void accidents(
+      @RequestParam(required = false) @DateTimeFormat(pattern = DATE_PATTERN) Date startTime,
+      @RequestParam(required = false) @DateTimeFormat(pattern = DATE_PATTERN) Date endTime,
+      @RequestParam(required = false) String serviceName, @RequestParam(required = false) Integer status,
+      HttpServletResponse response) throws IOException {
+    stream(response, "accidents", out -> exporter.exportAccidents(startTime, endTime, serviceName, status, out));
+  }
+
+  @GetMapping("/events")
+  void events(
+      @RequestParam(required = false) @DateTimeFormat(pattern = DATE_PATTERN) Date startTime,
+      @RequestParam(required = false) @DateTimeFormat(pattern = DATE_PATTERN) Date endTime,
+      @RequestParam(required = false) String serviceName, @RequestParam(required = false) String type,
+      HttpServletResponse response) throws IOException {
+    stream(response, "events", out -> exporter.exportEvents(startTime, endTime, serviceName, type, out));
+  }
+
+  // Writes to the response synchronously, so a long export is not limited by the timeout of async requests.
+  private void stream(HttpServletResponse response, String name, Export export) throws IOException {
+    long a = System.currentTimeMillis();
+    response.setContentType(NDJSON);
+    try {
+      export.to(response.getOutputStream());
+    } catch (SQLException e) {
+      LOG.error("Failed to export {}.", name, e);
+      if (!response.isCommitted()) {
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Failed to export " + name + ".");
+        return;
+      }
+      throw new IOException("Failed to export " + name + ".", e);
+    }
+    LOG.info("Exported {} in {} milliseconds.", name, System.currentTimeMillis() - a);
+  }
+
+  private interface Export {
+    void to(OutputStream out) throws IOException, SQLException;
+  }
+}
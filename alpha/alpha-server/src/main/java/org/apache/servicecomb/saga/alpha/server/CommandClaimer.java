@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import org.apache.servicecomb.saga.alpha.core.Command;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Claims compensation commands for a worker atomically, so that several workers, in one alpha or across the cluster,
+ * could drain the Command table in parallel without sending a command twice.
+ *
+ * A claimed command is PENDING with the worker id and a lease. After the command was sent, the lease is extended to the
+ * deadline of its result, and the PENDING commands whose lease expired are claimable again, either they were claimed by
+ * the workers which crashed before sending them, or their compensations were never done, e.g. the omega crashed or the
+ * result was lost, so they are sent again. A failed compensation is sent again as well, after a backoff which doubles per
+ * attempt, until it has been attempted for the max times. On MySQL 8 and PostgreSQL 9.5 or higher, the claimable rows are locked by 'FOR UPDATE SKIP LOCKED', so
+ * concurrent workers get different rows without waiting for each other. On the other databases, the rows are claimed
+ * by a conditional update and the ones which were updated by current worker are returned.
+ *
+ * @since 2019/10/18
+ */
+class CommandClaimer {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String COLUMNS = "surrogateId, eventId, serviceName, instanceId, globalTxId, localTxId, parentTxId, compensationMethod, category, payloads";
+    private static final String CLAIMABLE = "(status = 'NEW' OR (status = 'PENDING' AND leaseExpiry IS NOT NULL AND leaseExpiry < ?))";
+    private static final String SKIP_LOCKED_SELECT_SQL = "SELECT " + COLUMNS + " FROM Command WHERE " + CLAIMABLE + " ORDER BY surrogateId LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String CANDIDATE_SELECT_SQL = "SELECT surrogateId FROM Command WHERE " + CLAIMABLE + " ORDER BY surrogateId";
+    private static final String CLAIM_SUB_TX_SQL = "UPDATE Command SET status = 'PENDING', workerId = ?, leaseExpiry = ? WHERE globalTxId = ? AND localTxId = ? AND status = 'NEW'";
+    private static final String AWAIT_RESULT_SQL = "UPDATE Command SET leaseExpiry = ? WHERE globalTxId = ? AND localTxId = ? AND status = 'PENDING'";
+    private static final String ATTEMPTS_SQL = "SELECT attempts FROM Command WHERE globalTxId = ? AND localTxId = ? AND status = 'PENDING'";
+    private static final String RETRY_SQL = "UPDATE Command SET attempts = ?, leaseExpiry = ? WHERE globalTxId = ? AND localTxId = ? AND status = 'PENDING' AND attempts = ?";
+    // bounds the backoff to 1024 times of the first one.
+    private static final int MAX_BACKOFF_SHIFT = 10;
+
+    private final DataSource dataSource;
+    private final long leaseMillis;
+    private final long resultTimeoutMillis;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    // null means it's not detected yet.
+    private volatile Boolean skipLockedSupported;
+
+    CommandClaimer(DataSource dataSource, long leaseMillis, long resultTimeoutMillis) {
+        this(dataSource, leaseMillis, resultTimeoutMillis, 3, 10000);
+    }
+
+    CommandClaimer(DataSource dataSource, long leaseMillis, long resultTimeoutMillis, int maxAttempts, long retryBackoffMillis) {
+        this.dataSource = dataSource;
+        this.leaseMillis = leaseMillis;
+        this.resultTimeoutMillis = resultTimeoutMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    /**
+     * @return the claimed commands, one per sub-transaction, because all commands of a sub-transaction are done together.
+     */
+    List<Command> claim(String workerId, int limit) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            long now = System.currentTimeMillis();
+            List<Command> commands = isSkipLockedSupported(connection)
+                    ? claimBySkipLocked(connection, workerId, limit, now)
+                    : claimByConditionalUpdate(connection, workerId, limit, now);
+            return distinctSubTx(commands);
+        }
+    }
+
+    /**
+     * Claims the NEW commands of a sub-transaction, e.g. once they are created.
+     */
+    boolean claim(String workerId, String globalTxId, String localTxId) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(CLAIM_SUB_TX_SQL)) {
+            statement.setString(1, workerId);
+            statement.setTimestamp(2, new Timestamp(System.currentTimeMillis() + leaseMillis));
+            statement.setString(3, globalTxId);
+            statement.setString(4, localTxId);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * The command was sent, so it's not claimable until the deadline of its result, it's DONE once it's compensated.
+     */
+    void awaitResult(String globalTxId, String localTxId) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(AWAIT_RESULT_SQL)) {
+            statement.setTimestamp(1, new Timestamp(System.currentTimeMillis() + resultTimeoutMillis));
+            statement.setString(2, globalTxId);
+            statement.setString(3, localTxId);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * The compensation failed, so the command stays PENDING and it's claimable again once the backoff of current attempt expires.
+     *
+     * @return false if it has been attempted for the max times, or it's not PENDING any more, then it's never sent again.
+     */
+    boolean retryLater(String globalTxId, String localTxId) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            int attempts;
+            try (PreparedStatement statement = connection.prepareStatement(ATTEMPTS_SQL)) {
+                statement.setString(1, globalTxId);
+                statement.setString(2, localTxId);
+                statement.setMaxRows(1);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    attempts = resultSet.getInt(1) + 1;
+                }
+            }
+            if (attempts >= maxAttempts) {
+                return false;
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(RETRY_SQL)) {
+                long backoffMillis = retryBackoffMillis << Math.min(attempts - 1, MAX_BACKOFF_SHIFT);
+                statement.setInt(1, attempts);
+                statement.setTimestamp(2, new Timestamp(System.currentTimeMillis() + backoffMillis));
+                statement.setString(3, globalTxId);
+                statement.setString(4, localTxId);
+                statement.setInt(5, attempts - 1);
+                return statement.executeUpdate() > 0;
+            }
+        }
+    }
+
+    private List<Command> claimBySkipLocked(Connection connection, String workerId, int limit, long now) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            List<Command> commands = new ArrayList<>();
+            List<Long> ids = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(SKIP_LOCKED_SELECT_SQL)) {
+                statement.setTimestamp(1, new Timestamp(now));
+                statement.setInt(2, limit);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(1));
+                        commands.add(toCommand(resultSet));
+                    }
+                }
+            }
+            if (!ids.isEmpty()) {
+                updateToPending(connection, workerId, now, ids, false);
+            }
+            connection.commit();
+            return commands;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private List<Command> claimByConditionalUpdate(Connection connection, String workerId, int limit, long now) throws SQLException {
+        List<Long> candidateIds = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(CANDIDATE_SELECT_SQL)) {
+            statement.setTimestamp(1, new Timestamp(now));
+            statement.setMaxRows(limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    candidateIds.add(resultSet.getLong(1));
+                }
+            }
+        }
+        if (candidateIds.isEmpty() || updateToPending(connection, workerId, now, candidateIds, true) == 0) {
+            return Collections.emptyList();
+        }
+
+        // the candidates which were claimed by the others concurrently were not updated.
+        List<Command> commands = new ArrayList<>();
+        String sql = "SELECT " + COLUMNS + " FROM Command WHERE status = 'PENDING' AND workerId = ? AND surrogateId IN (" + placeholders(candidateIds.size()) + ") ORDER BY surrogateId";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, workerId);
+            for (int i = 0; i < candidateIds.size(); i++) {
+                statement.setLong(i + 2, candidateIds.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    commands.add(toCommand(resultSet));
+                }
+            }
+        }
+        return commands;
+    }
+
+    private int updateToPending(Connection connection, String workerId, long now, List<Long> ids, boolean onlyClaimable) throws SQLException {
+        String sql = "UPDATE Command SET status = 'PENDING', workerId = ?, leaseExpiry = ? WHERE surrogateId IN (" + placeholders(ids.size()) + ")"
+                + (onlyClaimable ? " AND " + CLAIMABLE : "");
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            statement.setString(index++, workerId);
+            statement.setTimestamp(index++, new Timestamp(now + leaseMillis));
+            for (Long id : ids) {
+                statement.setLong(index++, id);
+            }
+            if (onlyClaimable) {
+                statement.setTimestamp(index, new Timestamp(now));
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+    private boolean isSkipLockedSupported(Connection connection) {
+        Boolean supported = skipLockedSupported;
+        if (supported == null) {
+            supported = false;
+            try {
+                DatabaseMetaData metaData = connection.getMetaData();
+                String productName = metaData.getDatabaseProductName();
+                int majorVersion = metaData.getDatabaseMajorVersion();
+                int minorVersion = metaData.getDatabaseMinorVersion();
+                if ("MySQL".equalsIgnoreCase(productName)) {
+                    supported = majorVersion >= 8;
+                } else if ("PostgreSQL".equalsIgnoreCase(productName)) {
+                    supported = majorVersion > 9 || (majorVersion == 9 && minorVersion >= 5);
+                }
+                LOG.info("Claiming commands on {} {}.{}, 'SKIP LOCKED' is {}.", productName, majorVersion, minorVersion, supported ? "used" : "not supported");
+            } catch (SQLException e) {
+                LOG.warn("Failed to detect the database, claiming commands by conditional update.", e);
+            }
+            skipLockedSupported = supported;
+        }
+        return supported;
+    }
+
+    private Command toCommand(ResultSet resultSet) throws SQLException {
+        return new Command(
+                resultSet.getLong("eventId"),
+                resultSet.getString("serviceName"),
+                resultSet.getString("instanceId"),
+                resultSet.getString("globalTxId"),
+                resultSet.getString("localTxId"),
+                resultSet.getString("parentTxId"),
+                resultSet.getString("compensationMethod"),
+                resultSet.getString("category"),
+                resultSet.getBytes("payloads"));
+    }
+
+    private List<Command> distinctSubTx(List<Command> commands) {
+        if (commands.size() < 2) {
+            return commands;
+        }
+        Set<String> subTxIds = new HashSet<>();
+        List<Command> distinctCommands = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            if (subTxIds.add(command.globalTxId() + "_" + command.localTxId())) {
+                distinctCommands.add(command);
+            }
+        }
+        return distinctCommands;
+    }
+
+    private String placeholders(int size) {
+        StringBuilder placeholders = new StringBuilder(size * 2);
+        for (int i = 0; i < size; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+}
@@ -16,7 +16,6 @@
 package org.apache.servicecomb.saga.alpha.server;
 
 import org.apache.servicecomb.saga.alpha.core.Command;
-import org.apache.servicecomb.saga.alpha.core.EventScanner;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -37,7 +36,7 @@ public interface CommandEntityRepository extends CrudRepository<Command, Long> {
       + "WHERE c.globalTxId = :globalTxId "
       + "  AND c.localTxId = :localTxId "
       + "  AND c.status = :fromStatus")
-  void updateStatusByGlobalTxIdAndLocalTxId(
+  int updateStatusByGlobalTxIdAndLocalTxId(
       @Param("fromStatus") String fromStatus,
       @Param("toStatus") String toStatus,
       @Param("globalTxId") String globalTxId,
@@ -76,9 +75,6 @@ public interface CommandEntityRepository extends CrudRepository<Command, Long> {
   // 查询某全局事务没有PENDING状态且为NEW状态的Command
   List<Command> findFirstGroupByGlobalTxIdWithoutPendingOrderByIdDesc();
 
-  @Query(value = "SELECT * FROM Command T WHERE T.status = ?1 ORDER BY T.surrogateId DESC" + EventScanner.SCANNER_SQL, nativeQuery = true)
-  List<Command> findCommandByStatus(String status);
-
   @Query(value = "SELECT T.eventId FROM Command T WHERE T.eventId IN ?1")
   Set<Long> findExistCommandList(Set<Long> eventIdList);
 }
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import org.apache.servicecomb.saga.alpha.core.GlobalTxSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.List;
+
+interface GlobalTxSummaryEntityRepository extends CrudRepository<GlobalTxSummary, String> {
+
+  @Query("FROM GlobalTxSummary G")
+  List<GlobalTxSummary> findSummaries(Pageable pageable);
+
+  // FUNCTION('CONCAT_WS', ',', field1, field2...   以逗号分割，并支持字段值为null，当字段值为null时会视为空字符串
+  @Query("FROM GlobalTxSummary G WHERE FUNCTION('CONCAT_WS', ',', G.globalTxId, G.serviceName, G.instanceId, G.category, G.startTime, G.endTime) LIKE CONCAT('%', ?1, '%')")
+  List<GlobalTxSummary> findSummaries(Pageable pageable, String searchText);
+
+  @Query("SELECT COUNT(G) FROM GlobalTxSummary G")
+  long countSummaries();
+
+  @Query("SELECT COUNT(G) FROM GlobalTxSummary G WHERE FUNCTION('CONCAT_WS', ',', G.globalTxId, G.serviceName, G.instanceId, G.category, G.startTime, G.endTime) LIKE CONCAT('%', ?1, '%')")
+  long countSummaries(String searchText);
+}
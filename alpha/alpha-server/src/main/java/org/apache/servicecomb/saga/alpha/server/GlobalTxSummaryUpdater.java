@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import org.apache.servicecomb.saga.alpha.core.AdditionalEventType;
+import org.apache.servicecomb.saga.alpha.core.GlobalTxSummary;
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.servicecomb.saga.common.EventType.SagaEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.SagaStartedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxAbortedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxCompensatedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxStartedEvent;
+
+/**
+ * Maintains the GlobalTxSummary table in the same transaction as the events, so the summary never misses or repeats the
+ * events which are committed, even if alpha crashes right after committing them.
+ *
+ * The events of a batch are merged per global transaction, so the projection costs a statement per global transaction of
+ * a batch, the row is inserted only if the update found nothing, or updated after all if another node inserted it meanwhile,
+ * like {@link ActiveGlobalTxTracker}. The id of the SagaStartedEvent is selected from the
+ * TxEvent table by the statement, the events were inserted by current transaction already.
+ *
+ * @since 2019/10/18
+ */
+class GlobalTxSummaryUpdater {
+    // null globalTxId selects nothing, i.e. no SagaStartedEvent in the batch.
+    private static final String START_EVENT_ID_SQL = "(SELECT MIN(t.surrogateId) FROM TxEvent t WHERE t.globalTxId = ? AND t.type = 'SagaStartedEvent')";
+
+    // the final states are never changed, an aborted global transaction is never running or paused again.
+    private static final String UPDATE_SQL = "UPDATE GlobalTxSummary SET "
+            + "status = CASE WHEN status IN (3, 4) THEN status WHEN ? = 1 THEN (CASE WHEN status = 1 OR ? = 1 THEN 4 ELSE 3 END) "
+            + "WHEN status = 1 OR ? = 1 THEN 1 ELSE COALESCE(?, status) END, "
+            + "startEventId = COALESCE(" + START_EVENT_ID_SQL + ", startEventId), serviceName = COALESCE(?, serviceName), instanceId = COALESCE(?, instanceId), "
+            + "category = COALESCE(?, category), startTime = COALESCE(?, startTime), expiryTime = COALESCE(?, expiryTime), endTime = COALESCE(?, endTime), "
+            + "subTxCount = subTxCount + ?, subTxEndedCount = subTxEndedCount + ?, subTxAbortedCount = subTxAbortedCount + ?, "
+            + "subTxCompensatedCount = subTxCompensatedCount + ?, updateTime = ? WHERE globalTxId = ?";
+    private static final String INSERT_SQL = "INSERT INTO GlobalTxSummary (globalTxId, startEventId, serviceName, instanceId, category, status, startTime, "
+            + "endTime, expiryTime, subTxCount, subTxEndedCount, subTxAbortedCount, subTxCompensatedCount, updateTime) "
+            + "VALUES (?, COALESCE(" + START_EVENT_ID_SQL + ", 0), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Applies the events, which have been inserted by the connection, to the GlobalTxSummary table before committing.
+     */
+    void apply(Connection connection, List<TxEvent> events) throws SQLException {
+        Map<String, Delta> deltas = new LinkedHashMap<>();
+        for (TxEvent event : events) {
+            deltas.computeIfAbsent(event.globalTxId(), Delta::new).add(event);
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_SQL);
+             PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+            for (Delta delta : deltas.values()) {
+                if (update(update, delta, now) == 0) {
+                    insertOrUpdate(connection, insert, update, delta, now);
+                }
+            }
+        }
+    }
+
+    private void insertOrUpdate(Connection connection, PreparedStatement insert, PreparedStatement update, Delta delta, Timestamp now) throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            insert(insert, delta, now);
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            if (!SqlErrors.isDuplicateKey(e)) {
+                throw e;
+            }
+            connection.rollback(savepoint);
+            update(update, delta, now);
+        }
+    }
+
+    private int update(PreparedStatement statement, Delta delta, Timestamp now) throws SQLException {
+        statement.setInt(1, delta.ended ? 1 : 0);
+        statement.setInt(2, delta.aborted ? 1 : 0);
+        statement.setInt(3, delta.aborted ? 1 : 0);
+        setInteger(statement, 4, delta.pauseStatus);
+        if (delta.startEvent == null) {
+            statement.setNull(5, Types.VARCHAR);
+            statement.setNull(6, Types.VARCHAR);
+            statement.setNull(7, Types.VARCHAR);
+            statement.setNull(8, Types.VARCHAR);
+            statement.setNull(9, Types.TIMESTAMP);
+            statement.setNull(10, Types.TIMESTAMP);
+        } else {
+            statement.setString(5, delta.globalTxId);
+            statement.setString(6, delta.startEvent.serviceName());
+            statement.setString(7, delta.startEvent.instanceId());
+            statement.setString(8, delta.startEvent.category());
+            statement.setTimestamp(9, new Timestamp(delta.startEvent.creationTime().getTime()));
+            statement.setTimestamp(10, new Timestamp(delta.startEvent.expiryTime().getTime()));
+        }
+        setTimestamp(statement, 11, delta.endTime);
+        statement.setInt(12, delta.subTxCount);
+        statement.setInt(13, delta.subTxEndedCount);
+        statement.setInt(14, delta.subTxAbortedCount);
+        statement.setInt(15, delta.subTxCompensatedCount);
+        statement.setTimestamp(16, now);
+        statement.setString(17, delta.globalTxId);
+        return statement.executeUpdate();
+    }
+
+    // The first event of the global transaction stands for it until its SagaStartedEvent arrives, e.g. by another node.
+    private void insert(PreparedStatement statement, Delta delta, Timestamp now) throws SQLException {
+        TxEvent event = delta.startEvent == null ? delta.firstEvent : delta.startEvent;
+        statement.setString(1, delta.globalTxId);
+        if (delta.startEvent == null) {
+            statement.setNull(2, Types.VARCHAR);
+        } else {
+            statement.setString(2, delta.globalTxId);
+        }
+        statement.setString(3, event.serviceName());
+        statement.setString(4, event.instanceId());
+        statement.setString(5, event.category());
+        statement.setInt(6, delta.initialStatus());
+        statement.setTimestamp(7, new Timestamp(event.creationTime().getTime()));
+        setTimestamp(statement, 8, delta.endTime);
+        statement.setTimestamp(9, new Timestamp(delta.startEvent == null ? TxEvent.MAX_TIMESTAMP : delta.startEvent.expiryTime().getTime()));
+        statement.setInt(10, delta.subTxCount);
+        statement.setInt(11, delta.subTxEndedCount);
+        statement.setInt(12, delta.subTxAbortedCount);
+        statement.setInt(13, delta.subTxCompensatedCount);
+        statement.setTimestamp(14, now);
+        statement.executeUpdate();
+    }
+
+    private static void setInteger(PreparedStatement statement, int index, Integer value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.INTEGER);
+        } else {
+            statement.setInt(index, value);
+        }
+    }
+
+    private static void setTimestamp(PreparedStatement statement, int index, Long value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.TIMESTAMP);
+        } else {
+            statement.setTimestamp(index, new Timestamp(value));
+        }
+    }
+
+    // The changes of a global transaction by the events of a batch.
+    private static final class Delta {
+        private final String globalTxId;
+        private TxEvent firstEvent;
+        private TxEvent startEvent;
+        private boolean aborted;
+        private boolean ended;
+        // PAUSED or RUNNING by the last pause/continue event, null means no change.
+        private Integer pauseStatus;
+        private Long endTime;
+        private int subTxCount;
+        private int subTxEndedCount;
+        private int subTxAbortedCount;
+        private int subTxCompensatedCount;
+
+        private Delta(String globalTxId) {
+            this.globalTxId = globalTxId;
+        }
+
+        private void add(TxEvent event) {
+            if (firstEvent == null) {
+                firstEvent = event;
+            }
+            String type = event.type();
+            if (SagaStartedEvent.name().equals(type)) {
+                startEvent = event;
+            } else if (TxStartedEvent.name().equals(type)) {
+                subTxCount++;
+            } else if (TxEndedEvent.name().equals(type)) {
+                subTxEndedCount++;
+            } else if (TxAbortedEvent.name().equals(type)) {
+                subTxAbortedCount++;
+                aborted = true;
+            } else if (TxCompensatedEvent.name().equals(type)) {
+                subTxCompensatedCount++;
+            } else if (AdditionalEventType.SagaPausedEvent.name().equals(type)) {
+                pauseStatus = GlobalTxSummary.PAUSED;
+            } else if (AdditionalEventType.SagaContinuedEvent.name().equals(type) || AdditionalEventType.SagaAutoContinuedEvent.name().equals(type)) {
+                pauseStatus = GlobalTxSummary.RUNNING;
+            } else if (SagaEndedEvent.name().equals(type)) {
+                ended = true;
+                endTime = event.creationTime().getTime();
+            }
+        }
+
+        private int initialStatus() {
+            if (ended) {
+                return aborted ? GlobalTxSummary.TERMINATED : GlobalTxSummary.ENDED;
+            }
+            if (aborted) {
+                return GlobalTxSummary.ABORTED;
+            }
+            return pauseStatus == null ? GlobalTxSummary.RUNNING : pauseStatus;
+        }
+    }
+}
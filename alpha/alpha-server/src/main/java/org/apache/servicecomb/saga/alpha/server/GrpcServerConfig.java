@@ -41,6 +41,10 @@ public class GrpcServerConfig {
   @Value("${alpha.server.ssl.clientCert:client.crt}")
   private String clientCert;
 
+  // Threads for handling events which arrive on the bidirectional TxEvent stream.
+  @Value("${alpha.server.stream.threads:64}")
+  private int streamThreads;
+
   public String getHost() {
     return host;
   }
@@ -68,6 +72,8 @@ public class GrpcServerConfig {
   public String getClientCert() {
     return clientCert;
   }
-}
-
 
+  public int getStreamThreads() {
+    return streamThreads;
+  }
+}
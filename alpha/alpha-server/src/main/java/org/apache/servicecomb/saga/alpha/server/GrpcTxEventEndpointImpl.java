@@ -29,6 +29,8 @@ import io.grpc.stub.StreamObserver;
 import org.apache.servicecomb.saga.alpha.core.OmegaCallback;
 import org.apache.servicecomb.saga.alpha.core.TxConsistentService;
 import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.apache.servicecomb.saga.alpha.core.TxEventAdmissionController;
+import org.apache.servicecomb.saga.alpha.core.TxPauseRegistry;
 import org.apache.servicecomb.saga.alpha.core.accidenthandling.AccidentHandleType;
 import org.apache.servicecomb.saga.alpha.core.accidenthandling.AccidentHandling;
 import org.apache.servicecomb.saga.alpha.core.accidenthandling.IAccidentHandlingService;
@@ -49,6 +51,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import static java.util.Collections.emptyMap;
 
@@ -64,12 +67,26 @@ class GrpcTxEventEndpointImpl extends TxEventServiceImplBase {
 
     private final IAccidentHandlingService accidentHandlingService;
 
+    // Events arriving on a shared stream are handled concurrently here, so that one slow saga does not block the others on the same stream.
+    private final ExecutorService streamEventExecutor;
+
+    // The paused events wait here for the resumption of their global transactions, instead of being sent again and again by omega.
+    private final ParkedTxEvents parkedTxEvents;
+
+    // A service which floods alpha is rejected by its own limits, before its events reach the database.
+    private final TxEventAdmissionController admissionController;
+
     GrpcTxEventEndpointImpl(TxConsistentService txConsistentService,
-                            Map<String, Map<String, OmegaCallback>> omegaCallbacks, IConfigCenterService dbDegradationConfigService, IAccidentHandlingService accidentHandlingService) {
+                            Map<String, Map<String, OmegaCallback>> omegaCallbacks, IConfigCenterService dbDegradationConfigService, IAccidentHandlingService accidentHandlingService,
+                            ExecutorService streamEventExecutor, TxPauseRegistry txPauseRegistry, TxEventAdmissionController admissionController) {
         this.txConsistentService = txConsistentService;
         this.omegaCallbacks = omegaCallbacks;
         this.dbDegradationConfigService = dbDegradationConfigService;
         this.accidentHandlingService = accidentHandlingService;
+        this.streamEventExecutor = streamEventExecutor;
+        this.parkedTxEvents = new ParkedTxEvents(txPauseRegistry, streamEventExecutor, this::handleTxEvent);
+        txPauseRegistry.setResumeListener(parkedTxEvents);
+        this.admissionController = admissionController;
     }
 
     @Override
@@ -79,6 +96,11 @@ class GrpcTxEventEndpointImpl extends TxEventServiceImplBase {
                 .put(request.getInstanceId(), new GrpcOmegaCallback(responseObserver));
     }
 
+    @Override
+    public void onPauseControl(GrpcServiceConfig request, StreamObserver<GrpcTxResumed> responseObserver) {
+        parkedTxEvents.register(request.getServiceName(), request.getInstanceId(), responseObserver);
+    }
+
     // TODO 2018/1/5 connect is async and disconnect is sync, meaning callback may not be registered on disconnected
     @Override
     public void onDisconnected(GrpcServiceConfig request, StreamObserver<GrpcAck> responseObserver) {
@@ -89,6 +111,7 @@ class GrpcTxEventEndpointImpl extends TxEventServiceImplBase {
             if (callback != null) {
                 callback.disconnect();
             }
+            parkedTxEvents.unregister(request.getServiceName(), request.getInstanceId());
         } catch (Exception e) {
             LOG.error("Encountered an exception when trying to disconnect.", e);
         } finally {
@@ -100,20 +123,56 @@ class GrpcTxEventEndpointImpl extends TxEventServiceImplBase {
 
     @Override
     public void onTxEvent(GrpcTxEvent message, StreamObserver<GrpcAck> responseObserver) {
+        GrpcAck grpcAck = null;
+        try {
+            grpcAck = admitTxEvent(message);
+        } finally {
+            // 保证下面两行代码被执行，若grpc服务端程序执行完成却没有执行下面两行代码，则将会报错误【io.grpc.StatusRuntimeException: UNKNOWN】 By Gannalyo
+            responseObserver.onNext(grpcAck);
+            responseObserver.onCompleted();
+        }
+    }
+
+    @Override
+    public StreamObserver<GrpcTxEventRequest> onTxEventStream(StreamObserver<GrpcTxEventAcks> responseObserver) {
+        return new GrpcTxEventStreamObserver(this::admitTxEvent, streamEventExecutor, responseObserver);
+    }
+
+    // Only the events which start a transaction are admitted, the rest of an admitted one goes on, otherwise throttling
+    // them would just hold the started transactions longer. The held events are handled again without admission when resumed.
+    GrpcAck admitTxEvent(GrpcTxEvent message) {
+        if (isStartingTx(message) && !TxleConstants.SPECIAL_KEY.equals(message.getCategory())) {
+            long retryAfterMillis = admissionController.admit(message.getServiceName(), message.getCategory());
+            if (retryAfterMillis != TxEventAdmissionController.ADMITTED) {
+                return GrpcAck.newBuilder().setAborted(false).setIsEnabledTx(true).setThrottled(true).setRetryAfterMillis(retryAfterMillis).build();
+            }
+        }
+        // a held event sent again by omega is not handled twice.
+        return parkedTxEvents.handle(message);
+    }
+
+    private static boolean isStartingTx(GrpcTxEvent message) {
+        return EventType.SagaStartedEvent.name().equals(message.getType()) || EventType.TxStartedEvent.name().equals(message.getType());
+    }
+
+    GrpcAck handleTxEvent(GrpcTxEvent message) {
         if (TxleConstants.SPECIAL_KEY.equals(message.getCategory())) {
-            fetchLocalTxIdOfEndedGlobalTx(message, responseObserver);
-            return;
+            return fetchLocalTxIdOfEndedGlobalTx(message);
         }
 
         // check global tx, compensation, auto-compensation. All of configs except fault-tolerant are enabled by default.
-        if (!isEnabledTx(message, responseObserver)) {
-            return;
+        if (!isEnabledTx(message)) {
+            return GrpcAck.newBuilder().setAborted(false).setIsEnabledTx(false).build();
         }
 
-        handleSupportTxPause(message, responseObserver);
+        GrpcAck grpcAck = handleSupportTxPause(message);
+        if (grpcAck != null && grpcAck.getPaused()) {
+            parkedTxEvents.park(message);
+        }
+        return grpcAck;
     }
 
-    private boolean isEnabledTx(GrpcTxEvent message, StreamObserver<GrpcAck> responseObserver) {
+    private boolean isEnabledTx(GrpcTxEvent message) {
         boolean result = true;
         try {
             if (EventType.SagaStartedEvent.name().equals(message.getType())) {
@@ -132,16 +191,10 @@ class GrpcTxEventEndpointImpl extends TxEventServiceImplBase {
         } catch (Exception e) {
             LOG.error("Encountered an exception when executing method 'isEnabledConfig'.", e);
         }
-
-        if (!result) {
-            // 保证下面两行代码被执行，若grpc服务端程序执行完成却没有执行下面两行代码，则将会报错误【io.grpc.StatusRuntimeException: UNKNOWN】 By Gannalyo
-            responseObserver.onNext(GrpcAck.newBuilder().setAborted(false).setIsEnabledTx(result).build());
-            responseObserver.onCompleted();
-        }
         return result;
     }
 
-    private void handleSupportTxPause(GrpcTxEvent message, StreamObserver<GrpcAck> responseObserver) {
+    private GrpcAck handleSupportTxPause(GrpcTxEvent message) {
         // To use temporary variables as much as possible for saving memory, not static variables.
         GrpcAck grpcAck = null;
         try {
@@ -174,14 +227,11 @@ class GrpcTxEventEndpointImpl extends TxEventServiceImplBase {
             }
         } catch (Exception e) {
             LOG.error("Encountered an exception when executing method 'handleSupportTxPause'.", e);
-        } finally {
-            // 保证下面两行代码被执行，若grpc服务端程序执行完成却没有执行下面两行代码，则将会报错误【io.grpc.StatusRuntimeException: UNKNOWN】 By Gannalyo
-            responseObserver.onNext(grpcAck);
-            responseObserver.onCompleted();
         }
+        return grpcAck;
     }
 
-    private void fetchLocalTxIdOfEndedGlobalTx(GrpcTxEvent message, StreamObserver<GrpcAck> responseObserver) {
+    private GrpcAck fetchLocalTxIdOfEndedGlobalTx(GrpcTxEvent message) {
         ByteString payloads = null;
         try {
             // Reasons for using the Kryo serialization tool are: 1.Do not change the TxEvent's structure. 2.To decrease data size for saving I/O. 3.Kryo has a high-performance computing power.
@@ -199,16 +249,12 @@ class GrpcTxEventEndpointImpl extends TxEventServiceImplBase {
             }
         } catch (Exception e) {
             LOG.error("Encountered an exception when executing method 'fetchLocalTxIdOfEndedGlobalTx'.", e);
-        } finally {
-            // message.toBuilder().setPayloads(payloads);// Could not set payloads to the original object.
-            // 保证下面两行代码被执行，若grpc服务端程序执行完成却没有执行下面两行代码，则将会报错误【io.grpc.StatusRuntimeException: UNKNOWN】 By Gannalyo
-            if (payloads == null) {
-                responseObserver.onNext(GrpcAck.newBuilder().setAborted(false).build());
-            } else {
-                responseObserver.onNext(GrpcAck.newBuilder().setAborted(false).setLocalTxIds(payloads).build());
-            }
-            responseObserver.onCompleted();
         }
+        // message.toBuilder().setPayloads(payloads);// Could not set payloads to the original object.
+        if (payloads == null) {
+            return GrpcAck.newBuilder().setAborted(false).build();
+        }
+        return GrpcAck.newBuilder().setAborted(false).setLocalTxIds(payloads).build();
     }
 
     private byte[] serialize(Object[] objects) {
@@ -231,6 +277,26 @@ class GrpcTxEventEndpointImpl extends TxEventServiceImplBase {
         }
     }
 
+    @Override
+    public void onCompensated(GrpcCompensateResult result, StreamObserver<GrpcAck> responseObserver) {
+        try {
+            boolean done = txConsistentService.handleCompensationResult(result.getGlobalTxId(), result.getLocalTxId(), result.getSucceeded(), result.getDurationMillis());
+            if (!result.getSucceeded() && !done) {
+                LOG.warn("Failed to compensate globalTxId [{}], localTxId [{}], service [{}], it will be compensated again, error: {}", result.getGlobalTxId(), result.getLocalTxId(), result.getServiceName(), result.getError());
+            } else if (!result.getSucceeded()) {
+                LOG.error("Failed to compensate globalTxId [{}], localTxId [{}], service [{}], error: {}", result.getGlobalTxId(), result.getLocalTxId(), result.getServiceName(), result.getError());
+                AccidentHandling accidentHandling = new AccidentHandling(result.getServiceName(), result.getInstanceId(), result.getGlobalTxId(), result.getLocalTxId(), AccidentHandleType.ROLLBACK_ERROR, "", result.getError());
+                accidentHandlingService.reportMsgToAccidentPlatform(accidentHandling.toJsonString());
+            }
+        } catch (Exception e) {
+            LOG.error("Encountered an exception when executing method 'onCompensated'.", e);
+        } finally {
+            // 保证下面两行代码被执行，若grpc服务端程序执行完成却没有执行下面两行代码，则将会报错误【io.grpc.StatusRuntimeException: UNKNOWN】 By Gannalyo
+            responseObserver.onNext(GrpcAck.newBuilder().setAborted(false).build());
+            responseObserver.onCompleted();
+        }
+    }
+
     @Override
     public void onMessage(GrpcMessage message, StreamObserver<GrpcMessageAck> responseObserver) {
         GrpcMessageAck msgAckTrue = null;
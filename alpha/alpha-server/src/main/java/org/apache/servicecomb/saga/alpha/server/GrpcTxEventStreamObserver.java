@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ *  Copyright (c) 2018-2019 ActionTech.
+ *  License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import io.grpc.stub.StreamObserver;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcCorrelatedAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEvent;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEventAcks;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEventRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Server side of the bidirectional TxEvent stream.
+ *
+ * Requests are handled concurrently on the given executor, and every ack produced while another thread is writing to the
+ * stream is queued and flushed together with the others in a single GrpcTxEventAcks message, so that a busy stream costs
+ * one write per batch rather than one round trip per event.
+ *
+ * @since 2019/10/18
+ */
+class GrpcTxEventStreamObserver implements StreamObserver<GrpcTxEventRequest> {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final Function<GrpcTxEvent, GrpcAck> eventHandler;
+    private final ExecutorService executor;
+    private final StreamObserver<GrpcTxEventAcks> responseObserver;
+
+    private final Queue<GrpcCorrelatedAck> pendingAcks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    // The acks which are queued or polled but not written yet, the stream is not completed until all of them are written.
+    private final AtomicInteger unsentAcks = new AtomicInteger(0);
+    private final AtomicBoolean halfClosed = new AtomicBoolean(false);
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+
+    GrpcTxEventStreamObserver(Function<GrpcTxEvent, GrpcAck> eventHandler, ExecutorService executor, StreamObserver<GrpcTxEventAcks> responseObserver) {
+        this.eventHandler = eventHandler;
+        this.executor = executor;
+        this.responseObserver = responseObserver;
+    }
+
+    @Override
+    public void onNext(GrpcTxEventRequest request) {
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> handle(request));
+        } catch (RejectedExecutionException e) {
+            // The executor is saturated or shutting down, handle it on the transport thread rather than losing the event.
+            handle(request);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        LOG.warn("TxEvent stream was closed by client with error.", t);
+        // The call is cancelled, so nothing could be written back to it any more.
+        completed.set(true);
+        pendingAcks.clear();
+    }
+
+    @Override
+    public void onCompleted() {
+        halfClosed.set(true);
+        completeIfIdle();
+    }
+
+    private void handle(GrpcTxEventRequest request) {
+        GrpcAck ack = null;
+        try {
+            ack = eventHandler.apply(request.getEvent());
+        } catch (Throwable e) {
+            LOG.error("Encountered an exception when handling streamed TxEvent, correlationId = [{}].", request.getCorrelationId(), e);
+        }
+        if (ack == null) {
+            // The same as the unary endpoint, a missing ack is regarded as an abort by omega.
+            ack = GrpcAck.newBuilder().setAborted(true).setIsEnabledTx(true).build();
+        }
+        unsentAcks.incrementAndGet();
+        pendingAcks.offer(GrpcCorrelatedAck.newBuilder().setCorrelationId(request.getCorrelationId()).setAck(ack).build());
+        flush();
+        inFlight.decrementAndGet();
+        completeIfIdle();
+    }
+
+    private void flush() {
+        // Whoever wins the flag drains the queue for everybody, the others return at once, and the loop re-checks the queue after releasing the flag so that no ack is left behind.
+        while (!pendingAcks.isEmpty() && flushing.compareAndSet(false, true)) {
+            GrpcTxEventAcks.Builder batch = GrpcTxEventAcks.newBuilder();
+            try {
+                GrpcCorrelatedAck ack;
+                while ((ack = pendingAcks.poll()) != null) {
+                    batch.addAcks(ack);
+                }
+                synchronized (responseObserver) {
+                    if (batch.getAcksCount() > 0 && !completed.get()) {
+                        responseObserver.onNext(batch.build());
+                    }
+                }
+            } catch (Exception e) {
+                LOG.error("Failed to write acks to TxEvent stream.", e);
+            } finally {
+                unsentAcks.addAndGet(-batch.getAcksCount());
+                flushing.set(false);
+            }
+        }
+    }
+
+    private void completeIfIdle() {
+        // The acks polled by a flushing thread are no longer in the queue, so the unsent ones are counted instead, and the
+        // check is done under the same lock as the writes, so that the stream is never completed before the last batch.
+        synchronized (responseObserver) {
+            if (halfClosed.get() && inFlight.get() == 0 && unsentAcks.get() == 0 && completed.compareAndSet(false, true)) {
+                responseObserver.onCompleted();
+            }
+        }
+    }
+}
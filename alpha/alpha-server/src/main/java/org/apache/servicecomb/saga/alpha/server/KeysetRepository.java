@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import org.apache.servicecomb.saga.alpha.core.KeysetQuery;
+import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenterStatus;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the lists of UI by {@link KeysetQuery}, the query only consists of the conditions of the given filters, so every
+ * condition is able to use an index rather than the 'CONCAT_WS(...) LIKE' of the offset lists which scans all rows.
+ *
+ * @since 2019/10/18
+ */
+@Repository
+public class KeysetRepository {
+
+    /**
+     * The columns of the lists, null means that the list has no such filter.
+     */
+    public enum Table {
+        GLOBAL_TX_SUMMARY("GlobalTxSummary", "startTime", true, "globalTxId", "globalTxId", "serviceName", "instanceId", "category", "startTime", null),
+        ACCIDENT("AccidentHandling", "id", false, null, "globaltxid", "servicename", "instanceid", null, "createtime", null),
+        CONFIG("ConfigCenter", "id", false, null, null, "servicename", "instanceid", "category", "updatetime", "T.status = " + ConfigCenterStatus.Normal.toInteger());
+
+        private final String entityName;
+        private final String sortColumn;
+        // the cursor of a time column is the milliseconds of time.
+        private final boolean sortByTime;
+        // the unique column for the rows of the same sort value, null if the sort column is unique.
+        private final String keyColumn;
+        private final String globalTxIdColumn;
+        private final String serviceNameColumn;
+        private final String instanceIdColumn;
+        private final String categoryColumn;
+        private final String timeColumn;
+        private final String condition;
+
+        Table(String entityName, String sortColumn, boolean sortByTime, String keyColumn, String globalTxIdColumn, String serviceNameColumn,
+              String instanceIdColumn, String categoryColumn, String timeColumn, String condition) {
+            this.entityName = entityName;
+            this.sortColumn = sortColumn;
+            this.sortByTime = sortByTime;
+            this.keyColumn = keyColumn;
+            this.globalTxIdColumn = globalTxIdColumn;
+            this.serviceNameColumn = serviceNameColumn;
+            this.instanceIdColumn = instanceIdColumn;
+            this.categoryColumn = categoryColumn;
+            this.timeColumn = timeColumn;
+            this.condition = condition;
+        }
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @return at most pageSize + 1 rows, the redundant one means that there is a next page
+     */
+    public <T> List<T> findPage(Table table, KeysetQuery query, Class<T> resultClass) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        String jpql = toJpql(table, query, params);
+        TypedQuery<T> typedQuery = entityManager.createQuery(jpql, resultClass);
+        params.forEach(typedQuery::setParameter);
+        typedQuery.setMaxResults(query.pageSize() + 1);
+        return typedQuery.getResultList();
+    }
+
+    static String toJpql(Table table, KeysetQuery query, Map<String, Object> params) {
+        StringBuilder jpql = new StringBuilder("SELECT T FROM ").append(table.entityName).append(" T WHERE 1 = 1");
+        if (table.condition != null) {
+            jpql.append(" AND ").append(table.condition);
+        }
+        if (query.afterSortValue() != null) {
+            Object afterSortValue = table.sortByTime ? new Date(query.afterSortValue()) : query.afterSortValue();
+            params.put("afterSortValue", afterSortValue);
+            if (table.keyColumn == null || query.afterKey() == null) {
+                jpql.append(" AND T.").append(table.sortColumn).append(" < :afterSortValue");
+            } else {
+                jpql.append(" AND (T.").append(table.sortColumn).append(" < :afterSortValue OR (T.").append(table.sortColumn)
+                        .append(" = :afterSortValue AND T.").append(table.keyColumn).append(" < :afterKey))");
+                params.put("afterKey", query.afterKey());
+            }
+        }
+        if (query.globalTxIdPrefix() != null) {
+            jpql.append(" AND T.").append(column(table, table.globalTxIdColumn, "globalTxId")).append(" LIKE :globalTxIdPrefix ESCAPE '\\'");
+            params.put("globalTxIdPrefix", escapeLike(query.globalTxIdPrefix()) + "%");
+        }
+        appendEquals(jpql, params, table, table.serviceNameColumn, "serviceName", query.serviceName());
+        appendEquals(jpql, params, table, table.instanceIdColumn, "instanceId", query.instanceId());
+        appendEquals(jpql, params, table, table.categoryColumn, "category", query.category());
+        if (query.startTime() != null) {
+            jpql.append(" AND T.").append(table.timeColumn).append(" >= :startTime");
+            params.put("startTime", query.startTime());
+        }
+        if (query.endTime() != null) {
+            jpql.append(" AND T.").append(table.timeColumn).append(" <= :endTime");
+            params.put("endTime", query.endTime());
+        }
+        jpql.append(" ORDER BY T.").append(table.sortColumn).append(" DESC");
+        if (table.keyColumn != null) {
+            jpql.append(", T.").append(table.keyColumn).append(" DESC");
+        }
+        return jpql.toString();
+    }
+
+    private static void appendEquals(StringBuilder jpql, Map<String, Object> params, Table table, String column, String filter, String value) {
+        if (value != null) {
+            jpql.append(" AND T.").append(column(table, column, filter)).append(" = :").append(filter);
+            params.put(filter, value);
+        }
+    }
+
+    private static String column(Table table, String column, String filter) {
+        if (column == null) {
+            throw new IllegalArgumentException("The list of " + table.entityName + " could not be filtered by " + filter + ".");
+        }
+        return column;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.servicecomb.saga.common.EventType.TxAbortedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxStartedEvent;
+
+/**
+ * Writes the global transactions, sub-transactions, accidents and events as NDJSON, one object per line.
+ *
+ * The rows are read by keyset in chunks, every chunk is a short query by a pooled connection and is written and flushed
+ * before the next one, so an export of any size holds one chunk in memory and no connection or transaction between the
+ * chunks. The keys are the first columns of every export.
+ *
+ * @since 2019/10/18
+ */
+class NdjsonExporter {
+  private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+  private static final String[] GLOBAL_TX_COLUMNS = {"startTime", "globalTxId", "startEventId", "serviceName", "instanceId", "category",
+      "status", "endTime", "expiryTime", "subTxCount", "subTxEndedCount", "subTxAbortedCount", "subTxCompensatedCount"};
+  private static final String[] SUB_TX_COLUMNS = {"surrogateId", "globalTxId", "localTxId", "parentTxId", "serviceName", "instanceId",
+      "category", "compensationMethod", "creationTime"};
+  private static final String[] ACCIDENT_COLUMNS = {"id", "servicename", "instanceid", "globaltxid", "localtxid", "type", "status",
+      "bizinfo", "remark", "createtime", "completetime"};
+  private static final String[] EVENT_COLUMNS = {"surrogateId", "serviceName", "instanceId", "creationTime", "globalTxId", "localTxId",
+      "parentTxId", "type", "compensationMethod", "expiryTime", "retryMethod", "retries", "category", "payloads"};
+
+  // the status of sub-transaction, the same values as the list of UI.
+  private static final int SUB_TX_RUNNING = 0;
+  private static final int SUB_TX_ABORTED = 1;
+  private static final int SUB_TX_ENDED = 3;
+  private static final int SUB_TX_TERMINATED = 4;
+
+  private final DataSource dataSource;
+  private final int chunkSize;
+  private final JsonFactory jsonFactory = new JsonFactory();
+
+  NdjsonExporter(DataSource dataSource, int chunkSize) {
+    this.dataSource = dataSource;
+    this.chunkSize = Math.max(1, chunkSize);
+  }
+
+  void exportGlobalTransactions(Date startTime, Date endTime, String serviceName, Integer status, OutputStream out) throws IOException, SQLException {
+    Conditions conditions = new Conditions()
+        .add("startTime >= ?", startTime)
+        .add("startTime <= ?", endTime)
+        .add("serviceName = ?", serviceName)
+        .add("status = ?", status);
+    export(out, "GlobalTxSummary", GLOBAL_TX_COLUMNS, 2, conditions, (rows, generator) -> writeRows(rows, GLOBAL_TX_COLUMNS, generator));
+  }
+
+  void exportSubTransactions(Date startTime, Date endTime, String serviceName, Integer status, OutputStream out) throws IOException, SQLException {
+    Conditions conditions = new Conditions()
+        .add("type = ?", TxStartedEvent.name())
+        .add("creationTime >= ?", startTime)
+        .add("creationTime <= ?", endTime)
+        .add("serviceName = ?", serviceName);
+    export(out, "TxEvent", SUB_TX_COLUMNS, 1, conditions, (rows, generator) -> writeSubTransactions(rows, status, generator));
+  }
+
+  void exportAccidents(Date startTime, Date endTime, String serviceName, Integer status, OutputStream out) throws IOException, SQLException {
+    Conditions conditions = new Conditions()
+        .add("createtime >= ?", startTime)
+        .add("createtime <= ?", endTime)
+        .add("servicename = ?", serviceName)
+        .add("status = ?", status);
+    export(out, "Accident", ACCIDENT_COLUMNS, 1, conditions, (rows, generator) -> writeRows(rows, ACCIDENT_COLUMNS, generator));
+  }
+
+  void exportEvents(Date startTime, Date endTime, String serviceName, String type, OutputStream out) throws IOException, SQLException {
+    Conditions conditions = new Conditions()
+        .add("creationTime >= ?", startTime)
+        .add("creationTime <= ?", endTime)
+        .add("serviceName = ?", serviceName)
+        .add("type = ?", type);
+    export(out, "TxEvent", EVENT_COLUMNS, 1, conditions, (rows, generator) -> writeRows(rows, EVENT_COLUMNS, generator));
+  }
+
+  private void export(OutputStream out, String table, String[] columns, int keyCount, Conditions conditions, ChunkWriter chunkWriter)
+      throws IOException, SQLException {
+    JsonGenerator generator = jsonFactory.createGenerator(out);
+    generator.setRootValueSeparator(null);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    Object[] lastKeys = null;
+    while (true) {
+      List<Object[]> rows = selectChunk(table, columns, keyCount, conditions, lastKeys);
+      if (!rows.isEmpty()) {
+        chunkWriter.write(rows, generator);
+        generator.flush();
+      }
+      if (rows.size() < chunkSize) {
+        break;
+      }
+      Object[] lastRow = rows.get(rows.size() - 1);
+      lastKeys = new Object[keyCount];
+      System.arraycopy(lastRow, 0, lastKeys, 0, keyCount);
+    }
+    generator.close();
+  }
+
+  private List<Object[]> selectChunk(String table, String[] columns, int keyCount, Conditions conditions, Object[] lastKeys) throws SQLException {
+    StringBuilder sql = new StringBuilder("SELECT ").append(String.join(", ", columns)).append(" FROM ").append(table).append(" WHERE 1 = 1");
+    conditions.sqls.forEach(condition -> sql.append(" AND ").append(condition));
+    List<Object> params = new ArrayList<>(conditions.params);
+    if (lastKeys != null) {
+      if (keyCount == 1) {
+        sql.append(" AND ").append(columns[0]).append(" > ?");
+        params.add(lastKeys[0]);
+      } else {
+        sql.append(" AND (").append(columns[0]).append(" > ? OR (").append(columns[0]).append(" = ? AND ").append(columns[1]).append(" > ?))");
+        params.add(lastKeys[0]);
+        params.add(lastKeys[0]);
+        params.add(lastKeys[1]);
+      }
+    }
+    sql.append(" ORDER BY ").append(columns[0]);
+    if (keyCount > 1) {
+      sql.append(", ").append(columns[1]);
+    }
+
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+      statement.setMaxRows(chunkSize);
+      statement.setFetchSize(chunkSize);
+      for (int i = 0; i < params.size(); i++) {
+        statement.setObject(i + 1, params.get(i));
+      }
+      List<Object[]> rows = new ArrayList<>(chunkSize);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          Object[] row = new Object[columns.length];
+          for (int i = 0; i < columns.length; i++) {
+            Object value = resultSet.getObject(i + 1);
+            row[i] = value instanceof Blob ? ((Blob) value).getBytes(1, (int) ((Blob) value).length()) : value;
+          }
+          rows.add(row);
+        }
+      }
+      return rows;
+    }
+  }
+
+  private void writeRows(List<Object[]> rows, String[] columns, JsonGenerator generator) throws IOException {
+    SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
+    for (Object[] row : rows) {
+      generator.writeStartObject();
+      for (int i = 0; i < columns.length; i++) {
+        writeField(generator, sdf, columns[i], row[i]);
+      }
+      generator.writeEndObject();
+      generator.writeRaw('\n');
+    }
+  }
+
+  // The status of sub-transactions is computed by their ending events as the list of UI, the ending events of a chunk are read by one query.
+  private void writeSubTransactions(List<Object[]> rows, Integer status, JsonGenerator generator) throws IOException, SQLException {
+    Set<String> globalTxIds = new LinkedHashSet<>();
+    rows.forEach(row -> globalTxIds.add((String) row[1]));
+    Map<String, Object[]> endings = selectEndings(globalTxIds);
+
+    SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
+    for (Object[] row : rows) {
+      Object[] ending = endings.getOrDefault((String) row[2], new Object[2]);
+      boolean aborted = Boolean.TRUE.equals(ending[0]);
+      Object endTime = ending[1];
+      int subTxStatus = endTime == null ? (aborted ? SUB_TX_ABORTED : SUB_TX_RUNNING) : (aborted ? SUB_TX_TERMINATED : SUB_TX_ENDED);
+      if (status != null && status != subTxStatus) {
+        continue;
+      }
+      generator.writeStartObject();
+      for (int i = 0; i < SUB_TX_COLUMNS.length; i++) {
+        writeField(generator, sdf, SUB_TX_COLUMNS[i], row[i]);
+      }
+      writeField(generator, sdf, "status", subTxStatus);
+      writeField(generator, sdf, "endTime", endTime);
+      generator.writeEndObject();
+      generator.writeRaw('\n');
+    }
+  }
+
+  // localTxId -> {aborted, endTime}
+  private Map<String, Object[]> selectEndings(Set<String> globalTxIds) throws SQLException {
+    if (globalTxIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    String sql = "SELECT localTxId, type, creationTime FROM TxEvent WHERE globalTxId IN ("
+        + String.join(", ", Collections.nCopies(globalTxIds.size(), "?")) + ") AND type IN (?, ?)";
+    Map<String, Object[]> endings = new HashMap<>();
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement(sql)) {
+      int index = 1;
+      for (String globalTxId : globalTxIds) {
+        statement.setString(index++, globalTxId);
+      }
+      statement.setString(index++, TxAbortedEvent.name());
+      statement.setString(index, TxEndedEvent.name());
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          Object[] ending = endings.computeIfAbsent(resultSet.getString(1), localTxId -> new Object[2]);
+          if (TxAbortedEvent.name().equals(resultSet.getString(2))) {
+            ending[0] = Boolean.TRUE;
+          } else {
+            ending[1] = resultSet.getTimestamp(3);
+          }
+        }
+      }
+    }
+    return endings;
+  }
+
+  private static void writeField(JsonGenerator generator, SimpleDateFormat sdf, String name, Object value) throws IOException {
+    generator.writeFieldName(name);
+    if (value == null) {
+      generator.writeNull();
+    } else if (value instanceof Date) {
+      generator.writeString(sdf.format((Date) value));
+    } else if (value instanceof byte[]) {
+      generator.writeBinary((byte[]) value);
+    } else if (value instanceof Number || value instanceof Boolean) {
+      generator.writeObject(value);
+    } else {
+      generator.writeString(value.toString());
+    }
+  }
+
+  private interface ChunkWriter {
+    void write(List<Object[]> rows, JsonGenerator generator) throws IOException, SQLException;
+  }
+
+  // The conditions of the given filters only.
+  private static final class Conditions {
+    private final List<String> sqls = new ArrayList<>();
+    private final List<Object> params = new ArrayList<>();
+
+    private Conditions add(String sql, Object value) {
+      if (value != null && !"".equals(value)) {
+        sqls.add(sql);
+        params.add(value instanceof Date ? new Timestamp(((Date) value).getTime()) : value);
+      }
+      return this;
+    }
+  }
+}
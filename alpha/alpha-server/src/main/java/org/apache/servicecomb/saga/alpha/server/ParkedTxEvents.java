@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.apache.servicecomb.saga.alpha.core.TxPauseRegistry;
+import org.apache.servicecomb.saga.alpha.core.TxResumeListener;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEvent;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxResumed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyMap;
+
+/**
+ * The events which arrived while their global transactions were paused, they are held here rather than being sent again by omega.
+ *
+ * Once a global transaction is resumed, its events are handled again on the executor and their acks are pushed down the
+ * pause control stream of the omega instances which sent them, so the waiting business threads go on at once. An event
+ * is held only if its omega instance has opened the control stream, the others keep on sending their paused events again.
+ *
+ * An omega which didn't get the push in time sends the held event again, so a held event is handled only once, by the
+ * replay or by the event sent again, whichever comes first, and the other one gets the same ack rather than saving the
+ * event twice. The acks are kept for a while after handling, as the event could be sent again long after the replay.
+ *
+ * @since 2019/10/18
+ */
+class ParkedTxEvents implements TxResumeListener {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final long HANDLED_EVENT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private final TxPauseRegistry txPauseRegistry;
+  private final ExecutorService executor;
+  private final Function<GrpcTxEvent, GrpcAck> handler;
+
+  // serviceName -> instanceId -> control stream
+  private final Map<String, Map<String, StreamObserver<GrpcTxResumed>>> controlObservers = new ConcurrentHashMap<>();
+  // globalTxId -> localTxId and type -> event, the same event sent again replaces the held one.
+  private final Map<String, Map<String, GrpcTxEvent>> parkedEvents = new ConcurrentHashMap<>();
+  // globalTxId:localTxId:type -> the handling of a held event, by the replay or by omega sending it again.
+  private final Map<String, Handling> handlings = new ConcurrentHashMap<>();
+  private final AtomicLong prunedAt = new AtomicLong();
+
+  ParkedTxEvents(TxPauseRegistry txPauseRegistry, ExecutorService executor, Function<GrpcTxEvent, GrpcAck> handler) {
+    this.txPauseRegistry = txPauseRegistry;
+    this.executor = executor;
+    this.handler = handler;
+  }
+
+  void register(String serviceName, String instanceId, StreamObserver<GrpcTxResumed> observer) {
+    controlObservers.computeIfAbsent(serviceName, key -> new ConcurrentHashMap<>()).put(instanceId, observer);
+    if (observer instanceof ServerCallStreamObserver) {
+      ((ServerCallStreamObserver<GrpcTxResumed>) observer).setOnCancelHandler(() -> unregister(serviceName, instanceId, observer));
+    }
+  }
+
+  void unregister(String serviceName, String instanceId) {
+    StreamObserver<GrpcTxResumed> observer = controlObservers.getOrDefault(serviceName, emptyMap()).get(instanceId);
+    if (observer != null) {
+      unregister(serviceName, instanceId, observer);
+      try {
+        synchronized (observer) {
+          observer.onCompleted();
+        }
+      } catch (RuntimeException e) {
+        LOG.debug("Pause control stream of service [{}] instance [{}] has been closed.", serviceName, instanceId, e);
+      }
+    }
+  }
+
+  /**
+   * Holds the paused event until its global transaction is resumed.
+   *
+   * @return false if the omega instance which sent it can't be told, so it has to send the event again by itself.
+   */
+  boolean park(GrpcTxEvent event) {
+    if (!controlObservers.getOrDefault(event.getServiceName(), emptyMap()).containsKey(event.getInstanceId())) {
+      return false;
+    }
+    parkedEvents.compute(event.getGlobalTxId(), (globalTxId, events) -> {
+      Map<String, GrpcTxEvent> held = events == null ? new ConcurrentHashMap<>() : events;
+      held.put(keyOf(event), event);
+      return held;
+    });
+    // it could have been resumed between handling and holding it.
+    if (!txPauseRegistry.isPaused(event.getGlobalTxId())) {
+      onResumed(event.getGlobalTxId());
+    }
+    return true;
+  }
+
+  /**
+   * Handles an event sent by omega. If it's held here or has been handled by a replay, it's not handled again: an ack of
+   * the replay is returned as it is, and a paused ack is returned while the replay is still running, so omega waits for
+   * the push of its ack.
+   */
+  GrpcAck handle(GrpcTxEvent event) {
+    if (handlings.isEmpty() && parkedEvents.isEmpty()) {
+      return handler.apply(event);
+    }
+    pruneHandlings(System.currentTimeMillis());
+    String handlingKey = handlingKeyOf(event);
+    Handling handling = new Handling(System.currentTimeMillis());
+    Handling existing = handlings.putIfAbsent(handlingKey, handling);
+    if (existing != null) {
+      if (!existing.ack.isDone()) {
+        return GrpcAck.newBuilder().setAborted(false).setIsEnabledTx(true).setPaused(true).build();
+      }
+      GrpcAck ack = existing.ack.getNow(null);
+      if (ack != null) {
+        return ack;
+      }
+    }
+    if (existing != null || !isHeld(event)) {
+      // a failed handling is forgotten at once, and an event which is not held needs no dedupe.
+      handlings.remove(handlingKey, handling);
+      return handler.apply(event);
+    }
+    return handleOnce(handlingKey, handling, event);
+  }
+
+  int size() {
+    return parkedEvents.values().stream().mapToInt(Map::size).sum();
+  }
+
+  @Override
+  public void onResumed(String globalTxId) {
+    // the events are claimed before they are taken away, so an event sent again meanwhile is never handled twice.
+    Map<Handling, GrpcTxEvent> claimed = new HashMap<>();
+    parkedEvents.computeIfPresent(globalTxId, (id, events) -> {
+      long now = System.currentTimeMillis();
+      for (GrpcTxEvent event : events.values()) {
+        Handling handling = new Handling(now);
+        if (handlings.putIfAbsent(handlingKeyOf(event), handling) == null) {
+          claimed.put(handling, event);
+        }
+      }
+      return null;
+    });
+    if (claimed.isEmpty()) {
+      return;
+    }
+    try {
+      executor.execute(() -> claimed.forEach((handling, event) -> replay(handling, event)));
+    } catch (RejectedExecutionException e) {
+      LOG.error("Alpha is shutting down, failed to handle the held events of global transaction [{}].", globalTxId);
+      claimed.forEach((handling, event) -> handlings.remove(handlingKeyOf(event), handling));
+    }
+  }
+
+  @Override
+  public void onAllResumed() {
+    parkedEvents.keySet().forEach(this::onResumed);
+  }
+
+  private void replay(Handling handling, GrpcTxEvent event) {
+    GrpcAck ack;
+    try {
+      ack = handleOnce(handlingKeyOf(event), handling, event);
+    } catch (Exception e) {
+      LOG.error("Failed to handle the held event [{}] of global transaction [{}].", event.getType(), event.getGlobalTxId(), e);
+      return;
+    }
+    // paused again and held again by the handler, or failed and omega sends it again after its pause-check-interval.
+    if (ack == null || ack.getPaused()) {
+      return;
+    }
+    StreamObserver<GrpcTxResumed> observer = controlObservers.getOrDefault(event.getServiceName(), emptyMap()).get(event.getInstanceId());
+    if (observer == null) {
+      LOG.warn("Pause control stream of service [{}] instance [{}] was closed, the ack of global transaction [{}] is dropped.",
+          event.getServiceName(), event.getInstanceId(), event.getGlobalTxId());
+      return;
+    }
+    GrpcTxResumed resumed = GrpcTxResumed.newBuilder()
+        .setGlobalTxId(event.getGlobalTxId())
+        .setLocalTxId(event.getLocalTxId())
+        .setType(event.getType())
+        .setAck(ack)
+        .build();
+    try {
+      // StreamObserver is not thread-safe.
+      synchronized (observer) {
+        observer.onNext(resumed);
+      }
+    } catch (RuntimeException e) {
+      LOG.error("Failed to push the ack of global transaction [{}] to service [{}] instance [{}].",
+          event.getGlobalTxId(), event.getServiceName(), event.getInstanceId(), e);
+      unregister(event.getServiceName(), event.getInstanceId(), observer);
+    }
+  }
+
+  // nobody is waiting for the events of the instance any more.
+  private void unregister(String serviceName, String instanceId, StreamObserver<GrpcTxResumed> observer) {
+    Map<String, StreamObserver<GrpcTxResumed>> observers = controlObservers.get(serviceName);
+    if (observers == null || !observers.remove(instanceId, observer)) {
+      return;
+    }
+    parkedEvents.keySet().forEach(globalTxId -> parkedEvents.computeIfPresent(globalTxId, (key, events) -> {
+      events.values().removeIf(event -> serviceName.equals(event.getServiceName()) && instanceId.equals(event.getInstanceId()));
+      return events.isEmpty() ? null : events;
+    }));
+  }
+
+  // the ack of a paused or failed handling is not kept, the event is held again or sent again by omega.
+  private GrpcAck handleOnce(String handlingKey, Handling handling, GrpcTxEvent event) {
+    GrpcAck ack = null;
+    try {
+      ack = handler.apply(event);
+    } finally {
+      if (ack == null || ack.getPaused()) {
+        handlings.remove(handlingKey, handling);
+      }
+      handling.ack.complete(ack);
+    }
+    // held again, but it could have been resumed while it was claimed, when the replay skipped it.
+    if (ack != null && ack.getPaused() && !txPauseRegistry.isPaused(event.getGlobalTxId())) {
+      onResumed(event.getGlobalTxId());
+    }
+    return ack;
+  }
+
+  private boolean isHeld(GrpcTxEvent event) {
+    return parkedEvents.getOrDefault(event.getGlobalTxId(), emptyMap()).containsKey(keyOf(event));
+  }
+
+  // at most once a second, as it's done on the way of the events sent by omega.
+  private void pruneHandlings(long now) {
+    long lastPrunedAt = prunedAt.get();
+    if (now - lastPrunedAt >= 1000 && prunedAt.compareAndSet(lastPrunedAt, now)) {
+      handlings.values().removeIf(handling -> handling.ack.isDone() && handling.startedAt + HANDLED_EVENT_TTL_MILLIS < now);
+    }
+  }
+
+  private static String keyOf(GrpcTxEvent event) {
+    return event.getLocalTxId() + ":" + event.getType();
+  }
+
+  private static String handlingKeyOf(GrpcTxEvent event) {
+    return event.getGlobalTxId() + ":" + keyOf(event);
+  }
+
+  private static final class Handling {
+    private final CompletableFuture<GrpcAck> ack = new CompletableFuture<>();
+    private final long startedAt;
+
+    Handling(long startedAt) {
+      this.startedAt = startedAt;
+    }
+  }
+}
@@ -21,12 +21,13 @@ import static org.apache.servicecomb.saga.alpha.core.TaskStatus.PENDING;
 import static org.apache.servicecomb.saga.common.EventType.TxCompensatedEvent;
 
 import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
 import java.util.*;
 
-import javax.transaction.Transactional;
-
 import org.apache.servicecomb.saga.alpha.core.Command;
 import org.apache.servicecomb.saga.alpha.core.CommandRepository;
+import org.apache.servicecomb.saga.alpha.core.CompensationDispatcher;
 import org.apache.servicecomb.saga.alpha.core.TxEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,10 +37,22 @@ public class SpringCommandRepository implements CommandRepository {
 
   private final TxEventEnvelopeRepository eventRepository;
   private final CommandEntityRepository commandRepository;
+  private final CommandClaimer commandClaimer;
+  // null means the commands are sent by the scanner only.
+  private final CompensationDispatcher compensationDispatcher;
+  // identify of the worker which claims the commands for the dispatcher, it's unique in the cluster.
+  private final String workerId = ManagementFactory.getRuntimeMXBean().getName() + "-dispatcher";
+
+  SpringCommandRepository(TxEventEnvelopeRepository eventRepository, CommandEntityRepository commandRepository, CommandClaimer commandClaimer) {
+    this(eventRepository, commandRepository, commandClaimer, null);
+  }
 
-  SpringCommandRepository(TxEventEnvelopeRepository eventRepository, CommandEntityRepository commandRepository) {
+  SpringCommandRepository(TxEventEnvelopeRepository eventRepository, CommandEntityRepository commandRepository, CommandClaimer commandClaimer,
+      CompensationDispatcher compensationDispatcher) {
     this.eventRepository = eventRepository;
     this.commandRepository = commandRepository;
+    this.commandClaimer = commandClaimer;
+    this.compensationDispatcher = compensationDispatcher;
   }
 
   @Override
@@ -136,8 +149,9 @@ public class SpringCommandRepository implements CommandRepository {
         txStartedEvents.forEach(event -> {
           try {
             if (!existCommandEventIdList.contains(event.id())) {
-              commandRepository.save(new Command(event));
+              Command command = commandRepository.save(new Command(event));
               eventRepository.save(new TxEvent(event.serviceName(), event.instanceId(), event.globalTxId(), event.localTxId(), event.parentTxId(), TxCompensatedEvent.name(), event.compensationMethod(), event.category(), event.payloads()));
+              dispatch(command);
             }
           } catch (Exception e) {
             LOG.error("Failed to save command {} in method {}.", event, method);
@@ -149,35 +163,65 @@ public class SpringCommandRepository implements CommandRepository {
     }
   }
 
+  // Sends the command at once rather than waiting for the scanner. It's claimed as the scanner does, so that it would not be sent by both of them.
+  private void dispatch(Command command) {
+    if (compensationDispatcher == null || command == null) {
+      return;
+    }
+    try {
+      if (commandClaimer.claim(workerId, command.globalTxId(), command.localTxId())) {
+        compensationDispatcher.dispatch(command,
+            sentCommand -> markCommandAsSent(sentCommand.globalTxId(), sentCommand.localTxId()),
+            failedCommand -> markCommandAsNew(failedCommand.globalTxId(), failedCommand.localTxId()));
+      }
+    } catch (SQLException e) {
+      LOG.error("Failed to claim command {}, it will be sent by the scanner.", command, e);
+    }
+  }
+
   @Override
   public void markCommandAsDone(String globalTxId, String localTxId) {
     commandRepository.updateStatusByGlobalTxIdAndLocalTxId(DONE.name(), globalTxId, localTxId);
   }
 
+  @Override
+  public void markCommandAsNew(String globalTxId, String localTxId) {
+    commandRepository.updateStatusByGlobalTxIdAndLocalTxId(PENDING.name(), NEW.name(), globalTxId, localTxId);
+  }
+
+  @Override
+  public void markCommandAsSent(String globalTxId, String localTxId) {
+    try {
+      commandClaimer.awaitResult(globalTxId, localTxId);
+    } catch (SQLException e) {
+      LOG.error("Failed to extend the lease of command to its result, globalTxId {}, localTxId {}.", globalTxId, localTxId, e);
+    }
+  }
+
+  @Override
+  public boolean markCommandAsFailed(String globalTxId, String localTxId) {
+    try {
+      return commandClaimer.retryLater(globalTxId, localTxId);
+    } catch (SQLException e) {
+      // the lease of the command still expires, so it's sent again by the scanner.
+      LOG.error("Failed to delay the retry of command, globalTxId {}, localTxId {}.", globalTxId, localTxId, e);
+      return true;
+    }
+  }
+
   @Override
   public List<Command> findUncompletedCommands(String globalTxId) {
 //    return commandRepository.findByGlobalTxIdAndStatus(globalTxId, NEW.name());
     return commandRepository.findUncompletedCommandByGlobalTxIdAndStatus(globalTxId, DONE.name());
   }
 
-  @Transactional
   @Override
-  public List<Command> findFirstCommandToCompensate() {
-//    List<Command> commands = commandRepository.findFirstGroupByGlobalTxIdWithoutPendingOrderByIdDesc();
-    List<Command> commands = commandRepository.findCommandByStatus("NEW");
-
-    commands.forEach(command -> {
-      try {
-        commandRepository.updateStatusByGlobalTxIdAndLocalTxId(
-                NEW.name(),
-                PENDING.name(),
-                command.globalTxId(),
-                command.localTxId());
-      } catch (Exception e) {
-        LOG.error("Failed to execute method 'updateStatusByGlobalTxIdAndLocalTxId' localTxId {}.", command.localTxId(), e);
-      }
-    });
-
-    return commands;
+  public List<Command> claimCommandsToCompensate(String workerId, int limit) {
+    try {
+      return commandClaimer.claim(workerId, limit);
+    } catch (SQLException e) {
+      LOG.error("Failed to claim commands for worker {}.", workerId, e);
+      return Collections.emptyList();
+    }
   }
 }
@@ -20,17 +20,27 @@
 package org.apache.servicecomb.saga.alpha.server;
 
 import org.apache.servicecomb.saga.alpha.core.AdditionalEventType;
+import org.apache.servicecomb.saga.alpha.core.GlobalTxFilter;
+import org.apache.servicecomb.saga.alpha.core.GlobalTxSummary;
+import org.apache.servicecomb.saga.alpha.core.GlobalTxStateRegistry;
+import org.apache.servicecomb.saga.alpha.core.KeysetPage;
+import org.apache.servicecomb.saga.alpha.core.KeysetQuery;
 import org.apache.servicecomb.saga.alpha.core.TxEvent;
 import org.apache.servicecomb.saga.alpha.core.TxEventRepository;
+import org.apache.servicecomb.saga.alpha.core.TxTimeoutDetector;
 import org.apache.servicecomb.saga.alpha.core.datadictionary.DataDictionaryItem;
 import org.apache.servicecomb.saga.alpha.core.datadictionary.IDataDictionaryService;
-import org.apache.servicecomb.saga.alpha.core.listener.GlobalTxListener;
+import org.apache.servicecomb.saga.alpha.core.listener.TxEventBus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -45,19 +55,70 @@ class SpringTxEventRepository implements TxEventRepository {
   private IDataDictionaryService dataDictionaryService;
 
   @Autowired
-  private GlobalTxListener globalTxListener;
+  private TxEventBus txEventBus;
 
-  SpringTxEventRepository(TxEventEnvelopeRepository eventRepo) {
+  @Autowired
+  private GlobalTxSummaryEntityRepository summaryRepo;
+
+  @Autowired
+  private KeysetRepository keysetRepository;
+
+  @Autowired
+  private GlobalTxStateRegistry globalTxStateRegistry;
+
+  @Autowired
+  private TxTimeoutDetector txTimeoutDetector;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  private final TxEventWriter eventWriter;
+
+  // null means that every event is committed by itself.
+  private final TxEventGroupCommitter groupCommitter;
+
+  SpringTxEventRepository(TxEventEnvelopeRepository eventRepo, TxEventWriter eventWriter, TxEventGroupCommitter groupCommitter) {
     this.eventRepo = eventRepo;
+    this.eventWriter = eventWriter;
+    this.groupCommitter = groupCommitter;
   }
 
   @Override
   public void save(TxEvent event) {
-    TxEvent saveEvent = eventRepo.save(event);
-    if (saveEvent != null) {
-      event.setSurrogateId(saveEvent.id());
-      globalTxListener.listenEvent(event);
+    if (groupCommitter != null) {
+      groupCommitter.persist(event);
+      globalTxStateRegistry.onEventSaved(event);
+      txTimeoutDetector.onEventSaved(event);
+      txEventBus.publish(event);
+      return;
+    }
+    try {
+      // the event and the ActiveGlobalTx table are written in one transaction.
+      eventWriter.write(Collections.singletonList(event));
+    } catch (SQLException e) {
+      throw new IllegalStateException("Failed to persist event " + event, e);
     }
+    globalTxStateRegistry.onEventSaved(event);
+    txTimeoutDetector.onEventSaved(event);
+    txEventBus.publish(event);
+  }
+
+  // It's a batch already, so it's written directly rather than by the group committer.
+  @Override
+  public void saveAll(List<TxEvent> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    try {
+      eventWriter.write(events);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Failed to persist " + events.size() + " events by batch.", e);
+    }
+    events.forEach(event -> {
+      globalTxStateRegistry.onEventSaved(event);
+      txTimeoutDetector.onEventSaved(event);
+      txEventBus.publish(event);
+    });
   }
 
   @Override
@@ -76,11 +137,6 @@ class SpringTxEventRepository implements TxEventRepository {
     return eventRepo.findFirstStartedEventByGlobalTxIdAndLocalTxId(globalTxId, localTxId);
   }
 
-  @Override
-  public List<TxEvent> findSequentialCompensableEventOfUnended(long unendedMinEventId) {
-    return eventRepo.findSequentialCompensableEventOfUnended(unendedMinEventId);
-  }
-
   @Override
   public List<String> selectAllTypeByGlobalTxId(String globalTxId) {
     return eventRepo.selectAllTypeByGlobalTxId(globalTxId);
@@ -91,6 +147,44 @@ class SpringTxEventRepository implements TxEventRepository {
 		return eventRepo.selectPausedAndContinueEvent(globalTxId);
 	}
 
+  @Override
+  public List<TxEvent> selectPauseEventsOfUnendedTx() {
+    return eventRepo.selectPauseEventsOfUnendedTx();
+  }
+
+  // Driven by the ActiveGlobalTx table, so the finished global transactions are never scanned, the query only consists of the given conditions.
+  @Override
+  public List<TxEvent> selectSagaStartedEventsOfUnendedTx(GlobalTxFilter filter, long afterSurrogateId) {
+    Map<String, Object> params = new LinkedHashMap<>();
+    TypedQuery<TxEvent> query = entityManager.createQuery(toSagaStartedJpql(filter, afterSurrogateId, params), TxEvent.class);
+    params.forEach(query::setParameter);
+    query.setMaxResults(filter.limit());
+    return query.getResultList();
+  }
+
+  static String toSagaStartedJpql(GlobalTxFilter filter, long afterSurrogateId, Map<String, Object> params) {
+    StringBuilder jpql = new StringBuilder("SELECT t FROM ActiveGlobalTx a, TxEvent t WHERE t.globalTxId = a.globalTxId AND t.type = 'SagaStartedEvent'"
+        + " AND t.surrogateId > :afterSurrogateId");
+    params.put("afterSurrogateId", afterSurrogateId);
+    if (!filter.globalTxIds().isEmpty()) {
+      jpql.append(" AND t.globalTxId IN :globalTxIds");
+      params.put("globalTxIds", filter.globalTxIds());
+    }
+    if (filter.serviceName() != null) {
+      jpql.append(" AND t.serviceName = :serviceName");
+      params.put("serviceName", filter.serviceName());
+    }
+    if (filter.startTime() != null) {
+      jpql.append(" AND t.creationTime >= :startTime");
+      params.put("startTime", filter.startTime());
+    }
+    if (filter.endTime() != null) {
+      jpql.append(" AND t.creationTime <= :endTime");
+      params.put("endTime", filter.endTime());
+    }
+    return jpql.append(" ORDER BY t.surrogateId").toString();
+  }
+
   @Override
   public Set<String> selectEndedGlobalTx(Set<String> localTxIdSet) {
     return eventRepo.selectEndedGlobalTx(localTxIdSet);
@@ -108,54 +202,69 @@ class SpringTxEventRepository implements TxEventRepository {
 
   @Override
   public List<Map<String, Object>> findTxList(int pageIndex, int pageSize, String orderName, String direction, String searchText) {
-    // 确定本次分页查询的全局事务
-    List<TxEvent> txStartedEventList = this.searchTxList(pageIndex, pageSize, orderName, direction, searchText);
-    if (txStartedEventList != null && !txStartedEventList.isEmpty()) {
+    // 确定本次分页查询的全局事务，状态等已由GlobalTxSummary维护，无需再查询及计算全部事件
+    List<GlobalTxSummary> summaryList = this.searchTxList(pageIndex, pageSize, orderName, direction, searchText);
+    if (summaryList != null && !summaryList.isEmpty()) {
+      Map<String, String> statusValueName = globalTxStatusNames();
       List<Map<String, Object>> resultTxEventList = new LinkedList<>();
-
-      List<String> globalTxIdList = new ArrayList<>();
-      txStartedEventList.forEach(event -> {
-        globalTxIdList.add(event.globalTxId());
-        resultTxEventList.add(event.toMap());
-      });
-
-      List<TxEvent> txEventList = eventRepo.selectTxEventByGlobalTxIds(globalTxIdList);
-      if (txEventList != null && !txEventList.isEmpty()) {
-        // 计算全局事务的状态
-        computeGlobalTxStatus(txEventList, resultTxEventList);
-      }
-
+      summaryList.forEach(summary -> resultTxEventList.add(summary.toMap(statusValueName.get(String.valueOf(summary.status())))));
       return resultTxEventList;
     }
     return null;
   }
 
-  private List<TxEvent> searchTxList(int pageIndex, int pageSize, String orderName, String direction, String searchText) {
-    // TODO 检测是否有非数字，如果有非数字则过滤掉数字类型字段
-    // TODO 检测如果是字符“-”，则视为无searchText处理，因为每一行的日期都含有“-”，或者是当已完成的查询
+  @Override
+  public KeysetPage findTxList(KeysetQuery query) {
+    List<GlobalTxSummary> summaryList = keysetRepository.findPage(KeysetRepository.Table.GLOBAL_TX_SUMMARY, query, GlobalTxSummary.class);
+    Map<String, String> statusValueName = globalTxStatusNames();
+    return KeysetPage.of(summaryList, query.pageSize(), summary -> summary.toMap(statusValueName.get(String.valueOf(summary.status()))),
+        summary -> KeysetQuery.cursorOf(summary.startTime().getTime(), summary.globalTxId()));
+  }
+
+  private Map<String, String> globalTxStatusNames() {
+    Map<String, String> statusValueName = new HashMap<>();
+    List<DataDictionaryItem> dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("global-tx-status");
+    if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
+      dataDictionaryItemList.forEach(dd -> statusValueName.put(dd.getValue(), dd.getName()));
+    }
+    return statusValueName;
+  }
+
+  private List<GlobalTxSummary> searchTxList(int pageIndex, int pageSize, String orderName, String direction, String searchText) {
     try {
       pageIndex = pageIndex < 1 ? 0 : pageIndex;
       pageSize = pageSize < 1 ? 100 : pageSize;
 
       Sort.Direction sd = Sort.Direction.DESC;
-      if (orderName == null || orderName.length() == 0) {
-        orderName = "creationTime";
-      }
       if ("asc".equalsIgnoreCase(direction)) {
         sd = Sort.Direction.ASC;
       }
 
-      PageRequest pageRequest = new PageRequest(pageIndex, pageSize, sd, orderName);
+      PageRequest pageRequest = new PageRequest(pageIndex, pageSize, sd, convertToSummaryFieldName(orderName));
       if (searchText == null || searchText.length() == 0) {
-        return eventRepo.findTxList(pageRequest);
+        return summaryRepo.findSummaries(pageRequest);
       }
-      return eventRepo.findTxList(pageRequest, searchText);
+      return summaryRepo.findSummaries(pageRequest, searchText);
     } catch (Exception e) {
       LOG.error("Failed to find the list of Global Transaction. params {pageIndex: [{}], pageSize: [{}], orderName: [{}], direction: [{}], searchText: [{}]}.", pageIndex, pageSize, orderName, direction, searchText, e);
     }
     return null;
   }
 
+  // The list was ordered by the fields of SagaStartedEvent.
+  private String convertToSummaryFieldName(String orderName) {
+    if (orderName == null || orderName.length() == 0 || "creationTime".equals(orderName)) {
+      return "startTime";
+    }
+    if ("surrogateId".equals(orderName)) {
+      return "startEventId";
+    }
+    if ("status_db".equalsIgnoreCase(orderName)) {
+      return "status";
+    }
+    return orderName;
+  }
+
   @Override
   public List<TxEvent> selectTxEventByGlobalTxIds(List<String> globalTxIdList) {
     return eventRepo.selectTxEventByGlobalTxIds(globalTxIdList);
@@ -164,9 +273,9 @@ class SpringTxEventRepository implements TxEventRepository {
   @Override
   public long findTxCount(String searchText) {
     if (searchText == null || searchText.length() == 0) {
-      return eventRepo.findTxListCount();
+      return summaryRepo.countSummaries();
     }
-    return eventRepo.findTxListCount(searchText);
+    return summaryRepo.countSummaries(searchText);
   }
 
   @Override
@@ -199,7 +308,9 @@ class SpringTxEventRepository implements TxEventRepository {
 
   @Override
   public long selectMinUnendedTxEventId(long unendedMinEventId) {
-    return eventRepo.selectMinUnendedTxEventId(unendedMinEventId);
+    // the scanner selects the events after this id, so it's just before the first event of the unfinished global transactions.
+    long minActiveEventId = eventRepo.selectMinActiveEventId();
+    return minActiveEventId > 0 ? minActiveEventId - 1 : 0;
   }
 
   @Override
@@ -208,8 +319,8 @@ class SpringTxEventRepository implements TxEventRepository {
   }
 
   @Override
-  public List<Long> selectEndedEventIdsWithinSomePeriod(int pageIndex, int pageSize, Date startTime, Date endTime) {
-    return eventRepo.selectEndedEventIdsWithinSomePeriod(new PageRequest(pageIndex, pageSize), startTime, endTime);
+  public List<Long> selectEndedEventIdsWithinSomePeriod(long afterEventId, int limit, Date startTime, Date endTime) {
+    return eventRepo.selectEndedEventIdsWithinSomePeriod(afterEventId, startTime, endTime, new PageRequest(0, limit));
   }
 
   @Override
@@ -222,82 +333,9 @@ class SpringTxEventRepository implements TxEventRepository {
     return eventRepo.selectSubTxCount(globalTxId);
   }
 
-  // 计算全局事务的状态
-  private void computeGlobalTxStatus(List<TxEvent> txEventList, List<Map<String, Object>> resultTxEventList) {
-    Map<String, String> statusValueName = new HashMap<>();
-    List<DataDictionaryItem> dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("global-tx-status");
-    if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
-      dataDictionaryItemList.forEach(dd -> statusValueName.put(dd.getValue(), dd.getName()));
-    }
-
-    // 0-运行中，1-运行异常，2-暂停，3-正常结束，4-异常结束
-    resultTxEventList.forEach(txMap -> {
-      txMap.put("status_db", 0);
-      txMap.put("status", statusValueName.get("0"));
-    });
-
-    txEventList.forEach(event -> {
-      if (TxAbortedEvent.name().equals(event.type())) {
-        for (Map<String, Object> txMap : resultTxEventList) {
-          if (event.globalTxId().equals(txMap.get("globalTxId").toString())) {
-            // 异常状态
-            txMap.put("status_db", 1);
-            txMap.put("status", statusValueName.get("1"));
-            break;
-          }
-        }
-      }
-    });
-
-    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-    txEventList.forEach(event -> {
-      if (SagaEndedEvent.name().equals(event.type())) {
-        for (Map<String, Object> txMap : resultTxEventList) {
-          if (event.globalTxId().equals(txMap.get("globalTxId").toString())) {
-            // ****设置结束时间****
-            txMap.put("endTime", sdf.format(event.creationTime()));
-            if (Integer.parseInt(txMap.get("status_db").toString()) == 0) {
-              // 正常结束
-              txMap.put("status_db", 3);
-              txMap.put("status", statusValueName.get("3"));
-            } else {
-              // 异常结束
-              txMap.put("status_db", 4);
-              txMap.put("status", statusValueName.get("4"));
-            }
-            break;
-          }
-        }
-      }
-    });
-
-    resultTxEventList.forEach(txMap -> {
-      // 正常状态场景才去验证是否暂停
-      if (Integer.parseInt(txMap.get("status_db").toString()) == 0) {
-        txEventList.forEach(event -> {
-          if (event.globalTxId().equals(txMap.get("globalTxId").toString()) && (AdditionalEventType.SagaPausedEvent.name().equals(event.type()) || AdditionalEventType.SagaAutoContinuedEvent.name().equals(event.type()))) {
-            List<TxEvent> pauseContinueEventList = eventRepo.selectPausedAndContinueEvent(event.globalTxId());
-            if (pauseContinueEventList != null && !pauseContinueEventList.isEmpty()) {
-              // 暂停状态
-              if (pauseContinueEventList.size() % 2 == 1) {
-                // 暂停
-                txMap.put("status_db", 2);
-                txMap.put("status", statusValueName.get("2"));
-              }
-            }
-          }
-        });
-      }
-    });
-  }
-
   // 计算子事务的状态
   private void computeSubTxStatus(List<TxEvent> txEventList, List<Map<String, Object>> resultTxEventList) {
-    Map<String, String> statusValueName = new HashMap<>();
-    List<DataDictionaryItem> dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("global-tx-status");
-    if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
-      dataDictionaryItemList.forEach(dd -> statusValueName.put(dd.getValue(), dd.getName()));
-    }
+    Map<String, String> statusValueName = globalTxStatusNames();
 
     // 0-运行中，1-运行异常，2-暂停，3-正常结束，4-异常结束
     resultTxEventList.forEach(txMap -> {
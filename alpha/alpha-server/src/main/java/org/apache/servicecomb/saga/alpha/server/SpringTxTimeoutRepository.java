@@ -24,6 +24,8 @@ import javax.transaction.Transactional;
 import java.lang.invoke.MethodHandles;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static org.apache.servicecomb.saga.alpha.core.TaskStatus.PENDING;
 
@@ -45,6 +47,19 @@ public class SpringTxTimeoutRepository implements TxTimeoutRepository {
     }
   }
 
+  @Override
+  public void saveIfAbsent(TxTimeout timeout) {
+    try {
+      timeoutRepo.save(timeout);
+    } catch (Exception e) {
+      if (SqlErrors.isDuplicateKey(e)) {
+        LOG.debug("The timeout of event {} was recorded already.", timeout.eventId());
+      } else {
+        LOG.warn("Failed to save some timeout {}", timeout, e);
+      }
+    }
+  }
+
   @Override
   public long findTxTimeoutByEventId(long eventId) {
     return timeoutRepo.findTxTimeoutByEventId(eventId);
@@ -62,9 +77,10 @@ public class SpringTxTimeoutRepository implements TxTimeoutRepository {
 
   @Transactional
   @Override
-  public List<TxTimeout> findFirstTimeout() {
+  public List<TxTimeout> findFirstTimeout(Predicate<String> isAcceptedGlobalTx) {
 //    List<TxTimeout> timeoutEvents = timeoutRepo.findFirstTimeoutTxOrderByExpireTimeAsc(new PageRequest(0, 1), new Date());
-    List<TxTimeout> timeoutEvents = timeoutRepo.findFirstTimeoutTxOrderByExpireTimeAsc(new Date());
+    List<TxTimeout> timeoutEvents = timeoutRepo.findFirstTimeoutTxOrderByExpireTimeAsc(new Date()).stream()
+        .filter(timeout -> isAcceptedGlobalTx.test(timeout.globalTxId())).collect(Collectors.toList());
     timeoutEvents.forEach(event -> timeoutRepo
         .updateStatusByGlobalTxIdAndLocalTxId(PENDING.name(), event.globalTxId(), event.localTxId()));
     return timeoutEvents;
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import java.sql.SQLException;
+
+/**
+ * @since 2019/10/18
+ */
+final class SqlErrors {
+    // MySQL reports every integrity violation as 23000, PostgreSQL and HSQLDB report the unique one as 23505.
+    private static final String MYSQL_DUPLICATE_KEY = "23000";
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private SqlErrors() {
+    }
+
+    /**
+     * Whether the exception, or any of its causes, e.g. the ones wrapped by JPA and Spring, is a violation of a unique key.
+     */
+    static boolean isDuplicateKey(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (MYSQL_DUPLICATE_KEY.equals(sqlState) || UNIQUE_VIOLATION.equals(sqlState)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -29,16 +29,17 @@ import java.util.Set;
 interface TxEventEnvelopeRepository extends CrudRepository<TxEvent, Long> {
   List<TxEvent> findByGlobalTxId(String globalTxId);
 
-  @Query(value = "SELECT * FROM TxEvent t WHERE t.surrogateId > ?1 AND t.type IN ('TxStartedEvent', 'SagaStartedEvent') AND t.expiryTime < ?2" +
-          " AND NOT EXISTS (SELECT 1 FROM TxEvent t1 WHERE t1.globalTxId = t.globalTxId AND t1.localTxId = t.localTxId AND t1.type != t.type)" +
+  // It drives from the unfinished global transactions which may be expired, rather than the whole history of TxEvent.
+  @Query(value = "SELECT t.* FROM ActiveGlobalTx a, TxEvent t WHERE a.expiryTime < ?2" +
           // 查询超时事件要去除带有异常的，因为这种情况是未超时先异常了，所以无需再处理
-          " AND NOT EXISTS (SELECT 1 FROM TxEvent t2 WHERE t2.globalTxId = t.globalTxId AND t2.type = 'TxAbortedEvent')" + EventScanner.SCANNER_SQL, nativeQuery = true)
+          " AND a.status != 'ABORTED'" +
+          " AND t.globalTxId = a.globalTxId AND t.surrogateId > ?1 AND t.type IN ('TxStartedEvent', 'SagaStartedEvent') AND t.expiryTime < ?2" +
+          " AND NOT EXISTS (SELECT 1 FROM TxEvent t1 WHERE t1.globalTxId = t.globalTxId AND t1.localTxId = t.localTxId AND t1.type != t.type)" + EventScanner.SCANNER_SQL, nativeQuery = true)
   List<TxEvent> findTimeoutEvents(long unendedMinEventId, Date currentDateTime);
 
   // 查询某未结束的全局事务中的超时未处理的记录，如果全局事务和子事务都设置了超时，则优先获取子事务的(其实哪个都可以)
   @Query(value = "SELECT * FROM TxEvent t WHERE t.globalTxId = ?1 AND t.type IN ('TxStartedEvent', 'SagaStartedEvent') AND t.expiryTime < ?2" +
-          " AND NOT EXISTS (SELECT 1 FROM TxEvent WHERE globalTxId = ?1 AND type = 'TxAbortedEvent')" +
-          " AND NOT EXISTS (SELECT 1 FROM TxEvent WHERE globalTxId = ?1 AND type = 'SagaEndedEvent')" +
+          " AND EXISTS (SELECT 1 FROM ActiveGlobalTx a WHERE a.globalTxId = ?1 AND a.status != 'ABORTED')" +
           " ORDER BY surrogateId DESC LIMIT 1", nativeQuery = true)
   TxEvent findTimeoutEventsBeforeEnding(String globalTxId, Date currentDateTime);
 
@@ -81,16 +82,18 @@ interface TxEventEnvelopeRepository extends CrudRepository<TxEvent, Long> {
           " AND NOT EXISTS (SELECT 1 FROM TxEvent t2 WHERE t.globalTxId = t2.globalTxId AND t2.localTxId = t.localTxId AND t2.type = 'TxCompensatedEvent')")
   List<TxEvent> findNeedCompensateEventForException(String globalTxId, String localTxId);
 
-  @Query(value = "SELECT * FROM TxEvent t WHERE t.surrogateId > ?1 AND t.globalTxId NOT IN (SELECT t1.globalTxId FROM TxEvent t1 WHERE t1.type = 'SagaEndedEvent') AND t.type = 'TxCompensatedEvent' ORDER BY surrogateId" + EventScanner.SCANNER_SQL, nativeQuery = true)
-  List<TxEvent> findSequentialCompensableEventOfUnended(long unendedMinEventId);
-
   @Query("SELECT T.type FROM TxEvent T WHERE T.globalTxId = ?1")
   List<String> selectAllTypeByGlobalTxId(String globalTxId);
 
   @Query(value = "SELECT T FROM TxEvent T WHERE T.type IN ('SagaPausedEvent', 'SagaContinuedEvent', 'SagaAutoContinuedEvent') AND T.globalTxId = ?1 ORDER BY T.surrogateId DESC")
   List<TxEvent> selectPausedAndContinueEvent(String globalTxId);
 
-  @Query(value = "SELECT DISTINCT T2.localTxId FROM TxEvent T2 WHERE T2.globalTxId IN (SELECT T1.globalTxId FROM TxEvent T1 WHERE T1.type = 'SagaEndedEvent' AND T1.globalTxId IN (SELECT T.globalTxId FROM TxEvent T WHERE T.localTxId IN ?1)) AND T2.localTxId IN ?1")
+  @Query("SELECT t FROM ActiveGlobalTx a, TxEvent t WHERE t.globalTxId = a.globalTxId"
+      + " AND t.type IN ('SagaPausedEvent', 'SagaContinuedEvent', 'SagaAutoContinuedEvent') ORDER BY t.surrogateId")
+  List<TxEvent> selectPauseEventsOfUnendedTx();
+
+  // A global transaction has ended if it's not active any more.
+  @Query(value = "SELECT DISTINCT T.localTxId FROM TxEvent T WHERE T.localTxId IN ?1 AND NOT EXISTS (SELECT A.globalTxId FROM ActiveGlobalTx A WHERE A.globalTxId = T.globalTxId)")
   Set<String> selectEndedGlobalTx(Set<String> localTxIdSet);
 
   @Query(value = "SELECT * FROM (SELECT count(1) FROM TxEvent T WHERE T.globalTxId = ?1 AND T.localTxId = ?2 AND T.type = ?3) T1", nativeQuery = true)
@@ -99,39 +102,25 @@ interface TxEventEnvelopeRepository extends CrudRepository<TxEvent, Long> {
   @Query(value = "SELECT * FROM (SELECT count(1) FROM TxEvent T WHERE T.globalTxId = ?1 AND T.localTxId = ?2 AND T.type = 'TxStartedEvent' AND T.retries = 0) T1", nativeQuery = true)
   long checkTxIsAborted(String globalTxId, String localTxId);
 
-  @Query("SELECT new org.apache.servicecomb.saga.alpha.core.TxEvent(T.surrogateId, T.globalTxId, T.serviceName, T.instanceId, T.category, T.expiryTime, T.retries, T.creationTime)" +
-          " FROM TxEvent T WHERE T.type = 'SagaStartedEvent'")
-  List<TxEvent> findTxList(Pageable pageable);
-
   @Query("FROM TxEvent T WHERE T.globalTxId IN ?1 ")
   List<TxEvent> selectTxEventByGlobalTxIds(List<String> globalTxIdList);
 
-  // FUNCTION('CONCAT_WS', ',', field1, field2...   以逗号分割，并支持字段值为null，当字段值为null时会视为空字符串
-  @Query("SELECT new org.apache.servicecomb.saga.alpha.core.TxEvent(T.surrogateId, T.globalTxId, T.serviceName, T.instanceId, T.category, T.expiryTime, T.retries, T.creationTime)" +
-          " FROM TxEvent T WHERE T.type = 'SagaStartedEvent' AND FUNCTION('CONCAT_WS', ',', T.globalTxId, T.instanceId, T.category, T.expiryTime, T.retries, T.creationTime) LIKE CONCAT('%', ?1, '%')")
-  List<TxEvent> findTxList(Pageable pageable, String searchText);
-
-  @Query("SELECT COUNT(1) FROM TxEvent T WHERE T.type = 'SagaStartedEvent'")
-  long findTxListCount();
-
-  @Query("SELECT COUNT(1) FROM TxEvent T WHERE T.type = 'SagaStartedEvent' AND FUNCTION('CONCAT_WS', ',', T.globalTxId, T.instanceId, T.category, T.expiryTime, T.retries, T.creationTime) LIKE CONCAT('%', ?1, '%')")
-  long findTxListCount(String searchText);
-
   @Query("SELECT new org.apache.servicecomb.saga.alpha.core.TxEvent(T.surrogateId, T.globalTxId, T.localTxId, T.serviceName, T.instanceId, T.type, T.category, T.expiryTime, T.retries, T.creationTime)" +
           " FROM TxEvent T WHERE T.globalTxId IN ?1 ")
   List<TxEvent> selectSpecialColumnsOfTxEventByGlobalTxIds(List<String> globalTxIdList);
 
-  @Query("FROM TxEvent t WHERE t.surrogateId > ?1 AND t.globalTxId NOT IN (SELECT t1.globalTxId FROM TxEvent t1 WHERE t1.type = 'SagaEndedEvent')")
+  @Query("SELECT t FROM ActiveGlobalTx a, TxEvent t WHERE t.globalTxId = a.globalTxId AND t.surrogateId > ?1")
   List<TxEvent> selectUnendedTxEvents(long unendedMinEventId);
 
-  @Query("SELECT coalesce(min(t.surrogateId), 0) FROM TxEvent t WHERE t.surrogateId > ?1 AND t.globalTxId NOT IN (SELECT t1.globalTxId FROM TxEvent t1 WHERE t1.surrogateId > ?1 AND t1.type = 'SagaEndedEvent')")
-  long selectMinUnendedTxEventId(long unendedMinEventId);
+  @Query("SELECT coalesce(min(a.minEventId), 0) FROM ActiveGlobalTx a")
+  long selectMinActiveEventId();
 
   @Query(value = "SELECT min(creationTime) FROM TxEvent", nativeQuery = true)
   Date selectMinDateInTxEvent();
 
-  @Query("SELECT T.surrogateId FROM TxEvent T WHERE T.creationTime BETWEEN ?1 AND ?2 AND EXISTS (SELECT 1 FROM TxEvent T1 WHERE T1.type = 'SagaEndedEvent' AND FUNCTION('TO_DAYS', CURRENT_TIMESTAMP) - FUNCTION('TO_DAYS', T1.creationTime) > 10 AND T.globalTxId = T1.globalTxId)")
-  List<Long> selectEndedEventIdsWithinSomePeriod(Pageable pageable, Date startTime, Date endTime);
+  // keyset pagination on the primary key, the cost of a page doesn't grow with the pages before it.
+  @Query("SELECT T.surrogateId FROM TxEvent T WHERE T.surrogateId > ?1 AND T.creationTime BETWEEN ?2 AND ?3 AND EXISTS (SELECT 1 FROM TxEvent T1 WHERE T1.type = 'SagaEndedEvent' AND FUNCTION('TO_DAYS', CURRENT_TIMESTAMP) - FUNCTION('TO_DAYS', T1.creationTime) > 10 AND T.globalTxId = T1.globalTxId) ORDER BY T.surrogateId")
+  List<Long> selectEndedEventIdsWithinSomePeriod(long afterEventId, Date startTime, Date endTime, Pageable pageable);
 
   @Query("FROM TxEvent T WHERE T.globalTxId = ?1 AND T.type = ?2")
   TxEvent selectEventByGlobalTxIdType(String globalTxId, String type);
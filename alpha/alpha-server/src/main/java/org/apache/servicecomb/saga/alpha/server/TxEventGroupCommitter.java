@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.lang.invoke.MethodHandles;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for TxEvents.
+ *
+ * The callers of 'persist' put their events into a bounded queue and wait. One writer thread takes up to 'batchSize'
+ * events, or whatever arrived within 'lingerMillis' after the first one, inserts them by one JDBC batch in one
+ * transaction, and then releases every caller of the batch. So the database commits once per batch instead of once
+ * per event, and an ack is never sent back to omega before its event is durable. The callers whose events are still
+ * queued when the writer failed to stop in time are failed on shutdown rather than waiting forever.
+ *
+ * @since 2019/10/18
+ */
+class TxEventGroupCommitter {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final TxEventWriter eventWriter;
+    private final TxleMetrics txleMetrics;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<PendingEvent> queue;
+    private final Thread writer;
+    private final long shutdownTimeoutMillis;
+    private volatile boolean running = true;
+
+    TxEventGroupCommitter(TxEventWriter eventWriter, TxleMetrics txleMetrics, int batchSize, int lingerMillis, int capacity) {
+        this(eventWriter, txleMetrics, batchSize, lingerMillis, capacity, TimeUnit.SECONDS.toMillis(5));
+    }
+
+    TxEventGroupCommitter(TxEventWriter eventWriter, TxleMetrics txleMetrics, int batchSize, int lingerMillis, int capacity, long shutdownTimeoutMillis) {
+        this.eventWriter = eventWriter;
+        this.txleMetrics = txleMetrics;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.queue = new ArrayBlockingQueue<>(Math.max(this.batchSize, capacity));
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.writer = new Thread(this::writeLoop, "txle-event-group-committer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Blocks until the event is committed, and the surrogate id is set to it at that time.
+     */
+    void persist(TxEvent event) {
+        if (!running) {
+            writeDirectly(event);
+            return;
+        }
+        PendingEvent pendingEvent = new PendingEvent(event);
+        try {
+            // If the queue is full, the caller waits here, it's the back pressure to omega.
+            queue.put(pendingEvent);
+            txleMetrics.markEventPersistQueueDepth(queue.size());
+            // It's queued while shutting down, the writer may have exited, so it's written here unless it's taken already.
+            if (!running && queue.remove(pendingEvent)) {
+                writeDirectly(event);
+                return;
+            }
+            pendingEvent.durable.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while persisting event " + event, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed to persist event " + event, cause);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(shutdownTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the writer is stuck, e.g. by the database, so the events which it has not taken are never written.
+        List<PendingEvent> unwritten = new ArrayList<>();
+        queue.drainTo(unwritten);
+        if (!unwritten.isEmpty()) {
+            LOG.error("Failed {} events which were not persisted before shutting down.", unwritten.size());
+            IllegalStateException shutdown = new IllegalStateException("The events are not persisted because alpha is shutting down.");
+            unwritten.forEach(pendingEvent -> pendingEvent.durable.completeExceptionally(shutdown));
+        }
+    }
+
+    private void writeDirectly(TxEvent event) {
+        try {
+            eventWriter.write(Collections.singletonList(event));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to persist event " + event, e);
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEvent first = running ? queue.poll(1, TimeUnit.SECONDS) : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    PendingEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // it's the signal of shutting down, the rest of events will be flushed before exiting.
+            }
+
+            if (!batch.isEmpty()) {
+                txleMetrics.markEventPersistQueueDepth(queue.size());
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingEvent> batch) {
+        long startTime = System.nanoTime();
+        try {
+            List<TxEvent> events = new ArrayList<>(batch.size());
+            batch.forEach(pendingEvent -> events.add(pendingEvent.event));
+            eventWriter.write(events);
+            batch.forEach(pendingEvent -> pendingEvent.durable.complete(null));
+        } catch (Exception e) {
+            LOG.error("Failed to persist {} events by batch, they will be persisted one by one.", batch.size(), e);
+            // One bad event should not fail the others which happened to be in the same batch.
+            for (PendingEvent pendingEvent : batch) {
+                try {
+                    eventWriter.write(Collections.singletonList(pendingEvent.event));
+                    pendingEvent.durable.complete(null);
+                } catch (Exception ex) {
+                    pendingEvent.durable.completeExceptionally(ex);
+                }
+            }
+        } finally {
+            txleMetrics.markEventPersistFlush(batch.size(), System.nanoTime() - startTime);
+        }
+    }
+
+    private static final class PendingEvent {
+        private final TxEvent event;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private PendingEvent(TxEvent event) {
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts TxEvents by one JDBC batch and maintains the ActiveGlobalTx and GlobalTxSummary tables by them, all in one transaction.
+ *
+ * @since 2019/10/18
+ */
+class TxEventWriter {
+    private static final String INSERT_SQL = "INSERT INTO TxEvent (serviceName, instanceId, creationTime, globalTxId, localTxId, parentTxId, type, "
+            + "compensationMethod, expiryTime, retryMethod, retries, category, payloads) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final DataSource dataSource;
+    private final ActiveGlobalTxTracker activeGlobalTxTracker;
+    private final GlobalTxSummaryUpdater globalTxSummaryUpdater;
+
+    TxEventWriter(DataSource dataSource, ActiveGlobalTxTracker activeGlobalTxTracker, GlobalTxSummaryUpdater globalTxSummaryUpdater) {
+        this.dataSource = dataSource;
+        this.activeGlobalTxTracker = activeGlobalTxTracker;
+        this.globalTxSummaryUpdater = globalTxSummaryUpdater;
+    }
+
+    /**
+     * The surrogate ids are set to the events after committing.
+     */
+    void write(List<TxEvent> events) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (TxEvent event : events) {
+                    bind(statement, event);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+
+                List<Long> generatedIds = new ArrayList<>(events.size());
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    while (generatedKeys.next()) {
+                        generatedIds.add(generatedKeys.getLong(1));
+                    }
+                }
+                // the listeners of saved events, e.g. the timeout detector, rely on the ids, so the events are not persisted without them.
+                if (generatedIds.size() != events.size()) {
+                    throw new SQLException("The driver returned " + generatedIds.size() + " generated ids for a batch of " + events.size() + " events.");
+                }
+                activeGlobalTxTracker.apply(connection, events);
+                globalTxSummaryUpdater.apply(connection, events);
+                connection.commit();
+
+                for (int i = 0; i < events.size(); i++) {
+                    events.get(i).setSurrogateId(generatedIds.get(i));
+                }
+            } catch (SQLException | RuntimeException | Error e) {
+                // anything thrown by the projections rolls the batch back too, otherwise restoring auto-commit would commit half of it.
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void bind(PreparedStatement statement, TxEvent event) throws SQLException {
+        statement.setString(1, event.serviceName());
+        statement.setString(2, event.instanceId());
+        statement.setTimestamp(3, new Timestamp(event.creationTime().getTime()));
+        statement.setString(4, event.globalTxId());
+        statement.setString(5, event.localTxId());
+        statement.setString(6, event.parentTxId());
+        statement.setString(7, event.type());
+        statement.setString(8, event.compensationMethod());
+        statement.setTimestamp(9, new Timestamp(event.expiryTime().getTime()));
+        statement.setString(10, event.retryMethod());
+        statement.setInt(11, event.retries());
+        statement.setString(12, event.category());
+        if (event.payloads() == null) {
+            statement.setNull(13, Types.BLOB);
+        } else {
+            statement.setBytes(13, event.payloads());
+        }
+    }
+}
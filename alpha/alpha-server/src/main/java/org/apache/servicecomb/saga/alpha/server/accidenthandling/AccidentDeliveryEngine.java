@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.accidenthandling;
+
+import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
+import org.apache.servicecomb.saga.alpha.core.accidenthandling.AccidentHandleStatus;
+import org.apache.servicecomb.saga.alpha.core.accidenthandling.AccidentHandling;
+import org.apache.servicecomb.saga.common.TxleConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers the accidents to the accident platform by one shared thread, the Accident table is the queue.
+ *
+ * An accident is saved as 'sending' and it's due at once. The thread claims the due accidents in batches, a claim makes
+ * the accidents due after a lease, so the ones of a crashed alpha are delivered by the others. A failed delivery makes
+ * the accident due after an exponential backoff with jitter, until the retries run out and it becomes 'send_fail'. The
+ * queue is bounded, the accidents beyond the capacity are not queued, its depth is counted by the queued and completed
+ * accidents in memory, and recounted from the table once a while for the ones completed by the other alpha nodes. The deliveries are stopped by a circuit breaker
+ * while the platform is down.
+ *
+ * @since 2019/10/18
+ */
+public class AccidentDeliveryEngine {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String DUE = "status = " + AccidentHandleStatus.SENDING.toInteger() + " AND (nextattempttime IS NULL OR nextattempttime <= ?)";
+    private static final String CANDIDATE_SELECT_SQL = "SELECT id FROM Accident WHERE " + DUE + " ORDER BY id";
+    private static final String DEPTH_SELECT_SQL = "SELECT COUNT(*) FROM Accident WHERE status = " + AccidentHandleStatus.SENDING.toInteger();
+    // only by the claim which is still held, an accident claimed by another worker after the lease expired is left to it.
+    private static final String RETRY_UPDATE_SQL = "UPDATE Accident SET attempts = ?, nextattempttime = ? WHERE id = ? AND workerid = ? AND status = "
+            + AccidentHandleStatus.SENDING.toInteger();
+    private static final String COMPLETE_UPDATE_SQL = "UPDATE Accident SET status = ?, completetime = ?, nextattempttime = NULL WHERE id = ? AND status = "
+            + AccidentHandleStatus.SENDING.toInteger();
+    private static final long DEPTH_RECOUNT_MILLIS = 60000;
+
+    private final DataSource dataSource;
+    private final AccidentHandlingEntityRepository accidentHandlingEntityRepository;
+    private final RestTemplate restTemplate;
+    private final String accidentPlatformAddress;
+    private final TxleMetrics txleMetrics;
+    private final int retries;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final int batchSize;
+    private final int capacity;
+    private final long leaseMillis;
+    private final long pollMillis;
+    private final CircuitBreaker circuitBreaker;
+
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName() + "-accident-delivery";
+    private final AtomicLong claims = new AtomicLong();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final Thread deliverer;
+    private long nextRecountTime;
+    private volatile boolean running = true;
+
+    public AccidentDeliveryEngine(DataSource dataSource, AccidentHandlingEntityRepository accidentHandlingEntityRepository, RestTemplate restTemplate,
+                                  String accidentPlatformAddress, TxleMetrics txleMetrics, int retries, long backoffMillis, long maxBackoffMillis,
+                                  int batchSize, int capacity, int circuitFailureThreshold, long circuitOpenMillis, long leaseMillis, long pollMillis) {
+        this.dataSource = dataSource;
+        this.accidentHandlingEntityRepository = accidentHandlingEntityRepository;
+        this.restTemplate = restTemplate;
+        this.accidentPlatformAddress = accidentPlatformAddress;
+        this.txleMetrics = txleMetrics;
+        this.retries = Math.max(0, retries);
+        this.backoffMillis = Math.max(1, backoffMillis);
+        this.maxBackoffMillis = Math.max(this.backoffMillis, maxBackoffMillis);
+        this.batchSize = Math.max(1, batchSize);
+        this.capacity = Math.max(1, capacity);
+        this.leaseMillis = leaseMillis;
+        this.pollMillis = pollMillis;
+        this.circuitBreaker = new CircuitBreaker(circuitFailureThreshold, circuitOpenMillis);
+        this.deliverer = new Thread(this::deliverAccidents, "txle-accident-delivery");
+        this.deliverer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        deliverer.start();
+    }
+
+    /**
+     * @return true if the queue reached its capacity, and a new accident should not be queued
+     */
+    public boolean isFull() {
+        return depth.get() >= capacity;
+    }
+
+    /**
+     * To deliver a new accident without waiting for the next poll.
+     */
+    public void wakeUp() {
+        txleMetrics.markAccidentQueueDepth(depth.incrementAndGet());
+        LockSupport.unpark(deliverer);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        deliverer.interrupt();
+    }
+
+    private void deliverAccidents() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            int delivered = 0;
+            try {
+                long now = System.currentTimeMillis();
+                if (now >= nextRecountTime) {
+                    recountDepth();
+                    nextRecountTime = now + DEPTH_RECOUNT_MILLIS;
+                }
+                delivered = deliverDue(now);
+            } catch (Exception e) {
+                LOG.error("Failed to deliver accidents to the accident platform [{}].", accidentPlatformAddress, e);
+            }
+            if (delivered < batchSize) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(pollMillis));
+            }
+        }
+    }
+
+    /**
+     * Delivers a batch of the due accidents.
+     *
+     * @return the count of the claimed accidents
+     */
+    int deliverDue(long now) throws SQLException {
+        if (circuitBreaker.retryTime(now) > now) {
+            return 0;
+        }
+        Map<Long, Object[]> claimed = claim(now);
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        boolean allowed = true;
+        for (AccidentHandling accident : accidentHandlingEntityRepository.findAll(claimed.keySet())) {
+            Object[] row = claimed.get(accident.getId());
+            long time = System.currentTimeMillis();
+            // the rest of a batch waits for the circuit once it's open.
+            allowed = allowed && circuitBreaker.allowRequest(time);
+            if (!allowed) {
+                postpone(accident.getId(), (Integer) row[0], circuitBreaker.retryTime(time), (String) row[2]);
+            } else if (post(accident.toJsonString())) {
+                circuitBreaker.onSuccess();
+                complete(accident.getId(), AccidentHandleStatus.SEND_OK, time);
+                txleMetrics.markAccidentDelivered(time - ((Timestamp) row[1]).getTime());
+                txleMetrics.countSuccessfulNumber(accident.getServicename());
+            } else {
+                circuitBreaker.onFailure(time);
+                int attempts = (Integer) row[0] + 1;
+                if (attempts > retries) {
+                    complete(accident.getId(), AccidentHandleStatus.SEND_FAIL, time);
+                    LOG.error(TxleConstants.LOG_ERROR_PREFIX + "Failed to report accident [{}] to Accident Platform after {} attempts.", accident.getId(), attempts);
+                    txleMetrics.countFailedNumber(accident.getServicename());
+                } else {
+                    postpone(accident.getId(), attempts, time + backoff(attempts), (String) row[2]);
+                }
+            }
+        }
+        txleMetrics.markAccidentCircuit(accidentPlatformAddress, circuitBreaker.isOpen());
+        return claimed.size();
+    }
+
+    // exponential, and a random half of it as jitter, so the accidents of an outage are not retried at the same time.
+    long backoff(int attempts) {
+        long backoff = backoffMillis << Math.min(attempts - 1, 20);
+        backoff = backoff <= 0 ? maxBackoffMillis : Math.min(backoff, maxBackoffMillis);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    // id -> {attempts, createtime, claim token}
+    private Map<Long, Object[]> claim(long now) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            List<Long> candidateIds = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(CANDIDATE_SELECT_SQL)) {
+                statement.setTimestamp(1, new Timestamp(now));
+                statement.setMaxRows(batchSize);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        candidateIds.add(resultSet.getLong(1));
+                    }
+                }
+            }
+            Map<Long, Object[]> claimed = new HashMap<>();
+            if (candidateIds.isEmpty()) {
+                return claimed;
+            }
+
+            // a unique token per claim, so the accidents claimed by the others concurrently are not selected.
+            String claimToken = workerId + "-" + claims.incrementAndGet();
+            String placeholders = placeholders(candidateIds.size());
+            String sql = "UPDATE Accident SET workerid = ?, nextattempttime = ? WHERE id IN (" + placeholders + ") AND " + DUE;
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int index = 1;
+                statement.setString(index++, claimToken);
+                statement.setTimestamp(index++, new Timestamp(now + leaseMillis));
+                for (Long id : candidateIds) {
+                    statement.setLong(index++, id);
+                }
+                statement.setTimestamp(index, new Timestamp(now));
+                if (statement.executeUpdate() == 0) {
+                    return claimed;
+                }
+            }
+            sql = "SELECT id, attempts, createtime FROM Accident WHERE workerid = ? AND id IN (" + placeholders + ")";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, claimToken);
+                for (int i = 0; i < candidateIds.size(); i++) {
+                    statement.setLong(i + 2, candidateIds.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        claimed.put(resultSet.getLong(1), new Object[] {resultSet.getInt(2), resultSet.getTimestamp(3), claimToken});
+                    }
+                }
+            }
+            return claimed;
+        }
+    }
+
+    private void postpone(long id, int attempts, long nextAttemptTime, String claimToken) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(RETRY_UPDATE_SQL)) {
+            statement.setInt(1, attempts);
+            statement.setTimestamp(2, new Timestamp(nextAttemptTime));
+            statement.setLong(3, id);
+            statement.setString(4, claimToken);
+            if (statement.executeUpdate() == 0) {
+                LOG.warn("The claim of accident [{}] was lost, e.g. its lease expired and it was claimed again, its retry is left to the new claim.", id);
+            }
+        }
+    }
+
+    private void complete(long id, AccidentHandleStatus status, long now) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(COMPLETE_UPDATE_SQL)) {
+            statement.setInt(1, status.toInteger());
+            statement.setTimestamp(2, new Timestamp(now));
+            statement.setLong(3, id);
+            if (statement.executeUpdate() > 0) {
+                txleMetrics.markAccidentQueueDepth(depth.updateAndGet(current -> Math.max(0, current - 1)));
+            }
+        }
+    }
+
+    private void recountDepth() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(DEPTH_SELECT_SQL);
+             ResultSet resultSet = statement.executeQuery()) {
+            depth.set(resultSet.next() ? resultSet.getInt(1) : 0);
+        }
+        txleMetrics.markAccidentQueueDepth(depth.get());
+    }
+
+    private boolean post(String jsonParams) {
+        boolean result = false;
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType("application/json; charset=UTF-8"));
+            String reportResponse = restTemplate.postForObject(this.accidentPlatformAddress, new HttpEntity<>(jsonParams, headers), String.class);
+            result = TxleConstants.OK.equals(reportResponse);
+        } catch (Exception e) {
+            LOG.error("Failed to report msg [{}] to Accident Platform [{}].", jsonParams, this.accidentPlatformAddress, e);
+        }
+        LOG.debug("Reported accident to platform, result [{}], platform address [{}] and accident [{}].", result, this.accidentPlatformAddress, jsonParams);
+        return result;
+    }
+
+    private String placeholders(int size) {
+        StringBuilder placeholders = new StringBuilder(size * 2);
+        for (int i = 0; i < size; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+}
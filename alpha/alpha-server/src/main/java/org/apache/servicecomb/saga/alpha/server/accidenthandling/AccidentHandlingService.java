@@ -8,6 +8,8 @@ package org.apache.servicecomb.saga.alpha.server.accidenthandling;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import org.apache.servicecomb.saga.alpha.core.KeysetPage;
+import org.apache.servicecomb.saga.alpha.core.KeysetQuery;
 import org.apache.servicecomb.saga.alpha.core.TxEvent;
 import org.apache.servicecomb.saga.alpha.core.TxEventRepository;
 import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
@@ -18,33 +20,22 @@ import org.apache.servicecomb.saga.alpha.core.accidenthandling.IAccidentHandling
 import org.apache.servicecomb.saga.alpha.core.configcenter.IConfigCenterService;
 import org.apache.servicecomb.saga.alpha.core.datadictionary.DataDictionaryItem;
 import org.apache.servicecomb.saga.alpha.core.datadictionary.IDataDictionaryService;
+import org.apache.servicecomb.saga.alpha.server.KeysetRepository;
 import org.apache.servicecomb.saga.common.TxleConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.web.client.RestTemplate;
 
 import java.lang.invoke.MethodHandles;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 public class AccidentHandlingService implements IAccidentHandlingService {
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     private static final PageRequest PAGEREQUEST = new PageRequest(0, 100);
-    private final String accidentPlatformAddress;
-    private final int retries;
-    // default is 1s
-    private final RestTemplate restTemplate;
-    private final int interval;
+    private final AccidentDeliveryEngine deliveryEngine;
 
     @Autowired
     private IConfigCenterService dbDegradationConfigService;
@@ -58,14 +49,14 @@ public class AccidentHandlingService implements IAccidentHandlingService {
     @Autowired
     private IDataDictionaryService dataDictionaryService;
 
+    @Autowired
+    private KeysetRepository keysetRepository;
+
     private AccidentHandlingEntityRepository accidentHandlingEntityRepository;
 
-    public AccidentHandlingService(AccidentHandlingEntityRepository accidentHandlingEntityRepository, String accidentPlatformAddress, int retries, int interval, RestTemplate restTemplate) {
+    public AccidentHandlingService(AccidentHandlingEntityRepository accidentHandlingEntityRepository, AccidentDeliveryEngine deliveryEngine) {
         this.accidentHandlingEntityRepository = accidentHandlingEntityRepository;
-        this.accidentPlatformAddress = accidentPlatformAddress;
-        this.retries = retries < 0 ? 0 : retries;
-        this.interval = interval < 1 ? 1 : interval;
-        this.restTemplate = restTemplate;
+        this.deliveryEngine = deliveryEngine;
     }
 
     @Override
@@ -98,43 +89,33 @@ public class AccidentHandlingService implements IAccidentHandlingService {
         return accidentHandlingEntityRepository.updateAccidentStatusByIdList(idList, status.toInteger()) > 0;
     }
 
+    /**
+     * Queues the accident in the Accident table, it's delivered by {@link AccidentDeliveryEngine}.
+     *
+     * @return true if the accident was queued
+     */
     @Override
     public boolean reportMsgToAccidentPlatform(String jsonParams) {
-        long a = System.currentTimeMillis();
-        LOG.debug(TxleConstants.logDebugPrefixWithTime() + "Message [[{}]] will send to Accident Platform [" + this.accidentPlatformAddress + "].", jsonParams);
-        AtomicBoolean result = new AtomicBoolean();
-        AtomicInteger invokeTimes = new AtomicInteger();
-
+        LOG.debug(TxleConstants.logDebugPrefixWithTime() + "Message [[{}]] will send to Accident Platform.", jsonParams);
         try {
-            AccidentHandling savedAccident = parseAccidentJson(jsonParams);
+            AccidentHandling accident = parseAccidentJson(jsonParams);
+            if (deliveryEngine.isFull()) {
+                accident.setStatus(AccidentHandleStatus.SEND_FAIL.toInteger());
+                saveAccidentHandling(accident);
+                LOG.error(TxleConstants.LOG_ERROR_PREFIX + "The queue of Accident Platform is full, accident [{}] will not be sent.", jsonParams);
+                txleMetrics.countFailedNumber(accident.getServicename());
+                return false;
+            }
             // To save accident to db.
-            saveAccidentHandling(savedAccident);
-
-            final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-            scheduler.scheduleWithFixedDelay(() -> {
-                if (result.get()) {
-                    accidentHandlingEntityRepository.updateAccidentStatusByIdList(Arrays.asList(savedAccident.getId()), AccidentHandleStatus.SEND_OK.toInteger());
-                    scheduler.shutdownNow();
-                    // TODO prometheus内部方法持续循环，无法该行代码后的代码
-                    txleMetrics.countSuccessfulNumber();
-                } else if (invokeTimes.incrementAndGet() > 1 + this.retries) {
-                    accidentHandlingEntityRepository.updateAccidentStatusByIdList(Arrays.asList(savedAccident.getId()), AccidentHandleStatus.SEND_FAIL.toInteger());
-                    LOG.error(TxleConstants.LOG_ERROR_PREFIX + "Failed to report msg to Accident Platform.");
-                    scheduler.shutdownNow();
-                    txleMetrics.countFailedNumber();
-                } else {
-                    // To report accident to Accident Platform.
-                    result.set(reportTask(jsonParams));
-                }
-                // 下一次执行会在本次任务完全执行后的interval时间后执行，如本次任务花费5s，interval为1s，那么将在6s后执行下次任务，而非1s后执行
-            }, 0, interval, TimeUnit.SECONDS);
+            if (saveAccidentHandling(accident)) {
+                deliveryEngine.wakeUp();
+                return true;
+            }
         } catch (Exception e) {
-            LOG.error(TxleConstants.LOG_ERROR_PREFIX + "Failed to report msg to Accident Platform.");
-            txleMetrics.countFailedNumber();
+            LOG.error(TxleConstants.LOG_ERROR_PREFIX + "Failed to report msg to Accident Platform.", e);
         }
-        LOG.info("Method 'AccidentPlatformService.reportMsgToAccidentPlatform' took {} milliseconds.", System.currentTimeMillis() - a);
-
-        return result.get();
+        txleMetrics.countFailedNumber(null);
+        return false;
     }
 
     @Override
@@ -142,24 +123,33 @@ public class AccidentHandlingService implements IAccidentHandlingService {
         List<AccidentHandling> accidentList = this.searchAccidentList(pageIndex, pageSize, orderName, direction, searchText);
         if (accidentList != null && !accidentList.isEmpty()) {
             List<Map<String, Object>> resultAccidentList = new LinkedList<>();
+            Function<AccidentHandling, Map<String, Object>> toMap = accidentToMap();
+            accidentList.forEach(accident -> resultAccidentList.add(toMap.apply(accident)));
+            return resultAccidentList;
+        }
+        return null;
+    }
 
-            Map<String, String> typeValueName = new HashMap<>();
-            List<DataDictionaryItem> dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("accident-handle-type");
-            if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
-                dataDictionaryItemList.forEach(dd -> typeValueName.put(dd.getValue(), dd.getName()));
-            }
-
-            Map<String, String> statusValueName = new HashMap<>();
-            dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("accident-handle-status");
-            if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
-                dataDictionaryItemList.forEach(dd -> statusValueName.put(dd.getValue(), dd.getName()));
-            }
+    @Override
+    public KeysetPage findAccidentList(KeysetQuery query) {
+        List<AccidentHandling> accidentList = keysetRepository.findPage(KeysetRepository.Table.ACCIDENT, query, AccidentHandling.class);
+        return KeysetPage.of(accidentList, query.pageSize(), accidentToMap(), accident -> KeysetQuery.cursorOf(accident.getId(), null));
+    }
 
-            accidentList.forEach(accident -> resultAccidentList.add(accident.toMap(typeValueName.get(String.valueOf(accident.getType())), statusValueName.get(String.valueOf(accident.getStatus())))));
+    private Function<AccidentHandling, Map<String, Object>> accidentToMap() {
+        Map<String, String> typeValueName = new HashMap<>();
+        List<DataDictionaryItem> dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("accident-handle-type");
+        if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
+            dataDictionaryItemList.forEach(dd -> typeValueName.put(dd.getValue(), dd.getName()));
+        }
 
-            return resultAccidentList;
+        Map<String, String> statusValueName = new HashMap<>();
+        dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("accident-handle-status");
+        if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
+            dataDictionaryItemList.forEach(dd -> statusValueName.put(dd.getValue(), dd.getName()));
         }
-        return null;
+
+        return accident -> accident.toMap(typeValueName.get(String.valueOf(accident.getType())), statusValueName.get(String.valueOf(accident.getStatus())));
     }
 
     private List<AccidentHandling> searchAccidentList(int pageIndex, int pageSize, String orderName, String direction, String searchText) {
@@ -248,21 +238,4 @@ public class AccidentHandlingService implements IAccidentHandlingService {
         }
         return result;
     }
-
-    private boolean reportTask(String jsonParams) {
-        boolean result = false;
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            MediaType mediaType = MediaType.parseMediaType("application/json; charset=UTF-8");
-            headers.setContentType(mediaType);
-            HttpEntity<String> entity = new HttpEntity<>(jsonParams, headers);
-            String reportResponse = restTemplate.postForObject(this.accidentPlatformAddress, entity, String.class);
-            result = TxleConstants.OK.equals(reportResponse);
-        } catch (Exception e) {
-            LOG.error("Failed to report msg [{}] to Accident Platform [{}].", jsonParams, this.accidentPlatformAddress, e);
-        } finally {
-            LOG.error("Reported accident to platform, result [{}], platform address [{}] and accident [{}].", result, this.accidentPlatformAddress, jsonParams);
-        }
-        return result;
-    }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.accidenthandling;
+
+/**
+ * A circuit breaker of an accident platform.
+ *
+ * It opens after the given count of consecutive failures, so the accidents wait in the Accident table rather than
+ * hammering a platform which is down. Once it has been open for the given time, one request is let through as a trial,
+ * the circuit is closed if the trial succeeds, otherwise it's open again.
+ *
+ * @since 2019/10/18
+ */
+class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private int consecutiveFailures;
+    // 0 means that the circuit is closed.
+    private long openedTime;
+    private boolean trialing;
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    synchronized boolean allowRequest(long now) {
+        if (openedTime == 0) {
+            return true;
+        }
+        if (!trialing && now - openedTime >= openMillis) {
+            trialing = true;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        openedTime = 0;
+        trialing = false;
+    }
+
+    synchronized void onFailure(long now) {
+        consecutiveFailures++;
+        if (trialing || consecutiveFailures >= failureThreshold) {
+            openedTime = now;
+            trialing = false;
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return openedTime != 0;
+    }
+
+    /**
+     * @return the time when the next trial is allowed, or the given time if the circuit is closed
+     */
+    synchronized long retryTime(long now) {
+        return openedTime == 0 ? now : Math.max(now, openedTime + openMillis);
+    }
+}
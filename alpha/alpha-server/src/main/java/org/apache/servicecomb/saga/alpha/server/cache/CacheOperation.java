@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * One change of the caches which is replicated to other alpha nodes.
+ *
+ * @since 2019/10/18
+ */
+final class CacheOperation {
+    static final byte PUT_CONFIG = 1;
+    static final byte REMOVE_CONFIG = 2;
+    static final byte PUT_TX_SUSPEND_STATUS = 3;
+    static final byte REMOVE_TX_SUSPEND_STATUS = 4;
+    static final byte PUT_TX_ABORT_STATUS = 5;
+    static final byte REMOVE_TX_ABORT_STATUS = 6;
+
+    private final byte type;
+    private final String key;
+    private final boolean value;
+    private final int expire;
+
+    CacheOperation(byte type, String key, boolean value, int expire) {
+        this.type = type;
+        this.key = key;
+        this.value = value;
+        this.expire = expire;
+    }
+
+    byte type() {
+        return type;
+    }
+
+    String key() {
+        return key;
+    }
+
+    boolean value() {
+        return value;
+    }
+
+    int expire() {
+        return expire;
+    }
+
+    /**
+     * Operations of the same cache and key supersede each other, only the last one of them needs to be sent.
+     */
+    String coalescingKey() {
+        // put and remove of a cache are adjacent types.
+        return ((type + 1) / 2) + ":" + key;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(key);
+        out.writeBoolean(value);
+        out.writeInt(expire);
+    }
+
+    static CacheOperation readFrom(DataInputStream in) throws IOException {
+        return new CacheOperation(in.readByte(), in.readUTF(), in.readBoolean(), in.readInt());
+    }
+}
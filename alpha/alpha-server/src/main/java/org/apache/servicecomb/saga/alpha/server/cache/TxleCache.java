@@ -10,23 +10,27 @@ import com.ecwid.consul.v1.QueryParams;
 import com.ecwid.consul.v1.Response;
 import com.ecwid.consul.v1.agent.model.Service;
 import com.ecwid.consul.v1.session.model.Session;
+import org.apache.servicecomb.saga.alpha.core.TxPauseRegistry;
 import org.apache.servicecomb.saga.alpha.core.TxleConsulClient;
 import org.apache.servicecomb.saga.alpha.core.cache.CacheEntity;
+import org.apache.servicecomb.saga.alpha.core.cache.ExpiringStatusCache;
 import org.apache.servicecomb.saga.alpha.core.cache.ITxleCache;
+import org.apache.servicecomb.saga.alpha.server.http.OutboundHttpClient;
+import org.apache.servicecomb.saga.common.ConfigCenterType;
 import org.apache.servicecomb.saga.common.TxleConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpMethod;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.lang.invoke.MethodHandles;
 import java.net.InetAddress;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.servicecomb.saga.common.TxleConstants.CONSUL_LEADER_KEY;
 import static org.apache.servicecomb.saga.common.TxleConstants.CONSUL_LEADER_KEY_VALUE;
@@ -37,12 +41,15 @@ import static org.apache.servicecomb.saga.common.TxleConstants.CONSUL_LEADER_KEY
  */
 public class TxleCache implements ITxleCache {
     private final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    // 1000 identifications of 36 characters with the separators are about 40KB.
+    private static final int KEYS_PER_OPERATION = 1000;
 
     private final ConcurrentHashMap<String, Boolean> configCache = new ConcurrentHashMap<>();
-    // Store the identifies of global transaction when they have been suspended only. Do not use the 'configCache' variable so that free up memory for this variable in an even better fashion.
-    private final ConcurrentSkipListSet<CacheEntity> txSuspendStatusCache = new ConcurrentSkipListSet<>(Comparator.comparingLong(s -> s.getExpire()));
-    private final ConcurrentSkipListSet<CacheEntity> txAbortStatusCache = new ConcurrentSkipListSet<>(Comparator.comparingLong(s -> s.getExpire()));
-    private final Set<String> serviceList = new HashSet();
+    private final AtomicLong configVersion = new AtomicLong();
+    private final ExpiringStatusCache txAbortStatusCache = new ExpiringStatusCache();
+    private final Set<String> serviceList = ConcurrentHashMap.newKeySet();
+    private TxleCacheReplicator replicator;
+    private String currentHostPort;
 
     @Autowired
     private TxleConsulClient txleConsulClient;
@@ -50,139 +57,212 @@ public class TxleCache implements ITxleCache {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private OutboundHttpClient outboundHttpClient;
+
+    // The suspended global transactions are held by the pause registry, here just replicates them between alpha nodes.
+    @Autowired
+    private TxPauseRegistry txPauseRegistry;
+
     @Value("${server.port:8090}")
     private int serverPort;
 
+    @Value("${alpha.cache.replication.batch-size:512}")
+    private int replicationBatchSize;
+
+    @Value("${alpha.cache.replication.linger-ms:5}")
+    private int replicationLingerMillis;
+
+    @Value("${alpha.cache.replication.capacity:10000}")
+    private int replicationCapacity;
+
+    @Value("${alpha.cache.replication.max-pending-frames:1024}")
+    private int replicationMaxPendingFrames;
+
+    @Value("${alpha.cache.replication.retry-interval-ms:1000}")
+    private int replicationRetryIntervalMillis;
+
+    @PostConstruct
+    void init() {
+        try {
+            currentHostPort = InetAddress.getLocalHost().getHostName() + ":" + serverPort;
+        } catch (Exception e) {
+            log.error("Failed to get the local host name.", e);
+        }
+        replicator = new TxleCacheReplicator(outboundHttpClient.httpClient(), serverPort, this::peers, replicationBatchSize, replicationLingerMillis, replicationCapacity,
+                replicationMaxPendingFrames, replicationRetryIntervalMillis);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        replicator.shutdown();
+    }
+
     public ConcurrentHashMap<String, Boolean> getConfigCache() {
         return configCache;
     }
 
-    public ConcurrentSkipListSet<CacheEntity> getTxSuspendStatusCache() {
-        return txSuspendStatusCache;
+    @Override
+    public long getConfigVersion() {
+        return configVersion.get();
     }
 
-    public ConcurrentSkipListSet<CacheEntity> getTxAbortStatusCache() {
+    public ExpiringStatusCache getTxAbortStatusCache() {
         return txAbortStatusCache;
     }
 
     @Override
     public boolean getTxSuspendStatus(String globalTxId) {
-        return getTxStatusByGlobalTxId(txSuspendStatusCache, globalTxId);
+        return txPauseRegistry.contains(globalTxId);
     }
 
     @Override
     public boolean getTxAbortStatus(String globalTxId) {
-        return getTxStatusByGlobalTxId(txAbortStatusCache, globalTxId);
-    }
-
-    private boolean getTxStatusByGlobalTxId(ConcurrentSkipListSet<CacheEntity> txStatusCache, String globalTxId) {
-        if (globalTxId != null) {
-            Iterator<CacheEntity> cacheEntities = txStatusCache.iterator();
-            while (cacheEntities.hasNext()) {
-                CacheEntity cacheEntity = cacheEntities.next();
-                if (cacheEntity != null && globalTxId.equals(cacheEntity.getKey())) {
-                    // return true event though expired, due to it's not a real cache period, it's used for clearing cache mainly.
-                    // in fact, the expires is not used yet so far.
-                    return true;
-                }
-            }
-        }
-        return false;
+        return txAbortStatusCache.contains(globalTxId);
     }
 
     public void putDistributedConfigCache(String key, Boolean value) {
-        refreshDistributedCache(key, value.toString(), 0, "/putConfigCache");
+        putLocalConfigCache(key, value);
+        replicator.replicate(new CacheOperation(CacheOperation.PUT_CONFIG, key, value, 0));
     }
 
     public void putDistributedTxSuspendStatusCache(String key, Boolean value, int expire) {
-        refreshDistributedCache(key, value.toString(), expire, "/putTxSuspendStatusCache");
+        putLocalTxSuspendStatusCache(key, value, expire);
+        replicator.replicate(new CacheOperation(CacheOperation.PUT_TX_SUSPEND_STATUS, key, value, expire));
+    }
+
+    @Override
+    public void putDistributedTxSuspendStatusCache(Set<String> globalTxIds, int expire) {
+        globalTxIds.forEach(globalTxId -> putLocalTxSuspendStatusCache(globalTxId, true, expire));
+        replicateJoinedKeys(CacheOperation.PUT_TX_SUSPEND_STATUS, globalTxIds, true, expire);
     }
 
     public void putDistributedTxAbortStatusCache(String key, Boolean value, int expire) {
-        refreshDistributedCache(key, value.toString(), expire, "/putTxAbortStatusCache");
+        putLocalTxAbortStatusCache(key, value, expire);
+        replicator.replicate(new CacheOperation(CacheOperation.PUT_TX_ABORT_STATUS, key, value, expire));
     }
 
     public void removeDistributedConfigCache(String key) {
-        refreshDistributedCache(key, "", 0, "/removeConfigCache");
+        removeLocalConfigCache(key);
+        replicator.replicate(new CacheOperation(CacheOperation.REMOVE_CONFIG, key, false, 0));
     }
 
     public void removeDistributedTxStatusCache(Set<String> globalTxIdSet) {
         if (globalTxIdSet != null && !globalTxIdSet.isEmpty()) {
-            StringBuilder keys = new StringBuilder(globalTxIdSet.size() * (36 + TxleConstants.STRING_SEPARATOR.length()));
-            globalTxIdSet.forEach(key -> keys.append(key + TxleConstants.STRING_SEPARATOR));
-            refreshDistributedCache(keys.toString(), "", 0, "/removeTxStatusCache");
+            txPauseRegistry.resumeAllLocally(globalTxIdSet);
+            txAbortStatusCache.removeAll(globalTxIdSet);
+            globalTxIdSet.forEach(key -> {
+                replicator.replicate(new CacheOperation(CacheOperation.REMOVE_TX_SUSPEND_STATUS, key, false, 0));
+                replicator.replicate(new CacheOperation(CacheOperation.REMOVE_TX_ABORT_STATUS, key, false, 0));
+            });
         }
     }
 
     public void removeDistributedTxSuspendStatusCache(String key) {
-        refreshDistributedCache(key, "", 0, "/removeTxSuspendStatusCache");
+        removeLocalTxSuspendStatusCache(key);
+        replicator.replicate(new CacheOperation(CacheOperation.REMOVE_TX_SUSPEND_STATUS, key, false, 0));
+    }
+
+    @Override
+    public void removeDistributedTxSuspendStatusCache(Set<String> globalTxIds) {
+        txPauseRegistry.resumeAllLocally(globalTxIds);
+        replicateJoinedKeys(CacheOperation.REMOVE_TX_SUSPEND_STATUS, globalTxIds, false, 0);
+    }
+
+    // The keys are joined by the separator and split by the receivers, a key is limited to 64KB by the frame, so they're sent in chunks.
+    private void replicateJoinedKeys(byte type, Set<String> keys, boolean value, int expire) {
+        List<String> chunk = new ArrayList<>(KEYS_PER_OPERATION);
+        for (String key : keys) {
+            chunk.add(key);
+            if (chunk.size() == KEYS_PER_OPERATION) {
+                replicator.replicate(new CacheOperation(type, String.join(TxleConstants.STRING_SEPARATOR, chunk), value, expire));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            replicator.replicate(new CacheOperation(type, String.join(TxleConstants.STRING_SEPARATOR, chunk), value, expire));
+        }
     }
 
     public void removeDistributedTxAbortStatusCache(String key) {
-        refreshDistributedCache(key, "", 0, "/removeTxAbortStatusCache");
+        removeLocalTxAbortStatusCache(key);
+        replicator.replicate(new CacheOperation(CacheOperation.REMOVE_TX_ABORT_STATUS, key, false, 0));
     }
 
-    public void refreshDistributedCache(String cacheKey, String cacheValue, int expire, String restApi) {
+    @Override
+    public void applyReplicatedCache(String remoteHost, byte[] frame) {
         try {
-            if (serviceList != null && !serviceList.isEmpty()) {
-                String currentHostPort = InetAddress.getLocalHost().getHostName() + ":" + serverPort;
-                Set<String> ipPortSet = new HashSet<>();
-                serviceList.forEach(ipPort -> {
-                    try {
-                        if (!ipPortSet.contains(ipPort)) {
-                            ipPortSet.add(ipPort);
-
-                            if (currentHostPort.equals(ipPort)) {
-                                callLocalFunction(restApi, cacheKey, cacheValue, expire);
-                            } else {
-                                HttpEntity<String> entity = new HttpEntity<>(cacheKey + "," + cacheValue + "," + expire);
-                                log.info("Calling http://" + ipPort + restApi);
-                                restTemplate.exchange("http://" + ipPort + restApi, HttpMethod.POST, entity, Boolean.class);
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.error("Failed to refresh distributed cache. remoteHostPort [{}], restApi [{}], key  [{}], value [{}], expire [{}].", ipPort, restApi, cacheKey, cacheValue, expire, e);
-                    }
-                });
+            TxleCacheReplicator.ReceivedFrame receivedFrame = replicator.receive(remoteHost, frame);
+            if (receivedFrame == null) {
+                return;
+            }
+            receivedFrame.operations().forEach(this::applyLocally);
+            if (receivedFrame.isResyncNeeded()) {
+                log.info("Missed some cache changes of [{}], synchronizing the whole cache from it.", receivedFrame.senderAddress());
+                setSynchronizedCache(receivedFrame.senderAddress());
             }
         } catch (Exception e) {
-            log.error("Failed to execute method 'refreshDistributedCache', restApi [{}], key [{}], value [{}], expire [{}].", restApi, cacheKey, cacheValue, expire, e);
+            log.error("Failed to apply the replicated caches from [{}].", remoteHost, e);
         }
     }
 
-    private void callLocalFunction(String function, String cacheKey, String cacheValue, int expire) {
-        if ("/putConfigCache".equals(function)) {
-            putLocalConfigCache(cacheKey, Boolean.valueOf(cacheValue));
-        } else if ("/putTxSuspendStatusCache".equals(function)) {
-            putLocalTxSuspendStatusCache(cacheKey, Boolean.valueOf(cacheValue), expire);
-        } else if ("/putTxAbortStatusCache".equals(function)) {
-            putLocalTxAbortStatusCache(cacheKey, Boolean.valueOf(cacheValue), expire);
-        } else if ("/removeConfigCache".equals(function)) {
-            removeLocalConfigCache(cacheKey);
-        } else if ("/removeTxSuspendStatusCache".equals(function)) {
-            removeLocalTxSuspendStatusCache(cacheKey);
-        } else if ("/removeTxAbortStatusCache".equals(function)) {
-            removeLocalTxAbortStatusCache(cacheKey);
-        } else if ("/removeTxStatusCache".equals(function)) {
-            removeLocalTxStatusCache(cacheKey);
+    private void applyLocally(CacheOperation operation) {
+        switch (operation.type()) {
+            case CacheOperation.PUT_CONFIG:
+                putLocalConfigCache(operation.key(), operation.value());
+                break;
+            case CacheOperation.REMOVE_CONFIG:
+                removeLocalConfigCache(operation.key());
+                break;
+            case CacheOperation.PUT_TX_SUSPEND_STATUS:
+                putLocalTxSuspendStatusCache(operation.key(), operation.value(), operation.expire());
+                break;
+            case CacheOperation.REMOVE_TX_SUSPEND_STATUS:
+                removeLocalTxSuspendStatusCache(operation.key());
+                break;
+            case CacheOperation.PUT_TX_ABORT_STATUS:
+                putLocalTxAbortStatusCache(operation.key(), operation.value(), operation.expire());
+                break;
+            case CacheOperation.REMOVE_TX_ABORT_STATUS:
+                removeLocalTxAbortStatusCache(operation.key());
+                break;
+            default:
+                log.warn("Unknown type [{}] of the replicated cache change.", operation.type());
         }
     }
 
+    // Other alpha nodes in the service list, changes are applied to current alpha directly.
+    private Collection<String> peers() {
+        List<String> peers = new ArrayList<>(serviceList);
+        peers.remove(currentHostPort);
+        return peers;
+    }
+
     @Override
     public void putLocalConfigCache(String key, Boolean value) {
         if (key != null) {
             configCache.put(key, value);
+            configVersion.incrementAndGet();
+            refreshPauseAllFlag();
         }
     }
 
+    /**
+     * @param expire for the suspended status, it's the pause period in seconds, the pause never expires if it's not positive.
+     */
     @Override
     public void putLocalTxSuspendStatusCache(String key, Boolean value, int expire) {
-        txSuspendStatusCache.add(new CacheEntity(key, value, expire));
+        if (key != null && Boolean.TRUE.equals(value)) {
+            // the key could consist of many global transactions, joined by the separator.
+            for (String globalTxId : key.split(TxleConstants.STRING_SEPARATOR)) {
+                txPauseRegistry.pauseLocally(globalTxId, expire);
+            }
+        }
     }
 
     @Override
     public void putLocalTxAbortStatusCache(String key, Boolean value, int expire) {
-        txAbortStatusCache.add(new CacheEntity(key, value, expire));
+        txAbortStatusCache.put(key, value, expire);
     }
 
     public void removeLocalConfigCache(String key) {
@@ -190,58 +270,37 @@ public class TxleCache implements ITxleCache {
         if (configCache.isEmpty()) {
             configCache.clear();
         }
+        configVersion.incrementAndGet();
+        refreshPauseAllFlag();
     }
 
     public void removeLocalTxStatusCache(String key) {
-        removeTxStatusCache(txSuspendStatusCache, key);
+        removeLocalTxSuspendStatusCache(key);
         removeTxStatusCache(txAbortStatusCache, key);
     }
 
     public void removeLocalTxSuspendStatusCache(String key) {
-        removeTxStatusCache(txSuspendStatusCache, key);
+        if (key != null) {
+            Arrays.asList(key.split(TxleConstants.STRING_SEPARATOR)).forEach(txPauseRegistry::resumeLocally);
+        }
     }
 
     public void removeLocalTxAbortStatusCache(String key) {
         removeTxStatusCache(txAbortStatusCache, key);
     }
 
-    private void removeTxStatusCache(ConcurrentSkipListSet<CacheEntity> txStatusCache, String key) {
+    private void removeTxStatusCache(ExpiringStatusCache txStatusCache, String key) {
         if (key != null && txStatusCache.size() > 0) {
-            Set<String> keySet = new HashSet<>();
-            for (String k : key.split(TxleConstants.STRING_SEPARATOR)) {
-                keySet.add(k);
-            }
-            Iterator<CacheEntity> iterator = txStatusCache.iterator();
-            while (iterator.hasNext()) {
-                CacheEntity cacheEntity = iterator.next();
-                if (keySet.contains(cacheEntity.getKey())) {
-                    txStatusCache.remove(cacheEntity);
-                }
-            }
-            if (txStatusCache.isEmpty()) {
-                txStatusCache.clear();
-            }
-            keySet.clear();
+            txStatusCache.removeAll(Arrays.asList(key.split(TxleConstants.STRING_SEPARATOR)));
         }
     }
 
-    private void removeExpiredCache(ConcurrentSkipListSet<CacheEntity> cache) {
-        Iterator<CacheEntity> iterator = cache.iterator();
-        // Use LinkedList due to remove frequently later.
-        List<CacheEntity> removeKeys = new LinkedList<>();
-        while (iterator.hasNext()) {
-            CacheEntity cacheEntity = iterator.next();
-            if (cacheEntity.expired()) {
-                removeKeys.add(cacheEntity);
-            } else {
-                break;
-            }
-        }
-        if (!removeKeys.isEmpty()) {
-            removeKeys.forEach(cacheEntity -> cache.remove(cacheEntity));
-            if (cache.isEmpty()) {
-                cache.clear();
-            }
+    @Override
+    public void removeExpiredCache() {
+        long currentTimeMillis = System.currentTimeMillis();
+        int removedNumber = txAbortStatusCache.removeExpired(currentTimeMillis);
+        if (removedNumber > 0) {
+            log.debug("Removed {} expired status caches of global transactions.", removedNumber);
         }
     }
 
@@ -271,7 +330,14 @@ public class TxleCache implements ITxleCache {
                                 ipPortSet.add(ipPort);
 
                                 log.info("Calling http://" + ipPort + "/refreshServiceListCache refreshRemoteServiceList [{}].", refreshRemoteServiceList);
-                                restTemplate.getForObject("http://" + ipPort + "/refreshServiceListCache", Boolean.TYPE);
+                                // the peers are notified concurrently, without holding current thread until they respond.
+                                String remoteHostPort = ipPort;
+                                outboundHttpClient.getAsync("http://" + remoteHostPort + "/refreshServiceListCache").whenComplete((body, e) -> {
+                                    if (e != null) {
+                                        log.error("Failed to call remote method 'refreshServiceListCache', remoteHostPort [{}], refreshRemoteServiceList [{}].",
+                                                remoteHostPort, refreshRemoteServiceList, e);
+                                    }
+                                });
                             }
                         } catch (Exception e) {
                             log.error("Failed to call remote method 'refreshServiceListCache', remoteHostPort [{}], refreshRemoteServiceList [{}].", ipPort, refreshRemoteServiceList, e);
@@ -312,15 +378,39 @@ public class TxleCache implements ITxleCache {
             LinkedHashMap<String, Boolean> synConfigCache = (LinkedHashMap<String, Boolean>) synCache.get("configCache");
             if (synConfigCache != null) {
                 configCache.putAll(synConfigCache);
+                configVersion.incrementAndGet();
+                refreshPauseAllFlag();
             }
-            ArrayList<CacheEntity> suspendedCache = (ArrayList<CacheEntity>) synCache.get("txSuspendStatusCache");
-            if (suspendedCache != null) {
-                txSuspendStatusCache.addAll(suspendedCache);
-            }
-            ArrayList<CacheEntity> abortedCache = (ArrayList<CacheEntity>) synCache.get("txAbortStatusCache");
-            if (abortedCache != null) {
-                txAbortStatusCache.addAll(abortedCache);
+            // globalTxId -> pause period in seconds, the pauses of the peer, including the ones which are not persisted yet.
+            Map<String, Object> synSuspendStatusCache = (Map<String, Object>) synCache.get("txSuspendStatusCache");
+            if (synSuspendStatusCache != null) {
+                synSuspendStatusCache.forEach((globalTxId, pausePeriod) -> {
+                    if (pausePeriod instanceof Number) {
+                        txPauseRegistry.pauseLocally(globalTxId, ((Number) pausePeriod).intValue());
+                    }
+                });
             }
+            putSynchronizedStatusCache(txAbortStatusCache, (List<Map<String, Object>>) synCache.get("txAbortStatusCache"));
+        }
+    }
+
+    // The flag of pausing all global transactions lives in the pause registry, the hot path checks it there.
+    private void refreshPauseAllFlag() {
+        String pauseAllGlobalTxKey = TxleConstants.constructConfigCacheKey(null, null, ConfigCenterType.PauseGlobalTx.toInteger());
+        txPauseRegistry.setAllPaused(configCache.getOrDefault(pauseAllGlobalTxKey, false));
+    }
+
+    // The entities arrive as JSON objects, keep their original expire.
+    private void putSynchronizedStatusCache(ExpiringStatusCache txStatusCache, List<Map<String, Object>> cacheEntities) {
+        if (cacheEntities != null) {
+            cacheEntities.forEach(entity -> {
+                CacheEntity cacheEntity = new CacheEntity((String) entity.get("key"), entity.get("value"));
+                Object expire = entity.get("expire");
+                if (expire instanceof Number) {
+                    cacheEntity.setExpire(((Number) expire).longValue());
+                }
+                txStatusCache.put(cacheEntity);
+            });
         }
     }
 
@@ -328,8 +418,8 @@ public class TxleCache implements ITxleCache {
     public Map<String, Object> fetchSynchronizedCache() {
         Map<String, Object> cacheMap = new HashMap<>();
         cacheMap.put("configCache", configCache);
-        cacheMap.put("txSuspendStatusCache", txSuspendStatusCache);
-        cacheMap.put("txAbortStatusCache", txAbortStatusCache);
+        cacheMap.put("txSuspendStatusCache", txPauseRegistry.pausePeriods());
+        cacheMap.put("txAbortStatusCache", txAbortStatusCache.snapshot());
         return cacheMap;
     }
 }
\ No newline at end of file
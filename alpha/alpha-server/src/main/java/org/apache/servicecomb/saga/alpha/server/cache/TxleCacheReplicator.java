@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.cache;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Replicates the changes of caches to other alpha nodes asynchronously.
+ *
+ * The callers only put their changes into a queue. One sender thread takes whatever arrived within 'lingerMillis',
+ * keeps the last change of every cache key, encodes them as one binary frame with the next sequence number, and hands
+ * the frame to the channel of every peer. A channel sends its frames in order over the persistent connections of the
+ * shared outbound HTTP client, and retries the head frame until the peer accepts it.
+ *
+ * A peer which finds a gap in the sequence numbers of a node, e.g. frames were dropped because the peer was unreachable
+ * for a long time or the queue was full, fetches the whole caches of that node again.
+ *
+ * @since 2019/10/18
+ */
+class TxleCacheReplicator {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final String REPLICATE_API = "/replicateCache";
+    private static final MediaType BINARY = MediaType.parse("application/octet-stream");
+    private static final byte FRAME_FORMAT = 1;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final int serverPort;
+    private final Supplier<Collection<String>> peers;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final int maxPendingFrames;
+    private final long retryIntervalMillis;
+    private final BlockingQueue<CacheOperation> queue;
+    private final Map<String, PeerChannel> channels = new ConcurrentHashMap<>();
+    // nodeId -> sequence of the latest frame received from that node
+    private final Map<String, Long> receivedSequences = new ConcurrentHashMap<>();
+    private final OkHttpClient httpClient;
+    private final ScheduledExecutorService retryScheduler;
+    private final Thread sender;
+    private long sequence;
+    private volatile boolean overflowed;
+    private volatile boolean running = true;
+
+    TxleCacheReplicator(OkHttpClient httpClient, int serverPort, Supplier<Collection<String>> peers, int batchSize, int lingerMillis, int capacity,
+            int maxPendingFrames, int retryIntervalMillis) {
+        this.httpClient = httpClient;
+        this.serverPort = serverPort;
+        this.peers = peers;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.maxPendingFrames = Math.max(1, maxPendingFrames);
+        this.retryIntervalMillis = Math.max(1, retryIntervalMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(this.batchSize, capacity));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "txle-cache-replication-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sender = new Thread(this::sendLoop, "txle-cache-replicator");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * Never blocks. If the queue is full, the change is dropped here and the next frame asks peers to resync.
+     */
+    void replicate(CacheOperation operation) {
+        if (!queue.offer(operation)) {
+            overflowed = true;
+            LOG.warn("The queue of cache replication is full, dropped the change of key [{}].", operation.key());
+        }
+    }
+
+    /**
+     * Decodes a frame from other alpha node, and checks its sequence number.
+     *
+     * @return null if it's a duplicate or sent by current alpha.
+     */
+    ReceivedFrame receive(String remoteHost, byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte format = in.readByte();
+        if (format != FRAME_FORMAT) {
+            throw new IOException("Unknown format of cache replication frame " + format);
+        }
+        String senderNodeId = in.readUTF();
+        int senderPort = in.readInt();
+        long senderSequence = in.readLong();
+        boolean resync = in.readBoolean();
+        int count = in.readInt();
+        List<CacheOperation> operations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            operations.add(CacheOperation.readFrom(in));
+        }
+
+        if (nodeId.equals(senderNodeId)) {
+            return null;
+        }
+        // sequences start from 1, so 0 means nothing was received from that node.
+        long[] previousSequence = new long[1];
+        receivedSequences.compute(senderNodeId, (id, previous) -> {
+            previousSequence[0] = previous == null ? 0 : previous;
+            return Math.max(previousSequence[0], senderSequence);
+        });
+        if (senderSequence <= previousSequence[0]) {
+            // a retry whose response was lost.
+            return null;
+        }
+        // The first frame of a node is not a gap, the caches before it were synchronized from the leader at startup.
+        resync |= previousSequence[0] > 0 && senderSequence > previousSequence[0] + 1;
+        return new ReceivedFrame(remoteHost + ":" + senderPort, operations, resync);
+    }
+
+    void shutdown() {
+        running = false;
+        sender.interrupt();
+        try {
+            sender.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        retryScheduler.shutdownNow();
+    }
+
+    private void sendLoop() {
+        List<CacheOperation> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                CacheOperation first = running ? queue.poll(1, TimeUnit.SECONDS) : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    CacheOperation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // it's the signal of shutting down, the rest of changes will be sent before exiting.
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    send(batch);
+                } catch (Exception e) {
+                    LOG.error("Failed to replicate {} cache changes.", batch.size(), e);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<CacheOperation> batch) throws IOException {
+        byte[] frame = encode(batch);
+        Set<String> currentPeers = new HashSet<>(peers.get());
+        channels.keySet().retainAll(currentPeers);
+        currentPeers.forEach(peer -> channels.computeIfAbsent(peer, PeerChannel::new).send(frame));
+    }
+
+    /**
+     * Encodes the last change of every cache key in the batch as a frame with the next sequence number.
+     */
+    byte[] encode(List<CacheOperation> batch) throws IOException {
+        Map<String, CacheOperation> coalesced = new LinkedHashMap<>();
+        for (CacheOperation operation : batch) {
+            coalesced.remove(operation.coalescingKey());
+            coalesced.put(operation.coalescingKey(), operation);
+        }
+
+        boolean resync = overflowed;
+        overflowed = false;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + coalesced.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FRAME_FORMAT);
+        out.writeUTF(nodeId);
+        out.writeInt(serverPort);
+        out.writeLong(++sequence);
+        out.writeBoolean(resync);
+        out.writeInt(coalesced.size());
+        for (CacheOperation operation : coalesced.values()) {
+            operation.writeTo(out);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static final class ReceivedFrame {
+        private final String senderAddress;
+        private final List<CacheOperation> operations;
+        private final boolean resyncNeeded;
+
+        private ReceivedFrame(String senderAddress, List<CacheOperation> operations, boolean resyncNeeded) {
+            this.senderAddress = senderAddress;
+            this.operations = operations;
+            this.resyncNeeded = resyncNeeded;
+        }
+
+        String senderAddress() {
+            return senderAddress;
+        }
+
+        List<CacheOperation> operations() {
+            return operations;
+        }
+
+        boolean isResyncNeeded() {
+            return resyncNeeded;
+        }
+    }
+
+    /**
+     * Sends frames to one peer in order, one frame in flight at most.
+     */
+    private final class PeerChannel {
+        private final String ipPort;
+        private final Deque<byte[]> pendingFrames = new ArrayDeque<>();
+        private boolean inFlight;
+
+        private PeerChannel(String ipPort) {
+            this.ipPort = ipPort;
+        }
+
+        synchronized void send(byte[] frame) {
+            if (pendingFrames.size() >= maxPendingFrames) {
+                // the peer will find the gap by sequence numbers and resync.
+                pendingFrames.pollFirst();
+            }
+            pendingFrames.addLast(frame);
+            sendNext();
+        }
+
+        private synchronized void sendNext() {
+            if (inFlight || pendingFrames.isEmpty() || channels.get(ipPort) != this) {
+                return;
+            }
+            inFlight = true;
+            byte[] frame = pendingFrames.peekFirst();
+            Request request = new Request.Builder().url("http://" + ipPort + REPLICATE_API).post(RequestBody.create(BINARY, frame)).build();
+            httpClient.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    LOG.warn("Failed to replicate caches to [{}], will retry in {} ms. Cause: {}", ipPort, retryIntervalMillis, e.getMessage());
+                    retryLater();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    boolean successful = response.isSuccessful();
+                    response.close();
+                    if (successful) {
+                        sent(frame);
+                    } else {
+                        LOG.warn("Failed to replicate caches to [{}], status [{}], will retry in {} ms.", ipPort, response.code(), retryIntervalMillis);
+                        retryLater();
+                    }
+                }
+            });
+        }
+
+        private synchronized void sent(byte[] frame) {
+            inFlight = false;
+            if (pendingFrames.peekFirst() == frame) {
+                pendingFrames.pollFirst();
+            }
+            sendNext();
+        }
+
+        private synchronized void retryLater() {
+            if (!running) {
+                return;
+            }
+            try {
+                retryScheduler.schedule(() -> {
+                    synchronized (this) {
+                        inFlight = false;
+                        sendNext();
+                    }
+                }, retryIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                inFlight = false;
+            }
+        }
+    }
+}
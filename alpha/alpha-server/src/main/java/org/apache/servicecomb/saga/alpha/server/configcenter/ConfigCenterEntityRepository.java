@@ -21,6 +21,10 @@ public interface ConfigCenterEntityRepository extends CrudRepository<ConfigCente
     @Query("SELECT T FROM ConfigCenter T WHERE T.status = ?3 AND ((T.instanceid = ?1 AND (T.category = ?2 OR T.category IS NULL)) OR T.instanceid IS NULL)")
     List<ConfigCenter> selectConfigCenterList(String instanceId, String category, int status);
 
+    // all of client and global configs.
+    @Query("SELECT T FROM ConfigCenter T WHERE T.status = ?1")
+    List<ConfigCenter> selectAllConfigCenterList(int status);
+
     @Query("SELECT T FROM ConfigCenter T WHERE T.instanceid IS NULL AND T.status = ?1 AND T.type = ?2")
     ConfigCenter selectGlobalConfigCenterByType(int status, int type);
 
@@ -5,12 +5,16 @@
 
 package org.apache.servicecomb.saga.alpha.server.configcenter;
 
+import org.apache.servicecomb.saga.alpha.core.KeysetPage;
+import org.apache.servicecomb.saga.alpha.core.KeysetQuery;
 import org.apache.servicecomb.saga.alpha.core.cache.ITxleCache;
 import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenter;
 import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenterStatus;
+import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigResolutionTable;
 import org.apache.servicecomb.saga.alpha.core.configcenter.IConfigCenterService;
 import org.apache.servicecomb.saga.alpha.core.datadictionary.DataDictionaryItem;
 import org.apache.servicecomb.saga.alpha.core.datadictionary.IDataDictionaryService;
+import org.apache.servicecomb.saga.alpha.server.KeysetRepository;
 import org.apache.servicecomb.saga.common.ConfigCenterType;
 import org.apache.servicecomb.saga.common.TxleConstants;
 import org.slf4j.Logger;
@@ -21,6 +25,9 @@ import org.springframework.data.domain.Sort;
 
 import java.lang.invoke.MethodHandles;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * @author Gannalyo
@@ -38,6 +45,13 @@ public class DBDegradationConfigService implements IConfigCenterService {
     @Autowired
     private ITxleCache txleCache;
 
+    @Autowired
+    private KeysetRepository keysetRepository;
+
+    private final AtomicReference<ConfigResolutionTable> configTable = new AtomicReference<>();
+    // changes of configs by current alpha, they are not always told by the config cache, e.g. there is no alpha in the service list.
+    private final AtomicLong localConfigVersion = new AtomicLong();
+
     public DBDegradationConfigService(ConfigCenterEntityRepository configCenterEntityRepository) {
         this.configCenterEntityRepository = configCenterEntityRepository;
     }
@@ -64,80 +78,34 @@ public class DBDegradationConfigService implements IConfigCenterService {
 
     @Override
     public boolean isEnabledConfig(String instanceId, String category, ConfigCenterType type) {
-        String configKey = TxleConstants.constructConfigCacheKey(instanceId, category, type.toInteger());
-        Enumeration<String> configKeys = txleCache.getConfigCache().keys();
-        while (configKeys.hasMoreElements()) {
-            if (configKey.equals(configKeys.nextElement())) {
-                Boolean result = txleCache.getConfigCache().get(configKey);
-                if (result != null) {
-                    return result;
-                }
-            }
+        // The values which are put into the config cache directly, e.g. degrading global transaction from UI, come first.
+        Boolean result = txleCache.getConfigCache().get(TxleConstants.constructConfigCacheKey(instanceId, category, type.toInteger()));
+        if (result != null) {
+            return result;
         }
-
-        List<ConfigCenter> configCenterList = configCenterEntityRepository.selectConfigCenterByType(instanceId, category, ConfigCenterStatus.Normal.toInteger(), type.toInteger());
-        if (configCenterList != null && !configCenterList.isEmpty()) {
-            /**
-             * 配置检测逻辑：
-             * 1.先判断是否有某配置类型的全局配置，即instanceId为null的，如果有全局配置则验证当前配置是否开启，如果ability=0，则直接返回false，否则标记isExistsConfigs=true，并暂存value
-             * 2.
-             */
-            String value = "";
-            boolean isExistsConfigs = false;
-            // 1.获取当前类型配置的全局值
-            for (ConfigCenter config : configCenterList) {
-                if (config.getInstanceid() == null || config.getInstanceid().trim().length() == 0) {
-                    if (config.getAbility() == TxleConstants.NO) {
-                        return false;
-                    }
-                    isExistsConfigs = true;
-                    value = config.getValue();
-                    break;
-                }
-            }
-            // 强制每个配置必须有全局配置才生效
-            if (isExistsConfigs) {
-                isExistsConfigs = false;
-                // 2.获取当前配置的具体值(instanceId和category都为有效值的情况)
-                for (ConfigCenter config : configCenterList) {
-                    if (config.getInstanceid() != null && config.getInstanceid().trim().length() > 0 && config.getCategory() != null && config.getCategory().trim().length() > 0) {
-                        isExistsConfigs = true;
-                        if (config.getAbility() == TxleConstants.NO) {
-                            // do not cover the value of global config.
-                            break;
-                        }
-                        value = config.getValue();
-                        // cover the value of global config.
-                        break;
-                    }
-                }
-                // 3.如果未获取到当前配置的具体值，则获取当前配置的默认值(instanceId为有效值、category为无效值的情况)
-                if (!isExistsConfigs) {
-                    for (ConfigCenter config : configCenterList) {
-                        if (config.getInstanceid() != null && config.getInstanceid().trim().length() > 0 && (config.getCategory() == null || config.getCategory().trim().length() == 0)) {
-                            if (config.getAbility() == TxleConstants.NO) {
-                                // do not cover the value of global config.
-                                break;
-                            }
-                            value = config.getValue();
-                            // cover the value of global config.
-                            break;
-                        }
-                    }
-                }
-                boolean result = TxleConstants.ENABLED.equals(value);
-                txleCache.putDistributedConfigCache(configKey, result);
-                return result;
-            }
+        return currentConfigTable().isEnabledConfig(instanceId, category, type);
+    }
+
+    /**
+     * Rebuilds the resolution table if configs have been changed since it was built, by current alpha or by other alpha
+     * nodes, the latter is told by the version of config cache.
+     */
+    private ConfigResolutionTable currentConfigTable() {
+        ConfigResolutionTable table = configTable.get();
+        long version = txleCache.getConfigVersion() + localConfigVersion.get();
+        if (table != null && table.version() == version) {
+            return table;
         }
-
-        // All of configs except fault-tolerant are enabled by default.
-        if (ConfigCenterType.PauseGlobalTx.equals(type) || ConfigCenterType.GlobalTxFaultTolerant.equals(type) || ConfigCenterType.CompensationFaultTolerant.equals(type) || ConfigCenterType.AutoCompensationFaultTolerant.equals(type)) {
-            txleCache.putDistributedConfigCache(configKey, false);
-            return false;
+        synchronized (configTable) {
+            table = configTable.get();
+            if (table == null || table.version() != version) {
+                // Read configs after the version, so that a change which happens meanwhile leads to another rebuilding.
+                table = ConfigResolutionTable.build(version, configCenterEntityRepository.selectAllConfigCenterList(ConfigCenterStatus.Normal.toInteger()));
+                configTable.set(table);
+                LOG.debug("Rebuilt the resolution table of configs, version [{}].", version);
+            }
+            return table;
         }
-        txleCache.putDistributedConfigCache(configKey, true);
-        return true;
     }
 
     @Override
@@ -165,8 +133,11 @@ public class DBDegradationConfigService implements IConfigCenterService {
         if ((config.getCategory() + "").length() == 0) {
             config.setCategory(null);
         }
-        txleCache.putDistributedConfigCache(TxleConstants.constructConfigCacheKey(config.getInstanceid(), config.getCategory(), config.getType()), TxleConstants.ENABLED.equals(config.getValue()));
-        return configCenterEntityRepository.save(config) != null;
+        boolean saved = configCenterEntityRepository.save(config) != null;
+        localConfigVersion.incrementAndGet();
+        // tell all of alpha nodes to rebuild their resolution tables.
+        txleCache.removeDistributedConfigCache(TxleConstants.constructConfigCacheKey(config.getInstanceid(), config.getCategory(), config.getType()));
+        return saved;
     }
 
     @Override
@@ -174,6 +145,7 @@ public class DBDegradationConfigService implements IConfigCenterService {
         ConfigCenter config = configCenterEntityRepository.findOne(id);
         if (config != null) {
             configCenterEntityRepository.delete(id);
+            localConfigVersion.incrementAndGet();
             txleCache.removeDistributedConfigCache(TxleConstants.constructConfigCacheKey(config.getInstanceid(), config.getCategory(), config.getType()));
         }
         return true;
@@ -194,30 +166,39 @@ public class DBDegradationConfigService implements IConfigCenterService {
         List<ConfigCenter> configList = this.searchConfigList(pageIndex, pageSize, orderName, direction, searchText);
         if (configList != null && !configList.isEmpty()) {
             List<Map<String, Object>> resultAccidentList = new LinkedList<>();
+            Function<ConfigCenter, Map<String, Object>> toMap = configToMap();
+            configList.forEach(config -> resultAccidentList.add(toMap.apply(config)));
+            return resultAccidentList;
+        }
+        return null;
+    }
 
-            Map<String, String> typeValueName = new HashMap<>();
-            List<DataDictionaryItem> dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("config-center-type");
-            if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
-                dataDictionaryItemList.forEach(dd -> typeValueName.put(dd.getValue(), dd.getName()));
-            }
-
-            Map<String, String> statusValueName = new HashMap<>();
-            dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("config-center-status");
-            if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
-                dataDictionaryItemList.forEach(dd -> statusValueName.put(dd.getValue(), dd.getName()));
-            }
+    @Override
+    public KeysetPage findConfigList(KeysetQuery query) {
+        List<ConfigCenter> configList = keysetRepository.findPage(KeysetRepository.Table.CONFIG, query, ConfigCenter.class);
+        return KeysetPage.of(configList, query.pageSize(), configToMap(), config -> KeysetQuery.cursorOf(config.getId(), null));
+    }
 
-            Map<String, String> abilityValueName = new HashMap<>();
-            dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("config-center-ability");
-            if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
-                dataDictionaryItemList.forEach(dd -> abilityValueName.put(dd.getValue(), dd.getName()));
-            }
+    private Function<ConfigCenter, Map<String, Object>> configToMap() {
+        Map<String, String> typeValueName = new HashMap<>();
+        List<DataDictionaryItem> dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("config-center-type");
+        if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
+            dataDictionaryItemList.forEach(dd -> typeValueName.put(dd.getValue(), dd.getName()));
+        }
 
-            configList.forEach(config -> resultAccidentList.add(config.toMap(typeValueName.get(String.valueOf(config.getType())), statusValueName.get(String.valueOf(config.getStatus())), abilityValueName.get(String.valueOf(config.getAbility())))));
+        Map<String, String> statusValueName = new HashMap<>();
+        dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("config-center-status");
+        if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
+            dataDictionaryItemList.forEach(dd -> statusValueName.put(dd.getValue(), dd.getName()));
+        }
 
-            return resultAccidentList;
+        Map<String, String> abilityValueName = new HashMap<>();
+        dataDictionaryItemList = dataDictionaryService.selectDataDictionaryList("config-center-ability");
+        if (dataDictionaryItemList != null && !dataDictionaryItemList.isEmpty()) {
+            dataDictionaryItemList.forEach(dd -> abilityValueName.put(dd.getValue(), dd.getName()));
         }
-        return null;
+
+        return config -> config.toMap(typeValueName.get(String.valueOf(config.getType())), statusValueName.get(String.valueOf(config.getStatus())), abilityValueName.get(String.valueOf(config.getAbility())));
     }
 
     private List<ConfigCenter> searchConfigList(int pageIndex, int pageSize, String orderName, String direction, String searchText) {
@@ -5,6 +5,8 @@
 
 package org.apache.servicecomb.saga.alpha.server.configcenter;
 
+import org.apache.servicecomb.saga.alpha.core.KeysetPage;
+import org.apache.servicecomb.saga.alpha.core.KeysetQuery;
 import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenter;
 import org.apache.servicecomb.saga.common.ConfigCenterType;
 import org.apache.servicecomb.saga.alpha.core.configcenter.IConfigCenterService;
@@ -72,6 +74,11 @@ public class ZkDegradationConfigService implements IConfigCenterService {
         return null;
     }
 
+    @Override
+    public KeysetPage findConfigList(KeysetQuery query) {
+        return null;
+    }
+
     @Override
     public long findConfigCount(String searchText) {
         return 0;
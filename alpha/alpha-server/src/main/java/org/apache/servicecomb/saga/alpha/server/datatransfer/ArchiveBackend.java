@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.datatransfer;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+
+import java.util.List;
+
+/**
+ * Where the finished events are archived to by {@link DataTransferService}.
+ *
+ * @since 2019/10/18
+ */
+public interface ArchiveBackend {
+    /**
+     * Moves the events of a chunk out of the source table and advances the checkpoint, the deletion and the checkpoint
+     * must be committed in one transaction.
+     *
+     * @param idList the ids of the events, in ascending order
+     */
+    void moveChunk(DataTransferCheckpoint checkpoint, List<Long> idList);
+
+    List<TxEvent> findArchivedEvents(String srcTable, String globalTxId);
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.datatransfer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces the archiving workers, it's shared by all workers, so the limits are for the whole database rather than a worker.
+ *
+ * The rows are limited to a rate per second, and the chunk size adapts to the time budget of a chunk: it's halved and the
+ * workers back off when a chunk took longer than the budget, which means the database is busy, and it grows slowly while
+ * the chunks are fast.
+ *
+ * @since 2019/10/18
+ */
+class ArchiveThrottle {
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    // non-positive means unlimited
+    private final int rowsPerSecond;
+    private final long chunkBudgetMillis;
+    private final int minChunkSize;
+    private final int maxChunkSize;
+
+    private int chunkSize;
+    // the time when the rows moved so far are paid off
+    private long nextFreeNanos = Long.MIN_VALUE;
+    private long backoffMillis;
+
+    ArchiveThrottle(int rowsPerSecond, long chunkBudgetMillis, int minChunkSize, int maxChunkSize) {
+        this.rowsPerSecond = rowsPerSecond;
+        this.chunkBudgetMillis = Math.max(1, chunkBudgetMillis);
+        this.minChunkSize = Math.max(1, minChunkSize);
+        this.maxChunkSize = Math.max(this.minChunkSize, maxChunkSize);
+        this.chunkSize = this.maxChunkSize;
+    }
+
+    synchronized int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Records a chunk which moved the rows from startNanos to endNanos.
+     *
+     * @return the milliseconds the worker should pause before its next chunk
+     */
+    synchronized long onChunk(int rows, long startNanos, long endNanos) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+        if (elapsedMillis > chunkBudgetMillis) {
+            chunkSize = Math.max(minChunkSize, chunkSize / 2);
+            backoffMillis = Math.min(MAX_BACKOFF_MILLIS, Math.max(backoffMillis * 2, elapsedMillis));
+        } else {
+            backoffMillis = 0;
+            if (elapsedMillis * 2 < chunkBudgetMillis) {
+                chunkSize = Math.min(maxChunkSize, chunkSize + Math.max(minChunkSize, chunkSize / 10));
+            }
+        }
+
+        long pacingMillis = 0;
+        if (rowsPerSecond > 0 && rows > 0) {
+            nextFreeNanos = Math.max(nextFreeNanos, startNanos) + TimeUnit.SECONDS.toNanos(rows) / rowsPerSecond;
+            pacingMillis = Math.max(0, TimeUnit.NANOSECONDS.toMillis(nextFreeNanos - endNanos));
+        }
+        return Math.max(pacingMillis, backoffMillis);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.datatransfer;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The progress of archiving a period of a source table, it's persisted by the DataTransferCheckpoint table after every
+ * chunk and in the same transaction, so a run which was interrupted resumes after the last moved event.
+ *
+ * @since 2019/10/18
+ */
+public class DataTransferCheckpoint {
+    static final String RUNNING = "RUNNING";
+    static final String DONE = "DONE";
+
+    static final String SELECT_SQL = "SELECT srcTable, period, startTime, endTime, lastEventId, movedRows, status FROM DataTransferCheckpoint WHERE srcTable = ? AND period = ?";
+    static final String SELECT_RUNNING_SQL = "SELECT srcTable, period, startTime, endTime, lastEventId, movedRows, status FROM DataTransferCheckpoint WHERE status = 'RUNNING'";
+    static final String INSERT_SQL = "INSERT INTO DataTransferCheckpoint (srcTable, period, startTime, endTime, lastEventId, movedRows, status, updateTime) VALUES (?, ?, ?, ?, 0, 0, 'RUNNING', ?)";
+    static final String RESTART_SQL = "UPDATE DataTransferCheckpoint SET lastEventId = 0, movedRows = 0, status = 'RUNNING', updateTime = ? WHERE srcTable = ? AND period = ?";
+    static final String ADVANCE_SQL = "UPDATE DataTransferCheckpoint SET lastEventId = ?, movedRows = movedRows + ?, updateTime = ? WHERE srcTable = ? AND period = ?";
+    static final String DONE_SQL = "UPDATE DataTransferCheckpoint SET status = 'DONE', updateTime = ? WHERE srcTable = ? AND period = ?";
+
+    private final String srcTable;
+    private final String period;
+    private final Date startTime;
+    private final Date endTime;
+    private long lastEventId;
+    private long movedRows;
+    private final String status;
+
+    DataTransferCheckpoint(String srcTable, String period, Date startTime, Date endTime, long lastEventId, long movedRows, String status) {
+        this.srcTable = srcTable;
+        this.period = period;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.lastEventId = lastEventId;
+        this.movedRows = movedRows;
+        this.status = status;
+    }
+
+    static DataTransferCheckpoint of(Object[] row) {
+        return new DataTransferCheckpoint((String) row[0], (String) row[1], (Date) row[2], (Date) row[3],
+                ((Number) row[4]).longValue(), ((Number) row[5]).longValue(), (String) row[6]);
+    }
+
+    String srcTable() {
+        return srcTable;
+    }
+
+    String period() {
+        return period;
+    }
+
+    Date startTime() {
+        return startTime;
+    }
+
+    Date endTime() {
+        return endTime;
+    }
+
+    long lastEventId() {
+        return lastEventId;
+    }
+
+    long movedRows() {
+        return movedRows;
+    }
+
+    boolean isRunning() {
+        return RUNNING.equals(status);
+    }
+
+    // The params of ADVANCE_SQL after moving the chunk, the ids are in ascending order.
+    Object[] advanceParams(List<Long> idList) {
+        return new Object[]{idList.get(idList.size() - 1), idList.size(), new Timestamp(System.currentTimeMillis()), srcTable, period};
+    }
+
+    void advance(long lastEventId, int rows) {
+        this.lastEventId = lastEventId;
+        this.movedRows += rows;
+    }
+
+    String key() {
+        return srcTable + "_" + period;
+    }
+}
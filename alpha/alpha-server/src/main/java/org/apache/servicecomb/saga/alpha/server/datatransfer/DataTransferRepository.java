@@ -32,6 +32,15 @@ public class DataTransferRepository {
         return query.getResultList();
     }
 
+    @SuppressWarnings("unchecked")
+    public <T> List<T> executeEntityQuery(String sql, Class<T> resultClass, Object... params) {
+        Query query = entityManager.createNativeQuery(sql, resultClass);
+        for (int i = 0; i < params.length; i++) {
+            query.setParameter(i + 1, params[i]);
+        }
+        return query.getResultList();
+    }
+
     @Transactional
     public int executeUpdate(String sql, Object... params) {
         Query query = entityManager.createNativeQuery(sql);
@@ -43,4 +52,21 @@ public class DataTransferRepository {
         return query.executeUpdate();
     }
 
+    /**
+     * Executes the statements in one transaction, the params are for the statement of the same index.
+     */
+    @Transactional
+    public int[] executeUpdates(List<String> sqls, List<Object[]> params) {
+        int[] counts = new int[sqls.size()];
+        for (int i = 0; i < sqls.size(); i++) {
+            Query query = entityManager.createNativeQuery(sqls.get(i));
+            Object[] statementParams = params.get(i);
+            for (int j = 0; j < statementParams.length; j++) {
+                query.setParameter(j + 1, statementParams[j]);
+            }
+            counts[i] = query.executeUpdate();
+        }
+        return counts;
+    }
+
 }
@@ -5,8 +5,10 @@
 
 package org.apache.servicecomb.saga.alpha.server.datatransfer;
 
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
 import org.apache.servicecomb.saga.alpha.core.TxEventRepository;
 import org.apache.servicecomb.saga.alpha.core.TxleConsulClient;
+import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
 import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenter;
 import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenterStatus;
 import org.apache.servicecomb.saga.alpha.core.configcenter.IConfigCenterService;
@@ -17,14 +19,25 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This tool class just likes a simple ETL. For transferring normal data to some history tables according to some rule.
+ *
+ * Every period is moved by a worker, chunk by chunk in the order of surrogateId, and each chunk is copied, deleted and
+ * checkpointed in one transaction by the {@link ArchiveBackend}. So a period which was interrupted by a crash or a new master is resumed after its
+ * last moved event, and the workers are paced by a shared {@link ArchiveThrottle}.
  * @author Gannalyo
  * @since 2019/7/23
  */
@@ -33,6 +46,13 @@ public class DataTransferService implements IDataTransferService {
 
     private DataTransferRepository dataTransferRepository;
     private TxEventRepository txEventRepository;
+    private final ArchiveBackend archiveBackend;
+    private final TxleMetrics txleMetrics;
+    private final ArchiveThrottle throttle;
+    private final ExecutorService workers;
+    // the periods which are being moved by current node, by 'srcTable_period'.
+    private final Set<String> runningPeriods = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopped;
 
     @Autowired
     private IConfigCenterService configCenterService;
@@ -40,9 +60,19 @@ public class DataTransferService implements IDataTransferService {
     @Autowired
     private TxleConsulClient txleConsulClient;
 
-    public DataTransferService(DataTransferRepository dataTransferRepository, TxEventRepository txEventRepository) {
+    public DataTransferService(DataTransferRepository dataTransferRepository, TxEventRepository txEventRepository, ArchiveBackend archiveBackend,
+                               TxleMetrics txleMetrics, int workers, int rowsPerSecond, long chunkBudgetMillis, int minChunkSize, int maxChunkSize) {
         this.dataTransferRepository = dataTransferRepository;
         this.txEventRepository = txEventRepository;
+        this.archiveBackend = archiveBackend;
+        this.txleMetrics = txleMetrics;
+        this.throttle = new ArchiveThrottle(rowsPerSecond, chunkBudgetMillis, minChunkSize, maxChunkSize);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(runnable, "txle-data-transfer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @Scheduled(cron = "0 0 0 * * ?")
@@ -56,16 +86,35 @@ public class DataTransferService implements IDataTransferService {
         }
     }
 
+    // To resume the periods which were interrupted, e.g. by a crash or a former master.
+    @Scheduled(initialDelayString = "${alpha.archive.resume-check-ms:60000}", fixedDelayString = "${alpha.archive.resume-check-ms:60000}")
+    public void resumeInterruptedTransfer() {
+        if (txleConsulClient.isMaster()) {
+            for (DataTransferCheckpoint checkpoint : selectCheckpoints(DataTransferCheckpoint.SELECT_RUNNING_SQL)) {
+                if (!runningPeriods.contains(checkpoint.key())) {
+                    LOG.info("Resuming data transfer, table [{}], period [{}], last event id [{}].", checkpoint.srcTable(), checkpoint.period(), checkpoint.lastEventId());
+                    submit(checkpoint);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        workers.shutdownNow();
+    }
+
     @Override
     public void dataTransfer(String srcTable) {
         /**
          * 数据转储逻辑
          * 0.支持按日/月/季/年生成历史数据存储表的规则，默认按月
          * 1.查询最小日期
-         * 2.依据配置规则从最小日期到当前日期，每次取10000条已完成的全局事务唯一标识，排除最近10天内的
+         * 2.依据配置规则从最小日期到当前日期，按surrogateId顺序每次取一块已完成的全局事务的事件标识，排除最近10天内的，块大小及速率受ArchiveThrottle控制
          * 3.创建(如果不存在)最小日期到当前日期间的历史数据表
          * 4.拷贝指定日期内已完成的全局事务数据
-         * 5.删除指定日期内已完成的全局事务数据
+         * 5.删除指定日期内已完成的全局事务数据，拷贝、删除及进度(DataTransferCheckpoint)在同一事务内，中断后从进度处继续
          */
         int historyTableInternalRule = 1;
         List<ConfigCenter> dataTransferFrequencyList = configCenterService.selectConfigCenterByType(null, null, ConfigCenterStatus.Normal.toInteger(), ConfigCenterType.HistoryTableIntervalRule.toInteger());
@@ -187,77 +236,95 @@ public class DataTransferService implements IDataTransferService {
         return Integer.parseInt(convertMonthToSeason(month, year));
     }
 
-    private void createHistoryTable(String srcTable, String suffix) {
-        dataTransferRepository.executeUpdate("CREATE TABLE IF NOT EXISTS " + srcTable + "_" + suffix + " LIKE " + srcTable);
+    @Override
+    public List<TxEvent> selectArchivedEvents(String srcTable, String globalTxId) {
+        return archiveBackend.findArchivedEvents(srcTable, globalTxId);
     }
 
+    // The period is moved by a worker asynchronously, it's resumed if it was interrupted, otherwise it's restarted from the beginning.
     private void moveDataToHistory(String srcTable, String suffix, Date startTime, Date endTime) {
-        int pageIndex = 0, pageSize = 10000;
+        if (runningPeriods.contains(srcTable + "_" + suffix)) {
+            LOG.info("Skipped transferring data, because the period is being transferred, table [{}], period [{}].", srcTable, suffix);
+            return;
+        }
+        List<DataTransferCheckpoint> checkpoints = selectCheckpoints(DataTransferCheckpoint.SELECT_SQL, srcTable, suffix);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        DataTransferCheckpoint checkpoint;
+        if (checkpoints.isEmpty()) {
+            dataTransferRepository.executeUpdate(DataTransferCheckpoint.INSERT_SQL, srcTable, suffix, new Timestamp(startTime.getTime()), new Timestamp(endTime.getTime()), now);
+            checkpoint = new DataTransferCheckpoint(srcTable, suffix, startTime, endTime, 0, 0, DataTransferCheckpoint.RUNNING);
+        } else if (checkpoints.get(0).isRunning()) {
+            checkpoint = checkpoints.get(0);
+            LOG.info("Resuming data transfer, table [{}], period [{}], last event id [{}].", srcTable, suffix, checkpoint.lastEventId());
+        } else {
+            // the events which were not ended long enough in the last run are moved by this run.
+            dataTransferRepository.executeUpdate(DataTransferCheckpoint.RESTART_SQL, now, srcTable, suffix);
+            checkpoint = new DataTransferCheckpoint(srcTable, suffix, startTime, endTime, 0, 0, DataTransferCheckpoint.RUNNING);
+        }
+        submit(checkpoint);
+    }
+
+    private void submit(DataTransferCheckpoint checkpoint) {
+        if (!runningPeriods.add(checkpoint.key())) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    moveDataToHistory(checkpoint);
+                } catch (Exception e) {
+                    LOG.error("Failed to transfer data, it will be resumed later, table [{}], period [{}], last event id [{}].", checkpoint.srcTable(), checkpoint.period(), checkpoint.lastEventId(), e);
+                } finally {
+                    runningPeriods.remove(checkpoint.key());
+                }
+            });
+        } catch (RuntimeException e) {
+            runningPeriods.remove(checkpoint.key());
+            throw e;
+        }
+    }
+
+    private void moveDataToHistory(DataTransferCheckpoint checkpoint) throws InterruptedException {
+        String srcTable = checkpoint.srcTable();
         while (true) {
-            // 每次最多取10000条id，以免数据过多对内存造成过多影响
-            List<Long> eventIdList = txEventRepository.selectEndedEventIdsWithinSomePeriod(pageIndex/*++ 不++是因为moveData时将上次查询出的清除了，所以再次查询还是从0起*/, pageSize, startTime, endTime);
-            LOG.info("Transferring data, get data from method 'selectEndedEventIdsWithinSomePeriod', data size [{}].", eventIdList == null ? 0 : eventIdList.size());
+            // It stops on the node which is not master any more, and the new master resumes it.
+            if (stopped || !txleConsulClient.isMaster()) {
+                LOG.info("Stopped transferring data, table [{}], period [{}], last event id [{}].", srcTable, checkpoint.period(), checkpoint.lastEventId());
+                return;
+            }
+
+            int chunkSize = throttle.chunkSize();
+            long startNanos = System.nanoTime();
+            List<Long> eventIdList = txEventRepository.selectEndedEventIdsWithinSomePeriod(checkpoint.lastEventId(), chunkSize, checkpoint.startTime(), checkpoint.endTime());
             if (eventIdList == null || eventIdList.isEmpty()) {
                 break;
             }
 
-            // Creating Season Table.
-            createHistoryTable(srcTable, suffix);
-            LOG.info("Transferring data, create successfully.");
-
-            moveDataToHistory(srcTable, suffix, eventIdList);
-            LOG.info("Transferring data, move successfully.");
+            archiveBackend.moveChunk(checkpoint, eventIdList);
+            long endNanos = System.nanoTime();
 
-            int eventSize = eventIdList.size();
-            eventIdList.clear();
-            eventIdList = null;
-            if (eventSize < pageSize) {
+            long pauseMillis = throttle.onChunk(eventIdList.size(), startNanos, endNanos);
+            if (txleMetrics != null) {
+                txleMetrics.markArchiveChunk(srcTable, checkpoint.period(), eventIdList.size(), endNanos - startNanos, checkpoint.lastEventId(), throttle.chunkSize());
+            }
+            if (eventIdList.size() < chunkSize) {
                 break;
             }
-        }
-    }
-
-    private void moveDataToHistory(String srcTable, String suffix, List<Long> idList) {
-        if (idList == null || idList.isEmpty()) {
-            return;
-        }
-
-        int maxPlaceholders = 1000;
-        StringBuilder insertSql = new StringBuilder("INSERT IGNORE INTO " + srcTable + "_" + suffix + " SELECT * FROM " + srcTable + " T WHERE T.surrogateId IN (");
-        StringBuilder deleteSql = new StringBuilder("DELETE FROM " + srcTable + " WHERE surrogateId IN (");
-        if (idList.size() < maxPlaceholders) {
-            for (int i = 0; i < idList.size(); i++) {
-                if (i == 0) {
-                    insertSql.append("?");
-                    deleteSql.append("?");
-                } else {
-                    insertSql.append(",?");
-                    deleteSql.append(",?");
-                }
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
             }
-            insertSql.append(")");
-            deleteSql.append(")");
+        }
 
-            dataTransferRepository.executeUpdate(insertSql.toString(), idList.toArray());
-            dataTransferRepository.executeUpdate(deleteSql.toString(), idList.toArray());
-        } else {
-            StringBuilder placeholders = new StringBuilder(maxPlaceholders);
-            List<Long> idSetWithin1000 = new LinkedList<>();
-            for (int i = 1; i < idList.size() + 1; i++) {
-                idSetWithin1000.add(idList.get(i - 1));
-                placeholders.append("?,");
+        dataTransferRepository.executeUpdate(DataTransferCheckpoint.DONE_SQL, new Timestamp(System.currentTimeMillis()), srcTable, checkpoint.period());
+        LOG.info("Transferred data, table [{}], period [{}], moved rows [{}].", srcTable, checkpoint.period(), checkpoint.movedRows());
+    }
 
-                if (i % maxPlaceholders == 0 || i == idList.size()) {
-                    placeholders = new StringBuilder(placeholders.substring(0, placeholders.length() - 1) + ")");
-                    dataTransferRepository.executeUpdate(insertSql.toString() + placeholders, idSetWithin1000.toArray());
-                    dataTransferRepository.executeUpdate(deleteSql.toString() + placeholders, idSetWithin1000.toArray());
-                    idSetWithin1000.clear();
-                    placeholders = new StringBuilder(maxPlaceholders);
-                }
-            }
-            placeholders = null;
-            idSetWithin1000 = null;
+    private List<DataTransferCheckpoint> selectCheckpoints(String sql, Object... params) {
+        List<DataTransferCheckpoint> checkpoints = new ArrayList<>();
+        for (Object row : (List<?>) dataTransferRepository.executeQuery(sql, params)) {
+            checkpoints.add(DataTransferCheckpoint.of((Object[]) row));
         }
+        return checkpoints;
     }
 
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.datatransfer;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Archives the events to a history table per period in the same database, e.g. 'TxEvent_201910'.
+ *
+ * @since 2019/10/18
+ */
+public class HistoryTableArchiveBackend implements ArchiveBackend {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final DataTransferRepository dataTransferRepository;
+    private final Set<String> createdTables = ConcurrentHashMap.newKeySet();
+
+    public HistoryTableArchiveBackend(DataTransferRepository dataTransferRepository) {
+        this.dataTransferRepository = dataTransferRepository;
+    }
+
+    @Override
+    public void moveChunk(DataTransferCheckpoint checkpoint, List<Long> idList) {
+        String srcTable = checkpoint.srcTable();
+        String historyTable = srcTable + "_" + checkpoint.period();
+        if (!createdTables.contains(historyTable)) {
+            dataTransferRepository.executeUpdate("CREATE TABLE IF NOT EXISTS " + historyTable + " LIKE " + srcTable);
+            createdTables.add(historyTable);
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(idList.size(), "?"));
+        Object[] ids = idList.toArray();
+        List<String> sqls = Arrays.asList(
+                "INSERT IGNORE INTO " + historyTable + " SELECT * FROM " + srcTable + " T WHERE T.surrogateId IN (" + placeholders + ")",
+                "DELETE FROM " + srcTable + " WHERE surrogateId IN (" + placeholders + ")",
+                DataTransferCheckpoint.ADVANCE_SQL);
+        dataTransferRepository.executeUpdates(sqls, Arrays.asList(ids, ids, checkpoint.advanceParams(idList)));
+        checkpoint.advance(idList.get(idList.size() - 1), idList.size());
+    }
+
+    @Override
+    public List<TxEvent> findArchivedEvents(String srcTable, String globalTxId) {
+        List<TxEvent> events = new ArrayList<>();
+        for (Object period : (List<?>) dataTransferRepository.executeQuery("SELECT period FROM DataTransferCheckpoint WHERE srcTable = ? ORDER BY period", srcTable)) {
+            String historyTable = srcTable + "_" + period;
+            try {
+                events.addAll(dataTransferRepository.executeEntityQuery("SELECT * FROM " + historyTable + " WHERE globalTxId = ? ORDER BY surrogateId", TxEvent.class, globalTxId));
+            } catch (RuntimeException e) {
+                // the period had nothing to archive, so its table was not created.
+                LOG.debug("Skipped the history table {} in case of finding archived events.", historyTable, e);
+            }
+        }
+        return events;
+    }
+}
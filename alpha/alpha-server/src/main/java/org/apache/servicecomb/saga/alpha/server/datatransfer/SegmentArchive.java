@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.datatransfer;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only segment files of archived events, under 'directory/srcTable/period/'.
+ *
+ * A segment is a pair of files: 'segment-N.dat' holds the compressed blocks, one block per archived chunk, and
+ * 'segment-N.idx' holds an entry per block with its offset, its smallest and largest globalTxId and a bloom filter of
+ * its globalTxIds. The index is sparse, it's by block rather than by event, so all of it is kept in memory and a lookup
+ * reads only the blocks which may contain the global transaction.
+ *
+ * A block is forced to the disk before its index entry, and an entry is valid only if its checksum matches, so the
+ * torn tail of a crash is truncated when the period is loaded again. A chunk which was archived but not deleted from the
+ * database before a crash is archived again, the duplicated events are dropped by their ids in the lookup.
+ *
+ * @since 2019/10/18
+ */
+class SegmentArchive {
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int BLOCK_MAGIC = 0x54584C42;
+    private static final int BLOCK_HEADER_BYTES = 16;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_HASHES = 4;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.dat");
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    // srcTable -> period -> segments, a table is loaded at its first use.
+    private final Map<String, Map<String, Period>> tables = new ConcurrentHashMap<>();
+
+    SegmentArchive(Path directory, long maxSegmentBytes) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Appends the events as one block to the current segment of the period, it returns after the block and its index
+     * entry were forced to the disk.
+     */
+    void append(String srcTable, String period, List<TxEvent> events) throws IOException {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<TxEvent> sortedEvents = new ArrayList<>(events);
+        sortedEvents.sort(SegmentBlockCodec.ORDER);
+        byte[] raw = SegmentBlockCodec.encode(sortedEvents);
+        byte[] compressed = SegmentBlockCodec.compress(raw);
+        CRC32 crc = new CRC32();
+        crc.update(compressed);
+        ByteBuffer frame = ByteBuffer.allocate(BLOCK_HEADER_BYTES + compressed.length);
+        frame.putInt(BLOCK_MAGIC).putInt(raw.length).putInt(compressed.length).putInt((int) crc.getValue()).put(compressed);
+        frame.flip();
+
+        Period segments = periods(srcTable).computeIfAbsent(period, p -> new Period(directory.resolve(srcTable).resolve(p)));
+        synchronized (segments) {
+            segments.append(frame, sortedEvents);
+        }
+    }
+
+    /**
+     * @return the events of the global transaction in the order of their ids
+     */
+    List<TxEvent> find(String srcTable, String globalTxId) throws IOException {
+        TreeMap<Long, TxEvent> events = new TreeMap<>();
+        for (Period segments : periods(srcTable).values()) {
+            for (BlockIndex block : segments.blocks) {
+                if (block.mightContain(globalTxId)) {
+                    for (TxEvent event : read(block)) {
+                        if (globalTxId.equals(event.globalTxId())) {
+                            events.putIfAbsent(event.id(), event);
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(events.values());
+    }
+
+    int blockCount(String srcTable) {
+        return periods(srcTable).values().stream().mapToInt(segments -> segments.blocks.size()).sum();
+    }
+
+    private Map<String, Period> periods(String srcTable) {
+        return tables.computeIfAbsent(srcTable, table -> {
+            Map<String, Period> periods = new ConcurrentHashMap<>();
+            Path tableDirectory = directory.resolve(table);
+            if (Files.isDirectory(tableDirectory)) {
+                try (DirectoryStream<Path> periodDirectories = Files.newDirectoryStream(tableDirectory, Files::isDirectory)) {
+                    for (Path periodDirectory : periodDirectories) {
+                        Period segments = new Period(periodDirectory);
+                        segments.load();
+                        periods.put(periodDirectory.getFileName().toString(), segments);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to load the archive of table " + table + ".", e);
+                }
+            }
+            return periods;
+        });
+    }
+
+    private List<TxEvent> read(BlockIndex block) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(block.frameLength);
+        try (FileChannel channel = FileChannel.open(block.segment, StandardOpenOption.READ)) {
+            while (frame.hasRemaining()) {
+                if (channel.read(frame, block.offset + frame.position()) < 0) {
+                    throw new IOException("Unexpected end of segment " + block.segment + " at " + block.offset + ".");
+                }
+            }
+        }
+        frame.flip();
+        int magic = frame.getInt();
+        int rawLength = frame.getInt();
+        byte[] compressed = new byte[frame.getInt()];
+        int checksum = frame.getInt();
+        frame.get(compressed);
+        CRC32 crc = new CRC32();
+        crc.update(compressed);
+        if (magic != BLOCK_MAGIC || checksum != (int) crc.getValue()) {
+            throw new IOException("Corrupted block in segment " + block.segment + " at " + block.offset + ".");
+        }
+        return SegmentBlockCodec.decode(SegmentBlockCodec.decompress(compressed, rawLength));
+    }
+
+    // The segments of a period, only the last segment is appended.
+    private final class Period {
+        private final Path directory;
+        private final List<BlockIndex> blocks = new CopyOnWriteArrayList<>();
+        private int segmentNumber;
+        private long segmentSize;
+        private long indexSize;
+
+        private Period(Path directory) {
+            this.directory = directory;
+        }
+
+        private void load() throws IOException {
+            List<Integer> numbers = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.dat")) {
+                for (Path file : files) {
+                    Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        numbers.add(Integer.parseInt(matcher.group(1)));
+                    }
+                }
+            }
+            numbers.sort(null);
+            for (int number : numbers) {
+                segmentNumber = number;
+                loadSegment();
+            }
+        }
+
+        // Loads the valid entries of the index, and truncates what was written after them.
+        private void loadSegment() throws IOException {
+            Path index = indexFile(segmentNumber);
+            ByteBuffer entries = ByteBuffer.wrap(Files.exists(index) ? Files.readAllBytes(index) : new byte[0]);
+            long dataSize = 0;
+            while (entries.remaining() >= 4) {
+                int start = entries.position();
+                int length = entries.getInt();
+                if (length <= 0 || entries.remaining() < length + 8) {
+                    entries.position(start);
+                    break;
+                }
+                byte[] entry = new byte[length];
+                entries.get(entry);
+                CRC32 crc = new CRC32();
+                crc.update(entry);
+                if (entries.getLong() != crc.getValue()) {
+                    entries.position(start);
+                    break;
+                }
+                BlockIndex block = BlockIndex.decode(dataFile(segmentNumber), ByteBuffer.wrap(entry));
+                blocks.add(block);
+                dataSize = Math.max(dataSize, block.offset + block.frameLength);
+            }
+            indexSize = entries.position();
+            segmentSize = dataSize;
+            truncate(index, indexSize);
+            truncate(dataFile(segmentNumber), segmentSize);
+        }
+
+        private void append(ByteBuffer frame, List<TxEvent> sortedEvents) throws IOException {
+            if (segmentSize > 0 && segmentSize + frame.remaining() > maxSegmentBytes) {
+                segmentNumber++;
+                segmentSize = 0;
+                indexSize = 0;
+            }
+            Files.createDirectories(directory);
+
+            // It's written at the end of the valid data, so the tail of a failed write is overwritten.
+            Path data = dataFile(segmentNumber);
+            int frameLength = frame.remaining();
+            writeFully(data, segmentSize, frame);
+
+            BlockIndex block = BlockIndex.of(data, segmentSize, frameLength, sortedEvents);
+            byte[] entry = block.encode();
+            CRC32 crc = new CRC32();
+            crc.update(entry);
+            ByteBuffer indexEntry = ByteBuffer.allocate(4 + entry.length + 8);
+            indexEntry.putInt(entry.length).put(entry).putLong(crc.getValue());
+            indexEntry.flip();
+            writeFully(indexFile(segmentNumber), indexSize, indexEntry);
+
+            segmentSize += frameLength;
+            indexSize += indexEntry.capacity();
+            blocks.add(block);
+        }
+
+        private Path dataFile(int number) {
+            return directory.resolve(String.format("segment-%05d.dat", number));
+        }
+
+        private Path indexFile(int number) {
+            return directory.resolve(String.format("segment-%05d.idx", number));
+        }
+    }
+
+    private static void writeFully(Path file, long position, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+            channel.truncate(offset);
+            channel.force(false);
+        }
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        if (Files.exists(file) && Files.size(file) > size) {
+            LOG.warn("Truncated the torn tail of archive file {} from {} to {} bytes.", file, Files.size(file), size);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            }
+        }
+    }
+
+    // The sparse index entry of a block.
+    private static final class BlockIndex {
+        private final Path segment;
+        private final long offset;
+        private final int frameLength;
+        private final String minGlobalTxId;
+        private final String maxGlobalTxId;
+        private final long[] bloom;
+
+        private BlockIndex(Path segment, long offset, int frameLength, String minGlobalTxId, String maxGlobalTxId, long[] bloom) {
+            this.segment = segment;
+            this.offset = offset;
+            this.frameLength = frameLength;
+            this.minGlobalTxId = minGlobalTxId;
+            this.maxGlobalTxId = maxGlobalTxId;
+            this.bloom = bloom;
+        }
+
+        private static BlockIndex of(Path segment, long offset, int frameLength, List<TxEvent> sortedEvents) {
+            List<String> globalTxIds = new ArrayList<>();
+            for (TxEvent event : sortedEvents) {
+                if (globalTxIds.isEmpty() || !globalTxIds.get(globalTxIds.size() - 1).equals(event.globalTxId())) {
+                    globalTxIds.add(event.globalTxId());
+                }
+            }
+            long[] bloom = new long[(globalTxIds.size() * BLOOM_BITS_PER_KEY + 63) / 64];
+            for (String globalTxId : globalTxIds) {
+                for (int i = 0; i < BLOOM_HASHES; i++) {
+                    int bit = bloomBit(globalTxId, i, bloom.length * 64);
+                    bloom[bit >>> 6] |= 1L << bit;
+                }
+            }
+            return new BlockIndex(segment, offset, frameLength, globalTxIds.get(0), globalTxIds.get(globalTxIds.size() - 1), bloom);
+        }
+
+        private static BlockIndex decode(Path segment, ByteBuffer entry) {
+            long offset = entry.getLong();
+            int frameLength = entry.getInt();
+            String minGlobalTxId = readString(entry);
+            String maxGlobalTxId = readString(entry);
+            long[] bloom = new long[entry.getInt()];
+            for (int i = 0; i < bloom.length; i++) {
+                bloom[i] = entry.getLong();
+            }
+            return new BlockIndex(segment, offset, frameLength, minGlobalTxId, maxGlobalTxId, bloom);
+        }
+
+        private byte[] encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + bloom.length * 8);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(offset);
+            out.writeInt(frameLength);
+            writeString(out, minGlobalTxId);
+            writeString(out, maxGlobalTxId);
+            out.writeInt(bloom.length);
+            for (long word : bloom) {
+                out.writeLong(word);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private boolean mightContain(String globalTxId) {
+            if (globalTxId.compareTo(minGlobalTxId) < 0 || globalTxId.compareTo(maxGlobalTxId) > 0) {
+                return false;
+            }
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = bloomBit(globalTxId, i, bloom.length * 64);
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // double hashing by the hash code and FNV-1a of the id.
+        private static int bloomBit(String globalTxId, int i, int bits) {
+            int fnv = 0x811C9DC5;
+            for (int c = 0; c < globalTxId.length(); c++) {
+                fnv = (fnv ^ globalTxId.charAt(c)) * 0x01000193;
+            }
+            return (int) Math.floorMod(globalTxId.hashCode() + (long) i * (fnv | 1), (long) bits);
+        }
+
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(ByteBuffer entry) {
+            byte[] bytes = new byte[entry.getShort() & 0xFFFF];
+            entry.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
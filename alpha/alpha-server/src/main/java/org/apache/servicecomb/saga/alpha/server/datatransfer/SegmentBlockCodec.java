@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.datatransfer;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes a block of events column by column, the block is compressed as a whole.
+ *
+ * The events are sorted by globalTxId, so the events of a global transaction are adjacent. Every string column is
+ * dictionary encoded, because the services, types and methods repeat a lot, the ids and times are delta encoded by
+ * variable-length integers.
+ *
+ * @since 2019/10/18
+ */
+final class SegmentBlockCodec {
+    static final Comparator<TxEvent> ORDER = Comparator.comparing(TxEvent::globalTxId).thenComparingLong(TxEvent::id);
+
+    private static final int VERSION = 1;
+
+    private SegmentBlockCodec() {
+    }
+
+    /**
+     * @param events they should be sorted by {@link #ORDER}
+     */
+    static byte[] encode(List<TxEvent> events) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(events.size() * 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        writeVarLong(out, events.size());
+
+        long previous = 0;
+        for (TxEvent event : events) {
+            writeVarLong(out, zigZag(event.id() - previous));
+            previous = event.id();
+        }
+        writeStrings(out, events, TxEvent::globalTxId);
+        writeStrings(out, events, TxEvent::localTxId);
+        writeStrings(out, events, TxEvent::parentTxId);
+        writeStrings(out, events, TxEvent::serviceName);
+        writeStrings(out, events, TxEvent::instanceId);
+        writeStrings(out, events, TxEvent::type);
+        writeStrings(out, events, TxEvent::compensationMethod);
+        writeStrings(out, events, TxEvent::retryMethod);
+        writeStrings(out, events, TxEvent::category);
+        previous = 0;
+        for (TxEvent event : events) {
+            writeVarLong(out, zigZag(event.creationTime().getTime() - previous));
+            previous = event.creationTime().getTime();
+        }
+        for (TxEvent event : events) {
+            writeVarLong(out, zigZag(event.expiryTime().getTime() - event.creationTime().getTime()));
+        }
+        for (TxEvent event : events) {
+            writeVarLong(out, event.retries());
+        }
+        for (TxEvent event : events) {
+            byte[] payloads = event.payloads();
+            writeVarLong(out, payloads == null ? 0 : payloads.length + 1);
+            if (payloads != null) {
+                out.write(payloads);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static List<TxEvent> decode(byte[] raw) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version of segment block " + version + ".");
+        }
+        int count = (int) readVarLong(in);
+
+        long[] ids = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += unZigZag(readVarLong(in));
+            ids[i] = previous;
+        }
+        String[] globalTxIds = readStrings(in, count);
+        String[] localTxIds = readStrings(in, count);
+        String[] parentTxIds = readStrings(in, count);
+        String[] serviceNames = readStrings(in, count);
+        String[] instanceIds = readStrings(in, count);
+        String[] types = readStrings(in, count);
+        String[] compensationMethods = readStrings(in, count);
+        String[] retryMethods = readStrings(in, count);
+        String[] categories = readStrings(in, count);
+        long[] creationTimes = new long[count];
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += unZigZag(readVarLong(in));
+            creationTimes[i] = previous;
+        }
+        long[] expiryTimes = new long[count];
+        for (int i = 0; i < count; i++) {
+            expiryTimes[i] = creationTimes[i] + unZigZag(readVarLong(in));
+        }
+        int[] retries = new int[count];
+        for (int i = 0; i < count; i++) {
+            retries[i] = (int) readVarLong(in);
+        }
+
+        List<TxEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = (int) readVarLong(in);
+            byte[] payloads = null;
+            if (length > 0) {
+                payloads = new byte[length - 1];
+                in.readFully(payloads);
+            }
+            events.add(new TxEvent(ids[i], serviceNames[i], instanceIds[i], new Date(creationTimes[i]), globalTxIds[i], localTxIds[i], parentTxIds[i],
+                    types[i], compensationMethods[i], new Date(expiryTimes[i]), retryMethods[i], retries[i], categories[i], payloads));
+        }
+        return events;
+    }
+
+    // A dictionary of the distinct values, then the index of every value, 0 means null.
+    private static void writeStrings(DataOutputStream out, List<TxEvent> events, Function<TxEvent, String> column) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        int[] indexes = new int[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            String value = column.apply(events.get(i));
+            if (value != null) {
+                Integer index = dictionary.get(value);
+                if (index == null) {
+                    values.add(value);
+                    index = values.size();
+                    dictionary.put(value, index);
+                }
+                indexes[i] = index;
+            }
+        }
+        writeVarLong(out, values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+        for (int index : indexes) {
+            writeVarLong(out, index);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in, int count) throws IOException {
+        String[] dictionary = new String[(int) readVarLong(in) + 1];
+        for (int i = 1; i < dictionary.length; i++) {
+            dictionary[i] = in.readUTF();
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = dictionary[(int) readVarLong(in)];
+        }
+        return values;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer in segment block.");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] decompress(byte[] block, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != rawLength) {
+                throw new IOException("Truncated segment block, expected " + rawLength + " bytes but got " + length + ".");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted segment block.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
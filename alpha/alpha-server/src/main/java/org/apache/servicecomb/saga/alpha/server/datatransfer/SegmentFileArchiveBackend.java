@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.datatransfer;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Archives the events to the local {@link SegmentArchive}, so the cold data and its indexes leave the database, and
+ * archiving is a sequential write to a file plus a deletion by primary key.
+ *
+ * The chunk is forced to the segment file before it's deleted from the database. If the deletion failed, the chunk is
+ * archived again by the next attempt, and the lookup drops the duplicates.
+ *
+ * @since 2019/10/18
+ */
+public class SegmentFileArchiveBackend implements ArchiveBackend {
+    private final DataTransferRepository dataTransferRepository;
+    private final SegmentArchive segmentArchive;
+
+    public SegmentFileArchiveBackend(DataTransferRepository dataTransferRepository, String directory, long maxSegmentBytes) {
+        this.dataTransferRepository = dataTransferRepository;
+        this.segmentArchive = new SegmentArchive(Paths.get(directory), maxSegmentBytes);
+    }
+
+    @Override
+    public void moveChunk(DataTransferCheckpoint checkpoint, List<Long> idList) {
+        String srcTable = checkpoint.srcTable();
+        String placeholders = String.join(",", Collections.nCopies(idList.size(), "?"));
+        Object[] ids = idList.toArray();
+
+        List<TxEvent> events = dataTransferRepository.executeEntityQuery("SELECT * FROM " + srcTable + " WHERE surrogateId IN (" + placeholders + ")", TxEvent.class, ids);
+        try {
+            segmentArchive.append(srcTable, checkpoint.period(), events);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to append events to the archive of table " + srcTable + ", period " + checkpoint.period() + ".", e);
+        }
+
+        List<String> sqls = Arrays.asList("DELETE FROM " + srcTable + " WHERE surrogateId IN (" + placeholders + ")", DataTransferCheckpoint.ADVANCE_SQL);
+        dataTransferRepository.executeUpdates(sqls, Arrays.asList(ids, checkpoint.advanceParams(idList)));
+        checkpoint.advance(idList.get(idList.size() - 1), idList.size());
+    }
+
+    @Override
+    public List<TxEvent> findArchivedEvents(String srcTable, String globalTxId) {
+        try {
+            return segmentArchive.find(srcTable, globalTxId);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to find archived events of global transaction " + globalTxId + ".", e);
+        }
+    }
+}
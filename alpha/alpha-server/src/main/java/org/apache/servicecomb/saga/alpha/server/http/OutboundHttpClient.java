@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.http;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The shared client of all outbound HTTP calls of alpha, e.g. calls to other alpha nodes and to the accident platform.
+ *
+ * Connections are kept alive in one pool and reused per destination. The concurrent calls of a destination are bounded
+ * by a semaphore per destination, which applies to the blocking calls as well, a call waits for a permit no longer than
+ * the connect timeout. The dispatcher bounds the enqueued calls in addition, so they wait in its queue rather than in
+ * its threads. The other alpha nodes and the accident platform are called by plain http URLs, so these
+ * calls are HTTP/1.1, one call per connection at a time. HTTP/2 is only negotiated by ALPN with an https destination
+ * which supports it, neither of them is configured with h2c, so prior knowledge is not assumed. Every call has connect
+ * and read deadlines, and the latency and errors of every destination are exposed by TxleMetrics.
+ *
+ * The blocking callers share the pool through {@link #requestFactory()}, the others enqueue their calls by
+ * {@link #getAsync(String)} or {@link #postAsync(String, MediaType, byte[])} without holding their threads.
+ *
+ * @since 2019/10/18
+ */
+public class OutboundHttpClient {
+    private final OkHttpClient httpClient;
+    private final TxleMetrics txleMetrics;
+    private final int maxRequestsPerHost;
+    private final long permitTimeoutMillis;
+    // host:port -> the permits of its concurrent calls
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public OutboundHttpClient(TxleMetrics txleMetrics, int maxIdleConnections, long keepAliveMillis, int maxRequests, int maxRequestsPerHost,
+            long connectTimeoutMillis, long readTimeoutMillis) {
+        this.txleMetrics = txleMetrics;
+        this.maxRequestsPerHost = Math.max(1, maxRequestsPerHost);
+        this.permitTimeoutMillis = connectTimeoutMillis;
+        Dispatcher dispatcher = new Dispatcher(dispatcherExecutor());
+        dispatcher.setMaxRequests(Math.max(1, maxRequests));
+        dispatcher.setMaxRequestsPerHost(this.maxRequestsPerHost);
+        this.httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(Math.max(1, maxIdleConnections), keepAliveMillis, TimeUnit.MILLISECONDS))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .addInterceptor(this::limit)
+                .addInterceptor(this::measure)
+                .build();
+    }
+
+    public OkHttpClient httpClient() {
+        return httpClient;
+    }
+
+    /**
+     * For RestTemplate, it's closed together with this client rather than by Spring.
+     */
+    public ClientHttpRequestFactory requestFactory() {
+        return new OkHttp3ClientHttpRequestFactory(httpClient);
+    }
+
+    /**
+     * @return a future of the response body, it completes exceptionally if the call failed or the status isn't 2xx.
+     */
+    public CompletableFuture<String> getAsync(String url) {
+        return enqueue(new Request.Builder().url(url).get().build());
+    }
+
+    public CompletableFuture<String> postAsync(String url, MediaType mediaType, byte[] body) {
+        return enqueue(new Request.Builder().url(url).post(RequestBody.create(mediaType, body)).build());
+    }
+
+    public void shutdown() {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    private CompletableFuture<String> enqueue(Request request) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (response.isSuccessful()) {
+                        future.complete(body == null ? null : body.string());
+                    } else {
+                        future.completeExceptionally(new IOException("Unexpected status " + response.code() + " of " + call.request().url()));
+                    }
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private Response limit(Interceptor.Chain chain) throws IOException {
+        String destination = destinationOf(chain.request().url());
+        Semaphore semaphore = permits.computeIfAbsent(destination, key -> new Semaphore(maxRequestsPerHost));
+        try {
+            if (!semaphore.tryAcquire(permitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Too many concurrent calls to " + destination + ", no permit within " + permitTimeoutMillis + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a permit to call " + destination + ".");
+        }
+        try {
+            return chain.proceed(chain.request());
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private Response measure(Interceptor.Chain chain) throws IOException {
+        String destination = destinationOf(chain.request().url());
+        long startTime = System.nanoTime();
+        try {
+            Response response = chain.proceed(chain.request());
+            txleMetrics.markOutboundRequest(destination, System.nanoTime() - startTime, !response.isSuccessful());
+            return response;
+        } catch (IOException | RuntimeException e) {
+            txleMetrics.markOutboundRequest(destination, System.nanoTime() - startTime, true);
+            throw e;
+        }
+    }
+
+    private static String destinationOf(HttpUrl url) {
+        return url.host() + ":" + url.port();
+    }
+
+    // the same as the default executor of OkHttp, but daemon threads with txle names.
+    private static ExecutorService dispatcherExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "txle-http-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.kafka;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.apache.servicecomb.saga.alpha.core.kafka.KafkaMessageStatus;
+import org.apache.servicecomb.saga.common.EventType;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Claims the messages of the Message table for a relay worker in bulk, so that several workers, in one alpha or across
+ * the cluster, could send the messages in parallel without sending a message twice.
+ *
+ * A claimed message is 'sending' with the worker id and a lease, the lease is released once Kafka acknowledged or
+ * rejected the message. The 'sending' messages whose lease expired are claimable again, they were claimed by the workers
+ * which crashed before the acknowledgement. So the workers renew the lease of their messages which are still in flight,
+ * e.g. Kafka retries them for long, otherwise another worker would send them again.
+ *
+ * @since 2019/10/18
+ */
+class KafkaMessageClaimer {
+    private static final String CLAIMABLE = "(M.status = " + KafkaMessageStatus.INIT.toInteger() + " OR (M.status = " + KafkaMessageStatus.SENDING.toInteger()
+            + " AND M.leaseexpiry IS NOT NULL AND M.leaseexpiry < ?))";
+    private static final String ENDED_SELECT_SQL = "SELECT M.id, E.serviceName, E.instanceId, E.globalTxId, E.localTxId, E.category FROM Message M, TxEvent E"
+            + " WHERE E.globalTxId = M.globaltxid AND E.type = '" + EventType.SagaEndedEvent.name() + "' AND M.id > ? AND " + CLAIMABLE + " ORDER BY M.id";
+
+    private final DataSource dataSource;
+    private final long leaseMillis;
+
+    KafkaMessageClaimer(DataSource dataSource, long leaseMillis) {
+        this.dataSource = dataSource;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * @return the ids of the claimed messages of the given global transactions
+     */
+    List<Long> claim(String workerId, Collection<String> globalTxIds) throws SQLException {
+        if (globalTxIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            long now = System.currentTimeMillis();
+            List<Long> candidateIds = new ArrayList<>();
+            String sql = "SELECT M.id FROM Message M WHERE M.globaltxid IN (" + placeholders(globalTxIds.size()) + ") AND " + CLAIMABLE;
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int index = 1;
+                for (String globalTxId : globalTxIds) {
+                    statement.setString(index++, globalTxId);
+                }
+                statement.setTimestamp(index, new Timestamp(now));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        candidateIds.add(resultSet.getLong(1));
+                    }
+                }
+            }
+            if (candidateIds.isEmpty() || updateToSending(connection, workerId, now, candidateIds) == 0) {
+                return Collections.emptyList();
+            }
+
+            // the candidates which were claimed by the others concurrently were not updated.
+            List<Long> claimedIds = new ArrayList<>(candidateIds.size());
+            sql = "SELECT id FROM Message WHERE status = ? AND workerid = ? AND id IN (" + placeholders(candidateIds.size()) + ") ORDER BY id";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setInt(1, KafkaMessageStatus.SENDING.toInteger());
+                statement.setString(2, workerId);
+                for (int i = 0; i < candidateIds.size(); i++) {
+                    statement.setLong(i + 3, candidateIds.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        claimedIds.add(resultSet.getLong(1));
+                    }
+                }
+            }
+            return claimedIds;
+        }
+    }
+
+    /**
+     * Finds the claimable messages of the ended global transactions by id, for the messages which were missed by the event
+     * path, e.g. the ones of a crashed alpha or an expired lease.
+     *
+     * @return {message id, SagaEndedEvent} ordered by message id
+     */
+    List<Object[]> findClaimableOfEnded(long afterId, int limit) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(ENDED_SELECT_SQL)) {
+            statement.setLong(1, afterId);
+            statement.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            statement.setMaxRows(limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    TxEvent event = new TxEvent(resultSet.getString(2), resultSet.getString(3), resultSet.getString(4), resultSet.getString(5),
+                            null, EventType.SagaEndedEvent.name(), "", resultSet.getString(6), new byte[0]);
+                    rows.add(new Object[] {resultSet.getLong(1), event});
+                }
+            }
+        }
+        return rows;
+    }
+
+    long leaseMillis() {
+        return leaseMillis;
+    }
+
+    /**
+     * Extends the lease of the given messages which are still claimed by the worker.
+     *
+     * @return the count of the renewed messages, the others were completed or claimed by another worker
+     */
+    int renew(String workerId, List<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String sql = "UPDATE Message SET leaseexpiry = ? WHERE status = ? AND workerid = ? AND id IN (" + placeholders(ids.size()) + ")";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setTimestamp(1, new Timestamp(System.currentTimeMillis() + leaseMillis));
+            statement.setInt(2, KafkaMessageStatus.SENDING.toInteger());
+            statement.setString(3, workerId);
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setLong(i + 4, ids.get(i));
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Marks the messages as 'successful', 'failed' or 'disabled' by one update, and releases their lease.
+     */
+    void complete(List<Long> ids, KafkaMessageStatus status) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE Message SET status = ?, leaseexpiry = NULL WHERE id IN (" + placeholders(ids.size()) + ")";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, status.toInteger());
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setLong(i + 2, ids.get(i));
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    private int updateToSending(Connection connection, String workerId, long now, List<Long> ids) throws SQLException {
+        String sql = "UPDATE Message SET status = ?, workerid = ?, leaseexpiry = ? WHERE id IN (" + placeholders(ids.size()) + ") AND "
+                + CLAIMABLE.replace("M.", "");
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            statement.setInt(index++, KafkaMessageStatus.SENDING.toInteger());
+            statement.setString(index++, workerId);
+            statement.setTimestamp(index++, new Timestamp(now + leaseMillis));
+            for (Long id : ids) {
+                statement.setLong(index++, id);
+            }
+            statement.setTimestamp(index, new Timestamp(now));
+            return statement.executeUpdate();
+        }
+    }
+
+    private String placeholders(int size) {
+        StringBuilder placeholders = new StringBuilder(size * 2);
+        for (int i = 0; i < size; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+}
@@ -18,6 +18,9 @@ public interface KafkaMessageEntityRepository extends CrudRepository<KafkaMessag
     @Query("SELECT T FROM KafkaMessage T WHERE T.status = ?2 AND T.globaltxid = ?1")
     List<KafkaMessage> findMessageListByGlobalTxId(String globalTxId, int status);
 
+    @Query("SELECT T FROM KafkaMessage T WHERE T.id IN ?1 ORDER BY T.id")
+    List<KafkaMessage> findMessageListByIdList(List<Long> idList);
+
     @Transactional
     @Modifying
     @Query("UPDATE KafkaMessage T SET T.status = ?2 WHERE T.id IN ?1")
@@ -5,6 +5,7 @@
 
 package org.apache.servicecomb.saga.alpha.server.kafka;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import org.apache.kafka.clients.producer.KafkaProducer;
@@ -24,22 +25,48 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Kafka message producer.
  *
+ * It's a relay of the Message table, the SagaEndedEvent is only queued on the event path, so the event ingestion never
+ * waits for the database or Kafka. The relay workers claim the messages of the queued global transactions in bulk, and
+ * send one record per global transaction keyed by its globalTxId, so the producer batches and compresses the records of
+ * the same partition together. The acknowledgements are collected by the IO thread of Kafka, and the workers mark them
+ * in bulk. The messages which missed the queue, e.g. it was full, or alpha crashed, or the lease of a claim expired, are
+ * sent by a periodic sweep of the ended global transactions. The lease of the messages in flight is renewed until Kafka
+ * answers, so a message which Kafka retries for longer than the lease is not sent again by another worker.
+ *
  * @author Gannalyo
  * @since 2018/12/3
  */
 public class KafkaMessageProducer implements IKafkaMessageProducer {
 
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final long POLL_MILLIS = 100;
 
     @Autowired
-    private KafkaProducer kafkaProducer;
+    private KafkaProducer<String, String> kafkaProducer;
 
     private IKafkaMessageRepository kafkaMessageRepository;
 
@@ -51,47 +78,137 @@ public class KafkaMessageProducer implements IKafkaMessageProducer {
 
     private String topic;
 
-    KafkaMessageProducer(IKafkaMessageRepository kafkaMessageRepository, String topic) {
+    private final KafkaMessageClaimer claimer;
+    private final int workers;
+    private final int batchSize;
+    private final long sweepIntervalMillis;
+    private final BlockingQueue<TxEvent> endedEvents;
+    // the results of Kafka, they are marked by the workers rather than the IO thread of Kafka.
+    private final Queue<Long> acknowledgedIds = new ConcurrentLinkedQueue<>();
+    private final Queue<FailedMessages> failedMessages = new ConcurrentLinkedQueue<>();
+    // message id -> worker id, the messages which were sent but not answered by Kafka yet.
+    private final Map<Long, String> inFlightIds = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepTime = new AtomicLong();
+    private final AtomicLong nextRenewTime = new AtomicLong();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    KafkaMessageProducer(IKafkaMessageRepository kafkaMessageRepository, String topic, KafkaMessageClaimer claimer, int workers,
+                         int batchSize, int queueCapacity, long sweepIntervalMillis) {
         this.kafkaMessageRepository = kafkaMessageRepository;
         this.topic = topic;
+        this.claimer = claimer;
+        this.workers = Math.max(1, workers);
+        this.batchSize = Math.max(1, batchSize);
+        this.endedEvents = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.sweepIntervalMillis = sweepIntervalMillis;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            String workerId = ManagementFactory.getRuntimeMXBean().getName() + "-kafka-relay-" + i;
+            Thread thread = new Thread(() -> relay(workerId), "txle-kafka-relay-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+        for (Thread thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        completeMessages();
     }
 
     @Override
     public void send(TxEvent event) {
-        long a = System.currentTimeMillis();
-        try {
-            boolean enabled = dbDegradationConfigService.isEnabledConfig(event.instanceId(), event.category(), ConfigCenterType.BizInfoToKafka);
-            if (enabled && EventType.SagaEndedEvent.name().equals(event.type())) {
-                List<KafkaMessage> messageList = kafkaMessageRepository.findMessageListByGlobalTxId(event.globalTxId(), KafkaMessageStatus.INIT.toInteger());
-                if (messageList != null && !messageList.isEmpty()) {
-                    // To update message's status to 'sending'.
-                    List<Long> idList = new ArrayList<>();
-                    messageList.forEach(msg -> idList.add(msg.getId()));
-                    // Cause current method is called in many places, and one message per globalTxId, hence, use a mutex of 'globalTxId' to avoid to send message repeatedly is planned. But, it could not work among distribution servers.
-                    // So, we take advantage of the db-lock, just one server can do update successfully for same globalTxId in distribution and concurrence case.
-                    boolean updateResult = kafkaMessageRepository.updateMessageStatusByIdListAndStatus(idList, KafkaMessageStatus.SENDING, KafkaMessageStatus.INIT);
-                    if (updateResult) {
-                        // send msg to kafka
-                        sendMessage(event, messageList, idList);
-                    }
-                    LOG.info("Method 'KafkaMessageProducer.send' took {} milliseconds.", System.currentTimeMillis() - a);
+        if (EventType.SagaEndedEvent.name().equals(event.type()) && !endedEvents.offer(event)) {
+            LOG.warn("The queue of Kafka relay is full, messages of globalTxId [{}] will be sent by the next sweep.", event.globalTxId());
+        }
+    }
+
+    private void relay(String workerId) {
+        List<TxEvent> events = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                TxEvent event = endedEvents.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    events.add(event);
+                    endedEvents.drainTo(events, batchSize - 1);
+                    sendEnded(workerId, events);
+                    events.clear();
+                }
+                completeMessages();
+
+                long now = System.currentTimeMillis();
+                long renewTime = nextRenewTime.get();
+                if (now >= renewTime && nextRenewTime.compareAndSet(renewTime, now + claimer.leaseMillis() / 3)) {
+                    renewLeases();
+                }
+                long sweepTime = nextSweepTime.get();
+                if (now >= sweepTime && nextSweepTime.compareAndSet(sweepTime, now + sweepIntervalMillis)) {
+                    sweep(workerId);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // the claimed messages are sent again by the sweep once their lease expires.
+                LOG.error("Failed to relay Kafka messages - worker = [{}].", workerId, e);
+                events.clear();
             }
-        } catch (Exception e) {
-            LOG.error("Fail to send Kafka message - localTxId = " + event.localTxId(), e);
-            LOG.info("Method 'KafkaMessageProducer.send' took {} milliseconds.", System.currentTimeMillis() - a);
         }
     }
 
-    private void sendMessage(TxEvent event, List<KafkaMessage> messageList, List<Long> idList) {
+    private void sendEnded(String workerId, List<TxEvent> events) throws SQLException {
+        long startTime = System.currentTimeMillis();
+        Map<String, TxEvent> endedEventByGlobalTxId = new LinkedHashMap<>();
+        Set<String> disabledGlobalTxIds = new HashSet<>();
+        for (TxEvent event : events) {
+            if (dbDegradationConfigService.isEnabledConfig(event.instanceId(), event.category(), ConfigCenterType.BizInfoToKafka)) {
+                endedEventByGlobalTxId.putIfAbsent(event.globalTxId(), event);
+            } else {
+                disabledGlobalTxIds.add(event.globalTxId());
+            }
+        }
+        // the disabled messages are completed rather than left claimable, otherwise every sweep would walk them again.
+        claimer.complete(claimer.claim(workerId, disabledGlobalTxIds), KafkaMessageStatus.DISABLED);
+        // Several servers may relay the same global transaction, the claim makes sure that just one server sends a message.
+        List<Long> idList = claimer.claim(workerId, endedEventByGlobalTxId.keySet());
+        if (idList.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<KafkaMessage>> messagesByGlobalTxId = new LinkedHashMap<>();
+        kafkaMessageRepository.findMessageListByIdList(idList)
+                .forEach(msg -> messagesByGlobalTxId.computeIfAbsent(msg.getGlobaltxid(), globalTxId -> new ArrayList<>()).add(msg));
+        messagesByGlobalTxId.forEach((globalTxId, messageList) -> sendMessage(workerId, endedEventByGlobalTxId.get(globalTxId), messageList));
+        LOG.debug("Relayed {} Kafka messages of {} global transactions in {} milliseconds.", idList.size(), messagesByGlobalTxId.size(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    private void sendMessage(String workerId, TxEvent event, List<KafkaMessage> messageList) {
+        List<Long> idList = new ArrayList<>(messageList.size());
+        messageList.forEach(msg -> idList.add(msg.getId()));
+        String msgJson = GSON.toJson(messageList);
+        idList.forEach(id -> inFlightIds.put(id, workerId));
         try {
-            String msgJson = new GsonBuilder().create().toJson(messageList);
-            ProducerRecord<String, String> record = new ProducerRecord<>(topic, msgJson);
+            ProducerRecord<String, String> record = new ProducerRecord<>(topic, event.globalTxId(), msgJson);
             kafkaProducer.send(record, (metadata, exception) -> {
+                idList.forEach(inFlightIds::remove);
                 if (exception == null) {
-                    LOG.info("Successfully to send Kafka message - globalTxId = [{}].", event.globalTxId());
-                    // To update message's status to 'successful'.
-                    kafkaMessageRepository.updateMessageStatusByIdList(idList, KafkaMessageStatus.SUCCESSFUL);
+                    acknowledgedIds.addAll(idList);
                 } else {
                     if (exception instanceof RetriableException) {
                         // Kafka will retry automatically for some exceptions which can possible be successful by retrying.
@@ -99,23 +216,95 @@ public class KafkaMessageProducer implements IKafkaMessageProducer {
                     } else {
                         LOG.error("Unsuccessfully to send Kafka message without retries - globalTxId = [{}].", event.globalTxId(), exception);
                     }
-                    // To report message to Accident Platform.
-                    JsonObject jsonParams = new JsonObject();
-                    jsonParams.addProperty("type", AccidentHandleType.SEND_MESSAGE_ERROR.toDescription());
-                    jsonParams.addProperty("globaltxid", event.globalTxId());
-                    jsonParams.addProperty("localtxid", event.localTxId());
-                    jsonParams.addProperty("instanceid", event.instanceId());
-                    jsonParams.addProperty("servicename", event.serviceName());
-                    jsonParams.addProperty("bizinfo", msgJson);
-                    accidentHandlingService.reportMsgToAccidentPlatform(jsonParams.toString());
-
-                    // To update message's status to 'failed'.
-                    kafkaMessageRepository.updateMessageStatusByIdList(idList, KafkaMessageStatus.FAILED);
+                    failedMessages.add(new FailedMessages(event, idList, msgJson));
                 }
             });
         } catch (Exception e) {
+            idList.forEach(inFlightIds::remove);
             LOG.error("To send message to Kafka exception - globalTxId = [{}].", event.globalTxId(), e);
         }
     }
 
+    // Keeps the claims of the messages in flight, the ones whose lease had expired were probably sent by another worker too.
+    private void renewLeases() {
+        Map<String, List<Long>> idsByWorkerId = new HashMap<>();
+        inFlightIds.forEach((id, workerId) -> idsByWorkerId.computeIfAbsent(workerId, key -> new ArrayList<>()).add(id));
+        idsByWorkerId.forEach((workerId, idList) -> {
+            try {
+                int renewed = claimer.renew(workerId, idList);
+                if (renewed < idList.size()) {
+                    LOG.debug("Renewed the lease of {} of {} Kafka messages in flight - worker = [{}].", renewed, idList.size(), workerId);
+                }
+            } catch (SQLException e) {
+                LOG.error("Failed to renew the lease of {} Kafka messages - worker = [{}].", idList.size(), workerId, e);
+            }
+        });
+    }
+
+    // To update messages' status to 'successful' and 'failed' in bulk.
+    private void completeMessages() {
+        List<Long> idList = new ArrayList<>();
+        Long id;
+        while ((id = acknowledgedIds.poll()) != null) {
+            idList.add(id);
+        }
+        try {
+            claimer.complete(idList, KafkaMessageStatus.SUCCESSFUL);
+        } catch (SQLException e) {
+            LOG.error("Failed to mark {} Kafka messages as successful.", idList.size(), e);
+        }
+
+        FailedMessages failed;
+        while ((failed = failedMessages.poll()) != null) {
+            // To report message to Accident Platform.
+            JsonObject jsonParams = new JsonObject();
+            jsonParams.addProperty("type", AccidentHandleType.SEND_MESSAGE_ERROR.toDescription());
+            jsonParams.addProperty("globaltxid", failed.event.globalTxId());
+            jsonParams.addProperty("localtxid", failed.event.localTxId());
+            jsonParams.addProperty("instanceid", failed.event.instanceId());
+            jsonParams.addProperty("servicename", failed.event.serviceName());
+            jsonParams.addProperty("bizinfo", failed.msgJson);
+            accidentHandlingService.reportMsgToAccidentPlatform(jsonParams.toString());
+
+            try {
+                claimer.complete(failed.idList, KafkaMessageStatus.FAILED);
+            } catch (SQLException e) {
+                LOG.error("Failed to mark Kafka messages as failed - globalTxId = [{}].", failed.event.globalTxId(), e);
+            }
+        }
+    }
+
+    // Walks all claimable messages of the ended global transactions by id, so the disabled ones do not block the others.
+    private void sweep(String workerId) throws SQLException {
+        long afterId = 0;
+        while (running) {
+            List<Object[]> rows = claimer.findClaimableOfEnded(afterId, batchSize);
+            if (rows.isEmpty()) {
+                return;
+            }
+            Map<String, TxEvent> endedEventByGlobalTxId = new LinkedHashMap<>();
+            for (Object[] row : rows) {
+                TxEvent event = (TxEvent) row[1];
+                endedEventByGlobalTxId.putIfAbsent(event.globalTxId(), event);
+                afterId = (Long) row[0];
+            }
+            sendEnded(workerId, new ArrayList<>(endedEventByGlobalTxId.values()));
+            if (rows.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private static final class FailedMessages {
+        private final TxEvent event;
+        private final List<Long> idList;
+        private final String msgJson;
+
+        private FailedMessages(TxEvent event, List<Long> idList, String msgJson) {
+            this.event = event;
+            this.idList = idList;
+            this.msgJson = msgJson;
+        }
+    }
+
 }
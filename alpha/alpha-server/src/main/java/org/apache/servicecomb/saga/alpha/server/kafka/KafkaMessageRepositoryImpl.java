@@ -39,6 +39,11 @@ public class KafkaMessageRepositoryImpl implements IKafkaMessageRepository {
         return kafkaMessageEntityRepository.findMessageListByGlobalTxId(globalTxId, status);
     }
 
+    @Override
+    public List<KafkaMessage> findMessageListByIdList(List<Long> idList) {
+        return kafkaMessageEntityRepository.findMessageListByIdList(idList);
+    }
+
     @Override
     public boolean updateMessageStatusByIdList(List<Long> idList, KafkaMessageStatus messageStatus) {
         return kafkaMessageEntityRepository.updateMessageStatusByIdList(idList, messageStatus.toInteger()) > 0;
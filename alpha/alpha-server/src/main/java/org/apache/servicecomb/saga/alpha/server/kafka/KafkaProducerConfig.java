@@ -14,6 +14,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 
+import javax.sql.DataSource;
+
 /**
  * Kafka producer configuration.
  *
@@ -28,14 +30,31 @@ public class KafkaProducerConfig {
     @Value("${topic:default_topic}")
     private String topic;
 
+    @Value("${alpha.kafka.relay.workers:2}")
+    private int relayWorkers;
+
+    @Value("${alpha.kafka.relay.batch-size:100}")
+    private int relayBatchSize;
+
+    @Value("${alpha.kafka.relay.queue-capacity:10000}")
+    private int relayQueueCapacity;
+
+    @Value("${alpha.kafka.relay.sweep-interval-ms:30000}")
+    private long relaySweepIntervalMillis;
+
+    // longer than the time of Kafka acknowledging a message, otherwise the message could be sent twice.
+    @Value("${alpha.kafka.relay.lease-ms:300000}")
+    private long relayLeaseMillis;
+
     @Bean
     public KafkaProducer<String, String> kafkaProducer() {
         return new KafkaProducer<>(ConfigLoading.loadKafkaProperties());
     }
 
     @Bean
-    IKafkaMessageProducer kafkaMessageProducer(IKafkaMessageRepository kafkaMessageRepository) {
-        return new KafkaMessageProducer(kafkaMessageRepository, topic);
+    IKafkaMessageProducer kafkaMessageProducer(IKafkaMessageRepository kafkaMessageRepository, DataSource dataSource) {
+        return new KafkaMessageProducer(kafkaMessageRepository, topic, new KafkaMessageClaimer(dataSource, relayLeaseMillis), relayWorkers,
+                relayBatchSize, relayQueueCapacity, relaySweepIntervalMillis);
     }
 
     @Bean
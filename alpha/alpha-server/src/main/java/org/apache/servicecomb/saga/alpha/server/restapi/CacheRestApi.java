@@ -7,11 +7,13 @@ package org.apache.servicecomb.saga.alpha.server.restapi;
 
 import org.apache.servicecomb.saga.alpha.core.cache.ITxleCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.Map;
 
 @RestController
@@ -19,6 +21,11 @@ public class CacheRestApi {
     @Autowired
     private ITxleCache txleCache;
 
+    @PostMapping(value = "/replicateCache", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void replicateCache(@RequestBody byte[] frame, HttpServletRequest request) {
+        txleCache.applyReplicatedCache(request.getRemoteAddr(), frame);
+    }
+
     @PostMapping("/putConfigCache")
     public void putConfigCache(@RequestBody String cache) {
         if (cache != null) {
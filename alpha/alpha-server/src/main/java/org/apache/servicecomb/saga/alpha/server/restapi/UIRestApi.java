@@ -6,6 +6,8 @@
 package org.apache.servicecomb.saga.alpha.server.restapi;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONException;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.google.gson.GsonBuilder;
@@ -16,6 +18,7 @@ import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenter;
 import org.apache.servicecomb.saga.alpha.core.configcenter.ConfigCenterStatus;
 import org.apache.servicecomb.saga.alpha.core.configcenter.IConfigCenterService;
 import org.apache.servicecomb.saga.alpha.core.datadictionary.DataDictionaryItem;
+import org.apache.servicecomb.saga.alpha.core.datatransfer.IDataTransferService;
 import org.apache.servicecomb.saga.alpha.core.datadictionary.IDataDictionaryService;
 import org.apache.servicecomb.saga.alpha.server.TableFieldRepository;
 import org.apache.servicecomb.saga.common.ConfigCenterType;
@@ -25,6 +28,8 @@ import org.apache.servicecomb.saga.common.TxleConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -33,6 +38,7 @@ import javax.servlet.http.HttpServletRequest;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import static org.apache.servicecomb.saga.common.EventType.SagaEndedEvent;
 
@@ -62,6 +68,15 @@ public class UIRestApi {
     @Autowired
     private ITxleCache txleCache;
 
+    @Autowired
+    private TxPauseRegistry txPauseRegistry;
+
+    @Autowired
+    private IDataTransferService dataTransferService;
+
+    @Value("${alpha.bulk-operation.max-size:10000}")
+    private int bulkOperationMaxSize;
+
     public UIRestApi(TableFieldRepository tableFieldRepository, TxEventRepository eventRepository) {
         this.tableFieldRepository = tableFieldRepository;
         this.eventRepository = eventRepository;
@@ -128,6 +143,44 @@ public class UIRestApi {
         return ResponseEntity.ok(rv);
     }
 
+    // The keyset variant of the list, the 'cursor' of the response is the param 'cursor' of the next page, it's null for the last page.
+    @GetMapping(value = "/globalTransactions/cursor")
+    public ResponseEntity<ReturnValue> findTxListByCursor(@RequestParam(defaultValue = "100") int pageSize, @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String globalTxId, @RequestParam(required = false) String serviceName, @RequestParam(required = false) String instanceId,
+            @RequestParam(required = false) String category, @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date startTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date endTime) {
+        return findListByCursor("Global Transaction", () -> {
+            KeysetPage page = eventRepository.findTxList(new KeysetQuery(pageSize, cursor, globalTxId, serviceName, instanceId, category, startTime, endTime));
+            List<Map<String, Object>> resultList = new LinkedList<>();
+            page.list().forEach(map -> {
+                Map<String, Object> resultMap = new HashMap<>();
+                map.keySet().forEach(key -> resultMap.put(key.toLowerCase(), map.get(key)));
+                resultList.add(resultMap);
+            });
+            return new KeysetPage(resultList, page.cursor());
+        });
+    }
+
+    private ResponseEntity<ReturnValue> findListByCursor(String listName, Supplier<KeysetPage> pageSupplier) {
+        ReturnValue rv = new ReturnValue();
+        try {
+            KeysetPage page = pageSupplier.get();
+            if (page != null) {
+                rv.setData(JSONObject.parseArray(JSON.toJSONString(page.list(), SerializerFeature.WriteMapNullValue)));
+                rv.setTotal(page.list().size());
+                rv.setCursor(page.cursor());
+            }
+        } catch (IllegalArgumentException e) {
+            rv.setMessage(e.getMessage());
+            return ResponseEntity.badRequest().body(rv);
+        } catch (Exception e) {
+            rv.setMessage("Failed to find the list of " + listName + " by cursor.");
+            LOG.error(rv.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(rv);
+        }
+        return ResponseEntity.ok(rv);
+    }
+
     // All of field names are lower case at front-end, but could not guarantee the format at back-end, so parts of field names need be converted.
     // In fact, the filed names of all tables are lower case, except TxEvent, Command and Timeout.
     private String convertToEventEntityFieldName(String fieldName) {
@@ -194,6 +247,27 @@ public class UIRestApi {
         return ResponseEntity.ok(rv);
     }
 
+    @GetMapping("/archivedGlobalTransactions/{globalTxId}")
+    public ResponseEntity<ReturnValue> findArchivedGlobalTx(@PathVariable String globalTxId) {
+        ReturnValue rv = new ReturnValue();
+        try {
+            List<TxEvent> archivedEvents = dataTransferService.selectArchivedEvents("TxEvent", globalTxId);
+            List<Map<String, Object>> resultList = new LinkedList<>();
+            archivedEvents.forEach(event -> {
+                Map<String, Object> resultMap = new HashMap<>();
+                event.toMap().forEach((key, value) -> resultMap.put(key.toLowerCase(), value));
+                resultList.add(resultMap);
+            });
+            rv.setData(JSONObject.parseArray(JSON.toJSONString(resultList, SerializerFeature.WriteMapNullValue)));
+            rv.setTotal(resultList.size());
+        } catch (Exception e) {
+            rv.setMessage("Failed to find the archived Global Transaction.");
+            LOG.error(rv.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(rv);
+        }
+        return ResponseEntity.ok(rv);
+    }
+
     @PostMapping("/pauseGlobalTransactions")
     public ResponseEntity<ReturnValue> pauseGlobalTransactions(@RequestBody JSONObject jsonParams) {
         return saveOperationTxEventWithVerification(jsonParams, jsonParams.getIntValue("pausePeriod"), "pause");
@@ -240,15 +314,10 @@ public class UIRestApi {
             txEventList.forEach(event -> {
                 if (SagaEndedEvent.name().equals(event.type())) {
                     globalTxIdList.remove(event.globalTxId());
-                } else {
-                    List<TxEvent> pauseContinueEventList = eventRepository.selectPausedAndContinueEvent(event.globalTxId());
-                    if (pauseContinueEventList != null && !pauseContinueEventList.isEmpty()) {
-                        if ("pause".equals(operation) && pauseContinueEventList.size() % 2 == 1) {
-                            globalTxIdList.remove(event.globalTxId());
-                        } else if ("recover".equals(operation) && pauseContinueEventList.size() % 2 == 0) {
-                            globalTxIdList.remove(event.globalTxId());
-                        }
-                    }
+                } else if ("pause".equals(operation) && txPauseRegistry.contains(event.globalTxId())) {
+                    globalTxIdList.remove(event.globalTxId());
+                } else if ("recover".equals(operation) && !txPauseRegistry.contains(event.globalTxId())) {
+                    globalTxIdList.remove(event.globalTxId());
                 }
             });
             if (globalTxIdList.isEmpty()) {
@@ -260,24 +329,20 @@ public class UIRestApi {
                 if (globalTxIdList.contains(event.globalTxId())) {
                     globalTxIdList.remove(event.globalTxId());
                     String ipPort = request.getRemoteAddr() + ":" + request.getRemotePort();
-                    String typeName = AdditionalEventType.SagaPausedEvent.name();
-                    if ("recover".equals(operation)) {
-                        typeName = AdditionalEventType.SagaContinuedEvent.name();
-                    } else if ("terminate".equals(operation)) {
-                        typeName = EventType.TxAbortedEvent.name();
-                    }
-                    TxEvent txEvent = new TxEvent(ipPort, ipPort, event.globalTxId(), event.localTxId(), event.parentTxId(), typeName, "", pausePeriod, "", 0, event.category(), null);
-                    eventRepository.save(txEvent);
-                    if ("terminate".equals(operation)) {
+                    // The pause/continue events are persisted by the pause registry asynchronously.
+                    if ("pause".equals(operation)) {
+                        txPauseRegistry.pause(event, ipPort, pausePeriod);
+                        txleCache.putDistributedTxSuspendStatusCache(event.globalTxId(), true, pausePeriod);
+                    } else if ("recover".equals(operation)) {
+                        txPauseRegistry.resume(event, ipPort);
+                        txleCache.removeDistributedTxSuspendStatusCache(event.globalTxId());
+                    } else {
+                        TxEvent abortedEvent = new TxEvent(ipPort, ipPort, event.globalTxId(), event.localTxId(), event.parentTxId(), EventType.TxAbortedEvent.name(), "", 0, "", 0, event.category(), null);
+                        eventRepository.save(abortedEvent);
                         // Do not compensate after terminating.
                         TxEvent endedEvent = new TxEvent(event.serviceName(), event.instanceId(), event.globalTxId(), event.globalTxId(), null, SagaEndedEvent.name(), "", event.category(), null);
                         endedEvent.setSurrogateId(null);
                         eventRepository.save(endedEvent);
-                    }
-                    // Set cache for global transaction status.
-                    if ("pause".equals(operation)) {
-                        txleCache.putDistributedTxSuspendStatusCache(event.globalTxId(), true, 60);
-                    } else {
                         txleCache.removeDistributedTxSuspendStatusCache(event.globalTxId());
                     }
                     txleMetrics.countTxNumber(event, false, false);
@@ -291,13 +356,119 @@ public class UIRestApi {
         return ResponseEntity.ok(rv);
     }
 
+    // The bulk variants select the running global transactions by one query, persist the events of all of them by one batch,
+    // and replicate their statuses by a few cache changes. The params are either 'globalTxIds' or 'serviceName', 'startTime'
+    // and 'endTime'. The matched global transactions are operated by pages of 'alpha.bulk-operation.max-size' in the order of
+    // id, so the ones which are still running after being operated, e.g. the paused ones, are never selected again.
+    @PostMapping("/pauseGlobalTransactionsInBulk")
+    public ResponseEntity<ReturnValue> pauseGlobalTransactionsInBulk(@RequestBody JSONObject jsonParams) {
+        return operateGlobalTransactionsInBulk(jsonParams, "pause");
+    }
+
+    @PostMapping("/recoverGlobalTransactionsInBulk")
+    public ResponseEntity<ReturnValue> recoverGlobalTransactionsInBulk(@RequestBody JSONObject jsonParams) {
+        return operateGlobalTransactionsInBulk(jsonParams, "recover");
+    }
+
+    @PostMapping("/terminateGlobalTransactionsInBulk")
+    public ResponseEntity<ReturnValue> terminateGlobalTransactionsInBulk(@RequestBody JSONObject jsonParams) {
+        return operateGlobalTransactionsInBulk(jsonParams, "terminate");
+    }
+
+    private ResponseEntity<ReturnValue> operateGlobalTransactionsInBulk(JSONObject jsonParams, String operation) {
+        ReturnValue rv = new ReturnValue();
+        GlobalTxFilter filter;
+        try {
+            filter = toGlobalTxFilter(jsonParams);
+        } catch (IllegalArgumentException | JSONException e) {
+            rv.setMessage(e.getMessage());
+            return ResponseEntity.badRequest().body(rv);
+        }
+        try {
+            String ipPort = request.getRemoteAddr() + ":" + request.getRemotePort();
+            int pausePeriod = jsonParams.getIntValue("pausePeriod");
+            Set<String> operatedGlobalTxIds = new LinkedHashSet<>();
+            long afterSurrogateId = 0;
+            List<TxEvent> startedEvents;
+            do {
+                startedEvents = eventRepository.selectSagaStartedEventsOfUnendedTx(filter, afterSurrogateId);
+                if (startedEvents.isEmpty()) {
+                    break;
+                }
+                afterSurrogateId = startedEvents.get(startedEvents.size() - 1).id();
+                List<TxEvent> operatedEvents = operateGlobalTransactions(startedEvents, operation, ipPort, pausePeriod);
+                operatedEvents.forEach(event -> txleMetrics.countTxNumber(event, false, false));
+                operatedGlobalTxIds.addAll(globalTxIdsOf(operatedEvents));
+            } while (startedEvents.size() >= filter.limit());
+
+            rv.setData(operatedGlobalTxIds);
+            rv.setTotal(operatedGlobalTxIds.size());
+        } catch (Exception e) {
+            rv.setMessage("Failed to " + operation + " global transactions in bulk, filter [" + filter + "].");
+            LOG.error(rv.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(rv);
+        }
+        return ResponseEntity.ok(rv);
+    }
+
+    // @return the given events whose global transactions were operated, the ones which have been paused are not paused again, etc.
+    private List<TxEvent> operateGlobalTransactions(List<TxEvent> startedEvents, String operation, String ipPort, int pausePeriod) {
+        List<TxEvent> operatedEvents;
+        if ("pause".equals(operation)) {
+            operatedEvents = txPauseRegistry.pauseAll(startedEvents, ipPort, pausePeriod);
+            txleCache.putDistributedTxSuspendStatusCache(globalTxIdsOf(operatedEvents), pausePeriod);
+        } else if ("recover".equals(operation)) {
+            operatedEvents = txPauseRegistry.resumeAll(startedEvents, ipPort);
+            txleCache.removeDistributedTxSuspendStatusCache(globalTxIdsOf(operatedEvents));
+        } else {
+            operatedEvents = startedEvents;
+            List<TxEvent> terminatedEvents = new ArrayList<>(startedEvents.size() * 2);
+            startedEvents.forEach(event -> {
+                terminatedEvents.add(new TxEvent(ipPort, ipPort, event.globalTxId(), event.localTxId(), event.parentTxId(), EventType.TxAbortedEvent.name(), "", 0, "", 0, event.category(), null));
+                // Do not compensate after terminating.
+                terminatedEvents.add(new TxEvent(event.serviceName(), event.instanceId(), event.globalTxId(), event.globalTxId(), null, SagaEndedEvent.name(), "", event.category(), null));
+            });
+            eventRepository.saveAll(terminatedEvents);
+            txleCache.removeDistributedTxSuspendStatusCache(globalTxIdsOf(operatedEvents));
+        }
+        return operatedEvents;
+    }
+
+    private GlobalTxFilter toGlobalTxFilter(JSONObject jsonParams) {
+        if (jsonParams == null) {
+            throw new IllegalArgumentException("The filter of Global Transactions is empty.");
+        }
+        Object globalTxIds = jsonParams.get("globalTxIds");
+        if (globalTxIds == null || globalTxIds.toString().trim().isEmpty()) {
+            return GlobalTxFilter.ofService(jsonParams.getString("serviceName"), jsonParams.getDate("startTime"), jsonParams.getDate("endTime"), bulkOperationMaxSize);
+        }
+        Set<String> globalTxIdSet = new LinkedHashSet<>();
+        if (globalTxIds instanceof JSONArray) {
+            ((JSONArray) globalTxIds).forEach(globalTxId -> globalTxIdSet.add(String.valueOf(globalTxId).trim()));
+        } else {
+            for (String globalTxId : globalTxIds.toString().split(",")) {
+                globalTxIdSet.add(globalTxId.trim());
+            }
+        }
+        globalTxIdSet.remove("");
+        if (globalTxIdSet.size() > bulkOperationMaxSize) {
+            throw new IllegalArgumentException("At most " + bulkOperationMaxSize + " global transactions are operated at once, but " + globalTxIdSet.size() + " are given.");
+        }
+        return GlobalTxFilter.ofGlobalTxIds(new ArrayList<>(globalTxIdSet), bulkOperationMaxSize);
+    }
+
+    private static Set<String> globalTxIdsOf(List<TxEvent> events) {
+        Set<String> globalTxIds = new LinkedHashSet<>();
+        events.forEach(event -> globalTxIds.add(event.globalTxId()));
+        return globalTxIds;
+    }
+
     @GetMapping("/pauseAllGlobalTransactions")
     public ResponseEntity<ReturnValue> pauseAllGlobalTransactions() {
         ReturnValue rv = new ReturnValue();
         try {
             // Check the paused status of global transaction
-            final String pauseAllGlobalTxKey = TxleConstants.constructConfigCacheKey(null, null, ConfigCenterType.PauseGlobalTx.toInteger());
-            if (txleCache.getConfigCache().getOrDefault(pauseAllGlobalTxKey, false)) {
+            if (txPauseRegistry.isAllPaused()) {
                 return ResponseEntity.ok(rv);
             }
 
@@ -309,31 +480,15 @@ public class UIRestApi {
             // 1.Construct a global config for paused status.
             String ipPort = request.getRemoteAddr() + ":" + request.getRemotePort();
             configCenterService.createConfigCenter(new ConfigCenter(null, null, null, ConfigCenterStatus.Normal, 1, ConfigCenterType.PauseGlobalTx, "enabled", ipPort + " - pauseAllTransaction"));
-            txleCache.putDistributedConfigCache(pauseAllGlobalTxKey, true);
+            txleCache.putDistributedConfigCache(TxleConstants.constructConfigCacheKey(null, null, ConfigCenterType.PauseGlobalTx.toInteger()), true);
 
             // 2.Construct a paused event for every global transaction as long as it is not paused and done.
             List<TxEvent> unendedTxEventList = eventRepository.selectUnendedTxEvents(EventScanner.getUnendedMinEventId());
-            if (unendedTxEventList != null && !unendedTxEventList.isEmpty()) {
-                List<String> globalTxIdList = new ArrayList<>();
-                unendedTxEventList.forEach(event -> globalTxIdList.add(event.globalTxId()));
-
-                unendedTxEventList.forEach(event -> {
-                    List<TxEvent> pauseContinueEventList = eventRepository.selectPausedAndContinueEvent(event.globalTxId());
-                    if (pauseContinueEventList != null && !pauseContinueEventList.isEmpty()) {
-                        TxEvent pausedEvent = pauseContinueEventList.get(0);
-                        if (AdditionalEventType.SagaPausedEvent.name().equals(pausedEvent.type()) || AdditionalEventType.SagaAutoContinuedEvent.name().equals(pausedEvent.type())) {
-                            globalTxIdList.remove(event.globalTxId());
-                        }
-                    }
-                });
-                if (globalTxIdList.isEmpty()) {
-                    return ResponseEntity.ok(rv);
-                }
-
+            if (unendedTxEventList != null) {
                 unendedTxEventList.forEach(event -> {
-                    if (globalTxIdList.contains(event.globalTxId())) {
-                        TxEvent pausedEvent = new TxEvent(ipPort, ipPort, event.globalTxId(), event.localTxId(), event.parentTxId(), AdditionalEventType.SagaPausedEvent.name(), "", 0, "", 0, event.category(), null);
-                        eventRepository.save(pausedEvent);
+                    // false if it has been paused, e.g. by one of its former events.
+                    if (txPauseRegistry.pause(event, ipPort, 0)) {
+                        txleCache.putDistributedTxSuspendStatusCache(event.globalTxId(), true, 0);
                         txleMetrics.countTxNumber(event, false, false);
                     }
                 });
@@ -360,27 +515,12 @@ public class UIRestApi {
 
             // 2.Remove the paused event for every global transaction. in fact, add a recovery event.
             List<TxEvent> unendedTxEventList = eventRepository.selectUnendedTxEvents(EventScanner.getUnendedMinEventId());
-            if (unendedTxEventList != null && !unendedTxEventList.isEmpty()) {
-                List<String> globalTxIdList = new ArrayList<>();
-                unendedTxEventList.forEach(event -> globalTxIdList.add(event.globalTxId()));
-
-                unendedTxEventList.forEach(event -> {
-                    List<TxEvent> pauseContinueEventList = eventRepository.selectPausedAndContinueEvent(event.globalTxId());
-                    if (pauseContinueEventList != null && !pauseContinueEventList.isEmpty()) {
-                        if (pauseContinueEventList.size() % 2 == 0) {
-                            globalTxIdList.remove(event.globalTxId());
-                        }
-                    }
-                });
-                if (globalTxIdList.isEmpty()) {
-                    return ResponseEntity.ok(rv);
-                }
-
+            if (unendedTxEventList != null) {
                 String ipPort = request.getRemoteAddr() + ":" + request.getRemotePort();
                 unendedTxEventList.forEach(event -> {
-                    if (globalTxIdList.contains(event.globalTxId())) {
-                        TxEvent continuedEvent = new TxEvent(ipPort, ipPort, event.globalTxId(), event.localTxId(), event.parentTxId(), AdditionalEventType.SagaContinuedEvent.name(), "", 0, "", 0, event.category(), null);
-                        eventRepository.save(continuedEvent);
+                    // false if it's not paused, e.g. it has been continued by one of its former events.
+                    if (txPauseRegistry.resume(event, ipPort)) {
+                        txleCache.removeDistributedTxSuspendStatusCache(event.globalTxId());
                         txleMetrics.countTxNumber(event, false, false);
                     }
                 });
@@ -391,7 +531,6 @@ public class UIRestApi {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(rv);
         } finally {
             txleCache.removeDistributedConfigCache(TxleConstants.constructConfigCacheKey(null, null, ConfigCenterType.PauseGlobalTx.toInteger()));
-            txleCache.getTxSuspendStatusCache().clear();
         }
         return ResponseEntity.ok(rv);
     }
@@ -543,6 +682,15 @@ public class UIRestApi {
         return ResponseEntity.ok(rv);
     }
 
+    @GetMapping(value = "/accidents/cursor")
+    public ResponseEntity<ReturnValue> findAccidentListByCursor(@RequestParam(defaultValue = "100") int pageSize, @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String globalTxId, @RequestParam(required = false) String serviceName, @RequestParam(required = false) String instanceId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date startTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date endTime) {
+        return findListByCursor("Accident Handling",
+            () -> accidentHandlingService.findAccidentList(new KeysetQuery(pageSize, cursor, globalTxId, serviceName, instanceId, null, startTime, endTime)));
+    }
+
     @GetMapping(value = "/configs/{pageIndex}/{pageSize}/{orderName}/{direction}")
     public ResponseEntity<ReturnValue> findConfigList(@PathVariable int pageIndex, @PathVariable int pageSize, @PathVariable String orderName, @PathVariable String direction) {
         return findConfigList(pageIndex, pageSize, orderName, direction, "");
@@ -565,6 +713,15 @@ public class UIRestApi {
         return ResponseEntity.ok(rv);
     }
 
+    @GetMapping(value = "/configs/cursor")
+    public ResponseEntity<ReturnValue> findConfigListByCursor(@RequestParam(defaultValue = "100") int pageSize, @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String serviceName, @RequestParam(required = false) String instanceId, @RequestParam(required = false) String category,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date startTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date endTime) {
+        return findListByCursor("Config Center",
+            () -> configCenterService.findConfigList(new KeysetQuery(pageSize, cursor, null, serviceName, instanceId, category, startTime, endTime)));
+    }
+
     @PostMapping(value = "/config")
     public ResponseEntity<ReturnValue> addConfig(@RequestBody ConfigCenter config) {
         ReturnValue rv = new ReturnValue();
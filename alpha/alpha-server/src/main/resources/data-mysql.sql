@@ -81,6 +81,7 @@ INSERT INTO DataDictionaryItem VALUES (140, 'config-center-type', '手动补偿
 INSERT INTO DataDictionaryItem VALUES (150, 'config-center-type', '自动补偿容错', 'cct-auto-compensation-fault-tolerant', '10', 50, 1, '', now());
 INSERT INTO DataDictionaryItem VALUES (160, 'config-center-type', '暂停全局事务', 'cct-pause-global-tx', '11', 55, 1, '', now());
 INSERT INTO DataDictionaryItem VALUES (161, 'config-center-type', '历史表间隔规则', 'cct-history-table-interval-rule', '12', 56, 1, '', now());
+INSERT INTO DataDictionaryItem VALUES (162, 'config-center-type', '事务事件限流', 'cct-tx-event-admission', '13', 57, 1, '', now());
 INSERT INTO DataDictionaryItem VALUES (170, 'config-center-type', '差错上报', 'cct-accident-report', '50', 60, 1, '', now());
 INSERT INTO DataDictionaryItem VALUES (180, 'config-center-type', 'SQL监控', 'cct-sql-monitor', '51', 65, 1, '', now());
 
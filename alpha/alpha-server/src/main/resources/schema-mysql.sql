@@ -15,6 +15,30 @@
  * limitations under the License.
  */
 
+-- 'CREATE TABLE IF NOT EXISTS' never changes an existing table, so the columns and indexes which are added by later versions
+-- are added by the following procedures when upgrading, they do nothing if the column or the index exists already.
+DROP PROCEDURE IF EXISTS TXLE_ADD_COLUMN $$
+CREATE PROCEDURE TXLE_ADD_COLUMN(P_TABLE VARCHAR(64), P_COLUMN VARCHAR(64), P_DEFINITION VARCHAR(255))
+BEGIN
+  IF NOT EXISTS (SELECT 1 FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = P_TABLE AND COLUMN_NAME = P_COLUMN) THEN
+    SET @txle_ddl = CONCAT('ALTER TABLE ', P_TABLE, ' ADD COLUMN ', P_COLUMN, ' ', P_DEFINITION);
+    PREPARE txle_statement FROM @txle_ddl;
+    EXECUTE txle_statement;
+    DEALLOCATE PREPARE txle_statement;
+  END IF;
+END $$
+
+DROP PROCEDURE IF EXISTS TXLE_ADD_INDEX $$
+CREATE PROCEDURE TXLE_ADD_INDEX(P_TABLE VARCHAR(64), P_INDEX VARCHAR(64), P_COLUMNS VARCHAR(255))
+BEGIN
+  IF NOT EXISTS (SELECT 1 FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = P_TABLE AND INDEX_NAME = P_INDEX) THEN
+    SET @txle_ddl = CONCAT('CREATE INDEX ', P_INDEX, ' ON ', P_TABLE, ' (', P_COLUMNS, ')');
+    PREPARE txle_statement FROM @txle_ddl;
+    EXECUTE txle_statement;
+    DEALLOCATE PREPARE txle_statement;
+  END IF;
+END $$
+
 CREATE TABLE IF NOT EXISTS TxEvent (
   surrogateId bigint NOT NULL AUTO_INCREMENT,
   serviceName varchar(100) NOT NULL,
@@ -52,10 +76,19 @@ CREATE TABLE IF NOT EXISTS Command (
   lastModified datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
   version bigint NOT NULL,
   category varchar(100),
+  workerId varchar(100) DEFAULT NULL,
+  leaseExpiry datetime(3) DEFAULT NULL,
+  attempts int NOT NULL DEFAULT 0,
   PRIMARY KEY (surrogateId),
-  INDEX saga_commands_index (surrogateId, eventId, globalTxId, localTxId, status)
+  INDEX saga_commands_index (surrogateId, eventId, globalTxId, localTxId, status),
+  INDEX saga_commands_claim_index (status, surrogateId)
 ) DEFAULT CHARSET=utf8mb4 $$
 
+CALL TXLE_ADD_COLUMN('Command', 'workerId', 'varchar(100) DEFAULT NULL') $$
+CALL TXLE_ADD_COLUMN('Command', 'leaseExpiry', 'datetime(3) DEFAULT NULL') $$
+CALL TXLE_ADD_COLUMN('Command', 'attempts', 'int NOT NULL DEFAULT 0') $$
+CALL TXLE_ADD_INDEX('Command', 'saga_commands_claim_index', 'status, surrogateId') $$
+
 CREATE TABLE IF NOT EXISTS TxTimeout (
   surrogateId bigint NOT NULL AUTO_INCREMENT,
   eventId bigint NOT NULL UNIQUE,
@@ -73,11 +106,107 @@ CREATE TABLE IF NOT EXISTS TxTimeout (
   INDEX saga_timeouts_index (surrogateId, expiryTime, globalTxId, localTxId, status)
 ) DEFAULT CHARSET=utf8mb4 $$
 
+/*
+ * One row per unfinished global transaction, it's maintained with the events and the row is deleted by SagaEndedEvent.
+ * The INSERT fills it from the existing events, it's necessary to execute it once when upgrading.
+ */
+CREATE TABLE IF NOT EXISTS ActiveGlobalTx (
+  globalTxId varchar(36) NOT NULL,
+  status varchar(12) NOT NULL,
+  expiryTime datetime NOT NULL,
+  minEventId bigint NOT NULL,
+  startedCount int NOT NULL DEFAULT 0,
+  endedCount int NOT NULL DEFAULT 0,
+  abortedCount int NOT NULL DEFAULT 0,
+  compensatedCount int NOT NULL DEFAULT 0,
+  creationTime datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  updateTime datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (globalTxId),
+  INDEX active_global_tx_expiry_index (expiryTime),
+  INDEX active_global_tx_min_event_index (minEventId)
+) DEFAULT CHARSET=utf8mb4 $$
+
+INSERT INTO ActiveGlobalTx (globalTxId, status, expiryTime, minEventId, startedCount, endedCount, abortedCount, compensatedCount, creationTime, updateTime)
+  SELECT t.globalTxId,
+    CASE WHEN SUM(CASE WHEN t.type = 'TxAbortedEvent' THEN 1 ELSE 0 END) > 0 THEN 'ABORTED' ELSE 'RUNNING' END,
+    COALESCE(MIN(CASE WHEN t.type IN ('SagaStartedEvent', 'TxStartedEvent') THEN t.expiryTime END), '9999-12-31 00:00:00'),
+    MIN(t.surrogateId),
+    SUM(CASE WHEN t.type = 'TxStartedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxEndedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxAbortedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxCompensatedEvent' THEN 1 ELSE 0 END),
+    MIN(t.creationTime),
+    CURRENT_TIMESTAMP
+  FROM TxEvent t
+  WHERE NOT EXISTS (SELECT 1 FROM TxEvent t1 WHERE t1.globalTxId = t.globalTxId AND t1.type = 'SagaEndedEvent')
+    AND NOT EXISTS (SELECT 1 FROM ActiveGlobalTx a WHERE a.globalTxId = t.globalTxId)
+  GROUP BY t.globalTxId $$
+
+-- one row per global transaction for the transaction list of UI, maintained by the events incrementally
+CREATE TABLE IF NOT EXISTS GlobalTxSummary (
+  globalTxId varchar(36) NOT NULL,
+  startEventId bigint NOT NULL DEFAULT 0,
+  serviceName varchar(100) NOT NULL,
+  instanceId varchar(100) NOT NULL,
+  category varchar(36),
+  status int NOT NULL DEFAULT 0 COMMENT '0-running, 1-aborted, 2-paused, 3-ended, 4-terminated',
+  startTime datetime NOT NULL,
+  endTime datetime,
+  expiryTime datetime NOT NULL,
+  subTxCount int NOT NULL DEFAULT 0,
+  subTxEndedCount int NOT NULL DEFAULT 0,
+  subTxAbortedCount int NOT NULL DEFAULT 0,
+  subTxCompensatedCount int NOT NULL DEFAULT 0,
+  updateTime datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (globalTxId),
+  INDEX global_tx_summary_start_time_index (startTime, globalTxId),
+  INDEX global_tx_summary_status_index (status, startTime),
+  INDEX global_tx_summary_service_index (serviceName, instanceId, category, startTime)
+) DEFAULT CHARSET=utf8mb4 $$
+
+INSERT INTO GlobalTxSummary (globalTxId, startEventId, serviceName, instanceId, category, status, startTime, endTime, expiryTime, subTxCount,
+    subTxEndedCount, subTxAbortedCount, subTxCompensatedCount, updateTime)
+  SELECT t.globalTxId,
+    MIN(CASE WHEN t.type = 'SagaStartedEvent' THEN t.surrogateId END),
+    MAX(CASE WHEN t.type = 'SagaStartedEvent' THEN t.serviceName END),
+    MAX(CASE WHEN t.type = 'SagaStartedEvent' THEN t.instanceId END),
+    MAX(CASE WHEN t.type = 'SagaStartedEvent' THEN t.category END),
+    CASE WHEN SUM(CASE WHEN t.type = 'SagaEndedEvent' THEN 1 ELSE 0 END) > 0 THEN (CASE WHEN SUM(CASE WHEN t.type = 'TxAbortedEvent' THEN 1 ELSE 0 END) > 0 THEN 4 ELSE 3 END)
+      WHEN SUM(CASE WHEN t.type = 'TxAbortedEvent' THEN 1 ELSE 0 END) > 0 THEN 1
+      WHEN MOD(SUM(CASE WHEN t.type IN ('SagaPausedEvent', 'SagaContinuedEvent', 'SagaAutoContinuedEvent') THEN 1 ELSE 0 END), 2) = 1 THEN 2
+      ELSE 0 END,
+    MIN(CASE WHEN t.type = 'SagaStartedEvent' THEN t.creationTime END),
+    MAX(CASE WHEN t.type = 'SagaEndedEvent' THEN t.creationTime END),
+    MIN(CASE WHEN t.type = 'SagaStartedEvent' THEN t.expiryTime END),
+    SUM(CASE WHEN t.type = 'TxStartedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxEndedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxAbortedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxCompensatedEvent' THEN 1 ELSE 0 END),
+    CURRENT_TIMESTAMP
+  FROM TxEvent t
+  WHERE NOT EXISTS (SELECT 1 FROM GlobalTxSummary g WHERE g.globalTxId = t.globalTxId)
+  GROUP BY t.globalTxId
+  HAVING SUM(CASE WHEN t.type = 'SagaStartedEvent' THEN 1 ELSE 0 END) > 0 $$
+
+-- the progress of archiving TxEvent to the history tables, one row per source table and period
+CREATE TABLE IF NOT EXISTS DataTransferCheckpoint (
+  srcTable varchar(64) NOT NULL,
+  period varchar(20) NOT NULL,
+  startTime datetime NOT NULL,
+  endTime datetime NOT NULL,
+  lastEventId bigint NOT NULL DEFAULT 0,
+  movedRows bigint NOT NULL DEFAULT 0,
+  status varchar(12) NOT NULL COMMENT 'RUNNING, DONE',
+  updateTime datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (srcTable, period),
+  INDEX data_transfer_checkpoint_status_index (status)
+) DEFAULT CHARSET=utf8mb4 $$
+
 CREATE TABLE IF NOT EXISTS Message (
   id bigint NOT NULL AUTO_INCREMENT,
   globaltxid varchar(36) NOT NULL,
   localtxid varchar(36) NOT NULL,
-  status int(1) NOT NULL DEFAULT 0 COMMENT '0-init, 1-sending, 2-success, 3-fail',
+  status int(1) NOT NULL DEFAULT 0 COMMENT '0-init, 1-sending, 2-success, 3-fail, 4-disabled',
   version int(2) NOT NULL DEFAULT 1,
   dbdrivername varchar(100),
   dburl varchar(150),
@@ -86,11 +215,18 @@ CREATE TABLE IF NOT EXISTS Message (
   operation varchar(20) DEFAULT 'update',
   ids blob,
   createtime datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  workerid varchar(100) DEFAULT NULL,
+  leaseexpiry datetime(3) DEFAULT NULL,
   PRIMARY KEY (id) USING BTREE,
   UNIQUE INDEX pk_id(id) USING BTREE,
-  INDEX txle_globalTxId_index(globaltxid) USING BTREE
+  INDEX txle_globalTxId_index(globaltxid) USING BTREE,
+  INDEX txle_message_status_index(status, id) USING BTREE
 ) DEFAULT CHARSET=utf8mb4 $$
 
+CALL TXLE_ADD_COLUMN('Message', 'workerid', 'varchar(100) DEFAULT NULL') $$
+CALL TXLE_ADD_COLUMN('Message', 'leaseexpiry', 'datetime(3) DEFAULT NULL') $$
+CALL TXLE_ADD_INDEX('Message', 'txle_message_status_index', 'status, id') $$
+
 CREATE TABLE IF NOT EXISTS Config (
   id bigint NOT NULL AUTO_INCREMENT,
   servicename varchar(100),
@@ -104,9 +240,12 @@ CREATE TABLE IF NOT EXISTS Config (
   updatetime datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
   PRIMARY KEY (id) USING BTREE,
   UNIQUE INDEX pk_id(id) USING BTREE,
-	INDEX index_type(type) USING BTREE
+	INDEX index_type(type) USING BTREE,
+	INDEX index_service(servicename, instanceid, category) USING BTREE
 ) DEFAULT CHARSET=utf8mb4 $$
 
+CALL TXLE_ADD_INDEX('Config', 'index_service', 'servicename, instanceid, category') $$
+
 CREATE TABLE IF NOT EXISTS Accident (
   id bigint NOT NULL AUTO_INCREMENT,
   servicename varchar(100),
@@ -119,9 +258,24 @@ CREATE TABLE IF NOT EXISTS Accident (
   remark varchar(500),
   createtime datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
   completetime datetime,
-  PRIMARY KEY (id)
+  attempts int NOT NULL DEFAULT 0,
+  nextattempttime datetime(3) DEFAULT NULL,
+  workerid varchar(100) DEFAULT NULL,
+  PRIMARY KEY (id),
+  INDEX accident_delivery_index (status, nextattempttime),
+  INDEX accident_globaltxid_index (globaltxid),
+  INDEX accident_service_index (servicename, instanceid),
+  INDEX accident_createtime_index (createtime)
 ) DEFAULT CHARSET=utf8mb4 $$
 
+CALL TXLE_ADD_COLUMN('Accident', 'attempts', 'int NOT NULL DEFAULT 0') $$
+CALL TXLE_ADD_COLUMN('Accident', 'nextattempttime', 'datetime(3) DEFAULT NULL') $$
+CALL TXLE_ADD_COLUMN('Accident', 'workerid', 'varchar(100) DEFAULT NULL') $$
+CALL TXLE_ADD_INDEX('Accident', 'accident_delivery_index', 'status, nextattempttime') $$
+CALL TXLE_ADD_INDEX('Accident', 'accident_globaltxid_index', 'globaltxid') $$
+CALL TXLE_ADD_INDEX('Accident', 'accident_service_index', 'servicename, instanceid') $$
+CALL TXLE_ADD_INDEX('Accident', 'accident_createtime_index', 'createtime') $$
+
 CREATE TABLE IF NOT EXISTS TableField (
   id bigint NOT NULL AUTO_INCREMENT,
   tablename varchar(50) NOT NULL,
@@ -168,4 +322,7 @@ BEGIN
   DECLARE v_name VARCHAR(50);
   SELECT name INTO v_name FROM DataDictionaryItem WHERE value = P AND ddcode = P_KEY;
   RETURN v_name;
-END $$
\ No newline at end of file
+END $$
+
+DROP PROCEDURE IF EXISTS TXLE_ADD_COLUMN $$
+DROP PROCEDURE IF EXISTS TXLE_ADD_INDEX $$
@@ -51,10 +51,19 @@ CREATE TABLE IF NOT EXISTS Command (
   status varchar(12),
   lastModified timestamp(6) NOT NULL DEFAULT CURRENT_DATE,
   version bigint NOT NULL,
-  category varchar(36) NOT NULL
+  category varchar(36) NOT NULL,
+  workerId varchar(100) DEFAULT NULL,
+  leaseExpiry timestamp(3) DEFAULT NULL,
+  attempts int NOT NULL DEFAULT 0
 );
 
+-- for upgrading, 'CREATE TABLE IF NOT EXISTS' never changes an existing table.
+ALTER TABLE Command ADD COLUMN IF NOT EXISTS workerId varchar(100) DEFAULT NULL;
+ALTER TABLE Command ADD COLUMN IF NOT EXISTS leaseExpiry timestamp(3) DEFAULT NULL;
+ALTER TABLE Command ADD COLUMN IF NOT EXISTS attempts int NOT NULL DEFAULT 0;
+
 CREATE INDEX IF NOT EXISTS saga_commands_index ON Command (surrogateId, eventId, globalTxId, localTxId, status);
+CREATE INDEX IF NOT EXISTS saga_commands_claim_index ON Command (status, surrogateId);
 
 
 CREATE TABLE IF NOT EXISTS TxTimeout (
@@ -74,6 +83,103 @@ CREATE TABLE IF NOT EXISTS TxTimeout (
 
 CREATE INDEX IF NOT EXISTS saga_timeouts_index ON TxTimeout (surrogateId, expiryTime, globalTxId, localTxId, status);
 
+/*
+ * One row per unfinished global transaction, it's maintained with the events and the row is deleted by SagaEndedEvent.
+ * The INSERT fills it from the existing events, it's necessary to execute it once when upgrading.
+ */
+CREATE TABLE IF NOT EXISTS ActiveGlobalTx (
+  globalTxId varchar(36) PRIMARY KEY,
+  status varchar(12) NOT NULL,
+  expiryTime TIMESTAMP NOT NULL,
+  minEventId bigint NOT NULL,
+  startedCount int NOT NULL DEFAULT 0,
+  endedCount int NOT NULL DEFAULT 0,
+  abortedCount int NOT NULL DEFAULT 0,
+  compensatedCount int NOT NULL DEFAULT 0,
+  creationTime TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  updateTime TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS active_global_tx_expiry_index ON ActiveGlobalTx (expiryTime);
+CREATE INDEX IF NOT EXISTS active_global_tx_min_event_index ON ActiveGlobalTx (minEventId);
+
+INSERT INTO ActiveGlobalTx (globalTxId, status, expiryTime, minEventId, startedCount, endedCount, abortedCount, compensatedCount, creationTime, updateTime)
+  SELECT t.globalTxId,
+    CASE WHEN SUM(CASE WHEN t.type = 'TxAbortedEvent' THEN 1 ELSE 0 END) > 0 THEN 'ABORTED' ELSE 'RUNNING' END,
+    COALESCE(MIN(CASE WHEN t.type IN ('SagaStartedEvent', 'TxStartedEvent') THEN t.expiryTime END), '9999-12-31 00:00:00'),
+    MIN(t.surrogateId),
+    SUM(CASE WHEN t.type = 'TxStartedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxEndedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxAbortedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxCompensatedEvent' THEN 1 ELSE 0 END),
+    MIN(t.creationTime),
+    CURRENT_TIMESTAMP
+  FROM TxEvent t
+  WHERE NOT EXISTS (SELECT 1 FROM TxEvent t1 WHERE t1.globalTxId = t.globalTxId AND t1.type = 'SagaEndedEvent')
+    AND NOT EXISTS (SELECT 1 FROM ActiveGlobalTx a WHERE a.globalTxId = t.globalTxId)
+  GROUP BY t.globalTxId;
+
+-- one row per global transaction for the transaction list of UI, maintained by the events incrementally
+CREATE TABLE IF NOT EXISTS GlobalTxSummary (
+  globalTxId varchar(36) PRIMARY KEY,
+  startEventId bigint NOT NULL DEFAULT 0,
+  serviceName varchar(100) NOT NULL,
+  instanceId varchar(100) NOT NULL,
+  category varchar(36),
+  status int NOT NULL DEFAULT 0,
+  startTime TIMESTAMP NOT NULL,
+  endTime TIMESTAMP,
+  expiryTime TIMESTAMP NOT NULL,
+  subTxCount int NOT NULL DEFAULT 0,
+  subTxEndedCount int NOT NULL DEFAULT 0,
+  subTxAbortedCount int NOT NULL DEFAULT 0,
+  subTxCompensatedCount int NOT NULL DEFAULT 0,
+  updateTime TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS global_tx_summary_start_time_index ON GlobalTxSummary (startTime, globalTxId);
+CREATE INDEX IF NOT EXISTS global_tx_summary_status_index ON GlobalTxSummary (status, startTime);
+CREATE INDEX IF NOT EXISTS global_tx_summary_service_index ON GlobalTxSummary (serviceName, instanceId, category, startTime);
+
+INSERT INTO GlobalTxSummary (globalTxId, startEventId, serviceName, instanceId, category, status, startTime, endTime, expiryTime, subTxCount,
+    subTxEndedCount, subTxAbortedCount, subTxCompensatedCount, updateTime)
+  SELECT t.globalTxId,
+    MIN(CASE WHEN t.type = 'SagaStartedEvent' THEN t.surrogateId END),
+    MAX(CASE WHEN t.type = 'SagaStartedEvent' THEN t.serviceName END),
+    MAX(CASE WHEN t.type = 'SagaStartedEvent' THEN t.instanceId END),
+    MAX(CASE WHEN t.type = 'SagaStartedEvent' THEN t.category END),
+    CASE WHEN SUM(CASE WHEN t.type = 'SagaEndedEvent' THEN 1 ELSE 0 END) > 0 THEN (CASE WHEN SUM(CASE WHEN t.type = 'TxAbortedEvent' THEN 1 ELSE 0 END) > 0 THEN 4 ELSE 3 END)
+      WHEN SUM(CASE WHEN t.type = 'TxAbortedEvent' THEN 1 ELSE 0 END) > 0 THEN 1
+      WHEN MOD(SUM(CASE WHEN t.type IN ('SagaPausedEvent', 'SagaContinuedEvent', 'SagaAutoContinuedEvent') THEN 1 ELSE 0 END), 2) = 1 THEN 2
+      ELSE 0 END,
+    MIN(CASE WHEN t.type = 'SagaStartedEvent' THEN t.creationTime END),
+    MAX(CASE WHEN t.type = 'SagaEndedEvent' THEN t.creationTime END),
+    MIN(CASE WHEN t.type = 'SagaStartedEvent' THEN t.expiryTime END),
+    SUM(CASE WHEN t.type = 'TxStartedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxEndedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxAbortedEvent' THEN 1 ELSE 0 END),
+    SUM(CASE WHEN t.type = 'TxCompensatedEvent' THEN 1 ELSE 0 END),
+    CURRENT_TIMESTAMP
+  FROM TxEvent t
+  WHERE NOT EXISTS (SELECT 1 FROM GlobalTxSummary g WHERE g.globalTxId = t.globalTxId)
+  GROUP BY t.globalTxId
+  HAVING SUM(CASE WHEN t.type = 'SagaStartedEvent' THEN 1 ELSE 0 END) > 0;
+
+-- the progress of archiving TxEvent to the history tables, one row per source table and period
+CREATE TABLE IF NOT EXISTS DataTransferCheckpoint (
+  srcTable varchar(64) NOT NULL,
+  period varchar(20) NOT NULL,
+  startTime TIMESTAMP NOT NULL,
+  endTime TIMESTAMP NOT NULL,
+  lastEventId bigint NOT NULL DEFAULT 0,
+  movedRows bigint NOT NULL DEFAULT 0,
+  status varchar(12) NOT NULL,
+  updateTime TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (srcTable, period)
+);
+
+CREATE INDEX IF NOT EXISTS data_transfer_checkpoint_status_index ON DataTransferCheckpoint (status);
+
 /*
  * *********************** It is necessary to execute following sqls before online. **********************
  */
@@ -81,7 +187,7 @@ CREATE TABLE IF NOT EXISTS Message (
   id BIGSERIAL PRIMARY KEY,
   globaltxid varchar(36) NOT NULL,
   localtxid varchar(36) NOT NULL,
-  status int(1) NOT NULL DEFAULT 0 COMMENT '0-init, 1-sending, 2-success, 3-fail',
+  status int(1) NOT NULL DEFAULT 0 COMMENT '0-init, 1-sending, 2-success, 3-fail, 4-disabled',
   version int(2) NOT NULL DEFAULT 1,
   dbdrivername varchar(50),
   dburl varchar(100),
@@ -89,10 +195,15 @@ CREATE TABLE IF NOT EXISTS Message (
   tablename varchar(255),
   operation varchar(20) DEFAULT 'update',
   ids bytea,
-  createtime TIMESTAMP NOT NULL
+  createtime TIMESTAMP NOT NULL,
+  workerid varchar(100) DEFAULT NULL,
+  leaseexpiry timestamp(3) DEFAULT NULL
 );
 
+ALTER TABLE Message ADD COLUMN IF NOT EXISTS workerid varchar(100) DEFAULT NULL;
+ALTER TABLE Message ADD COLUMN IF NOT EXISTS leaseexpiry timestamp(3) DEFAULT NULL;
 CREATE INDEX IF NOT EXISTS txle_globalTxId_index ON Message(globaltxid);
+CREATE INDEX IF NOT EXISTS txle_message_status_index ON Message(status, id);
 
 
 CREATE TABLE IF NOT EXISTS Config (
@@ -108,4 +219,5 @@ CREATE TABLE IF NOT EXISTS Config (
   updatetime TIMESTAMP NOT NULL
 );
 
-CREATE INDEX IF NOT EXISTS index_type ON Config(type);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS index_type ON Config(type);
+CREATE INDEX IF NOT EXISTS index_service ON Config(servicename, instanceid, category);
\ No newline at end of file
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.apache.servicecomb.saga.common.EventType.SagaEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.SagaStartedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxAbortedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxCompensatedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxStartedEvent;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.servicecomb.saga.alpha.core.AdditionalEventType;
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ActiveGlobalTxTrackerTest {
+  @Rule
+  public final InMemorySchemaDatabase database = new InMemorySchemaDatabase("events");
+
+  private final JDBCDataSource dataSource = database.dataSource();
+  private final String globalTxId = uniquify("globalTxId");
+  private final String localTxId = uniquify("localTxId");
+
+  private TxEventWriter eventWriter;
+
+  @Before
+  public void setUp() {
+    eventWriter = new TxEventWriter(dataSource, new ActiveGlobalTxTracker(), new GlobalTxSummaryUpdater());
+  }
+
+  @Test
+  public void tracksGlobalTxUntilItEnds() throws SQLException {
+    TxEvent sagaStartedEvent = event(globalTxId, SagaStartedEvent.name(), 10);
+    eventWriter.write(asList(sagaStartedEvent, event(globalTxId, TxStartedEvent.name(), 5)));
+
+    assertThat(selectString("status"), is("RUNNING"));
+    assertThat(selectLong("minEventId"), is(sagaStartedEvent.id()));
+    assertThat(selectLong("startedCount"), is(1L));
+
+    eventWriter.write(singletonList(event(globalTxId, TxEndedEvent.name(), 0)));
+    eventWriter.write(singletonList(event(globalTxId, AdditionalEventType.SagaPausedEvent.name(), 0)));
+    assertThat(selectString("status"), is("PAUSED"));
+    assertThat(selectLong("endedCount"), is(1L));
+
+    eventWriter.write(singletonList(event(globalTxId, SagaEndedEvent.name(), 0)));
+    assertThat(count(), is(0L));
+  }
+
+  @Test
+  public void abortedGlobalTxIsNeverRunningAgain() throws SQLException {
+    eventWriter.write(asList(event(globalTxId, SagaStartedEvent.name(), 0), event(globalTxId, TxStartedEvent.name(), 0)));
+    eventWriter.write(asList(event(globalTxId, TxAbortedEvent.name(), 0), event(globalTxId, TxCompensatedEvent.name(), 0)));
+    eventWriter.write(singletonList(event(globalTxId, AdditionalEventType.SagaContinuedEvent.name(), 0)));
+
+    assertThat(selectString("status"), is("ABORTED"));
+    assertThat(selectLong("abortedCount"), is(1L));
+    assertThat(selectLong("compensatedCount"), is(1L));
+  }
+
+  @Test
+  public void neverTracksEndedGlobalTxAgain() throws SQLException {
+    String anotherGlobalTxId = uniquify("globalTxId");
+    eventWriter.write(asList(event(globalTxId, SagaStartedEvent.name(), 0), event(anotherGlobalTxId, SagaStartedEvent.name(), 0),
+        event(globalTxId, SagaEndedEvent.name(), 0)));
+    eventWriter.write(singletonList(event(globalTxId, TxCompensatedEvent.name(), 0)));
+
+    assertThat(count(), is(1L));
+  }
+
+  @Test
+  public void updatesRowInsertedByConcurrentTransaction() throws SQLException {
+    eventWriter.write(asList(event(globalTxId, SagaStartedEvent.name(), 0), event(globalTxId, TxStartedEvent.name(), 0)));
+
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      // the first update misses the row, as if another node inserted it right after the update.
+      new ActiveGlobalTxTracker().apply(missingFirstUpdate(connection), singletonList(event(globalTxId, TxStartedEvent.name(), 0)));
+      connection.commit();
+    }
+
+    assertThat(selectLong("startedCount"), is(2L));
+    assertThat(count(), is(1L));
+  }
+
+  private static Connection missingFirstUpdate(Connection connection) {
+    AtomicBoolean missed = new AtomicBoolean();
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+      Object result = method.invoke(connection, args);
+      if ("prepareStatement".equals(method.getName()) && ((String) args[0]).startsWith("UPDATE") && missed.compareAndSet(false, true)) {
+        PreparedStatement statement = (PreparedStatement) result;
+        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+            (statementProxy, statementMethod, statementArgs) ->
+                "executeUpdate".equals(statementMethod.getName()) ? 0 : statementMethod.invoke(statement, statementArgs));
+      }
+      return result;
+    });
+  }
+
+  private TxEvent event(String globalTxId, String type, int timeout) {
+    return new TxEvent("service", "instance", globalTxId, localTxId, null, type, "compensate", timeout, "", 0, "", new byte[0]);
+  }
+
+  private String selectString(String column) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("SELECT " + column + " FROM ActiveGlobalTx WHERE globalTxId = ?")) {
+      statement.setString(1, globalTxId);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getString(1);
+      }
+    }
+  }
+
+  private long selectLong(String column) throws SQLException {
+    return Long.parseLong(selectString(column));
+  }
+
+  private long count() throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM ActiveGlobalTx")) {
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getLong(1);
+      }
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.servicecomb.saga.alpha.core.Command;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CommandClaimerTest {
+  @Rule
+  public final InMemorySchemaDatabase database = new InMemorySchemaDatabase("commands");
+
+  private final JDBCDataSource dataSource = database.dataSource();
+  private final String globalTxId = uniquify("globalTxId");
+
+  private CommandClaimer claimer;
+  private long eventId;
+
+  @Before
+  public void setUp() {
+    claimer = new CommandClaimer(dataSource, 60000, 60000);
+  }
+
+  @Test
+  public void claimsEveryCommandByOneWorkerOnly() throws SQLException {
+    for (int i = 0; i < 5; i++) {
+      insert("localTxId-" + i, "NEW", null);
+    }
+
+    List<Command> claimedByFirst = claimer.claim("worker-1", 3);
+    List<Command> claimedBySecond = claimer.claim("worker-2", 3);
+
+    assertThat(claimedByFirst.size(), is(3));
+    assertThat(claimedBySecond.size(), is(2));
+    Set<String> localTxIds = new HashSet<>();
+    claimedByFirst.forEach(command -> localTxIds.add(command.localTxId()));
+    claimedBySecond.forEach(command -> localTxIds.add(command.localTxId()));
+    assertThat(localTxIds.size(), is(5));
+    assertThat(claimer.claim("worker-3", 3).isEmpty(), is(true));
+  }
+
+  @Test
+  public void reclaimsCommandsWhoseLeaseExpired() throws SQLException {
+    insert("expired", "PENDING", System.currentTimeMillis() - 1000);
+    insert("leased", "PENDING", System.currentTimeMillis() + 60000);
+    insert("sent", "PENDING", null);
+
+    List<Command> commands = claimer.claim("worker-1", 10);
+
+    assertThat(commands.size(), is(1));
+    assertThat(commands.get(0).localTxId(), is("expired"));
+  }
+
+  @Test
+  public void claimsCommandsOfSubTransactionOnceAndAwaitsResult() throws SQLException {
+    insert("localTxId", "NEW", null);
+    insert("localTxId", "NEW", null);
+
+    assertThat(claimer.claim("worker-1", globalTxId, "localTxId"), is(true));
+    assertThat(claimer.claim("worker-2", globalTxId, "localTxId"), is(false));
+
+    claimer.awaitResult(globalTxId, "localTxId");
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM Command WHERE status = 'PENDING' AND leaseExpiry > ?")) {
+      statement.setTimestamp(1, new Timestamp(System.currentTimeMillis() + 30000));
+      ResultSet resultSet = statement.executeQuery();
+      resultSet.next();
+      assertThat(resultSet.getInt(1), is(2));
+    }
+    assertThat(claimer.claim("worker-2", 10).isEmpty(), is(true));
+  }
+
+  @Test
+  public void reclaimsSentCommandWhoseResultIsOverdue() throws Exception {
+    claimer = new CommandClaimer(dataSource, 60000, 0);
+    insert("localTxId", "NEW", null);
+    assertThat(claimer.claim("worker-1", globalTxId, "localTxId"), is(true));
+
+    claimer.awaitResult(globalTxId, "localTxId");
+    Thread.sleep(10);
+
+    List<Command> commands = claimer.claim("worker-2", 10);
+    assertThat(commands.size(), is(1));
+    assertThat(commands.get(0).localTxId(), is("localTxId"));
+  }
+
+  @Test
+  public void sendsFailedCompensationAgainAfterBackoff() throws Exception {
+    claimer = new CommandClaimer(dataSource, 60000, 60000, 3, 60000);
+    insert("localTxId", "NEW", null);
+    assertThat(claimer.claim("worker-1", globalTxId, "localTxId"), is(true));
+    claimer.awaitResult(globalTxId, "localTxId");
+
+    assertThat(claimer.retryLater(globalTxId, "localTxId"), is(true));
+    assertThat(claimer.claim("worker-2", 10).isEmpty(), is(true));
+
+    claimer = new CommandClaimer(dataSource, 60000, 60000, 3, 0);
+    assertThat(claimer.retryLater(globalTxId, "localTxId"), is(true));
+    Thread.sleep(10);
+    assertThat(claimer.claim("worker-2", 10).size(), is(1));
+  }
+
+  @Test
+  public void givesUpFailedCompensationOnceAttemptsAreExhausted() throws Exception {
+    claimer = new CommandClaimer(dataSource, 60000, 60000, 2, 0);
+    insert("localTxId", "PENDING", System.currentTimeMillis() + 60000);
+
+    assertThat(claimer.retryLater(globalTxId, "localTxId"), is(true));
+    assertThat(claimer.retryLater(globalTxId, "localTxId"), is(false));
+    // the command which is not PENDING any more is never sent again.
+    assertThat(claimer.retryLater(globalTxId, "unknown"), is(false));
+  }
+
+  @Test
+  public void returnsOneCommandPerSubTransaction() throws SQLException {
+    insert("localTxId", "NEW", null);
+    insert("localTxId", "NEW", null);
+
+    assertThat(claimer.claim("worker-1", 10).size(), is(1));
+  }
+
+  private void insert(String localTxId, String status, Long leaseExpiry) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("INSERT INTO Command (eventId, serviceName, instanceId, globalTxId, localTxId, "
+             + "compensationMethod, status, version, leaseExpiry) VALUES (?, 'service', 'instance', ?, ?, 'compensate', ?, 0, ?)")) {
+      statement.setLong(1, ++eventId);
+      statement.setString(2, globalTxId);
+      statement.setString(3, localTxId);
+      statement.setString(4, status);
+      statement.setTimestamp(5, leaseExpiry == null ? null : new Timestamp(leaseExpiry));
+      statement.executeUpdate();
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.apache.servicecomb.saga.common.EventType.SagaEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.SagaStartedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxAbortedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxCompensatedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxEndedEvent;
+import static org.apache.servicecomb.saga.common.EventType.TxStartedEvent;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.apache.servicecomb.saga.alpha.core.AdditionalEventType;
+import org.apache.servicecomb.saga.alpha.core.GlobalTxSummary;
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class GlobalTxSummaryUpdaterTest {
+  @Rule
+  public final InMemorySchemaDatabase database = new InMemorySchemaDatabase("summary");
+
+  private final JDBCDataSource dataSource = database.dataSource();
+  private final String globalTxId = uniquify("globalTxId");
+
+  private TxEventWriter eventWriter;
+
+  @Before
+  public void setUp() {
+    eventWriter = new TxEventWriter(dataSource, new ActiveGlobalTxTracker(), new GlobalTxSummaryUpdater());
+  }
+
+  @Test
+  public void summarizesGlobalTxUntilItEnds() throws SQLException {
+    eventWriter.write(asList(event("globalService", SagaStartedEvent.name()), event("subService", TxStartedEvent.name())));
+
+    assertThat(select("serviceName"), is("globalService"));
+    assertThat(select("status"), is(String.valueOf(GlobalTxSummary.RUNNING)));
+    assertThat(select("subTxCount"), is("1"));
+
+    eventWriter.write(singletonList(event("globalService", AdditionalEventType.SagaPausedEvent.name())));
+    assertThat(select("status"), is(String.valueOf(GlobalTxSummary.PAUSED)));
+    eventWriter.write(singletonList(event("globalService", AdditionalEventType.SagaAutoContinuedEvent.name())));
+    assertThat(select("status"), is(String.valueOf(GlobalTxSummary.RUNNING)));
+
+    eventWriter.write(asList(event("subService", TxEndedEvent.name()), event("globalService", SagaEndedEvent.name())));
+    assertThat(select("status"), is(String.valueOf(GlobalTxSummary.ENDED)));
+    assertThat(select("subTxEndedCount"), is("1"));
+    assertThat(select("endTime") != null, is(true));
+  }
+
+  @Test
+  public void abortedGlobalTxEndsAbnormally() throws SQLException {
+    eventWriter.write(asList(event("globalService", SagaStartedEvent.name()), event("subService", TxStartedEvent.name()),
+        event("subService", TxAbortedEvent.name())));
+    assertThat(select("status"), is(String.valueOf(GlobalTxSummary.ABORTED)));
+
+    eventWriter.write(singletonList(event("globalService", AdditionalEventType.SagaPausedEvent.name())));
+    assertThat(select("status"), is(String.valueOf(GlobalTxSummary.ABORTED)));
+
+    eventWriter.write(asList(event("subService", TxCompensatedEvent.name()), event("globalService", SagaEndedEvent.name())));
+    assertThat(select("status"), is(String.valueOf(GlobalTxSummary.TERMINATED)));
+    assertThat(select("subTxCompensatedCount"), is("1"));
+  }
+
+  @Test
+  public void recordsIdOfSagaStartedEventEvenIfItArrivesLater() throws SQLException {
+    eventWriter.write(singletonList(event("subService", TxStartedEvent.name())));
+    assertThat(select("startEventId"), is("0"));
+    assertThat(select("serviceName"), is("subService"));
+
+    TxEvent sagaStartedEvent = event("globalService", SagaStartedEvent.name());
+    eventWriter.write(singletonList(sagaStartedEvent));
+    assertThat(select("startEventId"), is(String.valueOf(sagaStartedEvent.id())));
+    assertThat(select("serviceName"), is("globalService"));
+  }
+
+  @Test
+  public void summaryIsCommittedWithEventsOnly() throws SQLException {
+    eventWriter.write(asList(event("globalService", SagaStartedEvent.name()), event("subService", TxStartedEvent.name())));
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("ALTER TABLE GlobalTxSummary DROP COLUMN subTxEndedCount");
+    }
+
+    try {
+      eventWriter.write(singletonList(event("subService", TxEndedEvent.name())));
+      fail("SQLException is expected");
+    } catch (SQLException e) {
+      assertThat(count("TxEvent"), is("2"));
+      assertThat(select("subTxCount"), is("1"));
+    }
+  }
+
+  @Test
+  public void nothingIsCommittedIfProjectionThrowsUncheckedException() throws SQLException {
+    eventWriter = new TxEventWriter(dataSource, new ActiveGlobalTxTracker(), new GlobalTxSummaryUpdater() {
+      @Override
+      void apply(Connection connection, List<TxEvent> events) {
+        throw new IllegalStateException("broken projection");
+      }
+    });
+
+    try {
+      eventWriter.write(asList(event("globalService", SagaStartedEvent.name()), event("subService", TxStartedEvent.name())));
+      fail("IllegalStateException is expected");
+    } catch (IllegalStateException e) {
+      assertThat(count("TxEvent"), is("0"));
+      assertThat(count("ActiveGlobalTx"), is("0"));
+      assertThat(count("GlobalTxSummary"), is("0"));
+    }
+  }
+
+  private TxEvent event(String serviceName, String type) {
+    return new TxEvent(serviceName, "instance", globalTxId, uniquify("localTxId"), null, type, "compensate", 0, "", 0, "", new byte[0]);
+  }
+
+  private String count(String table) throws SQLException {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+      resultSet.next();
+      return resultSet.getString(1);
+    }
+  }
+
+  private String select(String column) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("SELECT " + column + " FROM GlobalTxSummary WHERE globalTxId = ?")) {
+      statement.setString(1, globalTxId);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? resultSet.getString(1) : null;
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.stub.StreamObserver;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcCorrelatedAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEvent;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEventAcks;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEventRequest;
+import org.junit.After;
+import org.junit.Test;
+
+public class GrpcTxEventStreamObserverTest {
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+  private final CountDownLatch handlingReleased = new CountDownLatch(1);
+  // the acks and the completion in the order they are written to the stream.
+  private final List<Object> written = new CopyOnWriteArrayList<>();
+
+  private final GrpcTxEventStreamObserver observer = new GrpcTxEventStreamObserver(event -> {
+    try {
+      handlingReleased.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return GrpcAck.newBuilder().setAborted(false).build();
+  }, executor, new RecordingObserver());
+
+  @After
+  public void tearDown() {
+    handlingReleased.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void completesStreamAfterPendingAcksAreWritten() throws Exception {
+    observer.onNext(request(1));
+    observer.onNext(request(2));
+    observer.onCompleted();
+
+    Thread.sleep(100);
+    assertThat(written.isEmpty(), is(true));
+
+    handlingReleased.countDown();
+
+    await().atMost(2, TimeUnit.SECONDS).until(() -> written.contains("completed"));
+    assertThat(written.get(written.size() - 1), is("completed"));
+    List<Long> correlationIds = new ArrayList<>();
+    for (Object item : written) {
+      if (item instanceof GrpcTxEventAcks) {
+        for (GrpcCorrelatedAck ack : ((GrpcTxEventAcks) item).getAcksList()) {
+          correlationIds.add(ack.getCorrelationId());
+        }
+      }
+    }
+    assertThat(correlationIds.size(), is(2));
+    assertThat(correlationIds.contains(1L) && correlationIds.contains(2L), is(true));
+  }
+
+  @Test
+  public void completesIdleStreamAtOnce() {
+    observer.onCompleted();
+
+    assertThat(written.size(), is(1));
+    assertThat(written.get(0), is("completed"));
+  }
+
+  private GrpcTxEventRequest request(long correlationId) {
+    return GrpcTxEventRequest.newBuilder()
+        .setCorrelationId(correlationId)
+        .setEvent(GrpcTxEvent.newBuilder().setGlobalTxId(String.valueOf(correlationId)))
+        .build();
+  }
+
+  private class RecordingObserver implements StreamObserver<GrpcTxEventAcks> {
+    @Override
+    public void onNext(GrpcTxEventAcks acks) {
+      written.add(acks);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      written.add(t);
+    }
+
+    @Override
+    public void onCompleted() {
+      written.add("completed");
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.rules.ExternalResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+/**
+ * An in-memory HSQLDB with the tables of the test schema.sql, which is created before every test and shut down after it,
+ * so that the tests of the SQL run against the same tables as the others rather than a copy of their own.
+ *
+ * @since 2019/10/18
+ */
+public class InMemorySchemaDatabase extends ExternalResource {
+  private final JDBCDataSource dataSource = new JDBCDataSource();
+
+  public InMemorySchemaDatabase(String name) {
+    dataSource.setUrl("jdbc:hsqldb:mem:" + uniquify(name));
+    dataSource.setUser("sa");
+  }
+
+  public JDBCDataSource dataSource() {
+    return dataSource;
+  }
+
+  @Override
+  protected void before() throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema.sql"));
+    }
+  }
+
+  @Override
+  protected void after() {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("SHUTDOWN");
+    } catch (SQLException e) {
+      throw new IllegalStateException("Failed to shut down the in-memory database.", e);
+    }
+  }
+}
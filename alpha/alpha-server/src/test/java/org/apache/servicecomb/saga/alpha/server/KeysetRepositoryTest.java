@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.servicecomb.saga.alpha.core.KeysetQuery;
+import org.junit.Test;
+
+public class KeysetRepositoryTest {
+
+  @Test
+  public void continuesAfterTheLastRowOfPreviousPage() {
+    String cursor = KeysetQuery.cursorOf(1571328000000L, "globalTx_1");
+    KeysetQuery query = new KeysetQuery(20, cursor, "a_b%", "service", null, null, null, null);
+    Map<String, Object> params = new HashMap<>();
+
+    String jpql = KeysetRepository.toJpql(KeysetRepository.Table.GLOBAL_TX_SUMMARY, query, params);
+
+    assertThat(jpql, is("SELECT T FROM GlobalTxSummary T WHERE 1 = 1"
+        + " AND (T.startTime < :afterSortValue OR (T.startTime = :afterSortValue AND T.globalTxId < :afterKey))"
+        + " AND T.globalTxId LIKE :globalTxIdPrefix ESCAPE '\\' AND T.serviceName = :serviceName"
+        + " ORDER BY T.startTime DESC, T.globalTxId DESC"));
+    assertThat(params.get("afterSortValue"), is(new Date(1571328000000L)));
+    assertThat(params.get("afterKey"), is("globalTx_1"));
+    assertThat(params.get("globalTxIdPrefix"), is("a\\_b\\%%"));
+    assertThat(params.get("serviceName"), is("service"));
+  }
+
+  @Test
+  public void readsFirstPageByUniqueIdWithinTimeRange() {
+    Date startTime = new Date(1571328000000L);
+    KeysetQuery query = new KeysetQuery(0, "", null, null, " ", "category", startTime, null);
+    Map<String, Object> params = new HashMap<>();
+
+    String jpql = KeysetRepository.toJpql(KeysetRepository.Table.CONFIG, query, params);
+
+    assertThat(jpql, is("SELECT T FROM ConfigCenter T WHERE 1 = 1 AND T.status = 0 AND T.category = :category"
+        + " AND T.updatetime >= :startTime ORDER BY T.id DESC"));
+    assertThat(params.size(), is(2));
+    assertThat(query.pageSize(), is(KeysetQuery.DEFAULT_PAGE_SIZE));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsFilterWhichTheListDoesNotHave() {
+    KeysetQuery query = new KeysetQuery(10, null, "globalTxId", null, null, null, null, null);
+    KeysetRepository.toJpql(KeysetRepository.Table.CONFIG, query, new HashMap<>());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsForgedCursor() {
+    new KeysetQuery(10, "not-a-cursor", null, null, null, null, null, null);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.Arrays.asList;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class NdjsonExporterTest {
+  @Rule
+  public final InMemorySchemaDatabase database = new InMemorySchemaDatabase("export");
+
+  private final JDBCDataSource dataSource = database.dataSource();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final String globalTxId = uniquify("globalTxId");
+
+  // a small chunk, so the exports read several chunks.
+  private final NdjsonExporter exporter = new NdjsonExporter(dataSource, 2);
+
+  @Before
+  public void setUp() throws SQLException {
+    insertEvent("globalService", "SagaStartedEvent", globalTxId);
+    insertEvent("subService", "TxStartedEvent", "localTx1");
+    insertEvent("subService", "TxEndedEvent", "localTx1");
+    insertEvent("subService", "TxStartedEvent", "localTx2");
+    insertEvent("subService", "TxAbortedEvent", "localTx2");
+    insertEvent("anotherService", "TxStartedEvent", "localTx3");
+  }
+
+  @Test
+  public void exportsAllEventsByChunks() throws IOException, SQLException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    exporter.exportEvents(null, null, null, null, out);
+
+    List<Map<String, Object>> lines = lines(out);
+    assertThat(lines.size(), is(6));
+    List<Object> ids = new ArrayList<>();
+    lines.forEach(line -> ids.add(line.get("surrogateId")));
+    assertThat(ids, is(asList(1, 2, 3, 4, 5, 6)));
+    assertThat(lines.get(0).get("payloads"), is("AQI="));
+  }
+
+  @Test
+  public void exportsFilteredSubTransactionsWithStatus() throws IOException, SQLException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    exporter.exportSubTransactions(null, null, "subService", null, out);
+
+    List<Map<String, Object>> lines = lines(out);
+    assertThat(lines.size(), is(2));
+    assertThat(lines.get(0).get("localTxId"), is("localTx1"));
+    assertThat(lines.get(0).get("status"), is(3));
+    assertThat(lines.get(0).get("endTime") != null, is(true));
+    assertThat(lines.get(1).get("status"), is(1));
+
+    out = new ByteArrayOutputStream();
+    exporter.exportSubTransactions(null, null, null, 0, out);
+    lines = lines(out);
+    assertThat(lines.size(), is(1));
+    assertThat(lines.get(0).get("localTxId"), is("localTx3"));
+  }
+
+  private void insertEvent(String serviceName, String type, String localTxId) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("INSERT INTO TxEvent (serviceName, instanceId, globalTxId, localTxId, type, "
+             + "compensationMethod, expiryTime, retryMethod, payloads) VALUES (?, 'instance', ?, ?, ?, 'compensate', ?, '', ?)")) {
+      statement.setString(1, serviceName);
+      statement.setString(2, globalTxId);
+      statement.setString(3, localTxId);
+      statement.setString(4, type);
+      statement.setTimestamp(5, new Timestamp(System.currentTimeMillis() + 60000));
+      statement.setBytes(6, new byte[] {1, 2});
+      statement.executeUpdate();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Map<String, Object>> lines(ByteArrayOutputStream out) throws IOException {
+    List<Map<String, Object>> lines = new ArrayList<>();
+    for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+      if (!line.isEmpty()) {
+        lines.add(objectMapper.readValue(line, Map.class));
+      }
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.stub.StreamObserver;
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.apache.servicecomb.saga.alpha.core.TxEventRepository;
+import org.apache.servicecomb.saga.alpha.core.TxPauseRegistry;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEvent;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxResumed;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParkedTxEventsTest {
+  private final TxPauseRegistry registry = new TxPauseRegistry(mock(TxEventRepository.class), "alpha:8090");
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final AtomicInteger handledTimes = new AtomicInteger();
+  private final ParkedTxEvents parkedTxEvents = new ParkedTxEvents(registry, executor, this::handle);
+  private final List<GrpcTxResumed> pushed = new CopyOnWriteArrayList<>();
+
+  private final String globalTxId = uniquify("globalTxId");
+  private final String localTxId = uniquify("localTxId");
+  private final TxEvent pausedEvent = new TxEvent("service", "instance", globalTxId, globalTxId, null, "SagaStartedEvent", "", 0, "", 0, "", null);
+
+  @Before
+  public void setUp() {
+    registry.setResumeListener(parkedTxEvents);
+    registry.pause(pausedEvent, "127.0.0.1:1", 0);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    registry.shutdown();
+  }
+
+  @Test
+  public void pushesAckOfHeldEventOnceResumed() {
+    parkedTxEvents.register("service", "instance", observer());
+    GrpcTxEvent event = event("TxStartedEvent");
+    handle(event);
+    // sent again by an omega which didn't get the push in time, it replaces the held one.
+    handle(event);
+    assertThat(parkedTxEvents.size(), is(1));
+
+    registry.resume(pausedEvent, "127.0.0.1:1");
+
+    await().atMost(5, SECONDS).until(() -> pushed.size() == 1);
+    assertThat(pushed.get(0).getGlobalTxId(), is(globalTxId));
+    assertThat(pushed.get(0).getType(), is("TxStartedEvent"));
+    assertThat(pushed.get(0).getAck().getPaused(), is(false));
+    assertThat(handledTimes.get(), is(3));
+    assertThat(parkedTxEvents.size(), is(0));
+  }
+
+  @Test
+  public void holdsNothingForInstanceWithoutControlStream() {
+    handle(event("TxStartedEvent"));
+    assertThat(parkedTxEvents.size(), is(0));
+
+    parkedTxEvents.register("service", "instance", observer());
+    handle(event("TxStartedEvent"));
+    parkedTxEvents.unregister("service", "instance");
+    assertThat(parkedTxEvents.size(), is(0));
+  }
+
+  @Test
+  public void answersEventSentAgainWithAckOfReplay() {
+    parkedTxEvents.register("service", "instance", observer());
+    GrpcTxEvent event = event("TxStartedEvent");
+    handle(event);
+
+    registry.resume(pausedEvent, "127.0.0.1:1");
+    await().atMost(5, SECONDS).until(() -> pushed.size() == 1);
+
+    // omega missed the push and sends it again, it gets the same ack without saving the event twice.
+    GrpcAck ack = parkedTxEvents.handle(event);
+    assertThat(ack, is(pushed.get(0).getAck()));
+    assertThat(handledTimes.get(), is(2));
+  }
+
+  @Test
+  public void answersPausedToEventSentAgainWhileItsReplayIsRunning() throws Exception {
+    parkedTxEvents.register("service", "instance", observer());
+    GrpcTxEvent event = event("TxStartedEvent");
+    handle(event);
+    CountDownLatch replayReleased = new CountDownLatch(1);
+    executor.execute(() -> {
+      try {
+        replayReleased.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    registry.resume(pausedEvent, "127.0.0.1:1");
+    assertThat(parkedTxEvents.handle(event).getPaused(), is(true));
+    assertThat(handledTimes.get(), is(1));
+
+    replayReleased.countDown();
+    await().atMost(5, SECONDS).until(() -> pushed.size() == 1);
+    assertThat(pushed.get(0).getAck().getPaused(), is(false));
+    assertThat(handledTimes.get(), is(2));
+  }
+
+  @Test
+  public void handlesOtherEventsAsUsual() {
+    parkedTxEvents.register("service", "instance", observer());
+    handle(event("TxStartedEvent"));
+
+    // not held, e.g. the other events of the paused global transaction are held again.
+    assertThat(parkedTxEvents.handle(event("TxEndedEvent")).getPaused(), is(true));
+    assertThat(parkedTxEvents.size(), is(2));
+    assertThat(handledTimes.get(), is(2));
+  }
+
+  // the same as GrpcTxEventEndpointImpl, a paused event is held.
+  private GrpcAck handle(GrpcTxEvent event) {
+    handledTimes.incrementAndGet();
+    boolean paused = registry.isPaused(event.getGlobalTxId());
+    if (paused) {
+      parkedTxEvents.park(event);
+    }
+    return GrpcAck.newBuilder().setPaused(paused).build();
+  }
+
+  private GrpcTxEvent event(String type) {
+    return GrpcTxEvent.newBuilder()
+        .setServiceName("service")
+        .setInstanceId("instance")
+        .setGlobalTxId(globalTxId)
+        .setLocalTxId(localTxId)
+        .setType(type)
+        .build();
+  }
+
+  private StreamObserver<GrpcTxResumed> observer() {
+    return new StreamObserver<GrpcTxResumed>() {
+      @Override
+      public void onNext(GrpcTxResumed resumed) {
+        pushed.add(resumed);
+      }
+
+      @Override
+      public void onError(Throwable t) {
+      }
+
+      @Override
+      public void onCompleted() {
+      }
+    };
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.servicecomb.saga.alpha.core.GlobalTxFilter;
+import org.apache.servicecomb.saga.alpha.core.GlobalTxStateRegistry;
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.apache.servicecomb.saga.alpha.core.TxTimeoutDetector;
+import org.apache.servicecomb.saga.alpha.core.listener.TxEventBus;
+import org.apache.servicecomb.saga.common.EventType;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class SpringTxEventRepositoryTest {
+  private final TxEventWriter eventWriter = mock(TxEventWriter.class);
+  private final GlobalTxStateRegistry globalTxStateRegistry = mock(GlobalTxStateRegistry.class);
+  private final TxTimeoutDetector txTimeoutDetector = mock(TxTimeoutDetector.class);
+  private final TxEventBus txEventBus = mock(TxEventBus.class);
+  private final SpringTxEventRepository repository = new SpringTxEventRepository(mock(TxEventEnvelopeRepository.class), eventWriter, null);
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(repository, "globalTxStateRegistry", globalTxStateRegistry);
+    ReflectionTestUtils.setField(repository, "txTimeoutDetector", txTimeoutDetector);
+    ReflectionTestUtils.setField(repository, "txEventBus", txEventBus);
+  }
+
+  @Test
+  public void selectsSagaStartedEventsOfServiceAfterCursor() {
+    Date startTime = new Date(1571328000000L);
+    Map<String, Object> params = new HashMap<>();
+
+    String jpql = SpringTxEventRepository.toSagaStartedJpql(GlobalTxFilter.ofService(" service ", startTime, null, 100), 5L, params);
+
+    assertThat(jpql, is("SELECT t FROM ActiveGlobalTx a, TxEvent t WHERE t.globalTxId = a.globalTxId AND t.type = 'SagaStartedEvent'"
+        + " AND t.surrogateId > :afterSurrogateId AND t.serviceName = :serviceName AND t.creationTime >= :startTime ORDER BY t.surrogateId"));
+    assertThat(params.size(), is(3));
+    assertThat(params.get("afterSurrogateId"), is(5L));
+    assertThat(params.get("serviceName"), is("service"));
+    assertThat(params.get("startTime"), is(startTime));
+  }
+
+  @Test
+  public void selectsSagaStartedEventsOfGlobalTxIds() {
+    List<String> globalTxIds = asList("globalTx_1", "globalTx_2");
+    Map<String, Object> params = new HashMap<>();
+
+    String jpql = SpringTxEventRepository.toSagaStartedJpql(GlobalTxFilter.ofGlobalTxIds(globalTxIds, 100), 0L, params);
+
+    assertThat(jpql.endsWith(" AND t.surrogateId > :afterSurrogateId AND t.globalTxId IN :globalTxIds ORDER BY t.surrogateId"), is(true));
+    assertThat(params.get("globalTxIds"), is(globalTxIds));
+  }
+
+  @Test
+  public void savesEventsByOneBatchAndTellsEveryEvent() throws SQLException {
+    TxEvent abortedEvent = event(EventType.TxAbortedEvent.name());
+    TxEvent endedEvent = event(EventType.SagaEndedEvent.name());
+    List<TxEvent> events = asList(abortedEvent, endedEvent);
+
+    repository.saveAll(events);
+
+    verify(eventWriter).write(events);
+    for (TxEvent event : events) {
+      verify(globalTxStateRegistry).onEventSaved(event);
+      verify(txTimeoutDetector).onEventSaved(event);
+      verify(txEventBus).publish(event);
+    }
+  }
+
+  @Test
+  public void tellsNothingIfBatchFailed() throws SQLException {
+    doThrow(new SQLException("oops")).when(eventWriter).write(anyListOf(TxEvent.class));
+
+    try {
+      repository.saveAll(asList(event(EventType.TxAbortedEvent.name())));
+      fail("IllegalStateException is expected");
+    } catch (IllegalStateException e) {
+      assertThat(e.getCause().getMessage(), is("oops"));
+    }
+    verifyZeroInteractions(globalTxStateRegistry, txTimeoutDetector, txEventBus);
+  }
+
+  @Test
+  public void writesNothingForEmptyEvents() throws SQLException {
+    repository.saveAll(emptyList());
+
+    verify(eventWriter, never()).write(anyListOf(TxEvent.class));
+  }
+
+  private TxEvent event(String type) {
+    String globalTxId = uniquify("globalTxId");
+    return new TxEvent("service", "instance", globalTxId, globalTxId, null, type, "", "", null);
+  }
+}
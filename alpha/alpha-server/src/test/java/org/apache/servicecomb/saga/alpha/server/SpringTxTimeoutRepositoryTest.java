@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+
+import javax.persistence.PersistenceException;
+
+import org.apache.servicecomb.saga.alpha.core.TxTimeout;
+import org.junit.Test;
+import org.springframework.orm.jpa.JpaSystemException;
+
+public class SpringTxTimeoutRepositoryTest {
+  private final TxTimeoutEntityRepository timeoutRepo = mock(TxTimeoutEntityRepository.class);
+  private final SpringTxTimeoutRepository repository = new SpringTxTimeoutRepository(timeoutRepo);
+  private final TxTimeout timeout = mock(TxTimeout.class);
+
+  @Test
+  public void savesTimeoutWithoutQueryingItFirst() {
+    repository.saveIfAbsent(timeout);
+
+    verify(timeoutRepo).save(timeout);
+  }
+
+  @Test
+  public void toleratesTimeoutRecordedByOtherNodeConcurrently() {
+    when(timeoutRepo.save(timeout)).thenThrow(new JpaSystemException(new PersistenceException(
+        new SQLIntegrityConstraintViolationException("Duplicate entry '1' for key 'eventId'", "23000"))));
+
+    repository.saveIfAbsent(timeout);
+
+    verify(timeoutRepo).save(timeout);
+  }
+
+  @Test
+  public void recognizesDuplicateKeyInCausesOnly() {
+    assertThat(SqlErrors.isDuplicateKey(new RuntimeException(new SQLException("unique", "23505"))), is(true));
+    assertThat(SqlErrors.isDuplicateKey(new RuntimeException(new SQLException("deadlock", "40001"))), is(false));
+    assertThat(SqlErrors.isDuplicateKey(new RuntimeException("oops")), is(false));
+  }
+}
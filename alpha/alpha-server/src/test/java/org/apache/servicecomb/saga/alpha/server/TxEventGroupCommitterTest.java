@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
+import org.apache.servicecomb.saga.common.EventType;
+import org.junit.After;
+import org.junit.Test;
+
+public class TxEventGroupCommitterTest {
+  private final TxEventWriter eventWriter = mock(TxEventWriter.class);
+  private final ExecutorService callers = Executors.newCachedThreadPool();
+  // the first write waits until it's released, so that the following events pile up in the queue.
+  private final CountDownLatch firstWriteReleased = new CountDownLatch(1);
+  private final List<List<TxEvent>> writtenBatches = new CopyOnWriteArrayList<>();
+
+  private TxEventGroupCommitter committer;
+
+  @After
+  public void tearDown() {
+    firstWriteReleased.countDown();
+    committer.shutdown();
+    callers.shutdownNow();
+  }
+
+  @Test
+  public void commitsQueuedEventsByOneBatch() throws Exception {
+    writeAfterFirstReleased(null);
+    committer = new TxEventGroupCommitter(eventWriter, mock(TxleMetrics.class), 10, 0, 100);
+
+    List<CompletableFuture<Void>> persisted = new ArrayList<>();
+    persisted.add(persistAsync(event()));
+    Thread.sleep(100);
+    for (int i = 0; i < 4; i++) {
+      persisted.add(persistAsync(event()));
+    }
+    Thread.sleep(100);
+    firstWriteReleased.countDown();
+
+    CompletableFuture.allOf(persisted.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+    assertThat(writtenBatches.size(), is(2));
+    assertThat(writtenBatches.get(0).size(), is(1));
+    assertThat(writtenBatches.get(1).size(), is(4));
+  }
+
+  @Test
+  public void failsOnlyBadEventOfFailedBatch() throws Exception {
+    TxEvent badEvent = event();
+    writeAfterFirstReleased(badEvent);
+    committer = new TxEventGroupCommitter(eventWriter, mock(TxleMetrics.class), 10, 0, 100);
+
+    CompletableFuture<Void> first = persistAsync(event());
+    Thread.sleep(100);
+    CompletableFuture<Void> good = persistAsync(event());
+    CompletableFuture<Void> bad = persistAsync(badEvent);
+    Thread.sleep(100);
+    firstWriteReleased.countDown();
+
+    first.get(5, TimeUnit.SECONDS);
+    good.get(5, TimeUnit.SECONDS);
+    try {
+      bad.get(5, TimeUnit.SECONDS);
+      fail("ExecutionException is expected");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause() instanceof IllegalStateException, is(true));
+      assertThat(e.getCause().getCause().getMessage(), is("bad event"));
+    }
+    // the batch of both, then one by one.
+    assertThat(writtenBatches.size(), is(4));
+    assertThat(writtenBatches.get(1).size(), is(2));
+  }
+
+  @Test
+  public void failsQueuedEventsIfWriterIsStuckOnShutdown() throws Exception {
+    writeAfterFirstReleased(null);
+    committer = new TxEventGroupCommitter(eventWriter, mock(TxleMetrics.class), 10, 0, 100, 100);
+
+    CompletableFuture<Void> stuck = persistAsync(event());
+    Thread.sleep(100);
+    CompletableFuture<Void> queued = persistAsync(event());
+    Thread.sleep(100);
+
+    committer.shutdown();
+
+    try {
+      queued.get(1, TimeUnit.SECONDS);
+      fail("ExecutionException is expected");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause().getMessage(), is("The events are not persisted because alpha is shutting down."));
+    }
+    firstWriteReleased.countDown();
+    stuck.get(5, TimeUnit.SECONDS);
+
+    // it's written directly after shutting down.
+    TxEvent lateEvent = event();
+    committer.persist(lateEvent);
+    assertThat(writtenBatches.get(writtenBatches.size() - 1), is(singletonList(lateEvent)));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void writeAfterFirstReleased(TxEvent badEvent) throws SQLException {
+    doAnswer(invocation -> {
+      List<TxEvent> events = new ArrayList<>((List<TxEvent>) invocation.getArguments()[0]);
+      if (writtenBatches.isEmpty()) {
+        // the stuck writer ignores the interruption of shutting down.
+        while (firstWriteReleased.getCount() > 0) {
+          try {
+            firstWriteReleased.await();
+          } catch (InterruptedException ignored) {
+          }
+        }
+      }
+      writtenBatches.add(events);
+      if (badEvent != null && events.contains(badEvent)) {
+        throw new SQLException("bad event");
+      }
+      return null;
+    }).when(eventWriter).write(anyListOf(TxEvent.class));
+  }
+
+  private CompletableFuture<Void> persistAsync(TxEvent event) {
+    return CompletableFuture.runAsync(() -> committer.persist(event), callers);
+  }
+
+  private TxEvent event() {
+    String globalTxId = uniquify("globalTxId");
+    return new TxEvent("service", "instance", globalTxId, globalTxId, null, EventType.SagaStartedEvent.name(), "", "", null);
+  }
+}
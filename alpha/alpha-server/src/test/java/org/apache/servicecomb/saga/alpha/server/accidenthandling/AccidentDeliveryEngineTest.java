@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.accidenthandling;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
+import org.apache.servicecomb.saga.alpha.core.accidenthandling.AccidentHandleStatus;
+import org.apache.servicecomb.saga.alpha.core.accidenthandling.AccidentHandleType;
+import org.apache.servicecomb.saga.alpha.core.accidenthandling.AccidentHandling;
+import org.apache.servicecomb.saga.alpha.server.InMemorySchemaDatabase;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.web.client.RestTemplate;
+
+public class AccidentDeliveryEngineTest {
+  private static final String PLATFORM = "http://127.0.0.1:8000/receiveFailedGlobalTxInfo";
+
+  @Rule
+  public final InMemorySchemaDatabase database = new InMemorySchemaDatabase("accidents");
+
+  private final JDBCDataSource dataSource = database.dataSource();
+  private final AccidentHandlingEntityRepository repository = mock(AccidentHandlingEntityRepository.class);
+  private final RestTemplate restTemplate = mock(RestTemplate.class);
+  private final List<AccidentHandling> accidents = new ArrayList<>();
+
+  private AccidentDeliveryEngine engine;
+
+  @Before
+  public void setUp() {
+    when(repository.findAll(any(Iterable.class))).thenAnswer(invocation -> {
+      Iterable<Long> ids = invocation.getArgument(0);
+      List<AccidentHandling> found = new ArrayList<>();
+      ids.forEach(id -> found.add(accidents.get(id.intValue() - 1)));
+      return found;
+    });
+  }
+
+  @After
+  public void tearDown() {
+    if (engine != null) {
+      engine.shutdown();
+    }
+  }
+
+  @Test
+  public void deliversAccidentsAndGivesUpAfterRetries() throws SQLException {
+    insert("delivered");
+    insert("rejected");
+    when(restTemplate.postForObject(eq(PLATFORM), any(HttpEntity.class), eq(String.class))).thenAnswer(invocation -> {
+      String body = (String) invocation.<HttpEntity>getArgument(1).getBody();
+      return body.contains("delivered") ? "ok" : "fail";
+    });
+
+    engine = new AccidentDeliveryEngine(dataSource, repository, restTemplate, PLATFORM, mock(TxleMetrics.class), 2, 1, 10, 10, 100, 10, 60000, 60000, 10);
+    engine.start();
+    engine.wakeUp();
+
+    await().atMost(5, SECONDS).until(() -> status(2) == AccidentHandleStatus.SEND_FAIL.toInteger());
+    assertThat(status(1), is(AccidentHandleStatus.SEND_OK.toInteger()));
+    assertThat(select(2, "attempts"), is("2"));
+    assertThat(select(1, "completetime") != null, is(true));
+  }
+
+  @Test
+  public void stopsDeliveringWhileCircuitIsOpen() throws SQLException {
+    insert("first");
+    insert("second");
+    insert("third");
+    when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(String.class))).thenReturn("fail");
+
+    engine = new AccidentDeliveryEngine(dataSource, repository, restTemplate, PLATFORM, mock(TxleMetrics.class), 5, 1, 10, 10, 100, 2, 60000, 60000,
+        3600000);
+    long now = System.currentTimeMillis();
+    assertThat(engine.deliverDue(now), is(3));
+
+    // the circuit was opened by the first two, the third one waits for the circuit rather than for its backoff.
+    assertThat(select(1, "attempts"), is("1"));
+    assertThat(select(2, "attempts"), is("1"));
+    assertThat(select(3, "attempts"), is("0"));
+    assertThat(engine.deliverDue(now + 1000), is(0));
+  }
+
+  @Test
+  public void leavesRetryToNewClaimOnceClaimIsLost() throws SQLException {
+    insert("reclaimed");
+    when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(String.class))).thenAnswer(invocation -> {
+      // the lease expired while posting, and the accident was claimed by another worker.
+      execute("UPDATE Accident SET workerid = 'another', attempts = 3 WHERE id = 1");
+      return "fail";
+    });
+
+    engine = new AccidentDeliveryEngine(dataSource, repository, restTemplate, PLATFORM, mock(TxleMetrics.class), 5, 1, 10, 10, 100, 10, 60000, 60000,
+        3600000);
+    assertThat(engine.deliverDue(System.currentTimeMillis()), is(1));
+
+    assertThat(select(1, "workerid"), is("another"));
+    assertThat(select(1, "attempts"), is("3"));
+  }
+
+  @Test
+  public void countsDepthByQueuedAndCompletedAccidents() throws SQLException {
+    insert("first");
+    insert("second");
+    when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(String.class))).thenReturn("ok");
+
+    engine = new AccidentDeliveryEngine(dataSource, repository, restTemplate, PLATFORM, mock(TxleMetrics.class), 5, 1, 10, 10, 2, 10, 60000, 60000,
+        3600000);
+    engine.wakeUp();
+    assertThat(engine.isFull(), is(false));
+    engine.wakeUp();
+    assertThat(engine.isFull(), is(true));
+
+    assertThat(engine.deliverDue(System.currentTimeMillis()), is(2));
+    assertThat(engine.isFull(), is(false));
+  }
+
+  @Test
+  public void backoffGrowsExponentiallyWithJitterUpToMaximum() {
+    engine = new AccidentDeliveryEngine(dataSource, repository, restTemplate, PLATFORM, mock(TxleMetrics.class), 5, 1000, 10000, 10, 100, 2, 60000, 60000,
+        3600000);
+    for (int i = 0; i < 20; i++) {
+      long first = engine.backoff(1);
+      long third = engine.backoff(3);
+      long tenth = engine.backoff(10);
+      assertThat(first >= 500 && first <= 1000, is(true));
+      assertThat(third >= 2000 && third <= 4000, is(true));
+      assertThat(tenth >= 5000 && tenth <= 10000, is(true));
+    }
+  }
+
+  private void insert(String globalTxId) throws SQLException {
+    AccidentHandling accident = new AccidentHandling("service", "instance", globalTxId, uniquify("localTxId"), AccidentHandleType.ROLLBACK_ERROR, "", "");
+    accident.setId((long) accidents.size() + 1);
+    accidents.add(accident);
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("INSERT INTO Accident (id, globaltxid, localtxid) VALUES (?, ?, ?)")) {
+      statement.setLong(1, accident.getId());
+      statement.setString(2, globalTxId);
+      statement.setString(3, accident.getLocaltxid());
+      statement.executeUpdate();
+    }
+  }
+
+  private void execute(String sql) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.executeUpdate();
+    }
+  }
+
+  private int status(long id) throws SQLException {
+    return Integer.parseInt(select(id, "status"));
+  }
+
+  private String select(long id, String column) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("SELECT " + column + " FROM Accident WHERE id = ?")) {
+      statement.setLong(1, id);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? resultSet.getString(1) : null;
+      }
+    }
+  }
+}
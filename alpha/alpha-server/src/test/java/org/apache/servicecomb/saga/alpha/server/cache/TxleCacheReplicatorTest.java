@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Test;
+
+public class TxleCacheReplicatorTest {
+  private static final OkHttpClient HTTP_CLIENT = new OkHttpClient();
+
+  private final TxleCacheReplicator sender = new TxleCacheReplicator(HTTP_CLIENT, 8090, Collections::emptyList, 16, 1, 16, 16, 1000);
+  private final TxleCacheReplicator receiver = new TxleCacheReplicator(HTTP_CLIENT, 8091, Collections::emptyList, 16, 1, 16, 16, 1000);
+
+  @After
+  public void tearDown() {
+    sender.shutdown();
+    receiver.shutdown();
+  }
+
+  @Test
+  public void keepsTheLastChangeOfEveryKey() throws Exception {
+    byte[] frame = sender.encode(Arrays.asList(
+        new CacheOperation(CacheOperation.PUT_TX_ABORT_STATUS, "g1", true, 30),
+        new CacheOperation(CacheOperation.PUT_TX_SUSPEND_STATUS, "g1", true, 30),
+        new CacheOperation(CacheOperation.REMOVE_TX_ABORT_STATUS, "g1", false, 0)));
+
+    TxleCacheReplicator.ReceivedFrame receivedFrame = receiver.receive("127.0.0.1", frame);
+
+    assertThat(receivedFrame.senderAddress(), is("127.0.0.1:8090"));
+    assertThat(receivedFrame.operations().size(), is(2));
+    assertThat(receivedFrame.operations().get(0).type(), is(CacheOperation.PUT_TX_SUSPEND_STATUS));
+    assertThat(receivedFrame.operations().get(1).type(), is(CacheOperation.REMOVE_TX_ABORT_STATUS));
+    assertThat(receivedFrame.isResyncNeeded(), is(false));
+  }
+
+  @Test
+  public void ignoresDuplicatesAndResyncsOnGaps() throws Exception {
+    byte[] first = sender.encode(Collections.singletonList(new CacheOperation(CacheOperation.PUT_CONFIG, "k1", true, 0)));
+    sender.encode(Collections.singletonList(new CacheOperation(CacheOperation.PUT_CONFIG, "k2", true, 0)));
+    byte[] third = sender.encode(Collections.singletonList(new CacheOperation(CacheOperation.PUT_CONFIG, "k3", true, 0)));
+
+    assertThat(receiver.receive("127.0.0.1", first).isResyncNeeded(), is(false));
+    assertThat(receiver.receive("127.0.0.1", first), is(nullValue()));
+    assertThat(receiver.receive("127.0.0.1", third).isResyncNeeded(), is(true));
+  }
+
+  @Test
+  public void ignoresFramesOfItself() throws Exception {
+    byte[] frame = sender.encode(Collections.singletonList(new CacheOperation(CacheOperation.REMOVE_CONFIG, "k1", false, 0)));
+
+    assertThat(sender.receive("127.0.0.1", frame), is(nullValue()));
+  }
+}
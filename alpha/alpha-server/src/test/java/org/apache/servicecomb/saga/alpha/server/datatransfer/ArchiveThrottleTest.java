@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.datatransfer;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class ArchiveThrottleTest {
+  private static final long BUDGET_MILLIS = 100;
+
+  @Test
+  public void pacesRowsToTheRate() {
+    ArchiveThrottle throttle = new ArchiveThrottle(1000, BUDGET_MILLIS, 10, 500);
+
+    // 500 rows are worth 500ms at 1000 rows/sec, and the chunk took 50ms of them.
+    assertThat(throttle.onChunk(500, 0, nanos(50)), is(450L));
+    // the next chunk starts after the first one is paid off.
+    assertThat(throttle.onChunk(500, nanos(500), nanos(550)), is(450L));
+  }
+
+  @Test
+  public void shrinksChunkAndBacksOffWhenDatabaseSlowsDown() {
+    ArchiveThrottle throttle = new ArchiveThrottle(0, BUDGET_MILLIS, 10, 400);
+
+    assertThat(throttle.onChunk(400, 0, nanos(300)), is(300L));
+    assertThat(throttle.chunkSize(), is(200));
+    assertThat(throttle.onChunk(200, 0, nanos(200)), is(600L));
+    assertThat(throttle.chunkSize(), is(100));
+
+    assertThat(throttle.onChunk(100, 0, nanos(80)), is(0L));
+    assertThat(throttle.chunkSize(), is(100));
+  }
+
+  @Test
+  public void growsChunkWhileDatabaseIsFast() {
+    ArchiveThrottle throttle = new ArchiveThrottle(0, BUDGET_MILLIS, 10, 400);
+    throttle.onChunk(400, 0, nanos(1000));
+    throttle.onChunk(200, 0, nanos(1000));
+    assertThat(throttle.chunkSize(), is(100));
+
+    assertThat(throttle.onChunk(100, 0, nanos(10)), is(0L));
+    assertThat(throttle.chunkSize(), is(110));
+    for (int i = 0; i < 100; i++) {
+      throttle.onChunk(throttle.chunkSize(), 0, nanos(10));
+    }
+    assertThat(throttle.chunkSize(), is(400));
+  }
+
+  private long nanos(long millis) {
+    return MILLISECONDS.toNanos(millis);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.datatransfer;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentArchiveTest {
+  private static final String TABLE = "TxEvent";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final String globalTxId = uniquify("globalTxId");
+  private long nextId = 1;
+
+  @Test
+  public void readsGlobalTxBackAcrossBlocksAndPeriods() throws IOException {
+    SegmentArchive archive = new SegmentArchive(folder.getRoot().toPath(), 1 << 20);
+    TxEvent sagaStartedEvent = event(globalTxId, "SagaStartedEvent", new byte[] {1, 2, 3});
+    archive.append(TABLE, "201909", asList(event("another", "SagaStartedEvent", null), sagaStartedEvent));
+    archive.append(TABLE, "201910", asList(event(globalTxId, "TxStartedEvent", null), event(globalTxId, "SagaEndedEvent", null)));
+
+    List<TxEvent> events = archive.find(TABLE, globalTxId);
+
+    assertThat(types(events), is(asList("SagaStartedEvent", "TxStartedEvent", "SagaEndedEvent")));
+    TxEvent event = events.get(0);
+    assertThat(event.id(), is(sagaStartedEvent.id()));
+    assertThat(event.serviceName(), is(sagaStartedEvent.serviceName()));
+    assertThat(event.creationTime(), is(sagaStartedEvent.creationTime()));
+    assertThat(event.expiryTime(), is(sagaStartedEvent.expiryTime()));
+    assertThat(event.parentTxId() == null, is(true));
+    assertThat(event.payloads(), is(new byte[] {1, 2, 3}));
+    assertThat(archive.find(TABLE, uniquify("globalTxId")).isEmpty(), is(true));
+  }
+
+  @Test
+  public void rollsSegmentsAndReloadsThem() throws IOException {
+    SegmentArchive archive = new SegmentArchive(folder.getRoot().toPath(), 64);
+    for (int i = 0; i < 5; i++) {
+      archive.append(TABLE, "201910", singletonList(event(globalTxId, "TxStartedEvent", null)));
+    }
+
+    SegmentArchive reopened = new SegmentArchive(folder.getRoot().toPath(), 64);
+    assertThat(reopened.blockCount(TABLE), is(5));
+    assertThat(reopened.find(TABLE, globalTxId).size(), is(5));
+    assertThat(Files.list(folder.getRoot().toPath().resolve(TABLE).resolve("201910")).count() > 2, is(true));
+  }
+
+  @Test
+  public void dropsTornTailAndDuplicatesAfterCrash() throws IOException {
+    Path root = folder.getRoot().toPath();
+    SegmentArchive archive = new SegmentArchive(root, 1 << 20);
+    List<TxEvent> chunk = asList(event(globalTxId, "SagaStartedEvent", null), event(globalTxId, "SagaEndedEvent", null));
+    archive.append(TABLE, "201910", chunk);
+
+    // a crash while appending the next block leaves garbage after the valid data and index.
+    Path period = root.resolve(TABLE).resolve("201910");
+    appendGarbage(period.resolve("segment-00000.dat"));
+    appendGarbage(period.resolve("segment-00000.idx"));
+
+    SegmentArchive reopened = new SegmentArchive(root, 1 << 20);
+    assertThat(reopened.blockCount(TABLE), is(1));
+    // the chunk is archived again because it was not deleted from the database.
+    reopened.append(TABLE, "201910", chunk);
+
+    assertThat(new SegmentArchive(root, 1 << 20).find(TABLE, globalTxId).size(), is(2));
+  }
+
+  private TxEvent event(String globalTxId, String type, byte[] payloads) {
+    Date creationTime = new Date(System.currentTimeMillis() + nextId);
+    return new TxEvent(nextId++, "service", "instance", creationTime, globalTxId, uniquify("localTxId"), null, type,
+        "compensate", new Date(TxEvent.MAX_TIMESTAMP), "", 0, "category", payloads);
+  }
+
+  private List<String> types(List<TxEvent> events) {
+    return events.stream().map(TxEvent::type).collect(Collectors.toCollection(ArrayList::new));
+  }
+
+  private void appendGarbage(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 42, 7, 7, 7}));
+    }
+  }
+}
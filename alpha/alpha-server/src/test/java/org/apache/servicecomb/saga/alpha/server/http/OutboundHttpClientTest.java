@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.http;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.client.RestTemplate;
+
+public class OutboundHttpClientTest {
+  private final TxleMetrics txleMetrics = mock(TxleMetrics.class);
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+  private final OutboundHttpClient outboundHttpClient = new OutboundHttpClient(txleMetrics, 4, 60000, 16, 4, 1000, 1000);
+  private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+  private final AtomicInteger concurrentCalls = new AtomicInteger();
+  private final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+
+  private HttpServer server;
+  private String address;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(serverExecutor);
+    server.createContext("/echo", exchange -> {
+      clientPorts.add(exchange.getRemoteAddress().getPort());
+      byte[] body = ("echo " + exchange.getRequestMethod()).getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.createContext("/slow", exchange -> {
+      maxConcurrentCalls.accumulateAndGet(concurrentCalls.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      concurrentCalls.decrementAndGet();
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+    });
+    server.createContext("/broken", exchange -> {
+      exchange.sendResponseHeaders(500, -1);
+      exchange.close();
+    });
+    server.start();
+    address = "127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @After
+  public void tearDown() {
+    outboundHttpClient.shutdown();
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+  @Test
+  public void reusesPooledConnectionsForBlockingAndAsyncCalls() throws Exception {
+    RestTemplate restTemplate = new RestTemplate(outboundHttpClient.requestFactory());
+    for (int i = 0; i < 10; i++) {
+      assertThat(restTemplate.getForObject("http://" + address + "/echo", String.class), is("echo GET"));
+    }
+    for (int i = 0; i < 10; i++) {
+      assertThat(outboundHttpClient.postAsync("http://" + address + "/echo", MediaType.parse("text/plain"), new byte[] {1}).get(5, SECONDS),
+          is("echo POST"));
+    }
+
+    // sequential calls don't need more than one connection.
+    assertThat(clientPorts.size(), is(1));
+    verify(txleMetrics, times(20)).markOutboundRequest(eq(address), anyLong(), eq(false));
+  }
+
+  @Test
+  public void boundsConcurrentBlockingCallsOfDestination() throws Exception {
+    OutboundHttpClient limitedClient = new OutboundHttpClient(txleMetrics, 4, 60000, 16, 1, 2000, 2000);
+    RestTemplate restTemplate = new RestTemplate(limitedClient.requestFactory());
+    ExecutorService callers = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<?>> calls = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        calls.add(callers.submit(() -> restTemplate.getForObject("http://" + address + "/slow", String.class)));
+      }
+      for (Future<?> call : calls) {
+        call.get(5, SECONDS);
+      }
+    } finally {
+      callers.shutdownNow();
+      limitedClient.shutdown();
+    }
+
+    assertThat(maxConcurrentCalls.get(), is(1));
+  }
+
+  @Test
+  public void callsPlainHttpDestinationByHttp1() throws IOException {
+    try (Response response = outboundHttpClient.httpClient().newCall(new Request.Builder().url("http://" + address + "/echo").build()).execute()) {
+      assertThat(response.protocol(), is(Protocol.HTTP_1_1));
+    }
+  }
+
+  @Test
+  public void failsFutureAndCountsErrorOfDestination() throws InterruptedException {
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(outboundHttpClient.getAsync("http://" + address + "/broken"));
+    }
+    for (CompletableFuture<String> future : futures) {
+      try {
+        future.get(5, SECONDS);
+        fail("the call should fail on a non-2xx status");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause() instanceof IOException, is(true));
+      } catch (Exception e) {
+        fail(e.toString());
+      }
+    }
+
+    verify(txleMetrics, times(3)).markOutboundRequest(eq(address), anyLong(), eq(true));
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.kafka;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.apache.servicecomb.saga.alpha.core.kafka.KafkaMessageStatus;
+import org.apache.servicecomb.saga.alpha.server.InMemorySchemaDatabase;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class KafkaMessageClaimerTest {
+  @Rule
+  public final InMemorySchemaDatabase database = new InMemorySchemaDatabase("messages");
+
+  private final JDBCDataSource dataSource = database.dataSource();
+  private final String globalTxId = uniquify("globalTxId");
+  private final String anotherGlobalTxId = uniquify("globalTxId");
+
+  private KafkaMessageClaimer claimer;
+
+  @Before
+  public void setUp() {
+    claimer = new KafkaMessageClaimer(dataSource, 60000);
+  }
+
+  @Test
+  public void claimsEveryMessageByOneWorkerOnly() throws SQLException {
+    insertMessage(globalTxId, KafkaMessageStatus.INIT, null);
+    insertMessage(globalTxId, KafkaMessageStatus.INIT, null);
+    insertMessage(anotherGlobalTxId, KafkaMessageStatus.INIT, null);
+
+    assertThat(claimer.claim("worker-1", singletonList(globalTxId)), is(asList(1L, 2L)));
+    assertThat(claimer.claim("worker-2", asList(globalTxId, anotherGlobalTxId)), is(singletonList(3L)));
+    assertThat(claimer.claim("worker-3", asList(globalTxId, anotherGlobalTxId)).isEmpty(), is(true));
+
+    claimer.complete(asList(1L, 2L), KafkaMessageStatus.SUCCESSFUL);
+    assertThat(statusOf(1L), is(KafkaMessageStatus.SUCCESSFUL.toInteger()));
+    assertThat(statusOf(3L), is(KafkaMessageStatus.SENDING.toInteger()));
+  }
+
+  @Test
+  public void sweepsClaimableMessagesOfEndedGlobalTransactionsOnly() throws SQLException {
+    insertMessage(globalTxId, KafkaMessageStatus.INIT, null);
+    insertMessage(globalTxId, KafkaMessageStatus.SENDING, System.currentTimeMillis() - 1000);
+    insertMessage(globalTxId, KafkaMessageStatus.SENDING, System.currentTimeMillis() + 60000);
+    insertMessage(globalTxId, KafkaMessageStatus.SUCCESSFUL, null);
+    insertMessage(anotherGlobalTxId, KafkaMessageStatus.INIT, null);
+    insertEvent(globalTxId, "SagaEndedEvent");
+    insertEvent(anotherGlobalTxId, "SagaStartedEvent");
+
+    List<Object[]> rows = claimer.findClaimableOfEnded(0, 10);
+    assertThat(rows.size(), is(2));
+    assertThat(rows.get(0)[0], is(1L));
+    assertThat(rows.get(1)[0], is(2L));
+    TxEvent event = (TxEvent) rows.get(0)[1];
+    assertThat(event.globalTxId(), is(globalTxId));
+    assertThat(event.instanceId(), is("instance"));
+
+    assertThat(claimer.findClaimableOfEnded(1L, 10).size(), is(1));
+    assertThat(claimer.claim("worker-1", singletonList(globalTxId)), is(asList(1L, 2L)));
+    assertThat(claimer.findClaimableOfEnded(0, 10).isEmpty(), is(true));
+  }
+
+  @Test
+  public void neverSweepsDisabledMessagesAgain() throws SQLException {
+    insertMessage(globalTxId, KafkaMessageStatus.INIT, null);
+    insertEvent(globalTxId, "SagaEndedEvent");
+
+    claimer.complete(claimer.claim("worker-1", singletonList(globalTxId)), KafkaMessageStatus.DISABLED);
+
+    assertThat(statusOf(1L), is(KafkaMessageStatus.DISABLED.toInteger()));
+    assertThat(claimer.findClaimableOfEnded(0, 10).isEmpty(), is(true));
+  }
+
+  @Test
+  public void renewsLeaseOfMessagesStillClaimedByWorkerOnly() throws SQLException {
+    insertMessage(globalTxId, KafkaMessageStatus.INIT, null);
+    insertMessage(globalTxId, KafkaMessageStatus.INIT, null);
+    assertThat(claimer.claim("worker-1", singletonList(globalTxId)), is(asList(1L, 2L)));
+    claimer.complete(singletonList(2L), KafkaMessageStatus.SUCCESSFUL);
+
+    claimer = new KafkaMessageClaimer(dataSource, 600000);
+    assertThat(claimer.renew("worker-2", asList(1L, 2L)), is(0));
+    assertThat(claimer.renew("worker-1", asList(1L, 2L)), is(1));
+    assertThat(leaseExpiryOf(1L) > System.currentTimeMillis() + 300000, is(true));
+    assertThat(leaseExpiryOf(2L), is(0L));
+  }
+
+  private void insertMessage(String globalTxId, KafkaMessageStatus status, Long leaseExpiry) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("INSERT INTO Message (globaltxid, localtxid, status, leaseexpiry) VALUES (?, ?, ?, ?)")) {
+      statement.setString(1, globalTxId);
+      statement.setString(2, uniquify("localTxId"));
+      statement.setInt(3, status.toInteger());
+      statement.setTimestamp(4, leaseExpiry == null ? null : new Timestamp(leaseExpiry));
+      statement.executeUpdate();
+    }
+  }
+
+  private void insertEvent(String globalTxId, String type) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("INSERT INTO TxEvent (serviceName, instanceId, globalTxId, localTxId, type, "
+             + "compensationMethod, expiryTime) VALUES ('service', 'instance', ?, ?, ?, '', CURRENT_TIMESTAMP)")) {
+      statement.setString(1, globalTxId);
+      statement.setString(2, globalTxId);
+      statement.setString(3, type);
+      statement.executeUpdate();
+    }
+  }
+
+  private long leaseExpiryOf(long id) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("SELECT leaseexpiry FROM Message WHERE id = ?")) {
+      statement.setLong(1, id);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        Timestamp leaseExpiry = resultSet.getTimestamp(1);
+        return leaseExpiry == null ? 0 : leaseExpiry.getTime();
+      }
+    }
+  }
+
+  private int statusOf(long id) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("SELECT status FROM Message WHERE id = ?")) {
+      statement.setLong(1, id);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getInt(1);
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.alpha.server.restapi;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.alibaba.fastjson.JSONObject;
+import org.apache.servicecomb.saga.alpha.core.GlobalTxFilter;
+import org.apache.servicecomb.saga.alpha.core.TxEvent;
+import org.apache.servicecomb.saga.alpha.core.TxEventRepository;
+import org.apache.servicecomb.saga.alpha.core.TxPauseRegistry;
+import org.apache.servicecomb.saga.alpha.core.TxleMetrics;
+import org.apache.servicecomb.saga.alpha.core.cache.ITxleCache;
+import org.apache.servicecomb.saga.alpha.server.TableFieldRepository;
+import org.apache.servicecomb.saga.common.EventType;
+import org.apache.servicecomb.saga.common.ReturnValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class UIRestApiTest {
+  private final TxEventRepository eventRepository = mock(TxEventRepository.class);
+  private final TxPauseRegistry txPauseRegistry = new TxPauseRegistry(mock(TxEventRepository.class), "alpha:8090");
+  private final ITxleCache txleCache = mock(ITxleCache.class);
+  private final HttpServletRequest request = mock(HttpServletRequest.class);
+  private final UIRestApi uiRestApi = new UIRestApi(mock(TableFieldRepository.class), eventRepository);
+
+  private final TxEvent first = startedEvent(1L);
+  private final TxEvent second = startedEvent(2L);
+  private final TxEvent third = startedEvent(3L);
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(uiRestApi, "request", request);
+    ReflectionTestUtils.setField(uiRestApi, "txleMetrics", mock(TxleMetrics.class));
+    ReflectionTestUtils.setField(uiRestApi, "txleCache", txleCache);
+    ReflectionTestUtils.setField(uiRestApi, "txPauseRegistry", txPauseRegistry);
+    ReflectionTestUtils.setField(uiRestApi, "bulkOperationMaxSize", 2);
+    when(request.getRemoteAddr()).thenReturn("127.0.0.1");
+    when(request.getRemotePort()).thenReturn(8080);
+    // two pages of the max size, the second one is after the last global transaction of the first one.
+    when(eventRepository.selectSagaStartedEventsOfUnendedTx(any(GlobalTxFilter.class), eq(0L))).thenReturn(asList(first, second));
+    when(eventRepository.selectSagaStartedEventsOfUnendedTx(any(GlobalTxFilter.class), eq(2L))).thenReturn(singletonList(third));
+  }
+
+  @After
+  public void tearDown() {
+    txPauseRegistry.shutdown();
+  }
+
+  @Test
+  public void pausesAllMatchedGlobalTransactionsBeyondMaxSize() {
+    txPauseRegistry.pauseLocally(second.globalTxId(), 0);
+
+    ResponseEntity<ReturnValue> response = uiRestApi.pauseGlobalTransactionsInBulk(serviceFilter());
+
+    assertThat(response.getStatusCode(), is(HttpStatus.OK));
+    assertThat(response.getBody().getTotal(), is(2L));
+    assertThat(response.getBody().getData(), is(globalTxIdsOf(first, third)));
+    assertThat(txPauseRegistry.isPaused(first.globalTxId()) && txPauseRegistry.isPaused(third.globalTxId()), is(true));
+    verify(txleCache).putDistributedTxSuspendStatusCache(globalTxIdsOf(first), 60);
+    verify(txleCache).putDistributedTxSuspendStatusCache(globalTxIdsOf(third), 60);
+  }
+
+  @Test
+  public void recoversPausedGlobalTransactionsOnly() {
+    txPauseRegistry.pauseLocally(first.globalTxId(), 0);
+    txPauseRegistry.pauseLocally(third.globalTxId(), 0);
+
+    ResponseEntity<ReturnValue> response = uiRestApi.recoverGlobalTransactionsInBulk(serviceFilter());
+
+    assertThat(response.getBody().getData(), is(globalTxIdsOf(first, third)));
+    assertThat(txPauseRegistry.contains(first.globalTxId()) || txPauseRegistry.contains(third.globalTxId()), is(false));
+    verify(txleCache).removeDistributedTxSuspendStatusCache(globalTxIdsOf(first));
+    verify(txleCache).removeDistributedTxSuspendStatusCache(globalTxIdsOf(third));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void terminatesGlobalTransactionsByOneBatchPerPage() {
+    ResponseEntity<ReturnValue> response = uiRestApi.terminateGlobalTransactionsInBulk(serviceFilter());
+
+    assertThat(response.getBody().getTotal(), is(3L));
+    ArgumentCaptor<List<TxEvent>> batches = ArgumentCaptor.forClass((Class) List.class);
+    verify(eventRepository, times(2)).saveAll(batches.capture());
+    List<TxEvent> firstBatch = batches.getAllValues().get(0);
+    assertThat(firstBatch.size(), is(4));
+    assertThat(firstBatch.get(0).type(), is(EventType.TxAbortedEvent.name()));
+    assertThat(firstBatch.get(1).type(), is(EventType.SagaEndedEvent.name()));
+    assertThat(firstBatch.get(3).globalTxId(), is(second.globalTxId()));
+    assertThat(batches.getAllValues().get(1).size(), is(2));
+  }
+
+  @Test
+  public void rejectsRequestWithoutFilter() {
+    ResponseEntity<ReturnValue> response = uiRestApi.terminateGlobalTransactionsInBulk(new JSONObject());
+
+    assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+    verify(eventRepository, never()).selectSagaStartedEventsOfUnendedTx(any(GlobalTxFilter.class), anyLong());
+    verify(eventRepository, never()).saveAll(anyListOf(TxEvent.class));
+  }
+
+  @Test
+  public void operatesNothingIfNoneMatched() {
+    when(eventRepository.selectSagaStartedEventsOfUnendedTx(any(GlobalTxFilter.class), eq(0L))).thenReturn(emptyList());
+
+    ResponseEntity<ReturnValue> response = uiRestApi.pauseGlobalTransactionsInBulk(serviceFilter());
+
+    assertThat(response.getBody().getTotal(), is(0L));
+    verify(eventRepository, never()).selectSagaStartedEventsOfUnendedTx(any(GlobalTxFilter.class), eq(2L));
+  }
+
+  private JSONObject serviceFilter() {
+    JSONObject jsonParams = new JSONObject();
+    jsonParams.put("serviceName", "service");
+    jsonParams.put("pausePeriod", 60);
+    return jsonParams;
+  }
+
+  private static Set<String> globalTxIdsOf(TxEvent... events) {
+    Set<String> globalTxIds = new LinkedHashSet<>();
+    for (TxEvent event : events) {
+      globalTxIds.add(event.globalTxId());
+    }
+    return globalTxIds;
+  }
+
+  private static TxEvent startedEvent(long surrogateId) {
+    String globalTxId = uniquify("globalTxId");
+    return new TxEvent(surrogateId, "service", "instance", new Date(), globalTxId, globalTxId, null, EventType.SagaStartedEvent.name(), "",
+        new Date(TxEvent.MAX_TIMESTAMP), "", 0, "", null);
+  }
+}
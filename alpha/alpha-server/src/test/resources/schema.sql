@@ -26,8 +26,9 @@ CREATE TABLE IF NOT EXISTS TxEvent (
   type varchar(50) NOT NULL,
   compensationMethod varchar(256) NOT NULL,
   expiryTime TIMESTAMP NOT NULL,
-  retryMethod varchar(256) NOT NULL,
+  retryMethod varchar(256) DEFAULT NULL,
   retries int DEFAULT 0 NOT NULL,
+  category varchar(36),
   payloads blob
 );
 
@@ -43,7 +44,53 @@ CREATE TABLE IF NOT EXISTS Command (
   payloads blob,
   status varchar(12),
   lastModified TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
-  version bigint NOT NULL
+  version bigint NOT NULL,
+  category varchar(36),
+  workerId varchar(100) DEFAULT NULL,
+  leaseExpiry TIMESTAMP DEFAULT NULL,
+  attempts int DEFAULT 0 NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS ActiveGlobalTx (
+  globalTxId varchar(36) PRIMARY KEY,
+  status varchar(12) NOT NULL,
+  expiryTime TIMESTAMP NOT NULL,
+  minEventId bigint NOT NULL,
+  startedCount int DEFAULT 0 NOT NULL,
+  endedCount int DEFAULT 0 NOT NULL,
+  abortedCount int DEFAULT 0 NOT NULL,
+  compensatedCount int DEFAULT 0 NOT NULL,
+  creationTime TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  updateTime TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS GlobalTxSummary (
+  globalTxId varchar(36) PRIMARY KEY,
+  startEventId bigint DEFAULT 0 NOT NULL,
+  serviceName varchar(100) NOT NULL,
+  instanceId varchar(100) NOT NULL,
+  category varchar(36),
+  status int DEFAULT 0 NOT NULL,
+  startTime TIMESTAMP NOT NULL,
+  endTime TIMESTAMP,
+  expiryTime TIMESTAMP NOT NULL,
+  subTxCount int DEFAULT 0 NOT NULL,
+  subTxEndedCount int DEFAULT 0 NOT NULL,
+  subTxAbortedCount int DEFAULT 0 NOT NULL,
+  subTxCompensatedCount int DEFAULT 0 NOT NULL,
+  updateTime TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS DataTransferCheckpoint (
+  srcTable varchar(64) NOT NULL,
+  period varchar(20) NOT NULL,
+  startTime TIMESTAMP NOT NULL,
+  endTime TIMESTAMP NOT NULL,
+  lastEventId bigint DEFAULT 0 NOT NULL,
+  movedRows bigint DEFAULT 0 NOT NULL,
+  status varchar(12) NOT NULL,
+  updateTime TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  PRIMARY KEY (srcTable, period)
 );
 
 CREATE TABLE IF NOT EXISTS TxTimeout (
@@ -59,3 +106,37 @@ CREATE TABLE IF NOT EXISTS TxTimeout (
   status varchar(12),
   version bigint NOT NULL
 );
+
+CREATE TABLE IF NOT EXISTS Message (
+  id bigint GENERATED BY DEFAULT AS IDENTITY(START WITH 1, INCREMENT BY 1) PRIMARY KEY,
+  globaltxid varchar(36) NOT NULL,
+  localtxid varchar(36) NOT NULL,
+  status int DEFAULT 0 NOT NULL,
+  version int DEFAULT 1 NOT NULL,
+  dbdrivername varchar(100),
+  dburl varchar(150),
+  dbusername varchar(20),
+  tablename varchar(255),
+  operation varchar(20) DEFAULT 'update',
+  ids blob,
+  createtime TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  workerid varchar(100) DEFAULT NULL,
+  leaseexpiry TIMESTAMP DEFAULT NULL
+);
+
+CREATE TABLE IF NOT EXISTS Accident (
+  id bigint GENERATED BY DEFAULT AS IDENTITY(START WITH 1, INCREMENT BY 1) PRIMARY KEY,
+  servicename varchar(100),
+  instanceid varchar(100),
+  globaltxid varchar(36) NOT NULL,
+  localtxid varchar(36) NOT NULL,
+  type int DEFAULT 0 NOT NULL,
+  status int DEFAULT 0 NOT NULL,
+  bizinfo varchar(1000),
+  remark varchar(500),
+  createtime TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  completetime TIMESTAMP,
+  attempts int DEFAULT 0 NOT NULL,
+  nextattempttime TIMESTAMP DEFAULT NULL,
+  workerid varchar(100) DEFAULT NULL
+);
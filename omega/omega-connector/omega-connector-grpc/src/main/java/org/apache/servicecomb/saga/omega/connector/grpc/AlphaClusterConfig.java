@@ -30,18 +30,31 @@ public class AlphaClusterConfig {
 
   private String certChain;
 
+  private boolean enableStream;
+
   public AlphaClusterConfig(List<String> addresses,
       boolean enableSSL,
       boolean enableMutualAuth,
       String cert,
       String key,
       String certChain) {
+    this(addresses, enableSSL, enableMutualAuth, cert, key, certChain, false);
+  }
+
+  public AlphaClusterConfig(List<String> addresses,
+      boolean enableSSL,
+      boolean enableMutualAuth,
+      String cert,
+      String key,
+      String certChain,
+      boolean enableStream) {
     this.addresses = addresses;
     this.enableMutualAuth = enableMutualAuth;
     this.enableSSL = enableSSL;
     this.cert = cert;
     this.key = key;
     this.certChain = certChain;
+    this.enableStream = enableStream;
   }
 
   public List<String> getAddresses() {
@@ -67,4 +80,8 @@ public class AlphaClusterConfig {
   public String getCertChain() {
     return certChain;
   }
+
+  public boolean isEnableStream() {
+    return enableStream;
+  }
 }
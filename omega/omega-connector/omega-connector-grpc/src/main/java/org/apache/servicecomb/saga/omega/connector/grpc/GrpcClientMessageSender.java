@@ -39,6 +39,11 @@ import org.slf4j.LoggerFactory;
 import java.lang.invoke.MethodHandles;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class GrpcClientMessageSender implements MessageSender {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -51,6 +56,8 @@ public class GrpcClientMessageSender implements MessageSender {
   private final TxEventServiceBlockingStub blockingEventService;
 
   private final GrpcCompensateStreamObserver compensateStreamObserver;
+  private final GrpcPauseControlStreamObserver pauseControlStreamObserver;
+  private final long pauseCheckIntervalMillis;
   private final GrpcServiceConfig serviceConfig;
 
   public GrpcClientMessageSender(
@@ -61,6 +68,19 @@ public class GrpcClientMessageSender implements MessageSender {
       ServiceConfig serviceConfig,
       ErrorHandlerFactory errorHandlerFactory,
       MessageHandler handler) {
+    this(address, channel, serializer, deserializer, serviceConfig, errorHandlerFactory, handler,
+        TxleStaticConfig.getIntegerConfig("txle.transaction.pause-check-interval", 60) * 1000L);
+  }
+
+  GrpcClientMessageSender(
+      String address,
+      ManagedChannel channel,
+      MessageSerializer serializer,
+      MessageDeserializer deserializer,
+      ServiceConfig serviceConfig,
+      ErrorHandlerFactory errorHandlerFactory,
+      MessageHandler handler,
+      long pauseCheckIntervalMillis) {
     this.target = address;
     this.asyncEventService = TxEventServiceGrpc.newStub(channel);
     //.withDeadlineAfter(20, TimeUnit.SECONDS);
@@ -70,12 +90,15 @@ public class GrpcClientMessageSender implements MessageSender {
 
     this.compensateStreamObserver =
         new GrpcCompensateStreamObserver(handler, errorHandlerFactory.getHandler(this), deserializer);
+    this.pauseControlStreamObserver = new GrpcPauseControlStreamObserver(address, pauseCheckIntervalMillis);
+    this.pauseCheckIntervalMillis = pauseCheckIntervalMillis;
     this.serviceConfig = serviceConfig(serviceConfig.serviceName(), serviceConfig.instanceId(), "");
   }
 
   @Override
   public void onConnected() {
     asyncEventService.onConnected(serviceConfig, compensateStreamObserver);
+    asyncEventService.onPauseControl(serviceConfig, pauseControlStreamObserver);
   }
 
   @Override
@@ -106,17 +129,11 @@ public class GrpcClientMessageSender implements MessageSender {
     }
 
 //    blockingEventService.withDeadlineAfter(5, TimeUnit.SECONDS);// TODO set timeout for current communication
-    GrpcAck grpcAck = blockingEventService.onTxEvent(convertEvent(event));
-    // It's a manual operation to pause transaction, so it can accept to pause for one minute.
+    GrpcTxEvent grpcEvent = convertEvent(event);
+    GrpcAck grpcAck = sendUntilAdmitted(grpcEvent);
+    // It's a manual operation to pause transaction, alpha holds the paused event and pushes its ack once it's resumed.
     while (grpcAck.getPaused()) {
-      try {
-        Thread.sleep(TxleStaticConfig.getIntegerConfig("txle.transaction.pause-check-interval", 60) * 1000);
-      } catch (InterruptedException e) {
-      }
-      grpcAck = blockingEventService.onTxEvent(convertEvent(event));
-      if (!grpcAck.getPaused()) {
-        break;
-      }
+      grpcAck = awaitResumed(grpcEvent);
     }
 
     // To append the pause status for global transaction By Gannalyo
@@ -129,7 +146,7 @@ public class GrpcClientMessageSender implements MessageSender {
 
     Builder builder = GrpcTxEvent.newBuilder().setCategory(TxleConstants.SPECIAL_KEY).setPayloads(payloads);
     GrpcTxEvent grpcTxEvent = builder.build();
-    blockingEventService.onTxEvent(grpcTxEvent);
+    onTxEvent(grpcTxEvent);
 
     Object[] deserializerPayloads = deserializer.deserialize(grpcTxEvent.getPayloads().toByteArray());
     if (deserializerPayloads != null && deserializerPayloads.length > 0) {
@@ -142,6 +159,56 @@ public class GrpcClientMessageSender implements MessageSender {
     return null;
   }
 
+  // Parks the current thread until alpha pushes the ack of the paused event. The event is sent again only if no ack came within
+  // the pause-check-interval or the control stream was broken, e.g. alpha was restarted and lost the paused events.
+  private GrpcAck awaitResumed(GrpcTxEvent grpcEvent) {
+    CompletableFuture<GrpcAck> resumed = pauseControlStreamObserver.park(grpcEvent);
+    try {
+      return resumed.get(pauseCheckIntervalMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException | ExecutionException e) {
+      LOG.warn("No resumption of global transaction [{}] was pushed by alpha {}, sending its event again.", grpcEvent.getGlobalTxId(), target);
+    } catch (InterruptedException e) {
+      pauseControlStreamObserver.unpark(grpcEvent);
+      Thread.currentThread().interrupt();
+      throw new OmegaException("Interrupted while waiting for the resumption of global transaction [" + grpcEvent.getGlobalTxId() + "].", e);
+    }
+    pauseControlStreamObserver.unpark(grpcEvent);
+    return sendUntilAdmitted(grpcEvent);
+  }
+
+  // Sends the event again after the delay given by alpha as long as it's rejected by the admission control of alpha, with a
+  // random jitter so that the rejected threads don't come back at the same time. It's not retried on another alpha node,
+  // because the rejection is the limit of its service rather than a failure of the node.
+  private GrpcAck sendUntilAdmitted(GrpcTxEvent grpcEvent) {
+    GrpcAck grpcAck = onTxEvent(grpcEvent);
+    long deadline = System.currentTimeMillis() + throttleMaxWaitMillis();
+    while (grpcAck.getThrottled()) {
+      long remainingMillis = deadline - System.currentTimeMillis();
+      if (remainingMillis <= 0) {
+        throw new OmegaException("Event [" + grpcEvent.getType() + "] of global transaction [" + grpcEvent.getGlobalTxId()
+            + "] was rejected by the admission control of alpha " + target + " for too long.");
+      }
+      long retryAfterMillis = Math.max(1, grpcAck.getRetryAfterMillis());
+      try {
+        Thread.sleep(Math.min(remainingMillis, retryAfterMillis + ThreadLocalRandom.current().nextLong(retryAfterMillis)));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new OmegaException("Interrupted while waiting for the admission of global transaction [" + grpcEvent.getGlobalTxId() + "].", e);
+      }
+      grpcAck = onTxEvent(grpcEvent);
+    }
+    return grpcAck;
+  }
+
+  private static long throttleMaxWaitMillis() {
+    return TxleStaticConfig.getIntegerConfig("txle.transaction.throttle-max-wait", 60) * 1000L;
+  }
+
+  // Transports the event to alpha and waits for its ack, subclasses could override it to use another kind of call.
+  protected GrpcAck onTxEvent(GrpcTxEvent event) {
+    return blockingEventService.onTxEvent(event);
+  }
+
   @Override
   public String reportMessageToServer(KafkaMessage message) {
     GrpcMessage grpcMessage = GrpcMessage.newBuilder()
@@ -175,6 +242,21 @@ public class GrpcClientMessageSender implements MessageSender {
     return blockingEventService.onAccident(grpcAccident).getStatus() + "";
   }
 
+  @Override
+  public void reportCompensationResult(CompensationResult result) {
+    GrpcCompensateResult grpcResult = GrpcCompensateResult.newBuilder()
+            .setGlobalTxId(result.globalTxId())
+            .setLocalTxId(result.localTxId())
+            .setParentTxId(result.parentTxId() == null ? "" : result.parentTxId())
+            .setServiceName(serviceConfig.getServiceName())
+            .setInstanceId(serviceConfig.getInstanceId())
+            .setSucceeded(result.succeeded())
+            .setError(result.error() == null ? "" : result.error())
+            .setDurationMillis(result.durationMillis())
+            .build();
+    blockingEventService.onCompensated(grpcResult);
+  }
+
   @Override
   public GrpcConfigAck readConfigFromServer(int type, String category) {
     if (category == null) {
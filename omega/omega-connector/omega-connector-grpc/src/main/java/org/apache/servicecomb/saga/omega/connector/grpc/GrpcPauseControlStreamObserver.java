@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.omega.connector.grpc;
+
+import io.grpc.stub.StreamObserver;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEvent;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxResumed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Receives the acks which alpha pushes once the paused global transactions are resumed.
+ *
+ * The threads whose events were paused are parked on futures keyed by globalTxId, alpha holds their events and handles
+ * them again when resuming, so nothing is sent again and the threads go on as soon as the acks arrive. An ack which
+ * arrives before its thread is parked is kept for a while, in case alpha was resumed right after replying the pause, and
+ * the expired ones are dropped whenever a thread is parked or unparked or another ack arrives.
+ *
+ * @since 2019/10/18
+ */
+class GrpcPauseControlStreamObserver implements StreamObserver<GrpcTxResumed> {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final String target;
+  private final long earlyAckTtlMillis;
+  // globalTxId -> localTxId and type -> the parked thread
+  private final Map<String, Map<String, CompletableFuture<GrpcAck>>> waiters = new ConcurrentHashMap<>();
+  // the acks which arrived before their threads were parked, localTxId and type -> ack
+  private final Map<String, EarlyAck> earlyAcks = new ConcurrentHashMap<>();
+
+  GrpcPauseControlStreamObserver(String target, long earlyAckTtlMillis) {
+    this.target = target;
+    this.earlyAckTtlMillis = earlyAckTtlMillis;
+  }
+
+  /**
+   * @return the future completed by the ack of the given paused event, it fails if the control stream is broken.
+   */
+  CompletableFuture<GrpcAck> park(GrpcTxEvent event) {
+    pruneEarlyAcks(System.currentTimeMillis());
+    String key = keyOf(event.getLocalTxId(), event.getType());
+    CompletableFuture<GrpcAck> ackFuture = new CompletableFuture<>();
+    waiters.compute(event.getGlobalTxId(), (globalTxId, futures) -> {
+      Map<String, CompletableFuture<GrpcAck>> parked = futures == null ? new ConcurrentHashMap<>() : futures;
+      parked.put(key, ackFuture);
+      return parked;
+    });
+    EarlyAck earlyAck = earlyAcks.remove(key);
+    if (earlyAck != null) {
+      complete(event.getGlobalTxId(), key, earlyAck.ack);
+    }
+    return ackFuture;
+  }
+
+  /**
+   * Forgets the parked thread, e.g. it stopped waiting and sent the event again.
+   */
+  void unpark(GrpcTxEvent event) {
+    pruneEarlyAcks(System.currentTimeMillis());
+    waiters.computeIfPresent(event.getGlobalTxId(), (globalTxId, futures) -> {
+      futures.remove(keyOf(event.getLocalTxId(), event.getType()));
+      return futures.isEmpty() ? null : futures;
+    });
+  }
+
+  @Override
+  public void onNext(GrpcTxResumed resumed) {
+    String key = keyOf(resumed.getLocalTxId(), resumed.getType());
+    if (!complete(resumed.getGlobalTxId(), key, resumed.getAck())) {
+      long now = System.currentTimeMillis();
+      pruneEarlyAcks(now);
+      EarlyAck earlyAck = new EarlyAck(resumed.getAck(), now);
+      earlyAcks.put(key, earlyAck);
+      // the thread could have been parked meanwhile without seeing the early ack.
+      if (isParked(resumed.getGlobalTxId(), key) && earlyAcks.remove(key, earlyAck)) {
+        complete(resumed.getGlobalTxId(), key, earlyAck.ack);
+      }
+    }
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    LOG.warn("Pause control stream to alpha {} was broken, the paused events will be sent again.", target, t);
+    failAll(t);
+  }
+
+  @Override
+  public void onCompleted() {
+    failAll(new IllegalStateException("Pause control stream to alpha " + target + " was completed by server."));
+  }
+
+  int earlyAckCount() {
+    return earlyAcks.size();
+  }
+
+  private void pruneEarlyAcks(long now) {
+    earlyAcks.values().removeIf(earlyAck -> earlyAck.receivedAt + earlyAckTtlMillis < now);
+  }
+
+  private boolean isParked(String globalTxId, String key) {
+    Map<String, CompletableFuture<GrpcAck>> futures = waiters.get(globalTxId);
+    return futures != null && futures.containsKey(key);
+  }
+
+  private boolean complete(String globalTxId, String key, GrpcAck ack) {
+    AtomicReference<CompletableFuture<GrpcAck>> parked = new AtomicReference<>();
+    waiters.computeIfPresent(globalTxId, (id, futures) -> {
+      parked.set(futures.remove(key));
+      return futures.isEmpty() ? null : futures;
+    });
+    return parked.get() != null && parked.get().complete(ack);
+  }
+
+  private void failAll(Throwable t) {
+    for (String globalTxId : waiters.keySet()) {
+      Map<String, CompletableFuture<GrpcAck>> futures = waiters.remove(globalTxId);
+      if (futures != null) {
+        futures.values().forEach(future -> future.completeExceptionally(t));
+      }
+    }
+  }
+
+  private static String keyOf(String localTxId, String type) {
+    return localTxId + ":" + type;
+  }
+
+  private static final class EarlyAck {
+    private final GrpcAck ack;
+    private final long receivedAt;
+
+    EarlyAck(GrpcAck ack, long receivedAt) {
+      this.ack = ack;
+      this.receivedAt = receivedAt;
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ *  Copyright (c) 2018-2019 ActionTech.
+ *  License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.omega.connector.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
+import org.apache.servicecomb.saga.omega.connector.grpc.LoadBalancedClusterMessageSender.ErrorHandlerFactory;
+import org.apache.servicecomb.saga.omega.context.ServiceConfig;
+import org.apache.servicecomb.saga.omega.context.TxleStaticConfig;
+import org.apache.servicecomb.saga.omega.transaction.MessageDeserializer;
+import org.apache.servicecomb.saga.omega.transaction.MessageHandler;
+import org.apache.servicecomb.saga.omega.transaction.MessageSerializer;
+import org.apache.servicecomb.saga.omega.transaction.OmegaException;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcCorrelatedAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEvent;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEventAcks;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEventRequest;
+import org.apache.servicecomb.saga.pack.contract.grpc.TxEventServiceGrpc;
+import org.apache.servicecomb.saga.pack.contract.grpc.TxEventServiceGrpc.TxEventServiceStub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends TxEvents over one long-lived bidirectional stream per alpha node instead of one unary call per event.
+ *
+ * Every request carries a correlation id, and the caller is parked on a future until alpha's batched acks bring back
+ * the ack with the same id. If the stream breaks, all of the callers waiting on it fail at once so that the cluster
+ * sender could retry them on another alpha node, and the next event opens a new stream. A caller whose ack does not come
+ * back within 'txle.transaction.stream-ack-timeout' seconds fails by itself, e.g. the ack was lost by a stuck alpha.
+ */
+public class GrpcStreamingClientMessageSender extends GrpcClientMessageSender {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final TxEventServiceStub streamEventService;
+  private final AtomicLong correlationId = new AtomicLong();
+  private final long ackTimeoutMillis;
+  private volatile TxEventStream stream;
+
+  public GrpcStreamingClientMessageSender(
+      String address,
+      ManagedChannel channel,
+      MessageSerializer serializer,
+      MessageDeserializer deserializer,
+      ServiceConfig serviceConfig,
+      ErrorHandlerFactory errorHandlerFactory,
+      MessageHandler handler) {
+    this(address, channel, serializer, deserializer, serviceConfig, errorHandlerFactory, handler,
+        TxleStaticConfig.getIntegerConfig("txle.transaction.stream-ack-timeout", 30) * 1000L);
+  }
+
+  GrpcStreamingClientMessageSender(
+      String address,
+      ManagedChannel channel,
+      MessageSerializer serializer,
+      MessageDeserializer deserializer,
+      ServiceConfig serviceConfig,
+      ErrorHandlerFactory errorHandlerFactory,
+      MessageHandler handler,
+      long ackTimeoutMillis) {
+    super(address, channel, serializer, deserializer, serviceConfig, errorHandlerFactory, handler);
+    this.streamEventService = TxEventServiceGrpc.newStub(channel);
+    this.ackTimeoutMillis = ackTimeoutMillis;
+  }
+
+  @Override
+  public void onDisconnected() {
+    closeStream();
+    super.onDisconnected();
+  }
+
+  @Override
+  public void close() {
+    closeStream();
+    super.close();
+  }
+
+  @Override
+  protected GrpcAck onTxEvent(GrpcTxEvent event) {
+    long id = correlationId.incrementAndGet();
+    TxEventStream currentStream = currentStream();
+    CompletableFuture<GrpcAck> ackFuture = currentStream.send(id, event);
+    try {
+      return ackFuture.get(ackTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      currentStream.pendingAcks.remove(id);
+      throw new OmegaException("No ack of TxEvent came back from alpha " + target() + " within " + ackTimeoutMillis + " ms.", e);
+    } catch (InterruptedException e) {
+      currentStream.pendingAcks.remove(id);
+      Thread.currentThread().interrupt();
+      throw new OmegaException("Interrupted while waiting for the ack of TxEvent from alpha " + target(), e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Failed to send TxEvent to alpha " + target(), cause);
+    }
+  }
+
+  private TxEventStream currentStream() {
+    TxEventStream currentStream = stream;
+    if (currentStream == null || currentStream.isBroken()) {
+      synchronized (this) {
+        currentStream = stream;
+        if (currentStream == null || currentStream.isBroken()) {
+          currentStream = new TxEventStream();
+          currentStream.requestObserver = streamEventService.onTxEventStream(currentStream);
+          stream = currentStream;
+        }
+      }
+    }
+    return currentStream;
+  }
+
+  private void closeStream() {
+    TxEventStream currentStream;
+    synchronized (this) {
+      currentStream = stream;
+      stream = null;
+    }
+    if (currentStream != null) {
+      currentStream.halfClose();
+    }
+  }
+
+  private final class TxEventStream implements StreamObserver<GrpcTxEventAcks> {
+    private final Map<Long, CompletableFuture<GrpcAck>> pendingAcks = new ConcurrentHashMap<>();
+    private volatile StreamObserver<GrpcTxEventRequest> requestObserver;
+    private volatile Throwable failure;
+
+    CompletableFuture<GrpcAck> send(long id, GrpcTxEvent event) {
+      CompletableFuture<GrpcAck> ackFuture = new CompletableFuture<>();
+      pendingAcks.put(id, ackFuture);
+      // StreamObserver is not thread-safe, so the requests of all of threads should be written one by one.
+      synchronized (this) {
+        if (failure != null) {
+          pendingAcks.remove(id);
+          ackFuture.completeExceptionally(failure);
+          return ackFuture;
+        }
+        try {
+          requestObserver.onNext(GrpcTxEventRequest.newBuilder().setCorrelationId(id).setEvent(event).build());
+        } catch (RuntimeException e) {
+          fail(e);
+        }
+      }
+      return ackFuture;
+    }
+
+    boolean isBroken() {
+      return failure != null;
+    }
+
+    void halfClose() {
+      synchronized (this) {
+        if (failure == null) {
+          try {
+            requestObserver.onCompleted();
+          } catch (RuntimeException e) {
+            LOG.warn("Failed to close TxEvent stream to alpha {}.", target(), e);
+          }
+        }
+      }
+    }
+
+    @Override
+    public void onNext(GrpcTxEventAcks acks) {
+      for (GrpcCorrelatedAck correlatedAck : acks.getAcksList()) {
+        CompletableFuture<GrpcAck> ackFuture = pendingAcks.remove(correlatedAck.getCorrelationId());
+        if (ackFuture != null) {
+          ackFuture.complete(correlatedAck.getAck());
+        }
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      LOG.error("TxEvent stream to alpha {} was broken.", target(), t);
+      fail(t);
+    }
+
+    @Override
+    public void onCompleted() {
+      fail(new IllegalStateException("TxEvent stream to alpha " + target() + " was completed by server."));
+    }
+
+    private void fail(Throwable t) {
+      failure = t;
+      for (Long id : pendingAcks.keySet()) {
+        CompletableFuture<GrpcAck> ackFuture = pendingAcks.remove(id);
+        if (ackFuture != null) {
+          ackFuture.completeExceptionally(t);
+        }
+      }
+    }
+  }
+}
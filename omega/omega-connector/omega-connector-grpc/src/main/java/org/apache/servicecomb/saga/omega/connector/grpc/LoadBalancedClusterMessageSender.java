@@ -100,16 +100,27 @@ public class LoadBalancedClusterMessageSender implements MessageSender {
             .build();
       }
       channels.add(channel);
-      senders.put(
-          new GrpcClientMessageSender(
-              address,
-              channel,
-              serializer,
-              deserializer,
-              serviceConfig,
-              new ErrorHandlerFactory(),
-              handler),
-          0L);
+      MessageSender sender;
+      if (clusterConfig.isEnableStream()) {
+        sender = new GrpcStreamingClientMessageSender(
+            address,
+            channel,
+            serializer,
+            deserializer,
+            serviceConfig,
+            new ErrorHandlerFactory(),
+            handler);
+      } else {
+        sender = new GrpcClientMessageSender(
+            address,
+            channel,
+            serializer,
+            deserializer,
+            serviceConfig,
+            new ErrorHandlerFactory(),
+            handler);
+      }
+      senders.put(sender, 0L);
     }
 
     scheduleReconnectTask(reconnectDelay);
@@ -178,6 +189,11 @@ public class LoadBalancedClusterMessageSender implements MessageSender {
     return (String) send("reportAccidentToServer", accidentHandling);
   }
 
+  @Override
+  public void reportCompensationResult(CompensationResult result) {
+    send("reportCompensationResult", result);
+  }
+
   @Override
   public GrpcConfigAck readConfigFromServer(int type, String category) {
     return (GrpcConfigAck) send("readConfigFromServer", type, category);
@@ -205,6 +221,9 @@ public class LoadBalancedClusterMessageSender implements MessageSender {
         } else if ("reportAccidentToServer".equals(method)) {
           errMsg = "report accident " + args[0];
           returnObject = messageSender.reportAccidentToServer((AccidentHandling) args[0]);
+        } else if ("reportCompensationResult".equals(method)) {
+          errMsg = "report compensation result " + args[0];
+          messageSender.reportCompensationResult((CompensationResult) args[0]);
         }
         senders.put(messageSender, System.nanoTime() - startTime);
         return returnObject;
@@ -92,6 +92,15 @@ public class RetryableMessageSender implements MessageSender {
     }
   }
 
+  @Override
+  public void reportCompensationResult(CompensationResult result) {
+    try {
+      availableMessageSenders.take().reportCompensationResult(result);
+    } catch (InterruptedException e) {
+      throw new OmegaException("Failed to report compensation result " + result + " due to interruption", e);
+    }
+  }
+
   @Override
   public GrpcConfigAck readConfigFromServer(int type, String category) {
     try {
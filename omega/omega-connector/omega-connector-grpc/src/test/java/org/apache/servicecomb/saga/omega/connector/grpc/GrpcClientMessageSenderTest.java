@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.omega.connector.grpc;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.servicecomb.saga.common.EventType;
+import org.apache.servicecomb.saga.omega.connector.grpc.LoadBalancedClusterMessageSender.ErrorHandlerFactory;
+import org.apache.servicecomb.saga.omega.context.ServiceConfig;
+import org.apache.servicecomb.saga.omega.transaction.AlphaResponse;
+import org.apache.servicecomb.saga.omega.transaction.MessageDeserializer;
+import org.apache.servicecomb.saga.omega.transaction.MessageHandler;
+import org.apache.servicecomb.saga.omega.transaction.MessageSerializer;
+import org.apache.servicecomb.saga.omega.transaction.OmegaException;
+import org.apache.servicecomb.saga.omega.transaction.TxEvent;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcCompensateCommand;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcServiceConfig;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEvent;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxResumed;
+import org.apache.servicecomb.saga.pack.contract.grpc.TxEventServiceGrpc.TxEventServiceImplBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+public class GrpcClientMessageSenderTest {
+  private final String serverName = uniquify("alpha");
+  private final String globalTxId = uniquify("globalTxId");
+  private final String localTxId = uniquify("localTxId");
+  private final AtomicInteger receivedEvents = new AtomicInteger();
+  private final MessageSerializer serializer = mock(MessageSerializer.class);
+
+  private volatile StreamObserver<GrpcTxResumed> pauseControl;
+  private Server server;
+  private ManagedChannel channel;
+
+  @Before
+  public void setUp() throws Exception {
+    server = InProcessServerBuilder.forName(serverName).addService(new PausingEventService()).build().start();
+    channel = InProcessChannelBuilder.forName(serverName).build();
+    when(serializer.serialize(any(Object[].class))).thenReturn(new byte[0]);
+  }
+
+  @After
+  public void tearDown() {
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+
+  @Test
+  public void parksPausedEventUntilAlphaPushesItsAck() throws Exception {
+    GrpcClientMessageSender messageSender = connectedSender(5000);
+
+    CompletableFuture<AlphaResponse> response = sendAsync(messageSender);
+    await().atMost(2, TimeUnit.SECONDS).until(() -> receivedEvents.get() == 1);
+    Thread.sleep(200);
+    assertThat(response.isDone(), is(false));
+
+    pauseControl.onNext(GrpcTxResumed.newBuilder()
+        .setGlobalTxId(globalTxId)
+        .setLocalTxId(localTxId)
+        .setType(EventType.TxStartedEvent.name())
+        .setAck(GrpcAck.newBuilder().setAborted(true))
+        .build());
+
+    assertThat(response.get(2, TimeUnit.SECONDS).aborted(), is(true));
+    // the event is held by alpha, it's never sent again.
+    assertThat(receivedEvents.get(), is(1));
+  }
+
+  @Test
+  public void sendsEventAgainIfNoAckIsPushedWithinPauseCheckInterval() throws Exception {
+    GrpcClientMessageSender messageSender = connectedSender(300);
+
+    AlphaResponse response = sendAsync(messageSender).get(2, TimeUnit.SECONDS);
+
+    assertThat(response.paused(), is(false));
+    assertThat(receivedEvents.get(), is(2));
+  }
+
+  @Test
+  public void sendsEventAgainAtOnceIfPauseControlStreamIsBroken() throws Exception {
+    GrpcClientMessageSender messageSender = connectedSender(60000);
+
+    CompletableFuture<AlphaResponse> response = sendAsync(messageSender);
+    await().atMost(2, TimeUnit.SECONDS).until(() -> receivedEvents.get() == 1);
+    Thread.sleep(200);
+    pauseControl.onError(new IllegalStateException("alpha is restarting"));
+
+    assertThat(response.get(2, TimeUnit.SECONDS).paused(), is(false));
+    assertThat(receivedEvents.get(), is(2));
+  }
+
+  @Test
+  public void stopsWaitingForResumptionOnceInterrupted() throws Exception {
+    GrpcClientMessageSender messageSender = connectedSender(60000);
+    AtomicReference<OmegaException> failure = new AtomicReference<>();
+    AtomicBoolean interruptKept = new AtomicBoolean();
+
+    Thread sender = new Thread(() -> {
+      try {
+        messageSender.send(new TxEvent(EventType.TxStartedEvent, globalTxId, localTxId, globalTxId, "compensate", 0, "", 0, ""));
+      } catch (OmegaException e) {
+        failure.set(e);
+        interruptKept.set(Thread.currentThread().isInterrupted());
+      }
+    });
+    sender.start();
+    await().atMost(2, TimeUnit.SECONDS).until(() -> receivedEvents.get() == 1);
+    Thread.sleep(200);
+    sender.interrupt();
+    sender.join(2000);
+
+    assertThat(failure.get(), is(notNullValue()));
+    assertThat(interruptKept.get(), is(true));
+    // the interrupted thread gives up rather than sending the event again.
+    assertThat(receivedEvents.get(), is(1));
+  }
+
+  private GrpcClientMessageSender connectedSender(long pauseCheckIntervalMillis) {
+    GrpcClientMessageSender messageSender = new GrpcClientMessageSender(
+        serverName,
+        channel,
+        serializer,
+        mock(MessageDeserializer.class),
+        new ServiceConfig(uniquify("serviceName")),
+        mock(ErrorHandlerFactory.class),
+        mock(MessageHandler.class),
+        pauseCheckIntervalMillis);
+    messageSender.onConnected();
+    await().atMost(2, TimeUnit.SECONDS).until(() -> pauseControl != null);
+    return messageSender;
+  }
+
+  private CompletableFuture<AlphaResponse> sendAsync(GrpcClientMessageSender messageSender) {
+    TxEvent event = new TxEvent(EventType.TxStartedEvent, globalTxId, localTxId, globalTxId, "compensate", 0, "", 0, "");
+    return CompletableFuture.supplyAsync(() -> messageSender.send(event));
+  }
+
+  // pauses the first event, then acks the following ones.
+  private class PausingEventService extends TxEventServiceImplBase {
+    @Override
+    public void onConnected(GrpcServiceConfig request, StreamObserver<GrpcCompensateCommand> responseObserver) {
+    }
+
+    @Override
+    public void onPauseControl(GrpcServiceConfig request, StreamObserver<GrpcTxResumed> responseObserver) {
+      pauseControl = responseObserver;
+    }
+
+    @Override
+    public void onTxEvent(GrpcTxEvent request, StreamObserver<GrpcAck> responseObserver) {
+      boolean paused = receivedEvents.incrementAndGet() == 1;
+      responseObserver.onNext(GrpcAck.newBuilder().setPaused(paused).build());
+      responseObserver.onCompleted();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2018-2019 ActionTech.
+ * License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.omega.connector.grpc;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.servicecomb.saga.common.EventType;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEvent;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxResumed;
+import org.junit.Test;
+
+public class GrpcPauseControlStreamObserverTest {
+  private final GrpcPauseControlStreamObserver observer = new GrpcPauseControlStreamObserver("alpha", 200);
+  private final String globalTxId = uniquify("globalTxId");
+  private final GrpcTxEvent event = event(uniquify("localTxId"));
+  private final GrpcAck abortedAck = GrpcAck.newBuilder().setAborted(true).build();
+
+  @Test
+  public void completesParkedThreadByPushedAck() throws Exception {
+    CompletableFuture<GrpcAck> parked = observer.park(event);
+    assertThat(parked.isDone(), is(false));
+
+    // the ack of another event of the same global transaction is kept rather than completing this one.
+    GrpcTxEvent anotherEvent = event(uniquify("localTxId"));
+    observer.onNext(resumed(anotherEvent, GrpcAck.getDefaultInstance()));
+    assertThat(parked.isDone(), is(false));
+
+    observer.onNext(resumed(event, abortedAck));
+    assertThat(parked.get(), is(abortedAck));
+    assertThat(observer.park(anotherEvent).isDone(), is(true));
+  }
+
+  @Test
+  public void completesThreadParkedAfterItsAckArrived() throws Exception {
+    observer.onNext(resumed(event, abortedAck));
+    assertThat(observer.earlyAckCount(), is(1));
+
+    assertThat(observer.park(event).get(), is(abortedAck));
+    assertThat(observer.earlyAckCount(), is(0));
+  }
+
+  @Test
+  public void dropsExpiredEarlyAcksWithoutAnyOtherAck() throws Exception {
+    observer.onNext(resumed(event, abortedAck));
+
+    Thread.sleep(300);
+    // the early ack is dropped by parking another thread, no ack has to arrive for it.
+    GrpcTxEvent anotherEvent = event(uniquify("localTxId"));
+    observer.park(anotherEvent);
+    assertThat(observer.earlyAckCount(), is(0));
+    observer.unpark(anotherEvent);
+
+    assertThat(observer.park(event).isDone(), is(false));
+  }
+
+  @Test
+  public void forgetsUnparkedThread() {
+    CompletableFuture<GrpcAck> parked = observer.park(event);
+    observer.unpark(event);
+
+    observer.onNext(resumed(event, abortedAck));
+
+    assertThat(parked.isDone(), is(false));
+    assertThat(observer.earlyAckCount(), is(1));
+  }
+
+  @Test
+  public void failsParkedThreadsOnceStreamIsBroken() throws Exception {
+    CompletableFuture<GrpcAck> parked = observer.park(event);
+    CompletableFuture<GrpcAck> anotherParked = observer.park(event(uniquify("localTxId")));
+
+    observer.onError(new IllegalStateException("broken"));
+
+    for (CompletableFuture<GrpcAck> future : new CompletableFuture[] {parked, anotherParked}) {
+      try {
+        future.get();
+        fail("ExecutionException is expected");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause().getMessage(), is("broken"));
+      }
+    }
+  }
+
+  @Test
+  public void failsParkedThreadsOnceStreamIsCompletedByServer() {
+    CompletableFuture<GrpcAck> parked = observer.park(event);
+
+    observer.onCompleted();
+
+    assertThat(parked.isCompletedExceptionally(), is(true));
+  }
+
+  private GrpcTxEvent event(String localTxId) {
+    return GrpcTxEvent.newBuilder()
+        .setGlobalTxId(globalTxId)
+        .setLocalTxId(localTxId)
+        .setType(EventType.TxStartedEvent.name())
+        .build();
+  }
+
+  private static GrpcTxResumed resumed(GrpcTxEvent event, GrpcAck ack) {
+    return GrpcTxResumed.newBuilder()
+        .setGlobalTxId(event.getGlobalTxId())
+        .setLocalTxId(event.getLocalTxId())
+        .setType(event.getType())
+        .setAck(ack)
+        .build();
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ *  Copyright (c) 2018-2019 ActionTech.
+ *  License: http://www.apache.org/licenses/LICENSE-2.0 Apache License 2.0 or higher.
+ */
+
+package org.apache.servicecomb.saga.omega.connector.grpc;
+
+import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.servicecomb.saga.omega.connector.grpc.LoadBalancedClusterMessageSender.ErrorHandlerFactory;
+import org.apache.servicecomb.saga.omega.context.ServiceConfig;
+import org.apache.servicecomb.saga.omega.transaction.MessageDeserializer;
+import org.apache.servicecomb.saga.omega.transaction.MessageHandler;
+import org.apache.servicecomb.saga.omega.transaction.MessageSerializer;
+import org.apache.servicecomb.saga.omega.transaction.OmegaException;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcCorrelatedAck;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEvent;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEventAcks;
+import org.apache.servicecomb.saga.pack.contract.grpc.GrpcTxEventRequest;
+import org.apache.servicecomb.saga.pack.contract.grpc.TxEventServiceGrpc.TxEventServiceImplBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+public class GrpcStreamingClientMessageSenderTest {
+  private final String serverName = uniquify("alpha");
+  private final AtomicInteger openedStreams = new AtomicInteger();
+  private volatile boolean breakStream = false;
+  private volatile boolean loseAcks = false;
+
+  private Server server;
+  private ManagedChannel channel;
+  private GrpcStreamingClientMessageSender messageSender;
+
+  @Before
+  public void setUp() throws Exception {
+    server = InProcessServerBuilder.forName(serverName).addService(new StreamingEventService()).build().start();
+    channel = InProcessChannelBuilder.forName(serverName).build();
+    messageSender = new GrpcStreamingClientMessageSender(
+        serverName,
+        channel,
+        mock(MessageSerializer.class),
+        mock(MessageDeserializer.class),
+        new ServiceConfig(uniquify("serviceName")),
+        mock(ErrorHandlerFactory.class),
+        mock(MessageHandler.class),
+        500);
+  }
+
+  @After
+  public void tearDown() {
+    messageSender.close();
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+
+  @Test
+  public void correlatesConcurrentEventsOnOneStream() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<GrpcAck>> acks = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        final String globalTxId = String.valueOf(i);
+        acks.add(executor.submit(() -> messageSender.onTxEvent(GrpcTxEvent.newBuilder().setGlobalTxId(globalTxId).build())));
+      }
+
+      for (int i = 0; i < acks.size(); i++) {
+        // odd global transactions are aborted by the fake alpha
+        assertThat(acks.get(i).get(5, TimeUnit.SECONDS).getAborted(), is(i % 2 == 1));
+      }
+      assertThat(openedStreams.get(), is(1));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void reopensStreamAfterItIsBroken() {
+    breakStream = true;
+    try {
+      messageSender.onTxEvent(GrpcTxEvent.newBuilder().setGlobalTxId("1").build());
+      fail("StatusRuntimeException is expected");
+    } catch (StatusRuntimeException e) {
+      assertThat(openedStreams.get(), is(1));
+    }
+
+    breakStream = false;
+    assertThat(messageSender.onTxEvent(GrpcTxEvent.newBuilder().setGlobalTxId("1").build()).getAborted(), is(true));
+    assertThat(openedStreams.get(), is(2));
+  }
+
+  @Test
+  public void failsEventWhoseAckIsLost() {
+    loseAcks = true;
+    long startTime = System.currentTimeMillis();
+    try {
+      messageSender.onTxEvent(GrpcTxEvent.newBuilder().setGlobalTxId("1").build());
+      fail("OmegaException is expected");
+    } catch (OmegaException e) {
+      assertThat(System.currentTimeMillis() - startTime >= 500, is(true));
+    }
+
+    // the stream is still usable for the following events.
+    loseAcks = false;
+    assertThat(messageSender.onTxEvent(GrpcTxEvent.newBuilder().setGlobalTxId("1").build()).getAborted(), is(true));
+    assertThat(openedStreams.get(), is(1));
+  }
+
+  private class StreamingEventService extends TxEventServiceImplBase {
+    @Override
+    public StreamObserver<GrpcTxEventRequest> onTxEventStream(final StreamObserver<GrpcTxEventAcks> responseObserver) {
+      openedStreams.incrementAndGet();
+      return new StreamObserver<GrpcTxEventRequest>() {
+        @Override
+        public void onNext(GrpcTxEventRequest request) {
+          if (breakStream) {
+            responseObserver.onError(new IllegalStateException("broken"));
+            return;
+          }
+          if (loseAcks) {
+            return;
+          }
+          boolean aborted = Integer.parseInt(request.getEvent().getGlobalTxId()) % 2 == 1;
+          responseObserver.onNext(GrpcTxEventAcks.newBuilder()
+              .addAcks(GrpcCorrelatedAck.newBuilder()
+                  .setCorrelationId(request.getCorrelationId())
+                  .setAck(GrpcAck.newBuilder().setAborted(aborted)))
+              .build());
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+          responseObserver.onCompleted();
+        }
+      };
+    }
+  }
+}
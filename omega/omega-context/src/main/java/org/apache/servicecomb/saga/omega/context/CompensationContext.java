@@ -61,6 +61,9 @@ public class CompensationContext {
               + " was somehow skipped, did you forget to configure compensable method checking on service startup?",
           e);
       // Do not report exception here, because it's not convenient for collection business information.
+      // The caller reports the result of compensation to alpha.
+      Throwable cause = e instanceof InvocationTargetException && e.getCause() != null ? e.getCause() : e;
+      throw new IllegalStateException("Failed to compensate transaction with global tx id [" + globalTxId + "], local tx id [" + localTxId + "], cause: " + cause, cause);
     } finally {
       omegaContext.setGlobalTxId(oldGlobalTxId);
       omegaContext.setLocalTxId(oldLocalTxId);
@@ -97,13 +97,14 @@ class OmegaSpringConfig {
       @Value("${alpha.cluster.ssl.key:client.pem}") String key,
       @Value("${alpha.cluster.ssl.certChain:ca.crt}") String certChain,
       @Value("${omega.connection.reconnectDelay:3000}") int reconnectDelay,
+      @Value("${alpha.cluster.stream.enable:false}") boolean enableStream,
       ServiceConfig serviceConfig,
       @Lazy MessageHandler handler,
       @Autowired Tracing tracing) {
 
     MessageFormat messageFormat = new KryoMessageFormat();
     AlphaClusterConfig clusterConfig = new AlphaClusterConfig(Arrays.asList(addresses),
-        enableSSL, mutualAuth, cert, key, certChain);
+        enableSSL, mutualAuth, cert, key, certChain, enableStream);
     final MessageSender sender = new LoadBalancedClusterMessageSender(
         clusterConfig,
         messageFormat,
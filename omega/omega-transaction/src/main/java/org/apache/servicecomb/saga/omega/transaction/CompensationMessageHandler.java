@@ -35,12 +35,22 @@ public class CompensationMessageHandler implements MessageHandler {
   @Override
   public void onReceive(String globalTxId, String localTxId, String parentTxId, String compensationMethod,
       Object... payloads) {
+    long startTime = System.currentTimeMillis();
+    boolean succeeded = true;
+    String error = "";
     try {
       context.apply(globalTxId, localTxId, compensationMethod, payloads);
     } catch (Exception e) {
       LOG.error("Failed to execute 'onReceive.context.apply' localTxId {}", localTxId, e);
+      succeeded = false;
+      error = e.getMessage() == null ? e.toString() : e.getMessage();
+    }
+    // the result is reported so that alpha marks the command as done at once, or sends it again later if the compensation failed.
+    CompensationResult result = new CompensationResult(globalTxId, localTxId, parentTxId, succeeded, error, System.currentTimeMillis() - startTime);
+    try {
+      sender.reportCompensationResult(result);
+    } catch (Exception e) {
+      LOG.error("Failed to report compensation result {}", result, e);
     }
-    // Executing compensation at the server's side. That can save performance and be conveniently to manage.
-//    sender.send(new TxCompensatedEvent(globalTxId, localTxId, parentTxId, compensationMethod));
   }
 }
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.servicecomb.saga.omega.transaction;
+
+// the result of a compensation which was pushed by alpha, it's reported to alpha after executing the compensation.
+public class CompensationResult {
+  private final String globalTxId;
+  private final String localTxId;
+  private final String parentTxId;
+  private final boolean succeeded;
+  private final String error;
+  private final long durationMillis;
+
+  public CompensationResult(String globalTxId, String localTxId, String parentTxId, boolean succeeded, String error, long durationMillis) {
+    this.globalTxId = globalTxId;
+    this.localTxId = localTxId;
+    this.parentTxId = parentTxId;
+    this.succeeded = succeeded;
+    this.error = error;
+    this.durationMillis = durationMillis;
+  }
+
+  public String globalTxId() {
+    return globalTxId;
+  }
+
+  public String localTxId() {
+    return localTxId;
+  }
+
+  public String parentTxId() {
+    return parentTxId;
+  }
+
+  public boolean succeeded() {
+    return succeeded;
+  }
+
+  public String error() {
+    return error;
+  }
+
+  public long durationMillis() {
+    return durationMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "CompensationResult{globalTxId='" + globalTxId + "', localTxId='" + localTxId + "', succeeded=" + succeeded
+        + ", error='" + error + "', durationMillis=" + durationMillis + '}';
+  }
+}
@@ -37,5 +37,9 @@ public interface MessageSender {
 
   String reportAccidentToServer(AccidentHandling accidentHandling);
 
+  // the senders which can't report the result leave the compensation to be found by alpha's scanner.
+  default void reportCompensationResult(CompensationResult result) {
+  }
+
   GrpcConfigAck readConfigFromServer(int type, String category);
 }
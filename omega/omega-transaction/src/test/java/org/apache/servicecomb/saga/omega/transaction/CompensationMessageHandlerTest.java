@@ -18,6 +18,7 @@ package org.apache.servicecomb.saga.omega.transaction;
 import static com.seanyinx.github.unit.scaffolding.Randomness.uniquify;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -25,7 +26,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
-import org.apache.servicecomb.saga.common.EventType;
 import org.apache.servicecomb.saga.omega.context.CompensationContext;
 import org.apache.servicecomb.saga.omega.transaction.accidentplatform.AccidentHandling;
 import org.apache.servicecomb.saga.pack.contract.grpc.GrpcConfigAck;
@@ -35,6 +35,7 @@ import org.junit.Test;
 public class CompensationMessageHandlerTest {
 
   private final List<TxEvent> events = new ArrayList<>();
+  private final List<CompensationResult> results = new ArrayList<>();
   private final MessageSender sender = new MessageSender() {
     @Override
     public void onConnected() {
@@ -76,6 +77,11 @@ public class CompensationMessageHandlerTest {
       return null;
     }
 
+    @Override
+    public void reportCompensationResult(CompensationResult result) {
+      results.add(result);
+    }
+
     @Override
     public GrpcConfigAck readConfigFromServer(int type, String category) {
       return null;
@@ -96,22 +102,33 @@ public class CompensationMessageHandlerTest {
   @Before
   public void setUp() {
     events.clear();
+    results.clear();
   }
 
   @Test
-  public void sendsCompensatedEventOnCompensationCompleted() {
+  public void reportsResultOnCompensationCompleted() {
     handler.onReceive(globalTxId, localTxId, parentTxId, compensationMethod, payload);
 
-    assertThat(events.size(), is(1));
+    assertThat(events.isEmpty(), is(true));
+    assertThat(results.size(), is(1));
 
-    TxEvent event = events.get(0);
-    assertThat(event.globalTxId(), is(globalTxId));
-    assertThat(event.localTxId(), is(localTxId));
-    assertThat(event.parentTxId(), is(parentTxId));
-    assertThat(event.type(), is(EventType.TxCompensatedEvent));
-    assertThat(event.compensationMethod(), is(getClass().getCanonicalName()));
-    assertThat(event.payloads().length, is(0));
+    CompensationResult result = results.get(0);
+    assertThat(result.globalTxId(), is(globalTxId));
+    assertThat(result.localTxId(), is(localTxId));
+    assertThat(result.parentTxId(), is(parentTxId));
+    assertThat(result.succeeded(), is(true));
 
     verify(context).apply(globalTxId, localTxId, compensationMethod, payload);
   }
+
+  @Test
+  public void reportsFailureOnCompensationFailed() {
+    doThrow(new IllegalStateException("oops")).when(context).apply(globalTxId, localTxId, compensationMethod, payload);
+
+    handler.onReceive(globalTxId, localTxId, parentTxId, compensationMethod, payload);
+
+    assertThat(results.size(), is(1));
+    assertThat(results.get(0).succeeded(), is(false));
+    assertThat(results.get(0).error(), is("oops"));
+  }
 }
@@ -22,6 +22,7 @@ public enum ConfigCenterType {
     AutoCompensationFaultTolerant,
     PauseGlobalTx,
     HistoryTableIntervalRule,
+    TxEventAdmission,
     AccidentReport,
     SqlMonitor;
 
@@ -51,6 +52,8 @@ public enum ConfigCenterType {
                 return 11;
             case HistoryTableIntervalRule:
                 return 12;
+            case TxEventAdmission:
+                return 13;
             case AccidentReport:
                 return 50;
             case SqlMonitor:
@@ -86,6 +89,8 @@ public enum ConfigCenterType {
                 return "暂停全局事务";
             case HistoryTableIntervalRule:
                 return "历史表间隔规则";
+            case TxEventAdmission:
+                return "事务事件限流";
             case AccidentReport:
                 return "差错上报";
             case SqlMonitor:
@@ -121,6 +126,8 @@ public enum ConfigCenterType {
                 return PauseGlobalTx;
             case 12:
                 return HistoryTableIntervalRule;
+            case 13:
+                return TxEventAdmission;
             case 50:
                 return AccidentReport;
             case 51:
@@ -9,6 +9,8 @@ public class ReturnValue {
     private String message;
     private Object data;
     private long total;
+    // the continuation token of a keyset page, null means the last page.
+    private String cursor;
 
     public ReturnValue() {
         this.message = "";
@@ -41,4 +43,12 @@ public class ReturnValue {
     public void setTotal(long total) {
         this.total = total;
     }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
 }